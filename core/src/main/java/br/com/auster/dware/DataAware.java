@@ -24,6 +24,7 @@ import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.GZIPInputStream;
 
@@ -265,6 +266,8 @@ public class DataAware {
 
   /**
    * Adds a request to be processed assynchronously by this DataAware instance.
+   * If the request queue is bounded and full, waits for room up to the
+   * configured enqueue timeout.
    * 
    * @param request
    *          the request to be processed.
@@ -273,12 +276,35 @@ public class DataAware {
    *           graphs or groups configured to process a request.
    */
   public void enqueue(Request request) throws IllegalStateException {
+    this.enqueue(request, this.graphManager.getAdmissionControl().getEnqueueTimeout(),
+                 TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Adds a request to be processed assynchronously by this DataAware instance,
+   * waiting up to the given time for room in the request queue, if it is
+   * bounded. A request not admitted in time is given to the request error
+   * listeners.
+   * 
+   * @param request
+   *          the request to be processed.
+   * @param timeout
+   *          how long to wait for room. If it is negative, waits as long as
+   *          needed; if it is zero, does not wait.
+   * @return true if the request was queued, false if it was rejected.
+   * @throws IllegalStateException
+   *           if the graph manager is down, not configured or does not have any
+   *           graphs or groups configured to process a request.
+   */
+  public boolean enqueue(Request request, long timeout, TimeUnit unit) throws IllegalStateException {
     if (graphManager.isCompletelyConfigured()) {
       for (Iterator it = this.listeners.iterator(); it.hasNext();) {
         ((StartupListener) it.next()).beforeEnqueue(this, request);
       }
       
-      this.graphManager.enqueue(request);
+      if (!this.graphManager.enqueue(request, timeout, unit)) {
+        return false;
+      }
       this.jEnqueuedRequests.incrementAndGet();
       
       for (Iterator it = this.listeners.iterator(); it.hasNext();) {
@@ -288,6 +314,7 @@ public class DataAware {
           log.warn("Error in StartupListener.", e);
         }
       }
+      return true;
     } else {
       throw new IllegalStateException(i18n.getString("managerNotConfigured"));
     }
@@ -295,6 +322,8 @@ public class DataAware {
   
   /**
    * Adds a list of requests to be processed assynchronously by this DataAware instance.
+   * If the request queue is bounded, the caller is held until the requests fit
+   * in it, up to the configured enqueue timeout.
    * 
    * @param requests
    *          the requests to be processed.
@@ -303,13 +332,35 @@ public class DataAware {
    *           graphs or groups configured to process a request.
    */
   public void enqueue(Collection<Request> requests) throws IllegalStateException {
+    this.enqueue(requests, this.graphManager.getAdmissionControl().getEnqueueTimeout(),
+                 TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Adds a list of requests to be processed assynchronously by this DataAware
+   * instance, waiting up to the given time for room in the request queue, if
+   * it is bounded. The requests not admitted in time are given to the request
+   * error listeners.
+   * 
+   * @param requests
+   *          the requests to be processed.
+   * @param timeout
+   *          how long to wait for room for all the requests. If it is
+   *          negative, waits as long as needed; if it is zero, does not wait.
+   * @return how many requests were queued.
+   * @throws IllegalStateException
+   *           if the graph manager is down, not configured or does not have any
+   *           graphs or groups configured to process a request.
+   */
+  public int enqueue(Collection<Request> requests, long timeout, TimeUnit unit)
+      throws IllegalStateException {
     if (graphManager.isCompletelyConfigured()) {
       for (Iterator it = this.listeners.iterator(); it.hasNext();) {
         ((StartupListener) it.next()).beforeEnqueue(this, requests);
       }
       
-      this.graphManager.enqueue(requests);
-      this.jEnqueuedRequests.addAndGet(requests.size());
+      int queued = this.graphManager.enqueue(requests, timeout, unit);
+      this.jEnqueuedRequests.addAndGet(queued);
       
       for (Iterator it = this.listeners.iterator(); it.hasNext();) {
         try {
@@ -318,6 +369,7 @@ public class DataAware {
           log.warn("Error in StartupListener.", e);
         }
       }
+      return queued;
     } else {
       throw new IllegalStateException(i18n.getString("managerNotConfigured"));
     }
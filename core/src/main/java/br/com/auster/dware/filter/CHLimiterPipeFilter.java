@@ -26,12 +26,14 @@ import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
 import br.com.auster.common.util.I18n;
 import br.com.auster.common.xml.DOMUtils;
 import br.com.auster.dware.graph.ConnectException;
 import br.com.auster.dware.graph.DefaultFilter;
 import br.com.auster.dware.graph.FilterException;
+import br.com.auster.dware.graph.PassThrough;
 import br.com.auster.dware.graph.Request;
 
 /**
@@ -55,11 +57,14 @@ import br.com.auster.dware.graph.Request;
  * This class is thread safe due to ligh Lock implementation during
  * configuration handling. No addiitonal syncronization is done.
  *
+ * The graph skips this filter when it has no limit, and sends the events of a
+ * request that exceeded the limit straight to a handler that ignores them.
+ *
  *
  * @version $Id: ContentHandlerPipeFilter.java 87 2005-08-04 21:21:25Z mtengelm $
  */
 public final class CHLimiterPipeFilter extends DefaultFilter implements
-		ContentHandler {
+		ContentHandler, PassThrough {
 
 	private final static Logger log = Logger
 			.getLogger(CHLimiterPipeFilter.class);
@@ -98,6 +103,9 @@ public final class CHLimiterPipeFilter extends DefaultFilter implements
 	 */
 	public static final String IGNORE_EXCEPTION = "ignore-exception";
 
+	// receives the events of requests larger than the limit
+	private static final ContentHandler IGNORE_ALL = new DefaultHandler();
+
 	private ContentHandler handler;
 	private long maxLimit = -1;
 	private boolean useExceptions;
@@ -176,6 +184,19 @@ public final class CHLimiterPipeFilter extends DefaultFilter implements
 		handler = (ContentHandler) oCH;
 	}
 
+	/**
+	 * Skipped when there is no limit; when the request exceeded the limit,
+	 * its events go straight to a handler that ignores them.
+	 *
+	 * @see PassThrough#getBypass()
+	 */
+	public Object getBypass() {
+		if (this.limitExceeded) {
+			return IGNORE_ALL;
+		}
+		return (maxLimit == -1) ? handler : null;
+	}
+
 	// START OF CONTENTHANDLER IMPLEMENTATION
 	// JUST BYPASS FROM INPUT TO OUTPUT
 	public void endDocument() throws SAXException {
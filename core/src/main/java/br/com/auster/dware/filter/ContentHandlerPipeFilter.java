@@ -26,6 +26,7 @@ import br.com.auster.common.xml.DOMUtils;
 import br.com.auster.dware.graph.ConnectException;
 import br.com.auster.dware.graph.DefaultFilter;
 import br.com.auster.dware.graph.FilterException;
+import br.com.auster.dware.graph.PassThrough;
 import br.com.auster.dware.sax.ContentHandlerPipe;
 
 /**
@@ -36,10 +37,12 @@ import br.com.auster.dware.sax.ContentHandlerPipe;
  * To get the input: ContentHandler getInput()
  * <p>
  * To set the output: setOutput(ContentHandler)
+ * <p>
+ * It can be skipped by the graph when its content handler can.
  * 
  * @version $Id: ContentHandlerPipeFilter.java 87 2005-08-04 21:21:25Z rbarone $
  */
-public final class ContentHandlerPipeFilter extends DefaultFilter {
+public final class ContentHandlerPipeFilter extends DefaultFilter implements PassThrough {
 
   protected static final String CONTENT_HANDLER_ELEMENT = "content-handler";
 
@@ -98,6 +101,16 @@ public final class ContentHandlerPipeFilter extends DefaultFilter {
     return this.handler;
   }
 
+  /**
+   * Delegates to the content handler, if it may be skipped.
+   */
+  public Object getBypass() {
+    if (this.handler instanceof PassThrough) {
+      return ((PassThrough) this.handler).getBypass();
+    }
+    return null;
+  }
+
   /**
    * Sets the output for this filter.
    */
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.filter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.w3c.dom.Element;
+
+import br.com.auster.common.util.I18n;
+import br.com.auster.dware.graph.Request;
+import br.com.auster.dware.manager.ScatterGather;
+
+/**
+ * Merges the files written by {@link OutputToFile} for each part of a split
+ * request. For each format, the files of the parts are concatenated, in the
+ * order of the parts, into the file the parent request would have written,
+ * that is, the name of the first part's file without the
+ * {@link OutputToFile#PART_SUFFIX part suffix}. The files of the parts are
+ * deleted afterwards, and the merged ones are set as the files generated by
+ * the parent request.
+ * 
+ * <p>
+ * Concatenation keeps gzip outputs valid, since a gzip file may have many
+ * members.
+ * </p>
+ * 
+ * @version $Id$
+ */
+public class GeneratedFilesMerger implements ScatterGather.Merger {
+
+  private static final Logger log = Logger.getLogger(GeneratedFilesMerger.class);
+
+  private final I18n i18n = I18n.getInstance(GeneratedFilesMerger.class);
+
+  public GeneratedFilesMerger(Element config) {
+  }
+
+  public void merge(Request parent, Request[] parts) throws IOException {
+    final Map firstFiles = generatedFiles(parts[0]);
+    final Map merged = new HashMap();
+    for (Iterator it = firstFiles.keySet().iterator(); it.hasNext();) {
+      final Object format = it.next();
+      final String firstPath = (String) firstFiles.get(format);
+      if (firstPath == null) {
+        // this format was not generated (or was rolled back)
+        merged.put(format, null);
+        continue;
+      }
+      final File target = new File(firstPath.substring(0, firstPath.lastIndexOf(OutputToFile.PART_SUFFIX)));
+      final FileChannel out = new FileOutputStream(target).getChannel();
+      try {
+        for (int i = 0; i < parts.length; i++) {
+          String path = (String) generatedFiles(parts[i]).get(format);
+          if (path == null) {
+            throw new IOException(i18n.getString("partFileMissing", format, parts[i]));
+          }
+          final FileChannel in = new FileInputStream(path).getChannel();
+          try {
+            long position = 0, size = in.size();
+            while (position < size) {
+              position += in.transferTo(position, size - position, out);
+            }
+          } finally {
+            in.close();
+          }
+        }
+      } finally {
+        out.close();
+      }
+      merged.put(format, target.getAbsolutePath());
+      log.info(i18n.getString("partFilesMerged", Integer.toString(parts.length), target));
+    }
+    this.discard(parent, parts);
+    parent.getAttributes().put(OutputToFile.GENERATED_FILES_KEY, merged);
+  }
+
+  public void discard(Request parent, Request[] parts) {
+    for (int i = 0; i < parts.length; i++) {
+      for (Iterator it = generatedFiles(parts[i]).values().iterator(); it.hasNext();) {
+        String path = (String) it.next();
+        if (path != null && !new File(path).delete()) {
+          log.warn(i18n.getString("problemDeleting", path));
+        }
+      }
+    }
+  }
+
+  private static Map generatedFiles(Request request) {
+    Map files = (Map) request.getAttributes().get(OutputToFile.GENERATED_FILES_KEY);
+    return files == null ? new HashMap() : files;
+  }
+
+}
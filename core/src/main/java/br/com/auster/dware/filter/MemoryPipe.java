@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.filter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import br.com.auster.common.util.I18n;
+
+/**
+ * An in-memory replacement for <code>java.nio.channels.Pipe</code>, used by
+ * <code>PipeFilter</code> to connect two threaded filters of the same graph
+ * without going through the operating system.
+ * 
+ * <p>
+ * The pipe owns a fixed ring of direct buffers, allocated only once. The
+ * writer fills one buffer at a time and hands it to the reader as soon as it
+ * is full or the sink is closed; the reader drains it and gives it back. The
+ * writer blocks when every buffer in the ring is waiting to be read, so the
+ * ring size is the amount of data that may be in flight between both sides.
+ * </p>
+ * 
+ * <p>
+ * This is a bounded copy pipe: since both sides are plain NIO channels, the
+ * data is copied from the writer's buffer into the ring and then from the
+ * ring into the reader's buffer. Only the ring buffers are handed between the
+ * threads, never the callers' own buffers. What it saves over an operating
+ * system pipe are the system calls, the copies into and out of the kernel and
+ * the kernel's small fixed buffer, not the copies themselves.
+ * </p>
+ * 
+ * <p>
+ * One writer thread and one reader thread are expected. The pipe may be
+ * reused by calling <code>open()</code> once both sides of the previous use
+ * were closed.
+ * </p>
+ * 
+ * @version $Id$
+ */
+public final class MemoryPipe {
+
+  private final ByteBuffer[] ring;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final Condition notEmpty = lock.newCondition();
+
+  private final Condition notFull = lock.newCondition();
+
+  // buffers handed to the reader and not yet drained
+  private int filled;
+
+  // the buffer being drained by the reader
+  private int readIndex;
+
+  // the buffer being filled by the writer
+  private int writeIndex;
+
+  private boolean sinkClosed, sourceClosed;
+
+  private final Sink sink = new Sink();
+
+  private final Source source = new Source();
+
+  private final I18n i18n = I18n.getInstance(MemoryPipe.class);
+
+  /**
+   * Creates a pipe with <code>buffers</code> direct buffers of
+   * <code>bufferSize</code> bytes each.
+   */
+  public MemoryPipe(int buffers, int bufferSize) {
+    if (buffers < 2 || bufferSize < 1) {
+      throw new IllegalArgumentException(i18n.getString("invalidMemoryPipe", new Integer(buffers),
+                                                        new Integer(bufferSize)));
+    }
+    this.ring = new ByteBuffer[buffers];
+    for (int i = 0; i < buffers; i++) {
+      this.ring[i] = ByteBuffer.allocateDirect(bufferSize);
+    }
+  }
+
+  /**
+   * Resets this pipe so it can carry a new stream, reusing its buffers.
+   * 
+   * @return this pipe.
+   */
+  public MemoryPipe open() {
+    this.lock.lock();
+    try {
+      for (int i = 0; i < this.ring.length; i++) {
+        this.ring[i].clear();
+      }
+      this.filled = this.readIndex = this.writeIndex = 0;
+      this.sinkClosed = this.sourceClosed = false;
+      return this;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the writable side of this pipe.
+   */
+  public WritableByteChannel sink() {
+    return this.sink;
+  }
+
+  /**
+   * Returns the readable side of this pipe.
+   */
+  public ReadableByteChannel source() {
+    return this.source;
+  }
+
+  /**
+   * Returns the number of buffers of this pipe.
+   */
+  public int getCapacity() {
+    return this.ring.length;
+  }
+
+  /**
+   * Returns the size of each buffer of this pipe.
+   */
+  public int getBufferSize() {
+    return this.ring[0].capacity();
+  }
+
+  /**
+   * Closes both sides of the pipe and restores the interruption flag of the
+   * current thread.
+   */
+  private ClosedByInterruptException interrupted() {
+    this.sinkClosed = this.sourceClosed = true;
+    this.notEmpty.signalAll();
+    this.notFull.signalAll();
+    Thread.currentThread().interrupt();
+    return new ClosedByInterruptException();
+  }
+
+  /**
+   * The writable side of the pipe.
+   */
+  private final class Sink implements WritableByteChannel {
+
+    public int write(ByteBuffer src) throws IOException {
+      final int total = src.remaining();
+      while (src.hasRemaining()) {
+        final ByteBuffer buffer;
+        lock.lock();
+        try {
+          while (filled == ring.length && !sourceClosed && !sinkClosed) {
+            try {
+              notFull.await();
+            } catch (InterruptedException e) {
+              throw interrupted();
+            }
+          }
+          if (sinkClosed) {
+            throw new ClosedChannelException();
+          } else if (sourceClosed) {
+            throw new IOException(i18n.getString("pipeSourceClosed"));
+          }
+          buffer = ring[writeIndex];
+        } finally {
+          lock.unlock();
+        }
+
+        // the reader does not touch this buffer until it is handed over
+        if (src.remaining() <= buffer.remaining()) {
+          buffer.put(src);
+        } else {
+          final int limit = src.limit();
+          src.limit(src.position() + buffer.remaining());
+          buffer.put(src);
+          src.limit(limit);
+        }
+        if (!buffer.hasRemaining()) {
+          handOver();
+        }
+      }
+      return total;
+    }
+
+    /**
+     * Hands the buffer being filled to the reader.
+     */
+    private void handOver() {
+      lock.lock();
+      try {
+        ring[writeIndex].flip();
+        writeIndex = (writeIndex + 1) % ring.length;
+        filled++;
+        notEmpty.signal();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    public boolean isOpen() {
+      lock.lock();
+      try {
+        return !sinkClosed;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    public void close() {
+      lock.lock();
+      try {
+        if (sinkClosed) {
+          return;
+        }
+        // a partially filled buffer always owns a free slot
+        if (ring[writeIndex].position() > 0 && !sourceClosed) {
+          handOver();
+        }
+        sinkClosed = true;
+        notEmpty.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * The readable side of the pipe.
+   */
+  private final class Source implements ReadableByteChannel {
+
+    public int read(ByteBuffer dst) throws IOException {
+      if (!dst.hasRemaining()) {
+        return 0;
+      }
+      final ByteBuffer buffer;
+      lock.lock();
+      try {
+        while (filled == 0 && !sinkClosed && !sourceClosed) {
+          try {
+            notEmpty.await();
+          } catch (InterruptedException e) {
+            throw interrupted();
+          }
+        }
+        if (sourceClosed) {
+          throw new ClosedChannelException();
+        } else if (filled == 0) {
+          return -1;
+        }
+        buffer = ring[readIndex];
+      } finally {
+        lock.unlock();
+      }
+
+      // the writer does not touch this buffer until it is given back
+      final int read;
+      if (buffer.remaining() <= dst.remaining()) {
+        read = buffer.remaining();
+        dst.put(buffer);
+      } else {
+        read = dst.remaining();
+        final int limit = buffer.limit();
+        buffer.limit(buffer.position() + read);
+        dst.put(buffer);
+        buffer.limit(limit);
+      }
+      if (!buffer.hasRemaining()) {
+        lock.lock();
+        try {
+          buffer.clear();
+          readIndex = (readIndex + 1) % ring.length;
+          filled--;
+          notFull.signal();
+        } finally {
+          lock.unlock();
+        }
+      }
+      return read;
+    }
+
+    public boolean isOpen() {
+      lock.lock();
+      try {
+        return !sourceClosed;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    public void close() {
+      lock.lock();
+      try {
+        sourceClosed = true;
+        notFull.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
@@ -37,6 +37,7 @@ import br.com.auster.dware.graph.ConnectException;
 import br.com.auster.dware.graph.DefaultFilter;
 import br.com.auster.dware.graph.FilterException;
 import br.com.auster.dware.graph.Request;
+import br.com.auster.dware.manager.RequestPart;
 import br.com.auster.dware.request.file.FileRequest;
 
 /**
@@ -63,6 +64,12 @@ public class OutputToFile extends DefaultFilter {
 
    public static final String GENERATED_FILES_KEY = "generatedFiles";
 
+   /**
+    * {@value} - appended, with the part number, to the name of the files
+    * written for a part of a split request.
+    */
+   public static final String PART_SUFFIX = ".part";
+
    protected FilenameBuilder filenameBuilder;
    
    protected String formatName;
@@ -154,10 +161,7 @@ public class OutputToFile extends DefaultFilter {
             this.file = this.getFile(request);
          }
 
-         if (this.isFormatActive) {
-            Map generatedFiles = (Map) this.request.getAttributes().get(GENERATED_FILES_KEY);
-            generatedFiles.put(this.formatName, this.file.getAbsolutePath());
-         }
+         this.recordFile(this.file);
          
          log.info(i18n.getString("setOutputRequest", request, this.file));
          
@@ -167,6 +171,33 @@ public class OutputToFile extends DefaultFilter {
       }
    }
 
+   /**
+    * Records the file being written for the request. When a temporary file is
+    * used, it is recorded again once moved to its definitive name.
+    */
+   private void recordFile(File written) {
+      if (this.isFormatActive) {
+         Map generatedFiles = (Map) this.request.getAttributes().get(GENERATED_FILES_KEY);
+         generatedFiles.put(this.formatName, written.getAbsolutePath());
+      } else if (this.request instanceof RequestPart) {
+         // the files of the parts are always known, so they can be merged
+         this.partFiles(this.request).put(this.getFilterName(), written.getAbsolutePath());
+      }
+   }
+
+   /**
+    * Returns the files generated for a part of a split request, by filter
+    * name.
+    */
+   private Map partFiles(Request request) {
+      Map generatedFiles = (Map) request.getAttributes().get(GENERATED_FILES_KEY);
+      if (generatedFiles == null) {
+         generatedFiles = new HashMap();
+         request.getAttributes().put(GENERATED_FILES_KEY, generatedFiles);
+      }
+      return generatedFiles;
+   }
+
    /**
     * Creates the file that will be opened for writing as the output.
     * 
@@ -179,6 +210,12 @@ public class OutputToFile extends DefaultFilter {
         //Belows "&" operation is to guarantee that the file name will not start with minus signal.
         fileName = String.valueOf(request.hashCode() & 0x7FFFFFFF);
       }
+      // the parts of a split request share its attributes, so each one
+      // writes to its own file, merged later
+      String partSuffix = "";
+      if (request instanceof RequestPart) {
+         partSuffix = PART_SUFFIX + (((RequestPart) request).getPartIndex() + 1);
+      }
       if (request instanceof FileRequest) {
          File input = ((FileRequest) request).getFile();
          if (this.namePrefix.length() == 0) {
@@ -189,10 +226,10 @@ public class OutputToFile extends DefaultFilter {
             if (parentFile == null) {
                parentFile = new File("./");
             }
-            return new File(parentFile.getAbsolutePath() + fileName + this.nameSuffix);
+            return new File(parentFile.getAbsolutePath() + fileName + this.nameSuffix + partSuffix);
          }
       }
-      File outputFile = new File(this.namePrefix + fileName + this.nameSuffix);
+      File outputFile = new File(this.namePrefix + fileName + this.nameSuffix + partSuffix);
       try {
         IOUtils.createParentDirs(outputFile);
       } catch (IOException e) {
@@ -221,6 +258,7 @@ public class OutputToFile extends DefaultFilter {
           if (!this.file.renameTo(newFile)) {
             throw new RuntimeException(i18n.getString("couldNotMoveFile", this.file, newFile));
           }
+          this.recordFile(newFile);
         } catch (FilterException e) {
           throw new RuntimeException(e);
         }
@@ -241,6 +279,8 @@ public class OutputToFile extends DefaultFilter {
 	 	 Map generatedFiles = (Map) 
 	 	 	this.request.getAttributes().get(GENERATED_FILES_KEY);
 		 generatedFiles.put(this.formatName, null);
+	  } else if (this.request instanceof RequestPart) {
+	     this.partFiles(this.request).put(this.getFilterName(), null);
 	  }
       try {
          if (this.writer != null && this.writer.isOpen()) {
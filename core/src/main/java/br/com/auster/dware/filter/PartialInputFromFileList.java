@@ -138,6 +138,10 @@ public class PartialInputFromFileList extends ThreadedFilter {
   
   private boolean isCacheValid = false; 
 
+  // how many times a file was opened, and how many times a reader had to skip
+  // to the offset of a request (guarded by readerByFileName)
+  private volatile long openCount = 0, seekCount = 0;
+
   public PartialInputFromFileList(String name) {
     super(name);
   }
@@ -286,6 +290,10 @@ public class PartialInputFromFileList extends ThreadedFilter {
         reader = NIOUtils.openFileForRead(file);
         this.readerByFileName.put(file, reader);
         bytesIgnored = 0;
+        this.openCount++;
+      }
+      if (bytesIgnored < offset) {
+        this.seekCount++;
       }
   
       // Ignores the offset data
@@ -334,6 +342,21 @@ public class PartialInputFromFileList extends ThreadedFilter {
     clearFiles();
   }
 
+  /**
+   * Returns how many times this filter opened an input file.
+   */
+  public long getOpenCount() {
+    return this.openCount;
+  }
+
+  /**
+   * Returns how many times this filter skipped to the offset of a request,
+   * instead of going on from where it stopped reading.
+   */
+  public long getSeekCount() {
+    return this.seekCount;
+  }
+
   protected void clearFiles() {
     synchronized (this.readerByFileName) {
       this.readerByFileName.clear();
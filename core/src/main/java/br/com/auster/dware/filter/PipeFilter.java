@@ -23,8 +23,10 @@ import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 
 import org.apache.log4j.Logger;
+import org.w3c.dom.Element;
 
 import br.com.auster.common.util.I18n;
+import br.com.auster.common.xml.DOMUtils;
 import br.com.auster.dware.graph.ConnectException;
 import br.com.auster.dware.graph.DefaultFilter;
 import br.com.auster.dware.graph.FilterException;
@@ -39,11 +41,33 @@ import br.com.auster.dware.graph.Request;
  * <p>
  * To get the output: ReadableByteChannel getOutput(null)
  * 
+ * <p>
+ * By default an operating system pipe is opened for each request. If the
+ * attribute <code>memory</code> is <code>true</code>, the filter uses a
+ * <code>MemoryPipe</code> instead: <code>buffers</code> direct buffers (4 by
+ * default) of <code>buffer-size</code> bytes (64KB by default), allocated once
+ * and reused by every request. The data is still copied through those
+ * buffers, but without going through the kernel. Since each pipe is a node of
+ * the graph, the kind of pipe is chosen for each connection of the graph
+ * design.
+ * 
  * @version $Id: PipeFilter.java 87 2005-08-04 21:21:25Z rbarone $
  */
 public final class PipeFilter extends DefaultFilter {
 
+  protected static final String MEMORY_ATTR = "memory";
+
+  protected static final String BUFFERS_ATTR = "buffers";
+
+  protected static final String BUFFER_SIZE_ATTR = "buffer-size";
+
+  protected static final int DEFAULT_BUFFERS = 4;
+
+  protected static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
   // Instance variables
+  protected MemoryPipe memoryPipe;
+
   protected ReadableByteChannel reader;
 
   protected WritableByteChannel writer;
@@ -57,12 +81,42 @@ public final class PipeFilter extends DefaultFilter {
   }
 
   /**
-   * Opens the file for reading as the input for the request to be processed.
+   * Chooses between an operating system pipe and a <code>MemoryPipe</code>.
+   */
+  public final synchronized void configure(Element config) throws FilterException {
+    if (DOMUtils.getBooleanAttribute(config, MEMORY_ATTR)) {
+      int buffers = DOMUtils.getIntAttribute(config, BUFFERS_ATTR, false);
+      int bufferSize = DOMUtils.getIntAttribute(config, BUFFER_SIZE_ATTR, false);
+      buffers = buffers > 0 ? buffers : DEFAULT_BUFFERS;
+      bufferSize = bufferSize > 0 ? bufferSize : DEFAULT_BUFFER_SIZE;
+      if (this.memoryPipe == null || this.memoryPipe.getCapacity() != buffers
+          || this.memoryPipe.getBufferSize() != bufferSize) {
+        try {
+          this.memoryPipe = new MemoryPipe(buffers, bufferSize);
+        } catch (IllegalArgumentException e) {
+          throw new FilterException(e.getMessage(), e);
+        }
+      }
+      log.debug(i18n.getString("memoryPipeConfigured", this.getFilterName(),
+                               new Integer(buffers), new Integer(bufferSize)));
+    } else {
+      this.memoryPipe = null;
+    }
+  }
+
+  /**
+   * Opens the pipe for the request to be processed.
    * 
    * @param request
    *          the request to be processed.
    */
   public final void prepare(Request request) throws FilterException {
+    if (this.memoryPipe != null) {
+      this.memoryPipe.open();
+      this.writer = this.memoryPipe.sink();
+      this.reader = this.memoryPipe.source();
+      return;
+    }
     try {
       Pipe pipe = Pipe.open();
       this.writer = pipe.sink();
@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.filter;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+import org.w3c.dom.Element;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+import br.com.auster.common.util.I18n;
+import br.com.auster.common.xml.DOMUtils;
+import br.com.auster.dware.graph.ConnectException;
+import br.com.auster.dware.graph.FilterException;
+import br.com.auster.dware.graph.Request;
+import br.com.auster.dware.graph.ThreadedFilter;
+import br.com.auster.dware.sax.SAXEventBatch;
+
+/**
+ * This filter moves SAX events from the thread that produces them to its own
+ * thread. Without it, every filter of a <code>ContentHandler</code> chain runs
+ * in the thread of the filter that parses the input; with it, the filters
+ * after this one run in parallel with the parser and the filters before it.
+ * 
+ * <p>
+ * The events received are recorded in batches of <code>batch-size</code>
+ * events (1024 by default) that are handed to the filter thread as soon as
+ * they are full, and sent by it to the output. At most <code>batches</code>
+ * batches (4 by default) are allocated; when all of them wait to be sent, the
+ * producer waits too. The batches are reused by every request.
+ * </p>
+ * 
+ * <p>
+ * To get the input: ContentHandler getInput(null)
+ * <p>
+ * To set the output: setOutput(ContentHandler)
+ * 
+ * @version $Id$
+ */
+public class SAXBufferFilter extends ThreadedFilter implements ContentHandler {
+
+  protected static final String BATCH_SIZE_ATTR = "batch-size";
+
+  protected static final String BATCHES_ATTR = "batches";
+
+  protected static final int DEFAULT_BATCH_SIZE = 1024;
+
+  protected static final int DEFAULT_BATCHES = 4;
+
+  protected ContentHandler handler;
+
+  private SAXEventBatch[] ring;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final Condition notEmpty = lock.newCondition();
+
+  private final Condition notFull = lock.newCondition();
+
+  // batches handed to the filter thread and not yet sent
+  private int filled;
+
+  private int readIndex;
+
+  private int writeIndex;
+
+  // the batch being recorded, null until the producer gets a free one
+  private SAXEventBatch current;
+
+  private boolean aborted;
+
+  protected static final Logger log = Logger.getLogger(SAXBufferFilter.class);
+
+  private final I18n i18n = I18n.getInstance(SAXBufferFilter.class);
+
+  public SAXBufferFilter(String name) {
+    super(name);
+  }
+
+  /**
+   * Configures the number and the size of the batches.
+   */
+  public synchronized void configure(Element config) throws FilterException {
+    int batchSize = DOMUtils.getIntAttribute(config, BATCH_SIZE_ATTR, false);
+    int batches = DOMUtils.getIntAttribute(config, BATCHES_ATTR, false);
+    batchSize = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+    batches = batches > 0 ? batches : DEFAULT_BATCHES;
+    if (batches < 2) {
+      throw new FilterException(i18n.getString("invalidBatches", new Integer(batches)));
+    }
+    this.lock.lock();
+    try {
+      this.ring = new SAXEventBatch[batches];
+      for (int i = 0; i < batches; i++) {
+        this.ring[i] = new SAXEventBatch(batchSize);
+      }
+    } finally {
+      this.lock.unlock();
+    }
+    log.debug(i18n.getString("saxBufferConfigured", this.getFilterName(), new Integer(batches),
+                             new Integer(batchSize)));
+  }
+
+  /**
+   * Empties all the batches for the request to be processed.
+   */
+  public void prepare(Request request) throws FilterException {
+    this.lock.lock();
+    try {
+      for (int i = 0; i < this.ring.length; i++) {
+        this.ring[i].clear();
+      }
+      this.filled = this.readIndex = this.writeIndex = 0;
+      this.current = null;
+      this.aborted = false;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Sends the batches to the output as they get full, until the end of the
+   * document.
+   */
+  public void process() throws FilterException {
+    if (this.handler == null) {
+      throw new FilterException(i18n.getString("outputNotSet"));
+    }
+    try {
+      boolean ended = false;
+      while (!ended) {
+        final SAXEventBatch batch;
+        this.lock.lock();
+        try {
+          while (this.filled == 0 && !this.aborted) {
+            this.notEmpty.await();
+          }
+          if (this.aborted) {
+            // the request was rolled back
+            return;
+          }
+          batch = this.ring[this.readIndex];
+        } finally {
+          this.lock.unlock();
+        }
+
+        // the producer does not touch this batch until it is given back
+        batch.replay(this.handler);
+        ended = batch.hasEnded();
+        batch.clear();
+
+        this.lock.lock();
+        try {
+          this.readIndex = (this.readIndex + 1) % this.ring.length;
+          this.filled--;
+          this.notFull.signal();
+        } finally {
+          this.lock.unlock();
+        }
+      }
+    } catch (InterruptedException e) {
+      abort();
+      throw new FilterException(e);
+    } catch (SAXException e) {
+      // the producer must not wait for a batch that will never be sent
+      abort();
+      throw new FilterException(e);
+    } catch (RuntimeException e) {
+      abort();
+      throw e;
+    }
+  }
+
+  /**
+   * Wakes up the producer and the filter thread, if they are waiting.
+   */
+  public void rollback() {
+    abort();
+  }
+
+  private void abort() {
+    this.lock.lock();
+    try {
+      this.aborted = true;
+      this.notEmpty.signalAll();
+      this.notFull.signalAll();
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Gets the batch being recorded, waiting for a free one if needed.
+   */
+  private SAXEventBatch current() throws SAXException {
+    SAXEventBatch batch = this.current;
+    if (batch != null) {
+      return batch;
+    }
+    this.lock.lock();
+    try {
+      while (this.filled == this.ring.length && !this.aborted) {
+        this.notFull.await();
+      }
+      if (this.aborted) {
+        throw new SAXException(i18n.getString("saxBufferAborted", this.getFilterName()));
+      }
+      batch = this.current = this.ring[this.writeIndex];
+      return batch;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SAXException(e);
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Hands the batch being recorded to the filter thread if it is full or if
+   * the document ended.
+   */
+  private void recorded(SAXEventBatch batch) {
+    if (!batch.isFull() && !batch.hasEnded()) {
+      return;
+    }
+    this.lock.lock();
+    try {
+      this.current = null;
+      this.writeIndex = (this.writeIndex + 1) % this.ring.length;
+      this.filled++;
+      this.notEmpty.signal();
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Returns this filter, that records the events received.
+   */
+  public Object getInput(String filterName) {
+    return this;
+  }
+
+  /**
+   * Sets the ContentHandler that will receive the events.
+   */
+  public void setOutput(String sinkName, Object output) throws ConnectException {
+    this.handler = (ContentHandler) output;
+  }
+
+  /** ***************************************** */
+  /* START OF CONTENTHANDLER IMPLEMENTATION */
+  /** ***************************************** */
+
+  public void setDocumentLocator(Locator locator) {
+    try {
+      final SAXEventBatch batch = current();
+      batch.setDocumentLocator(locator);
+      recorded(batch);
+    } catch (SAXException e) {
+      // the document will fail at its first event
+      log.debug(e.getMessage());
+    }
+  }
+
+  public void startDocument() throws SAXException {
+    final SAXEventBatch batch = current();
+    batch.startDocument();
+    recorded(batch);
+  }
+
+  public void endDocument() throws SAXException {
+    final SAXEventBatch batch = current();
+    batch.endDocument();
+    recorded(batch);
+  }
+
+  public void startPrefixMapping(String prefix, String uri) throws SAXException {
+    final SAXEventBatch batch = current();
+    batch.startPrefixMapping(prefix, uri);
+    recorded(batch);
+  }
+
+  public void endPrefixMapping(String prefix) throws SAXException {
+    final SAXEventBatch batch = current();
+    batch.endPrefixMapping(prefix);
+    recorded(batch);
+  }
+
+  public void startElement(String uri, String localName, String qName, Attributes atts)
+      throws SAXException {
+    final SAXEventBatch batch = current();
+    batch.startElement(uri, localName, qName, atts);
+    recorded(batch);
+  }
+
+  public void endElement(String uri, String localName, String qName) throws SAXException {
+    final SAXEventBatch batch = current();
+    batch.endElement(uri, localName, qName);
+    recorded(batch);
+  }
+
+  public void characters(char[] ch, int start, int length) throws SAXException {
+    final SAXEventBatch batch = current();
+    batch.characters(ch, start, length);
+    recorded(batch);
+  }
+
+  public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+    final SAXEventBatch batch = current();
+    batch.ignorableWhitespace(ch, start, length);
+    recorded(batch);
+  }
+
+  public void processingInstruction(String target, String data) throws SAXException {
+    final SAXEventBatch batch = current();
+    batch.processingInstruction(target, data);
+    recorded(batch);
+  }
+
+  public void skippedEntity(String name) throws SAXException {
+    final SAXEventBatch batch = current();
+    batch.skippedEntity(name);
+    recorded(batch);
+  }
+}
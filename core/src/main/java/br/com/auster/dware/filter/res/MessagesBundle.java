@@ -45,6 +45,10 @@ public final class MessagesBundle extends ListResourceBundle {
         {"problemCreatingFile", "Problems creating the output file for request {0}."},
         {"couldNotMoveFile", "Could not move the file {0} to the new file {1}."},
 
+        // GeneratedFilesMerger.java
+        {"partFileMissing", "The file of format \"{0}\" was not generated for the part {1}."},
+        {"partFilesMerged", "Merged the files of {0} parts into {1}."},
+
         // DefaultFilter.java
         {"methodNotSupported", "The method \"{0}\" is not supported by this class."},
 
@@ -57,6 +61,16 @@ public final class MessagesBundle extends ListResourceBundle {
         {"problemsPipe", "Problems creating pipe."},
         {"problemClosingWriter", "Problems closing the writer."},
         {"problemClosingReader", "Problems closing the reader."},
+        {"memoryPipeConfigured", "Filter {0} uses a memory pipe of {1} buffers of {2} bytes."},
+
+        // MemoryPipe.java
+        {"invalidMemoryPipe", "A memory pipe needs at least 2 buffers of at least 1 byte, got {0} buffers of {1} bytes."},
+        {"pipeSourceClosed", "The reader of the pipe was closed."},
+
+        // SAXBufferFilter.java
+        {"saxBufferConfigured", "Filter {0} buffers the SAX events in {1} batches of {2} events."},
+        {"invalidBatches", "At least 2 batches of SAX events are needed, got {0}."},
+        {"saxBufferAborted", "The processing of the request was aborted before filter {0} got all the SAX events."},
 
         // NIOFilter.java
         {"inputNotSet", "The input must be set before usage (invalid configuration?)."},
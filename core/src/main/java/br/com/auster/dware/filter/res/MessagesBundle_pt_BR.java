@@ -45,6 +45,10 @@ public final class MessagesBundle_pt_BR extends ListResourceBundle {
         {"problemCreatingFile", "Problema abrindo o arquivo de sada para a requisio {0}."},
         {"couldNotMoveFile", "No foi possvel mover o arquivo {0} para o novo arquivo {1}."},
 
+        // GeneratedFilesMerger.java
+        {"partFileMissing", "O arquivo do formato \"{0}\" no foi gerado para a parte {1}."},
+        {"partFilesMerged", "Os arquivos de {0} partes foram unidos em {1}."},
+
         // DefaultFilter.java
         {"methodNotSupported", "O mtodo \"{0}\" no  suportado por esta classe."},
 
@@ -57,6 +61,16 @@ public final class MessagesBundle_pt_BR extends ListResourceBundle {
         {"problemsPipe", "Problema criando o 'pipe'."},
         {"problemClosingWriter", "Problema ao fechar o escritor."},
         {"problemClosingReader", "Problema ao fechar o leitor."},
+        {"memoryPipeConfigured", "O filtro {0} usa um 'pipe' em memria de {1} buffers de {2} bytes."},
+
+        // MemoryPipe.java
+        {"invalidMemoryPipe", "Um 'pipe' em memria precisa de ao menos 2 buffers de ao menos 1 byte, recebeu {0} buffers de {1} bytes."},
+        {"pipeSourceClosed", "O leitor do 'pipe' foi fechado."},
+
+        // SAXBufferFilter.java
+        {"saxBufferConfigured", "O filtro {0} armazena os eventos SAX em {1} lotes de {2} eventos."},
+        {"invalidBatches", "So necessrios ao menos 2 lotes de eventos SAX, recebeu {0}."},
+        {"saxBufferAborted", "O processamento da requisio foi abortado antes do filtro {0} receber todos os eventos SAX."},
 
         // NIOFilter.java
         {"inputNotSet", "A entrada deve ser definida antes do uso do filtro (configurao invlida?)."},
@@ -30,12 +30,15 @@ import br.com.auster.common.util.I18n;
  * 
  * @version $Id: DefaultFilter.java 80 2005-07-28 19:02:26Z mtengelm $
  */
-public abstract class DefaultFilter implements Filter, Source, Sink, FilterMonitor {
+public abstract class DefaultFilter implements Filter, Source, Sink, FilterMonitor,
+    FilterLatencyAware {
 
   protected final String filterName;
 
   private final I18n i18n = I18n.getInstance(DefaultFilter.class);
 
+  private FilterLatency latency = null;
+
   public DefaultFilter(String name) {
     this.filterName = name;
   }
@@ -46,12 +49,29 @@ public abstract class DefaultFilter implements Filter, Source, Sink, FilterMonit
    * @see br.com.auster.dware.graph.FilterMonitor#getCounters()
    */
   public AtomicLongArray getCounters() {
-     return null;
+     return this.latency == null ? null : this.latency.toCounters(false);
   }
   /* (non-Javadoc)
    * @see br.com.auster.dware.graph.FilterMonitor#resetCounters()
    */
   public void resetCounters() {      
+     if (this.latency != null) {
+        this.latency.reset();
+     }
+  }
+
+  /* (non-Javadoc)
+   * @see br.com.auster.dware.graph.FilterLatencyAware#getLatency()
+   */
+  public FilterLatency getLatency() {
+     return this.latency;
+  }
+
+  /* (non-Javadoc)
+   * @see br.com.auster.dware.graph.FilterLatencyAware#setLatency(br.com.auster.dware.graph.FilterLatency)
+   */
+  public void setLatency(FilterLatency latency) {
+     this.latency = latency;
   }
 /**
    * Do nothing.
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.graph;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histograms of one filter, one for each stage of a request that the
+ * graph times: <code>prepare</code>, <code>process</code> (only for threaded
+ * filters, whose processing runs apart), <code>commit</code> and
+ * <code>rollback</code>.
+ * 
+ * @version $Id$
+ */
+public final class FilterLatency {
+
+  public static final int PREPARE = 0;
+
+  public static final int PROCESS = 1;
+
+  public static final int COMMIT = 2;
+
+  public static final int ROLLBACK = 3;
+
+  private static final String[] STAGE_NAMES = { "prepare", "process", "commit", "rollback" };
+
+  private final String filterName;
+
+  private final LatencyHistogram[] stages = new LatencyHistogram[STAGE_NAMES.length];
+
+  /**
+   * Creates the histograms of a filter.
+   * 
+   * @param filterName
+   *          the name of the filter.
+   */
+  public FilterLatency(String filterName) {
+    this.filterName = filterName;
+    for (int i = 0; i < this.stages.length; i++) {
+      this.stages[i] = new LatencyHistogram();
+    }
+  }
+
+  public String getFilterName() {
+    return this.filterName;
+  }
+
+  /**
+   * Records the time spent by one stage.
+   * 
+   * @param stage
+   *          one of {@link #PREPARE}, {@link #PROCESS}, {@link #COMMIT} or
+   *          {@link #ROLLBACK}.
+   * @param nanos
+   *          the elapsed time, in nanoseconds.
+   */
+  public void record(int stage, long nanos) {
+    this.stages[stage].recordNanos(nanos);
+  }
+
+  /**
+   * Returns the histogram of one stage.
+   */
+  public LatencyHistogram getHistogram(int stage) {
+    return this.stages[stage];
+  }
+
+  /**
+   * Returns the name of a stage, as used in the JMX reports.
+   */
+  public static String getStageName(int stage) {
+    return STAGE_NAMES[stage];
+  }
+
+  /**
+   * Returns the number of stages timed for each filter.
+   */
+  public static int getStageCount() {
+    return STAGE_NAMES.length;
+  }
+
+  public void reset() {
+    for (int i = 0; i < this.stages.length; i++) {
+      this.stages[i].reset();
+    }
+  }
+
+  /**
+   * Fills the counters defined by {@link FilterMonitor} from these histograms.
+   * Times come from <code>process</code>, in milliseconds, and are only known
+   * for threaded filters; the other filters work inside the threads of the
+   * filters that feed them, so their times are left as -1.
+   * 
+   * @param threaded
+   *          if the filter runs in its own thread.
+   */
+  AtomicLongArray toCounters(boolean threaded) {
+    final AtomicLongArray counters = new AtomicLongArray(FilterMonitor.NUMBER_OF_COUNTERS);
+    final LatencyHistogram timed = this.stages[PROCESS];
+    counters.set(FilterMonitor.PROCESSED_REQUESTS, this.stages[COMMIT].getCount());
+    if (!threaded || timed.getCount() == 0) {
+      counters.set(FilterMonitor.TOTAL_PROCESSING_TIME, -1);
+      counters.set(FilterMonitor.HIGHEST_PROCESSING_TIME, -1);
+      counters.set(FilterMonitor.LOWEST_PROCESSING_TIME, -1);
+    } else {
+      counters.set(FilterMonitor.TOTAL_PROCESSING_TIME, timed.getTotal() / 1000);
+      counters.set(FilterMonitor.HIGHEST_PROCESSING_TIME, timed.getMax() / 1000);
+      counters.set(FilterMonitor.LOWEST_PROCESSING_TIME, timed.getMin() / 1000);
+    }
+    counters.set(FilterMonitor.PROCESSED_INFO_CHUNCKS, -1);
+    return counters;
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.graph;
+
+/**
+ * Optional interface of the filters that want to know where the graph records
+ * their latencies, for example to record stages the graph does not see or to
+ * derive their {@link FilterMonitor} counters from them. The graph keeps the
+ * {@link FilterLatency} of every filter anyway, whether it implements this
+ * interface or not.
+ * 
+ * @version $Id$
+ */
+public interface FilterLatencyAware {
+
+  /**
+   * Gets the latency histograms the graph records for this filter, or null if
+   * the filter was not added to a graph yet.
+   */
+  public FilterLatency getLatency();
+
+  /**
+   * Sets the latency histograms where the graph records this filter's stages.
+   */
+  public void setLatency(FilterLatency latency);
+}
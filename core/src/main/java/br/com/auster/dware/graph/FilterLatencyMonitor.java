@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.graph;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the {@link FilterLatency} of each filter name. One instance is shared
+ * by all the graphs of a graph group, so that the latencies of a filter are
+ * aggregated over all the copies of the graph.
+ * 
+ * @version $Id$
+ */
+public final class FilterLatencyMonitor {
+
+  private final ConcurrentHashMap latencies = new ConcurrentHashMap();
+
+  /**
+   * Returns the latencies of a filter, creating them if needed.
+   * 
+   * @param filterName
+   *          the filter name.
+   */
+  public FilterLatency getLatency(String filterName) {
+    FilterLatency latency = (FilterLatency) this.latencies.get(filterName);
+    if (latency == null) {
+      latency = new FilterLatency(filterName);
+      final FilterLatency previous = (FilterLatency) this.latencies.putIfAbsent(filterName, latency);
+      if (previous != null) {
+        latency = previous;
+      }
+    }
+    return latency;
+  }
+
+  /**
+   * Returns the latencies of all the filters timed so far.
+   */
+  public List getLatencies() {
+    return new ArrayList(this.latencies.values());
+  }
+
+  /**
+   * Forgets all recorded latencies.
+   */
+  public void reset() {
+    for (Iterator it = this.latencies.values().iterator(); it.hasNext();) {
+      ((FilterLatency) it.next()).reset();
+    }
+  }
+
+  /**
+   * Describes every stage of every filter that has recorded values, one line
+   * each, in the form
+   * <code>filter.stage count=N p50=Xus p95=Xus p99=Xus max=Xus</code>.
+   */
+  public String[] describe() {
+    final List lines = new ArrayList();
+    for (Iterator it = this.latencies.values().iterator(); it.hasNext();) {
+      final FilterLatency latency = (FilterLatency) it.next();
+      for (int stage = 0; stage < FilterLatency.getStageCount(); stage++) {
+        final LatencyHistogram histogram = latency.getHistogram(stage);
+        if (histogram.getCount() > 0) {
+          lines.add(latency.getFilterName() + "." + FilterLatency.getStageName(stage) + " "
+                    + histogram);
+        }
+      }
+    }
+    return (String[]) lines.toArray(new String[lines.size()]);
+  }
+}
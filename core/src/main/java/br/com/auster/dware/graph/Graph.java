@@ -24,18 +24,22 @@ import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.log4j.Logger;
 import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
 
 import br.com.auster.common.stats.ProcessingStats;
 import br.com.auster.common.util.I18n;
-import br.com.auster.common.xml.DOMUtils;
 import br.com.auster.dware.monitor.manager.JMXGraphGroupCounter;
 
 /**
@@ -44,6 +48,24 @@ import br.com.auster.dware.monitor.manager.JMXGraphGroupCounter;
  * 
  * Instances of this class are thread-safe.
  * 
+ * <p>
+ * A graph configured with <code>pipelined="true"</code> keeps a second set of
+ * filters, built from the same blueprint. While one set is committing a
+ * request, the other one may already prepare and run the next request, so
+ * slow commits do not leave the other stages idle. Each request is still
+ * committed or rolled back by the filters that processed it.
+ * </p>
+ * 
+ * <p>
+ * A request may have a deadline, given by the <code>deadline</code> attribute
+ * of the graph or by the request attribute {@link #DEADLINE_KEY}. If the
+ * threaded filters do not finish in time, the request is rolled back like any
+ * other failed request, so its checkpoint may retry it; the threaded filters
+ * are interrupted and abandoned, and new ones are created for the next
+ * request. The deadline also covers a commit that does not return. The
+ * deadlines of all the graphs are watched by a single shared thread.
+ * </p>
+ * 
  * @version $Id: Graph.java 362 2008-07-12 19:42:00Z lmorozow $
  */
 public final class Graph {
@@ -51,12 +73,26 @@ public final class Graph {
   /**
    * This class represents a connection between two filters. It can be used to
    * connect them at any moment.
+   * 
+   * <p>
+   * The way the filters are connected is decided once, when the graph is
+   * configured: the edge keeps a small list of connectors that are known to
+   * fit the source and the sink, so that connecting them for each request
+   * does not need to instantiate or probe connectors.
+   * </p>
    */
   private static final class Edge {
 
-    private static final Class[] connectors = Connector.class.getClasses();
+    /** The source supplies an output object that is given to the sink. */
+    private static final Connector SOURCE_SUPPLIES = new Connector.GetSourceSetSinkConnector();
+
+    /** The sink supplies an input object that is given to the source. */
+    private static final Connector SINK_SUPPLIES = new Connector.GetSinkSetSourceConnector();
+
+    private final Connector[] plan;
 
-    private Connector connector = null;
+    // index in the plan of the connector that worked last time
+    private int current = 0;
 
     private final Sink sink;
 
@@ -64,7 +100,7 @@ public final class Graph {
 
     private static final Logger log = Logger.getLogger(Edge.class);
 
-    private final I18n i18n = I18n.getInstance(Edge.class);
+    private static final I18n i18n = I18n.getInstance(Edge.class);
 
     /**
      * Creates a edge between a source and a sink.
@@ -74,80 +110,124 @@ public final class Graph {
      * @param sink
      *          the sink to connect to.
      * @param connector
-     *          the connector object to be used to connect. If it is null, some
-     *          default connectors will be tried before giving up.
+     *          the connector object to be used to connect. If it is null, the
+     *          default connectors that fit the source and the sink will be
+     *          used.
+     * @throws GraphException
+     *           if no default connector fits the source and the sink, and no
+     *           connector was given.
      */
-    public Edge(Source source, Sink sink, Connector connector) {
+    public Edge(Source source, Sink sink, Connector connector) throws GraphException {
       this.source = source;
       this.sink = sink;
-      this.connector = connector;
+
+      final ArrayList planAux = new ArrayList(3);
+      if (connector != null) {
+        planAux.add(connector);
+      }
+      if (supports(source.getClass(), "getOutput", false)
+          && supports(sink.getClass(), "setInput", true)) {
+        planAux.add(SOURCE_SUPPLIES);
+      }
+      if (supports(sink.getClass(), "getInput", false)
+          && supports(source.getClass(), "setOutput", true)) {
+        planAux.add(SINK_SUPPLIES);
+      }
+      if (planAux.isEmpty()) {
+        throw new GraphException(i18n.getString("noConnectorAcceptable", source, sink));
+      }
+      this.plan = (Connector[]) planAux.toArray(new Connector[planAux.size()]);
+      if (log.isDebugEnabled())
+        log.debug("Edge [ " + source + " -> " + sink + " ] will be connected through "
+                  + this.plan[0]);
     }
 
     /**
-     * Connects the source to the sink using the connector implementation.
+     * If the sink supplied its input to the source and can be skipped for the
+     * current request, connects the source to what follows the sink.
+     * 
+     * @param maxHops
+     *          how many pass-through stages may be skipped, to stop on cycles.
+     */
+    public final void bypass(int maxHops) throws ConnectException {
+      if (this.plan[this.current] != SINK_SUPPLIES || !(this.sink instanceof PassThrough)) {
+        return;
+      }
+      Object target = ((PassThrough) this.sink).getBypass();
+      if (target == null) {
+        return;
+      }
+      for (int hops = 1; target instanceof PassThrough && hops < maxHops; hops++) {
+        final Object next = ((PassThrough) target).getBypass();
+        if (next == null) {
+          break;
+        }
+        target = next;
+      }
+      this.source.setOutput(this.sink.getFilterName(), target);
+      if (log.isDebugEnabled())
+        log.debug("Bypassed [ " + source + " -> " + sink + " ], now writing to " + target);
+    }
+
+    /**
+     * Connects the source to the sink using the connector chosen at
+     * configuration time. If it fails, the other connectors that fit this edge
+     * are tried before giving up.
      */
     public final void connect() throws ConnectException {
       if (log.isDebugEnabled())
         log.debug("Connecting '" + this.source + "' to '" + this.sink + "'...");
 
-      if (this.connector == null)
-        this.connector = connect(this.source, this.sink);
-      else
-        // We already have a connector that worked last time,
-        // so let's try to use it instead of looking for another one.
+      ConnectException lastError = null;
+      for (int i = 0; i < this.plan.length; i++) {
+        final int index = (this.current + i) % this.plan.length;
         try {
-          // Tries to connect
-          this.connector.connect(this.source, this.sink);
+          this.plan[index].connect(this.source, this.sink);
+          this.current = index;
           if (log.isDebugEnabled())
-            log.debug("Connected [ " + source + " -> " + sink + " ] through " + connector);
+            log.debug("Connected [ " + source + " -> " + sink + " ] through " + plan[index]);
+          return;
         } catch (ConnectException e) {
-          // Could not connect. Try to find another valid connector.
+          // Could not connect. Try the next connector of the plan, if any.
           if (log.isDebugEnabled())
             log.debug("Try failed for connection [ " + source + " -> " + sink + " ] through "
-                      + connector, e);
-          this.connector = connect(this.source, this.sink);
-        }
-    }
-
-    /**
-     * Tries to find an acceptable connector between a source and a sink.
-     * 
-     * @param source
-     *          the source.
-     * @param sink
-     *          the sink.
-     * @return a valid connection between the source and the sink.
-     * @exception ConnectException
-     *              if an acceptable connector could not be found.
-     */
-    private final Connector connect(Source source, Sink sink) throws ConnectException {
-      Connector connector = null;
-      if (connectors == null || connectors.length == 0) {
-        throw new ConnectException(this.i18n.getString("noConnectorsAvailable"));
-      }
-
-      for (int i = 0; connector == null && i < connectors.length; i++) {
-        Connector connectorTest = null;
-        try {
-          connectorTest = (Connector) connectors[i].newInstance();
-          connectorTest.connect(source, sink);
-          // The connection was done successfully.
-          connector = connectorTest;
-          if (log.isDebugEnabled())
-            log.debug("Connected [ " + source + " -> " + sink + " ] through " + connector);
-        } catch (Exception e) {
-          // The last try failed. Log it.
+                      + plan[index], e);
+          lastError = e;
+        } catch (UnsupportedOperationException e) {
           if (log.isDebugEnabled())
             log.debug("Try failed for connection [ " + source + " -> " + sink + " ] through "
-                      + connectorTest, e);
+                      + plan[index], e);
+          lastError = new ConnectException(e);
         }
       }
-      if (connector == null) {
-        throw new ConnectException(this.i18n.getString("noConnectorAcceptable", source, sink));
-      }
+      throw lastError;
+    }
+  }
+
+  // base classes whose connection methods only throw UnsupportedOperationException
+  private static final Class[] STUB_DECLARERS = { DefaultFilter.class, ThreadedFilter.class };
 
-      return connector;
+  /**
+   * Tells if a filter class implements one of the connection methods. Filters
+   * that extend <code>DefaultFilter</code> or <code>ThreadedFilter</code> and
+   * do not override the method would only throw
+   * <code>UnsupportedOperationException</code>.
+   */
+  static final boolean supports(Class filterClass, String methodName, boolean setter) {
+    final Class[] params = setter ? new Class[] { String.class, Object.class }
+                                  : new Class[] { String.class };
+    final Class declarer;
+    try {
+      declarer = filterClass.getMethod(methodName, params).getDeclaringClass();
+    } catch (NoSuchMethodException e) {
+      return false;
     }
+    for (int i = 0; i < STUB_DECLARERS.length; i++) {
+      if (declarer == STUB_DECLARERS[i]) {
+        return false;
+      }
+    }
+    return true;
   }
 
   public static final String TIME_FORMAT = "HH'h'mm'm'ss'.'SSS's'";
@@ -169,6 +249,37 @@ public final class Graph {
   
   public static final String IDLE_TIMEOUT_ATTR = "idle-timeout";
 
+  /**
+   * {@value} - defines how the threaded filters of this graph are run. May be
+   * {@link #RUNTIME_THREAD} (the default, one thread per threaded filter) or
+   * {@link #RUNTIME_EXECUTOR} (tasks submitted to the shared
+   * {@link ThreadedFilterExecutor}).
+   */
+  public static final String THREADED_RUNTIME_ATTR = "threaded-filter-runtime";
+
+  public static final String RUNTIME_THREAD = "thread";
+
+  public static final String RUNTIME_EXECUTOR = "executor";
+
+  /**
+   * {@value} - if true, the graph keeps two sets of filters, so that a request
+   * may start while the previous one is still committing. Defaults to false.
+   */
+  public static final String PIPELINED_ATTR = "pipelined";
+
+  /**
+   * {@value} - the maximum time, in milliseconds, a request may take in this
+   * graph. When it expires, the request is rolled back and the threaded filters
+   * processing it are abandoned. Not defined by default.
+   */
+  public static final String DEADLINE_ATTR = "deadline";
+
+  /**
+   * {@value} - request attribute with the deadline, in milliseconds, of that
+   * request. It overrides the <code>deadline</code> of the graph.
+   */
+  public static final String DEADLINE_KEY = "dware.deadline";
+
   public static Boolean syncGraphConfig = new Boolean(true);
   
   
@@ -176,8 +287,8 @@ public final class Graph {
   // Instance attributes
   //
   
-  // configuration node (XML)
-  private Element config;
+  // compiled configuration
+  private GraphBlueprint blueprint;
   
   // ThreadedFilter array
   private ThreadedFilter[] threadList;
@@ -207,7 +318,9 @@ public final class Graph {
   // Attributes for multi-threaded environment control
   private final Object graphSync = new Object();
 
-  private final Object threadedFilterSync = new Object();
+  // replaced when the threaded filters are abandoned, since one of them may
+  // never give it back
+  private volatile Object threadedFilterSync = new Object();
 
   private volatile int threadsRunning = 0;
 
@@ -221,6 +334,60 @@ public final class Graph {
   
   private TimeoutHandler idleTimeout = null;
 
+  // decides what to do when the idle timeout expires (null means unload the filters)
+  private volatile GraphIdleListener idleListener = null;
+
+  // shared executor for threaded filters (null means one thread per filter)
+  private ThreadedFilterExecutor filterExecutor = null;
+
+  // tasks of the threaded filters submitted to the executor for the current request
+  private Future[] filterTasks = null;
+
+  // where the latencies of each filter stage are recorded
+  private FilterLatencyMonitor latencyMonitor = new FilterLatencyMonitor();
+
+  // latencies of each filter, in the same order of filterList
+  private FilterLatency[] latencyList = new FilterLatency[0];
+
+  // the second set of filters of a pipelined graph (null if not pipelined)
+  private volatile Graph stage = null;
+
+  // the pipelined graph that owns this one, if this graph is its stage
+  private final Graph owner;
+
+  // watches the deadlines of the requests of every graph
+  private static final ScheduledThreadPoolExecutor deadlines = new ScheduledThreadPoolExecutor(
+      1, new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "Graph deadlines");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+
+  // how many deadlines were cancelled since the last purge of the scheduler
+  private static final AtomicInteger cancelledDeadlines = new AtomicInteger();
+
+  private static final int PURGE_INTERVAL = 1024;
+
+  // how long to wait for interrupted executor tasks before abandoning them
+  private static final long STOP_WAIT = 5000;
+
+  // the deadline of the request being processed, if it has one
+  private volatile ScheduledFuture deadlineTask = null;
+
+  // identifies each request started, so a late deadline is ignored
+  private volatile int runCount = 0;
+
+  // the last request whose end was decided, by its filters or its deadline
+  private final AtomicInteger settledRun = new AtomicInteger();
+
+  // true while the filters commit
+  private volatile boolean committing = false;
+
+  // where the expired deadlines are counted
+  private volatile AtomicLong deadlineMisses = null;
+
 
   /**
    * Creates a filter graph, used to process requests.
@@ -234,15 +401,113 @@ public final class Graph {
    *           if some error occurs while creating the graph.
    */
   public Graph(String graphName, Element graphConf) throws GraphException {
+    this(graphName, GraphBlueprint.compile(graphConf));
+  }
+
+  /**
+   * Creates a filter graph from a compiled configuration. No global lock is
+   * held, so many graphs may be created from the same blueprint at once.
+   * 
+   * @param graphName
+   *          the name of this graph.
+   * @param blueprint
+   *          the compiled configuration of this graph.
+   * @throws GraphException
+   *           if some error occurs while creating the graph.
+   */
+  public Graph(String graphName, GraphBlueprint blueprint) throws GraphException {
+    this(graphName, blueprint, null);
+  }
+
+  /**
+   * Creates a graph that is the second set of filters of a pipelined graph.
+   */
+  private Graph(String graphName, GraphBlueprint blueprint, Graph owner) throws GraphException {
     this.name = graphName;
+    this.owner = owner;
     this.timeFormat.setTimeZone(TimeZone.getTimeZone("GMT+0"));
-    synchronized (Graph.syncGraphConfig) {
-      this.configureGraph(graphConf);
-    }
+    this.configureGraph(blueprint);
   }
 
   public void setJMXCounters(JMXGraphGroupCounter _counters) {
 	  this.counters = _counters;
+	  final Graph buffer = this.stage;
+	  if (buffer != null) {
+	    buffer.setJMXCounters(_counters);
+	  }
+  }
+
+  /**
+   * Sets where the latencies of the filter stages of this graph will be
+   * recorded. Graph groups share one monitor among all their graphs.
+   * 
+   * @param monitor
+   *          the latency monitor.
+   */
+  public void setLatencyMonitor(FilterLatencyMonitor monitor) {
+    synchronized (this.graphSync) {
+      this.latencyMonitor = monitor;
+      this.bindLatencies();
+    }
+    final Graph buffer = this.stage;
+    if (buffer != null) {
+      buffer.setLatencyMonitor(monitor);
+    }
+  }
+
+  /**
+   * Sets the counter of requests whose deadline expired in this graph. Graph
+   * groups share one counter among all their graphs.
+   */
+  public void setDeadlineMisses(AtomicLong counter) {
+    this.deadlineMisses = counter;
+    final Graph buffer = this.stage;
+    if (buffer != null) {
+      buffer.setDeadlineMisses(counter);
+    }
+  }
+
+  /**
+   * Returns where the latencies of the filter stages of this graph are
+   * recorded.
+   */
+  public FilterLatencyMonitor getLatencyMonitor() {
+    return this.latencyMonitor;
+  }
+
+  /**
+   * Sets who decides what happens when this graph stays idle longer than its
+   * <code>idle-timeout</code>. Without a listener the graph unloads its
+   * filters and reloads them when a new request comes. If the graph is not
+   * processing anything, the idle clock starts counting now.
+   * 
+   * @param listener
+   *          the idle listener, or null to restore the default behaviour.
+   */
+  public void setIdleListener(GraphIdleListener listener) {
+    synchronized (this.graphSync) {
+      this.idleListener = listener;
+      if (this.idleTimeout != null && !this.processing) {
+        this.idleTimeout.startClock();
+      }
+    }
+  }
+
+  /**
+   * Looks up the latencies of each filter in the current monitor.
+   */
+  private final void bindLatencies() {
+    if (this.filterList == null) {
+      return;
+    }
+    final FilterLatency[] latencies = new FilterLatency[this.filterList.length];
+    for (int i = 0; i < latencies.length; i++) {
+      latencies[i] = this.latencyMonitor.getLatency(this.filterList[i].getFilterName());
+      if (this.filterList[i] instanceof FilterLatencyAware) {
+        ((FilterLatencyAware) this.filterList[i]).setLatency(latencies[i]);
+      }
+    }
+    this.latencyList = latencies;
   }
   
   /**
@@ -254,35 +519,92 @@ public final class Graph {
    *           if some error occurs while creating the graph.
    */
   public final void configureGraph(Element graphConf) throws GraphException {
-    this.config = graphConf;
+    this.configureGraph(GraphBlueprint.compile(graphConf));
+  }
+
+  /**
+   * Configures the filter graph from a compiled configuration.
+   * 
+   * @param blueprint
+   *          the compiled configuration of this graph.
+   * @throws GraphException
+   *           if some error occurs while creating the graph.
+   */
+  public final void configureGraph(GraphBlueprint blueprint) throws GraphException {
+    this.blueprint = blueprint;
     
     // configures the idle-timeout
-    String timeoutAttr = DOMUtils.getAttribute(this.config, IDLE_TIMEOUT_ATTR, false);
-    if (timeoutAttr != null) {
-      try {
-        long timeoutDuration = Long.valueOf(timeoutAttr).longValue();
-        if (timeoutDuration <= 0L) {
-          log.error(i18n.getString("invalidTimeout", timeoutAttr));
-        }
-        this.idleTimeout = new TimeoutHandler(timeoutDuration);
-      } catch (NumberFormatException e) {
-        log.error(i18n.getString("invalidTimeout", timeoutAttr));
-      }
+    if (blueprint.getIdleTimeout() != null) {
+      this.idleTimeout = new TimeoutHandler(blueprint.getIdleTimeout().longValue());
     }
+
+    // configures how the threaded filters will run
+    this.filterExecutor = blueprint.getFilterExecutor();
     
-    configListeners();
-    configFilters();
+    final Element[] configs = blueprint.copyConfigs();
+    configListeners(configs[configs.length - 1]);
+    configFilters(configs);
+
+    if (this.owner == null) {
+      this.configureStage(blueprint);
+    }
+  }
+
+  /**
+   * Creates, reconfigures or removes the second set of filters, depending on
+   * the graph being pipelined or not.
+   */
+  private void configureStage(GraphBlueprint blueprint) throws GraphException {
+    final Graph buffer = this.stage;
+    if (!blueprint.isPipelined()) {
+      if (buffer != null) {
+        this.stage = null;
+        buffer.shutdown(true);
+      }
+    } else if (buffer == null) {
+      final Graph created = new Graph(this.name + " [stage]", blueprint, this);
+      created.setJMXCounters(this.counters);
+      created.setLatencyMonitor(this.latencyMonitor);
+      created.setDeadlineMisses(this.deadlineMisses);
+      this.stage = created;
+      log.info(i18n.getString("graphPipelined", this.name));
+    } else {
+      buffer.configureGraph(blueprint);
+    }
+  }
+
+  /**
+   * Returns the compiled configuration of this graph.
+   */
+  public final GraphBlueprint getBlueprint() {
+    return this.blueprint;
+  }
+
+  /**
+   * Returns true if this graph keeps a second set of filters, so that a new
+   * request may start while the last one is committing.
+   */
+  public final boolean isPipelined() {
+    return this.stage != null;
+  }
+
+  /**
+   * Returns true if a request given now would start at once, that is, if one
+   * of the filter sets of this graph is not processing.
+   */
+  public final boolean canAccept() {
+    final Graph buffer = this.stage;
+    return !this.processing || (buffer != null && !buffer.processing);
   }
   
-  private void configListeners() throws GraphException {
+  private void configListeners(Element listenerConf) throws GraphException {
     // Configuring the external FinishListener (if it exists)
-    Element listener = DOMUtils.getElement(this.config, LISTENER_ELEMENT, false);
-    if (listener != null) {
-      String className = DOMUtils.getAttribute(listener, CLASS_NAME_ATTR, true);
+    String className = this.blueprint.getListenerClassName();
+    if (className != null) {
       try {
         log.debug("Instantiating the finish listener '" + className + "'.");
         Class[] c = { Element.class };
-        Object[] o = { DOMUtils.getElement(listener, Graph.CONFIG_ELEMENT, false) };
+        Object[] o = { listenerConf };
         this.externalListener = (FinishListener) 
           Class.forName(className).getConstructor(c).newInstance(o);
         log.info(i18n.getString("listenerConfigured", this.name, className));
@@ -295,12 +617,16 @@ public final class Graph {
     }    
   }
   
-  private void configFilters() throws GraphException {    
-    final NodeList filters = DOMUtils.getElements(this.config, FILTER_ELEMENT);
-    if (this.config == null || filters.getLength() == 0) {
-      throw new GraphException(i18n.getString("filterListEmpty"));
-    }
+  /**
+   * (Re)creates the filters and their connections from the blueprint.
+   */
+  private void reconfigure() throws GraphException {
+    final Element[] configs = this.blueprint.copyConfigs();
+    configListeners(configs[configs.length - 1]);
+    configFilters(configs);
+  }
 
+  private void configFilters(Element[] configs) throws GraphException {    
     if (!this.filterMap.isEmpty()) {
       this.interruptThreadedFilters();
     }
@@ -309,18 +635,18 @@ public final class Graph {
       synchronized (this.graphSync) {
         log.info(i18n.getString("configuringGraph", this.name));
 
-        final Element[] filtersElem = new Element[filters.getLength()];
+        // Creates every filter of the blueprint
+        addFilters(this.blueprint.getFilters(), configs);
 
-        // Connects each filter to their adjacents
-        for (int i = 0; i < filtersElem.length; i++) {
-          filtersElem[i] = (Element) filters.item(i);
+        if (this.filterExecutor != null
+            && this.threadList.length > this.filterExecutor.getMaxThreads()) {
+          throw new GraphException(i18n.getString("executorTooSmall", this.name,
+                                                  Integer.toString(this.threadList.length),
+                                                  Integer.toString(this.filterExecutor.getMaxThreads())));
         }
 
-        // Creates every filter found in the node list
-        addFilters(filtersElem);
-
         // connects filters
-        addEdges(filtersElem);
+        addEdges(this.blueprint.getEdges());
 
         log.info(i18n.getString("graphConfigured", this.name));
       }
@@ -358,38 +684,29 @@ public final class Graph {
     }
 
     ((Filter) this.filterMap.get(filterName)).configure(config);
+    final Graph buffer = this.stage;
+    if (buffer != null) {
+      buffer.configureFilter(filterName, config);
+    }
   }
 
   /**
-   * Given a filter configuration, creates an instance of it and returns.
+   * Given a compiled filter, creates an instance of it and returns.
    * 
-   * @param filterElement
-   *          the DOM tree corresponding to the filter information and
-   *          configuration.
-   * @return a filter instance based on the information of the given element.
+   * @param spec
+   *          how the filter is created.
+   * @param filterConf
+   *          this graph's copy of the filter configuration.
+   * @return a filter instance based on the given specification.
    */
-  private final Filter getFilterInstance(Element filterElement) throws ClassNotFoundException,
-      NoSuchMethodException, InstantiationException, IllegalAccessException,
-      InvocationTargetException, FilterException {
-    String filterName = DOMUtils.getAttribute(filterElement, FILTER_NAME_ATTR, true);
-    String className = DOMUtils.getAttribute(filterElement, CLASS_NAME_ATTR, true);
-
+  private final Filter getFilterInstance(GraphBlueprint.FilterSpec spec, Element filterConf)
+      throws InstantiationException, IllegalAccessException, InvocationTargetException,
+      FilterException {
     if (log.isDebugEnabled())
-      log.debug("Instantiating the filter '" + filterName + "' using classname '" + className
-                + "'.");
-    Class[] c = { String.class };
-    Object[] o = { filterName };
-    Filter filter = (Filter) Class.forName(className).getConstructor(c).newInstance(o);
-
-    // If this filter does not have a configuration defined,
-    // creates an empty one just to be passed to the filter constructor
-    Element filterConf = null;
-    try {
-      filterConf = DOMUtils.getElement(filterElement, CONFIG_ELEMENT, true);
-    } catch (IllegalArgumentException e) {
-      filterConf = filterElement.getOwnerDocument()
-          .createElementNS(filterElement.getNamespaceURI(), CONFIG_ELEMENT);
-    }
+      log.debug("Instantiating the filter '" + spec.name + "' using classname '"
+                + spec.constructor.getDeclaringClass().getName() + "'.");
+    Object[] o = { spec.name };
+    Filter filter = (Filter) spec.constructor.newInstance(o);
 
     filter.configure(filterConf);
 
@@ -400,15 +717,15 @@ public final class Graph {
    * Adds a filter to this graph.
    * 
    * @param filters
-   *          DOM filter elements
+   *          the compiled filters
+   * @param configs
+   *          the filter configurations, in the same order of the filters
    * @throws GraphException
    *           if some error occurs while adding the filter to the list of
    *           filters for this graph.
-   * @throws ClassNotFoundException
-   *           if filter's class is not found.
    */
-  private final void addFilters(Element[] filters) throws GraphException, ClassNotFoundException,
-      NoSuchMethodException, InstantiationException, IllegalAccessException,
+  private final void addFilters(GraphBlueprint.FilterSpec[] filters, Element[] configs)
+      throws GraphException, InstantiationException, IllegalAccessException,
       InvocationTargetException, FilterException {
 
     // Creates every filter found in the node list
@@ -416,11 +733,10 @@ public final class Graph {
 
     try {
       for (int i = 0; i < filters.length; i++) {
-        Element filterNode = filters[i];
-        String filterName = DOMUtils.getAttribute(filterNode, FILTER_NAME_ATTR, true);
+        String filterName = filters[i].name;
 
         log.info(i18n.getString("addFilter", filterName));
-        Filter filter = this.getFilterInstance(filterNode);
+        Filter filter = this.getFilterInstance(filters[i], configs[i]);
 
         if (this.filterMap.containsKey(filterName)) {
           throw new GraphException(i18n.getString("filterAlreadyAdded", filterName));
@@ -433,7 +749,9 @@ public final class Graph {
           thread.setName(this.name + " - " + filterName);
           thread.setGraph(this);
           tlistAux.add(thread);
-          if (!thread.isAlive()) {
+          if (this.filterExecutor != null) {
+            // the filter will run in the shared executor - no thread to start
+          } else if (!thread.isAlive()) {
             thread.start();
           } else {
             log.info(i18n.getString("threadAlive", thread.getName()));
@@ -444,74 +762,44 @@ public final class Graph {
     } finally {
       filterList = (Filter[]) filterMap.values().toArray(new Filter[0]);
       threadList = (ThreadedFilter[]) tlistAux.toArray(new ThreadedFilter[0]);
+      this.bindLatencies();
     }
   }
 
   /**
-   * Specifies how two filters must be connected to each other.
+   * Connects the filters of this graph.
    * 
-   * @param from
-   *          the filter name that will be the source.
-   * @param to
-   *          the filter name that will be connected to.
-   * @param connector
-   *          the object that will do the connection.
-   * @param connectionName
-   *          the connection name.
-   * @param connectorClassName
-   *          the connector class name. It may be null or empty, if it is wanted
-   *          that a suitable connector is searched between the defaults.
+   * @param edges
+   *          the compiled connections. A connector class may be null, if it is
+   *          wanted that a suitable connector is searched between the defaults.
    * @throws GraphException
    *           if one or both filters do not exist.
    */
-  private final void addEdges(Element[] filters)// String from, String to,
-                                                // String connectorClassName)
-      throws GraphException {
-
-    String connectorClassName, from, to;
+  private final void addEdges(GraphBlueprint.EdgeSpec[] edges) throws GraphException {
     final ArrayList edgeListAux = new ArrayList();
 
-    // Connects each filter to their adjacents
-    for (int i = 0; i < filters.length; i++) {
-      Element filterNode = filters[i];
-      from = DOMUtils.getAttribute(filterNode, FILTER_NAME_ATTR, true);
-
-      // Gets the adjacent list
-      NodeList adjacentList = DOMUtils.getElements(filterNode, CONNECT_ELEMENT);
-      if (adjacentList == null || adjacentList.getLength() == 0) {
-        log.warn(i18n.getString("noConnectionFilter", from));
-      } else {
-        for (int j = 0, adjSize = adjacentList.getLength(); j < adjSize; j++) {
-          Element adjacentNode = (Element) adjacentList.item(j);
-
-          // Gets the adjacent filter name
-          to = DOMUtils.getText(adjacentNode).toString();
-          if (to.length() == 0)
-            to = DOMUtils.getAttribute(adjacentNode, FILTER_NAME_ATTR, true);
-
-          // this.addEdge(filterName, adjacentFilterName,
-          // adjacentNode.getAttribute(CLASS_NAME_ATTR));
-          log.info(i18n.getString("makingConnection", from, to));
-
-          final Source source = (Source) this.filterMap.get(from);
-          final Sink sink = (Sink) this.filterMap.get(to);
-
-          if (source == null || sink == null) {
-            throw new GraphException(i18n.getString("connectionFilterFailed", from, to));
-          }
+    for (int i = 0; i < edges.length; i++) {
+      final String from = edges[i].from;
+      final String to = edges[i].to;
+      log.info(i18n.getString("makingConnection", from, to));
 
-          Connector connector = null;
-          connectorClassName = adjacentNode.getAttribute(CLASS_NAME_ATTR);
-          if (connectorClassName != null && connectorClassName.length() != 0)
-            try {
-              connector = (Connector) Class.forName(connectorClassName).newInstance();
-            } catch (Exception e) {
-              log.error(i18n.getString("invalidConnectorClassName", connectorClassName), e);
-            }
+      final Source source = (Source) this.filterMap.get(from);
+      final Sink sink = (Sink) this.filterMap.get(to);
 
-          edgeListAux.add(new Edge(source, sink, connector));
-        }
+      if (source == null || sink == null) {
+        throw new GraphException(i18n.getString("connectionFilterFailed", from, to));
       }
+
+      Connector connector = null;
+      if (edges[i].connectorClass != null)
+        try {
+          connector = (Connector) edges[i].connectorClass.newInstance();
+        } catch (Exception e) {
+          log.error(i18n.getString("invalidConnectorClassName",
+                                   edges[i].connectorClass.getName()), e);
+        }
+
+      edgeListAux.add(new Edge(source, sink, connector));
     }
     edgeList = (Edge[]) edgeListAux.toArray(new Edge[0]);
   }
@@ -530,6 +818,43 @@ public final class Graph {
    *           if this graph is not properly configured.
    */
   public final void process(Request request, FinishListener listener) {
+    this.dispatch(request, listener);
+  }
+
+  /**
+   * Gives the request to a free set of filters, waiting for one if needed.
+   * 
+   * @return the graph whose filters are processing the request.
+   */
+  private Graph dispatch(Request request, FinishListener listener) {
+    final Graph buffer = this.stage;
+    if (buffer != null) {
+      boolean useStage;
+      synchronized (this.graphSync) {
+        while (this.processing && buffer.processing) {
+          try {
+            this.graphSync.wait();
+          } catch (InterruptedException e) {
+            log.debug("Got interruption.", e);
+          }
+        }
+        useStage = this.processing;
+      }
+      if (useStage) {
+        buffer.start(request, listener == null ? null : new StageListener(listener));
+        return buffer;
+      }
+    }
+    this.start(request, listener);
+    return this;
+  }
+
+  /**
+   * Starts the filters of this graph to process the given request.
+   */
+  private void start(Request request, FinishListener listener) {
+    // the filters may read the attributes from several threads
+    request.shareAttributes();
     // Waits untill this graph is ready to process this request
     synchronized (this.graphSync) {
       
@@ -547,8 +872,7 @@ public final class Graph {
       
       if (this.filterMap.isEmpty()) {
         try {
-          configListeners();
-          configFilters();
+          reconfigure();
         } catch (GraphException e) {
           throw new RuntimeException(e);
         }
@@ -558,7 +882,9 @@ public final class Graph {
       this.problem = null;
       this.request = request;
       this.finishListener = listener;
+      this.runCount++;
     }
+    final int run = this.runCount;
 
     log.info(i18n.getString("processingRequest", request, this.name));
     time.setTime(System.currentTimeMillis());
@@ -572,15 +898,130 @@ public final class Graph {
       this.connectGraph();
       // start processing
       this.startThreadedFilters();
+      // the threaded filters may not take longer than the deadline
+      this.armDeadline(request, run);
       
     } catch (Throwable t) {
+      if (!this.settle(run)) {
+        // the deadline expired first
+        return;
+      }
       this.problem = t;
-      this.rollback(request, t);
+      this.rollback(request, t, run);
       this.interruptThreadedFilters();
       this.finish(request);
     }
   }
 
+  /**
+   * Returns the deadline of the request, in milliseconds, or 0 if it has none.
+   */
+  private long getDeadline(Request request) {
+    final Object value = request.getAttributes().get(DEADLINE_KEY);
+    if (value instanceof Number) {
+      return ((Number) value).longValue();
+    } else if (value != null) {
+      try {
+        return Long.parseLong(value.toString().trim());
+      } catch (NumberFormatException e) {
+        log.warn(i18n.getString("invalidTimeout", value));
+      }
+    }
+    return this.blueprint.getDeadline();
+  }
+
+  /**
+   * Starts counting the deadline of the request, if it has one.
+   */
+  private void armDeadline(Request request, final int run) {
+    final long deadline = this.getDeadline(request);
+    if (deadline <= 0) {
+      return;
+    }
+    this.deadlineTask = deadlines.schedule(new Runnable() {
+      public void run() {
+        Graph.this.deadlineExpired(run, deadline);
+      }
+    }, deadline, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops watching the deadline of the request, if it has one.
+   */
+  private void disarmDeadline() {
+    final ScheduledFuture task = this.deadlineTask;
+    if (task != null) {
+      this.deadlineTask = null;
+      task.cancel(false);
+      // the scheduler only drops the cancelled tasks when they expire
+      if (cancelledDeadlines.incrementAndGet() % PURGE_INTERVAL == 0) {
+        deadlines.purge();
+      }
+    }
+  }
+
+  /**
+   * Decides the end of the given request, which happens only once: either its
+   * filters finish or its deadline expires.
+   * 
+   * @return true if the caller decided it.
+   */
+  private boolean settle(int run) {
+    while (true) {
+      final int settled = this.settledRun.get();
+      if (settled >= run) {
+        return false;
+      } else if (this.settledRun.compareAndSet(settled, run)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Called when the deadline of a request expires. If the request is still
+   * being processed, the threaded filters are interrupted and abandoned (they
+   * may be stuck and never return), the filters that are not running any more
+   * are rolled back as if a filter had failed, and the graph is released; the
+   * filters are created again for the next request.
+   * 
+   * <p>
+   * This does not wait for the threaded filters, nor for a commit that does
+   * not return: the threaded filters are detached before the rollback, so none
+   * is rolled back while still inside <code>process()</code>. A request that
+   * was already rolled back because some filter failed, or whose filters are
+   * committing, is released without being rolled back.
+   * </p>
+   */
+  private void deadlineExpired(int run, long deadline) {
+    final Request request = this.request;
+    if (run != this.runCount || !this.processing || request == null || !this.settle(run)) {
+      // finished in time
+      return;
+    }
+    log.warn(i18n.getString("deadlineExpired", request, this.name, new Long(deadline)));
+    final Filter[] filters = this.filterList;
+    final boolean rollback = this.problem == null && !this.committing;
+    try {
+      // a filter stuck in commit, rollback or process keeps the old lock
+      this.threadedFilterSync = new Object();
+      this.abandonThreadedFilters();
+      final GraphException error = new GraphException(i18n.getString("deadlineExpired", request,
+                                                                      this.name,
+                                                                      new Long(deadline)));
+      if (rollback) {
+        this.rollback(request, error, run, filters, true);
+      } else if (this.problem == null) {
+        this.problem = error;
+      }
+    } finally {
+      final AtomicLong misses = this.deadlineMisses;
+      if (misses != null) {
+        misses.incrementAndGet();
+      }
+      this.finish(request);
+    }
+  }
+
   /**
    * Starts this graph to process the given request. This method will block the
    * calling thread until it finishes to process.
@@ -591,11 +1032,11 @@ public final class Graph {
    *           if some problem ocurred while processing.
    */
   public final void process(Request request) throws Throwable {
-    this.process(request, null);
+    final Graph buffer = this.dispatch(request, null);
     log.info(i18n.getString("waitingRequest", request, this.name));
-    this.waitProcessing(-1);
-    if (this.problem != null) {
-      throw problem;
+    buffer.waitProcessing(-1);
+    if (buffer.problem != null) {
+      throw buffer.problem;
     }
   }
 
@@ -611,7 +1052,9 @@ public final class Graph {
   private final void prepareFilters(Request request) throws FilterException {
     log.debug("Starting preparation of filters for graph '" + this.name + "'...");
     for (int i = 0; i < filterList.length; i++) {
+      final long start = System.nanoTime();
       filterList[i].prepare(request);
+      latencyList[i].record(FilterLatency.PREPARE, System.nanoTime() - start);
     }
     log.debug("Finished preparing filters for graph '" + this.name + "'.");
   }
@@ -628,6 +1071,10 @@ public final class Graph {
     for (int i = 0; i < edgeList.length; i++) {
       edgeList[i].connect();
     }
+    // only now the outputs of the pass-through stages are known
+    for (int i = 0; i < edgeList.length; i++) {
+      edgeList[i].bypass(edgeList.length);
+    }
     log.debug("Finished connecting graph '" + this.name + "'.");
   }
 
@@ -640,6 +1087,10 @@ public final class Graph {
   private final void prepareThreadedFilters() throws GraphException {
     // This is used to control the amount of threads that need to
     // finish their job.
+    if (this.filterExecutor != null) {
+      // no dedicated threads to check
+      return;
+    }
     try {
       boolean problemFound = false;
       for (int i = 0; i < this.threadList.length; i++) {
@@ -650,7 +1101,7 @@ public final class Graph {
         }
       }
       if (problemFound) {
-        configFilters();
+        configFilters(this.blueprint.copyConfigs());
       }
     } catch (Throwable t) {
       throw new GraphException("Fatal error while reconfiguring filters.", t);
@@ -665,6 +1116,10 @@ public final class Graph {
    *           if some filter has thrown an exception.
    */
   private final void startThreadedFilters() throws GraphException {
+	    if (this.filterExecutor != null) {
+	      this.submitThreadedFilters();
+	      return;
+	    }
 	    // This is used to control the amount of threads that need to
 	    // finish their job.
 	    try {
@@ -681,6 +1136,39 @@ public final class Graph {
         throw new GraphException("Fatal error while starting to process filters.", t);
       }
 	  }
+
+  /**
+   * Submits the threaded filters to the shared executor. All the workers
+   * needed are reserved at once, so a graph never runs only part of its
+   * threaded filters.
+   *
+   * @throws GraphException
+   *           if interrupted while waiting for free workers.
+   */
+  private final void submitThreadedFilters() throws GraphException {
+    final int size = this.threadList.length;
+    try {
+      this.filterExecutor.reserve(size);
+    } catch (InterruptedException e) {
+      throw new GraphException("Interrupted while waiting for threaded filter executor.", e);
+    }
+    final Future[] tasks = new Future[size];
+    int submitted = 0;
+    try {
+      this.threadsRunning = size;
+      for (; submitted < size; submitted++) {
+        ThreadedFilter t = this.threadList[submitted];
+        t.go();
+        tasks[submitted] = this.filterExecutor.submit(t);
+      }
+      this.filterTasks = tasks;
+    } catch (Throwable t) {
+      // gives back the slots that were not used and stops the ones already running
+      this.filterExecutor.release(size - submitted);
+      this.filterExecutor.stop(tasks, STOP_WAIT);
+      throw new GraphException("Fatal error while starting to process filters.", t);
+    }
+  }
   
 
   /**
@@ -690,8 +1178,14 @@ public final class Graph {
    */
   protected final void threadedFilterFinished(ThreadedFilter filter, Throwable error) {
     synchronized (this.threadedFilterSync) {
+      final int run = this.runCount;
+      if (!this.isRunning(filter) || this.settledRun.get() >= run) {
+        // abandoned by an expired deadline
+        return;
+      }
       // A threaded filter finished.
       this.threadsRunning--;
+      final Request request = this.request;
       try {
         if (this.problem != null) {
           // This condition is used to avoid other later
@@ -701,31 +1195,52 @@ public final class Graph {
         } else if (error != null) {
           // We got an error. Let's rollback all the processing
           // (using the filter's rollback methods)
-          this.rollback(this.request, error);
+          this.rollback(request, error, run);
         } else if (this.threadsRunning == 0) {
           // No errors until now and all threaded filters
           // finished. Let's commit all the processing (using
           // the filter's commit methods)
-          this.commit(this.request);
+          this.commit(request, run);
         }
       } catch (Throwable e) {
         // In case the rollback or the commit fails, we can
         // not trust in it any more. The only thing to do is
         // to finish this request processing.
-        this.problem = e;
+        if (run == this.runCount) {
+          this.problem = e;
+        }
       } finally {
-        if (this.threadsRunning == 0) {
-          this.finish(this.request);
+        // the deadline may have released the request meanwhile
+        if (this.threadsRunning == 0 && this.settle(run)) {
+          this.filterTasks = null;
+          this.finish(request);
         }
       }
     }
   }
 
+  /**
+   * Tells if the filter is one of the threaded filters of this graph.
+   */
+  private final boolean isRunning(ThreadedFilter filter) {
+    final ThreadedFilter[] threads = this.threadList;
+    if (threads != null) {
+      for (int i = 0; i < threads.length; i++) {
+        if (threads[i] == filter) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
   /**
    * Notifies all the filters to commit the last processing. It must be called
    * only if it was successful.
    */
-  private final void commit(Request request) {
+  private final void commit(Request request, int run) {
+    final Filter[] filters = this.filterList;
+    final FilterLatency[] latencies = this.latencyList;
     try {
       if (this.finishListener != null) {
         this.finishListener.graphCommiting(this, request);
@@ -735,19 +1250,24 @@ public final class Graph {
       }
     } catch (Throwable e) {
       log.error(i18n.getString("finishListenerProblem", request, this.name), e);
-      this.rollback(request, e);
+      this.rollback(request, e, run);
       return;
     }
     
     log.info(i18n.getString("commitingRequest", request, this.name));
+    this.committing = true;
     try {
-      for (int i = 0; i < filterList.length; i++) {
-        filterList[i].commit();
+      for (int i = 0; i < filters.length; i++) {
+        final long start = System.nanoTime();
+        filters[i].commit();
+        latencies[i].record(FilterLatency.COMMIT, System.nanoTime() - start);
       }
     } catch (Throwable e) {
       log.error(i18n.getString("commitError", request, this.name), e);
-      this.rollback(request, e);
+      this.rollback(request, e, run, filters, false);
       return;
+    } finally {
+      this.committing = false;
     }
   }
 
@@ -755,8 +1275,20 @@ public final class Graph {
    * Notifies all the filters to roll back the last processing. It must be
    * called only if something went wrong with some filter.
    */
-  private final void rollback(Request request, Throwable error) {
-    this.problem = error;
+  private final void rollback(Request request, Throwable error, int run) {
+    this.rollback(request, error, run, this.filterList, false);
+  }
+
+  /**
+   * Rolls back the given filters. If <code>onlyStopped</code> is true, the
+   * threaded filters still inside <code>process()</code> are skipped.
+   */
+  private final void rollback(Request request, Throwable error, int run, Filter[] filters,
+                              boolean onlyStopped) {
+    final FilterLatency[] latencies = this.latencyList;
+    if (run == this.runCount) {
+      this.problem = error;
+    }
     
     if (this.finishListener != null) {
       try {
@@ -775,8 +1307,14 @@ public final class Graph {
     
     log.error(i18n.getString("rollingbackRequest", request, this.name), error);
     try {
-      for (int i = 0; i < filterList.length; i++) {
-        filterList[i].rollback();
+      for (int i = 0; i < filters.length; i++) {
+        if (onlyStopped && filters[i] instanceof ThreadedFilter
+            && ((ThreadedFilter) filters[i]).isProcessing()) {
+          continue;
+        }
+        final long start = System.nanoTime();
+        filters[i].rollback();
+        latencies[i].record(FilterLatency.ROLLBACK, System.nanoTime() - start);
       }
     } catch (Throwable e) {
       log.error(i18n.getString("rollbackError", request, this.name), e);
@@ -845,11 +1383,18 @@ public final class Graph {
       this.processing = false;
       this.request = null; // just to remove the reference
       this.finishListener = null; // just to remove the reference
+      this.disarmDeadline();
       if (this.idleTimeout != null) {
         this.idleTimeout.startClock();
       }
       this.graphSync.notifyAll();
     }
+    if (this.owner != null) {
+      // the owner may be waiting for a free set of filters
+      synchronized (this.owner.graphSync) {
+        this.owner.graphSync.notifyAll();
+      }
+    }
   }
   
   /**
@@ -880,7 +1425,8 @@ public final class Graph {
    * Returns true if and only if this graph is processing a request when called.
    */
   public final boolean isProcessing() {
-    return this.processing;
+    final Graph buffer = this.stage;
+    return this.processing || (buffer != null && buffer.processing);
   }
 
   /**
@@ -926,16 +1472,28 @@ public final class Graph {
       if (this.idleTimeout != null) {
         this.idleTimeout.stopClock();
       }
+      this.disarmDeadline();
 
       log.warn(i18n.getString("graphDown", this.name));
     }
+
+    final Graph buffer = this.stage;
+    if (buffer != null) {
+      buffer.shutdown(wait);
+    }
   }
   
   /**
    * Interrupts all Threads and cleans all references.
    */
   private void interruptThreadedFilters() {
-    if (this.threadList != null) {
+    if (this.filterExecutor != null) {
+      Future[] tasks = this.filterTasks;
+      if (tasks != null) {
+        this.filterExecutor.stop(tasks, STOP_WAIT);
+      }
+      this.filterTasks = null;
+    } else if (this.threadList != null) {
       for (int i = 0; i < this.threadList.length; i++) {
         this.threadList[i].interrupt();
         try {
@@ -951,9 +1509,60 @@ public final class Graph {
     this.filterMap.clear();
   }
 
+  /**
+   * Gives up the threaded filters without waiting for them, cleaning all
+   * references. Unlike <code>interruptThreadedFilters</code>, a filter that
+   * ignores the interruption can not block the graph.
+   */
+  private void abandonThreadedFilters() {
+    final ThreadedFilter[] threads = this.threadList;
+    if (threads != null) {
+      for (int i = 0; i < threads.length; i++) {
+        threads[i].abandon();
+      }
+    }
+    final Future[] tasks = this.filterTasks;
+    if (tasks != null) {
+      this.filterExecutor.stop(tasks, 0);
+    }
+    this.filterTasks = null;
+    this.threadsRunning = 0;
+    this.edgeList = null;
+    this.threadList = null;
+    this.filterList = null;
+    this.filterMap.clear();
+  }
+
   public String toString() {
     return this.name;
   }
+
+  /**
+   * Forwards the events of the second set of filters of a pipelined graph, as
+   * if they had happened in the graph that owns it.
+   */
+  private final class StageListener implements FinishListener {
+
+    private final FinishListener listener;
+
+    StageListener(FinishListener listener) {
+      this.listener = listener;
+    }
+
+    public void graphFinished(Graph graph, Request request, Throwable error, Date time)
+        throws Exception {
+      this.listener.graphFinished(Graph.this, request, error, time);
+    }
+
+    public void graphCommiting(Graph graph, Request request) throws Exception {
+      this.listener.graphCommiting(Graph.this, request);
+    }
+
+    public void graphRollingBack(Graph graph, Request request, Throwable error)
+        throws Exception {
+      this.listener.graphRollingBack(Graph.this, request, error);
+    }
+  }
   
   /**
    * Controls the idle ellapsed time of a Graph and clean
@@ -966,6 +1575,8 @@ public final class Graph {
     
     private long timeout; 
     
+    private boolean retired = false;
+    
     private Lock lock = new ReentrantLock();
     private Condition started = this.lock.newCondition();
     private Condition stopped = this.lock.newCondition();
@@ -983,7 +1594,7 @@ public final class Graph {
     }
       
     public void run() {
-      while(true) {
+      while(!this.retired) {
         this.lock.lock();
         try {
           try {
@@ -1003,8 +1614,21 @@ public final class Graph {
         } finally {
           this.lock.unlock();
         }
+        if (this.cleared) {
+          continue;
+        }
+        // the listener is called without holding graphSync, since it may
+        // need the locks of the graph owner
+        final GraphIdleListener listener = Graph.this.idleListener;
+        if (listener != null) {
+          if (!listener.graphIdle(Graph.this)) {
+            // the owner wants this graph to stay ready
+            continue;
+          }
+          this.retired = true;
+        }
         synchronized (Graph.this.graphSync) {
-          if (!this.cleared) {
+          if (!this.cleared || this.retired) {
             // timeout occurred!
             log.info(i18n.getString("idleTimeout", Graph.this.name));
             Graph.this.shutdown(true);
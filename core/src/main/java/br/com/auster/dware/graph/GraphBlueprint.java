@@ -0,0 +1,375 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.graph;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.log4j.Logger;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import br.com.auster.common.util.I18n;
+import br.com.auster.common.xml.DOMUtils;
+
+/**
+ * The configuration of a graph, read once from its DOM tree: the filter
+ * classes and their constructors, the filter configurations, the connections
+ * and the graph attributes. It never changes after being compiled, so any
+ * number of {@link Graph} instances may be built from it at the same time.
+ * 
+ * <p>
+ * DOM trees are not safe to be read by many threads at once, so the filter
+ * configurations are kept in a private document and each graph receives its
+ * own copy of them. Only this copy is serialized, by a lock of the blueprint;
+ * the filters are created and configured in parallel.
+ * </p>
+ * 
+ * @version $Id$
+ */
+public final class GraphBlueprint {
+
+  private static final Logger log = Logger.getLogger(GraphBlueprint.class);
+
+  private static final I18n i18n = I18n.getInstance(GraphBlueprint.class);
+
+  private final Element source;
+
+  // null if no idle timeout was configured
+  private final Long idleTimeout;
+
+  // null if the threaded filters run in their own threads
+  private final ThreadedFilterExecutor filterExecutor;
+
+  private final boolean pipelined;
+
+  // 0 if the requests have no deadline
+  private final long deadline;
+
+  private final String listenerClassName;
+
+  private final Element listenerConfig;
+
+  private final FilterSpec[] filters;
+
+  private final EdgeSpec[] edges;
+
+  // holds the templates of the filter configurations
+  private final DocumentBuilder documentBuilder;
+
+  /**
+   * How a filter is created and configured.
+   */
+  static final class FilterSpec {
+    final String name;
+    final Constructor constructor;
+    // null if the filter has no configuration
+    final Element config;
+    final String namespaceURI;
+
+    FilterSpec(String name, Constructor constructor, Element config, String namespaceURI) {
+      this.name = name;
+      this.constructor = constructor;
+      this.config = config;
+      this.namespaceURI = namespaceURI;
+    }
+  }
+
+  /**
+   * How two filters are connected.
+   */
+  static final class EdgeSpec {
+    final String from;
+    final String to;
+    // null to use the default connectors
+    final Class connectorClass;
+
+    EdgeSpec(String from, String to, Class connectorClass) {
+      this.from = from;
+      this.to = to;
+      this.connectorClass = connectorClass;
+    }
+  }
+
+  /**
+   * Compiles the graph configuration. The DOM tree is only read here, holding
+   * {@link Graph#syncGraphConfig}, since it may be shared with other threads.
+   * 
+   * @param graphConf
+   *          the configuration of the graph, in the form of a DOM tree.
+   * @throws GraphException
+   *           if the configuration is invalid or some filter class could not
+   *           be loaded.
+   */
+  public static GraphBlueprint compile(Element graphConf) throws GraphException {
+    synchronized (Graph.syncGraphConfig) {
+      return new GraphBlueprint(graphConf);
+    }
+  }
+
+  private GraphBlueprint(Element graphConf) throws GraphException {
+    this.source = graphConf;
+    try {
+      this.documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+    } catch (ParserConfigurationException e) {
+      throw new GraphException(e);
+    }
+    final Document templates = this.documentBuilder.newDocument();
+
+    // idle-timeout
+    String timeoutAttr = DOMUtils.getAttribute(graphConf, Graph.IDLE_TIMEOUT_ATTR, false);
+    Long timeout = null;
+    if (timeoutAttr != null) {
+      try {
+        timeout = Long.valueOf(timeoutAttr);
+        if (timeout.longValue() <= 0L) {
+          log.error(i18n.getString("invalidTimeout", timeoutAttr));
+        }
+      } catch (NumberFormatException e) {
+        log.error(i18n.getString("invalidTimeout", timeoutAttr));
+      }
+    }
+    this.idleTimeout = timeout;
+
+    // how the threaded filters will run
+    String runtimeAttr = DOMUtils.getAttribute(graphConf, Graph.THREADED_RUNTIME_ATTR, false);
+    if (Graph.RUNTIME_EXECUTOR.equals(runtimeAttr)) {
+      this.filterExecutor = ThreadedFilterExecutor.getInstance();
+    } else if (runtimeAttr == null || runtimeAttr.length() == 0
+               || Graph.RUNTIME_THREAD.equals(runtimeAttr)) {
+      this.filterExecutor = null;
+    } else {
+      throw new GraphException(i18n.getString("invalidThreadedRuntime", runtimeAttr));
+    }
+
+    this.pipelined = DOMUtils.getBooleanAttribute(graphConf, Graph.PIPELINED_ATTR);
+
+    // deadline
+    String deadlineAttr = DOMUtils.getAttribute(graphConf, Graph.DEADLINE_ATTR, false);
+    long deadline = 0;
+    if (deadlineAttr != null && deadlineAttr.length() > 0) {
+      try {
+        deadline = Long.parseLong(deadlineAttr);
+      } catch (NumberFormatException e) {
+        deadline = -1;
+      }
+      if (deadline <= 0) {
+        log.error(i18n.getString("invalidTimeout", deadlineAttr));
+        deadline = 0;
+      }
+    }
+    this.deadline = deadline;
+
+    // the external FinishListener
+    Element listener = DOMUtils.getElement(graphConf, Graph.LISTENER_ELEMENT, false);
+    if (listener != null) {
+      this.listenerClassName = DOMUtils.getAttribute(listener, Graph.CLASS_NAME_ATTR, true);
+      Element listenerConf = DOMUtils.getElement(listener, Graph.CONFIG_ELEMENT, false);
+      this.listenerConfig = listenerConf == null ? null
+          : (Element) templates.importNode(listenerConf, true);
+    } else {
+      this.listenerClassName = null;
+      this.listenerConfig = null;
+    }
+
+    // the filters
+    final NodeList filterNodes = DOMUtils.getElements(graphConf, Graph.FILTER_ELEMENT);
+    if (filterNodes == null || filterNodes.getLength() == 0) {
+      throw new GraphException(i18n.getString("filterListEmpty"));
+    }
+    final Set names = new HashSet();
+    final List filterSpecs = new ArrayList();
+    final List edgeSpecs = new ArrayList();
+    for (int i = 0; i < filterNodes.getLength(); i++) {
+      Element filterNode = (Element) filterNodes.item(i);
+      String filterName = DOMUtils.getAttribute(filterNode, Graph.FILTER_NAME_ATTR, true);
+      String className = DOMUtils.getAttribute(filterNode, Graph.CLASS_NAME_ATTR, true);
+      if (!names.add(filterName)) {
+        throw new GraphException(i18n.getString("filterAlreadyAdded", filterName));
+      }
+      Constructor constructor;
+      try {
+        constructor = Class.forName(className).getConstructor(new Class[] { String.class });
+      } catch (Exception e) {
+        throw new GraphException(e);
+      }
+      Element filterConf = DOMUtils.getElement(filterNode, Graph.CONFIG_ELEMENT, false);
+      filterSpecs.add(new FilterSpec(filterName, constructor, filterConf == null ? null
+          : (Element) templates.importNode(filterConf, true), filterNode.getNamespaceURI()));
+
+      // the connections out of this filter
+      NodeList adjacentList = DOMUtils.getElements(filterNode, Graph.CONNECT_ELEMENT);
+      if (adjacentList == null || adjacentList.getLength() == 0) {
+        log.warn(i18n.getString("noConnectionFilter", filterName));
+        continue;
+      }
+      for (int j = 0; j < adjacentList.getLength(); j++) {
+        Element adjacentNode = (Element) adjacentList.item(j);
+        String to = DOMUtils.getText(adjacentNode).toString();
+        if (to.length() == 0) {
+          to = DOMUtils.getAttribute(adjacentNode, Graph.FILTER_NAME_ATTR, true);
+        }
+        Class connectorClass = null;
+        String connectorClassName = adjacentNode.getAttribute(Graph.CLASS_NAME_ATTR);
+        if (connectorClassName != null && connectorClassName.length() != 0) {
+          try {
+            connectorClass = Class.forName(connectorClassName);
+          } catch (Exception e) {
+            log.error(i18n.getString("invalidConnectorClassName", connectorClassName), e);
+          }
+        }
+        edgeSpecs.add(new EdgeSpec(filterName, to, connectorClass));
+      }
+    }
+    for (int i = 0; i < edgeSpecs.size(); i++) {
+      EdgeSpec edge = (EdgeSpec) edgeSpecs.get(i);
+      if (!names.contains(edge.from) || !names.contains(edge.to)) {
+        throw new GraphException(i18n.getString("connectionFilterFailed", edge.from, edge.to));
+      }
+    }
+    this.filters = (FilterSpec[]) filterSpecs.toArray(new FilterSpec[filterSpecs.size()]);
+    this.edges = (EdgeSpec[]) edgeSpecs.toArray(new EdgeSpec[edgeSpecs.size()]);
+  }
+
+  /**
+   * Creates a new blueprint equal to this one, except for the configuration of
+   * one filter. This blueprint is not changed, so graphs built from it are not
+   * affected.
+   * 
+   * @param filterName
+   *          the name of the filter.
+   * @param filterConf
+   *          the new configuration of the filter.
+   * @throws GraphException
+   *           if the graph has no filter with this name.
+   */
+  public GraphBlueprint withFilterConfig(String filterName, Element filterConf)
+      throws GraphException {
+    synchronized (Graph.syncGraphConfig) {
+      return new GraphBlueprint(this, filterName, filterConf);
+    }
+  }
+
+  /**
+   * Copies <code>base</code>, replacing the configuration of a filter.
+   */
+  private GraphBlueprint(GraphBlueprint base, String filterName, Element filterConf)
+      throws GraphException {
+    this.source = base.source;
+    this.idleTimeout = base.idleTimeout;
+    this.filterExecutor = base.filterExecutor;
+    this.pipelined = base.pipelined;
+    this.deadline = base.deadline;
+    this.listenerClassName = base.listenerClassName;
+    this.edges = base.edges;
+    try {
+      this.documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+    } catch (ParserConfigurationException e) {
+      throw new GraphException(e);
+    }
+    // each blueprint only reads its own templates
+    final Document templates = this.documentBuilder.newDocument();
+    final FilterSpec[] filters = new FilterSpec[base.filters.length];
+    boolean found = false;
+    synchronized (base.documentBuilder) {
+      for (int i = 0; i < filters.length; i++) {
+        final FilterSpec spec = base.filters[i];
+        Element config = spec.config;
+        if (spec.name.equals(filterName)) {
+          config = filterConf;
+          found = true;
+        }
+        filters[i] = new FilterSpec(spec.name, spec.constructor, config == null ? null
+            : (Element) templates.importNode(config, true), spec.namespaceURI);
+      }
+      this.listenerConfig = base.listenerConfig == null ? null
+          : (Element) templates.importNode(base.listenerConfig, true);
+    }
+    if (!found) {
+      throw new GraphException(i18n.getString("noSuchFilterInConfig", filterName));
+    }
+    this.filters = filters;
+  }
+
+  /**
+   * Returns the DOM tree this blueprint was compiled from.
+   */
+  public Element getSource() {
+    return this.source;
+  }
+
+  Long getIdleTimeout() {
+    return this.idleTimeout;
+  }
+
+  ThreadedFilterExecutor getFilterExecutor() {
+    return this.filterExecutor;
+  }
+
+  boolean isPipelined() {
+    return this.pipelined;
+  }
+
+  long getDeadline() {
+    return this.deadline;
+  }
+
+  String getListenerClassName() {
+    return this.listenerClassName;
+  }
+
+  FilterSpec[] getFilters() {
+    return this.filters;
+  }
+
+  EdgeSpec[] getEdges() {
+    return this.edges;
+  }
+
+  /**
+   * Copies the configurations a new graph needs: the ones of the filters, in
+   * the same order of {@link #getFilters()}, followed by the one of the
+   * listener. Filters without configuration receive an empty one.
+   */
+  Element[] copyConfigs() {
+    final Element[] copies = new Element[this.filters.length + 1];
+    synchronized (this.documentBuilder) {
+      final Document document = this.documentBuilder.newDocument();
+      for (int i = 0; i < this.filters.length; i++) {
+        FilterSpec filter = this.filters[i];
+        if (filter.config == null) {
+          copies[i] = document.createElementNS(filter.namespaceURI, Graph.CONFIG_ELEMENT);
+        } else {
+          copies[i] = (Element) document.importNode(filter.config, true);
+        }
+      }
+      if (this.listenerConfig != null) {
+        copies[this.filters.length] = (Element) document.importNode(this.listenerConfig, true);
+      }
+    }
+    return copies;
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.graph;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies, in microseconds.
+ * 
+ * <p>
+ * Values are kept in logarithmic buckets, each power of two being split in
+ * {@value #SUB_BUCKETS} linear sub-buckets (the same layout used by HDR
+ * histograms). This gives percentiles with a relative error below 7% using a
+ * fixed amount of memory, no matter how many values are recorded. Recording a
+ * value is a couple of atomic increments, so it can be done by many threads at
+ * the same time without locking.
+ * </p>
+ * 
+ * @version $Id$
+ */
+public final class LatencyHistogram {
+
+  /** Number of linear sub-buckets inside each power of two. */
+  public static final int SUB_BUCKETS = 16;
+
+  private static final int SUB_BITS = 4;
+
+  // values up to 2^40 microseconds (about 12 days) are kept apart
+  private static final int MAX_EXPONENT = 40;
+
+  // the last bucket keeps everything above the highest exponent
+  private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS + 1;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+  private final AtomicLong count = new AtomicLong();
+
+  private final AtomicLong total = new AtomicLong();
+
+  private final AtomicLong max = new AtomicLong();
+
+  private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+
+  /**
+   * Records one latency.
+   * 
+   * @param nanos
+   *          the elapsed time, in nanoseconds, as given by
+   *          <code>System.nanoTime()</code> differences.
+   */
+  public void recordNanos(long nanos) {
+    this.record(nanos < 0 ? 0 : nanos / 1000);
+  }
+
+  /**
+   * Records one latency.
+   * 
+   * @param micros
+   *          the elapsed time, in microseconds.
+   */
+  public void record(long micros) {
+    if (micros < 0) {
+      micros = 0;
+    }
+    this.buckets.incrementAndGet(indexOf(micros));
+    this.count.incrementAndGet();
+    this.total.addAndGet(micros);
+    long current;
+    while (micros > (current = this.max.get())) {
+      if (this.max.compareAndSet(current, micros)) {
+        break;
+      }
+    }
+    while (micros < (current = this.min.get())) {
+      if (this.min.compareAndSet(current, micros)) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of recorded values.
+   */
+  public long getCount() {
+    return this.count.get();
+  }
+
+  /**
+   * Returns the sum of all recorded values, in microseconds.
+   */
+  public long getTotal() {
+    return this.total.get();
+  }
+
+  /**
+   * Returns the highest recorded value, in microseconds, or 0 if nothing was
+   * recorded.
+   */
+  public long getMax() {
+    return this.max.get();
+  }
+
+  /**
+   * Returns the lowest recorded value, in microseconds, or 0 if nothing was
+   * recorded.
+   */
+  public long getMin() {
+    final long value = this.min.get();
+    return value == Long.MAX_VALUE ? 0 : value;
+  }
+
+  /**
+   * Returns the value, in microseconds, below which the given fraction of the
+   * recorded values fall. The result is the upper bound of the bucket where the
+   * percentile lies, limited by the highest recorded value.
+   * 
+   * @param fraction
+   *          the percentile, between 0 and 1 (0.99 for the 99th percentile).
+   * @return the percentile value, or 0 if nothing was recorded.
+   */
+  public long getPercentile(double fraction) {
+    if (fraction < 0 || fraction > 1) {
+      throw new IllegalArgumentException("Invalid percentile: " + fraction);
+    }
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      total += this.buckets.get(i);
+    }
+    if (total == 0) {
+      return 0;
+    }
+    final long rank = Math.max(1, (long) Math.ceil(fraction * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += this.buckets.get(i);
+      if (seen >= rank) {
+        return Math.min(upperBoundOf(i), this.getMax());
+      }
+    }
+    return this.getMax();
+  }
+
+  /**
+   * Forgets all the recorded values. Values being recorded at the same time
+   * may be partially kept.
+   */
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      this.buckets.set(i, 0);
+    }
+    this.count.set(0);
+    this.total.set(0);
+    this.max.set(0);
+    this.min.set(Long.MAX_VALUE);
+  }
+
+  public String toString() {
+    return "count=" + this.getCount() + " p50=" + this.getPercentile(0.5) + "us p95="
+           + this.getPercentile(0.95) + "us p99=" + this.getPercentile(0.99) + "us max="
+           + this.getMax() + "us";
+  }
+
+  /**
+   * Finds the bucket for a value. Values below {@value #SUB_BUCKETS} have
+   * their own buckets; above that, the bucket is given by the position of the
+   * highest bit and by the next {@link #SUB_BITS} bits.
+   */
+  static int indexOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    if (exponent > MAX_EXPONENT) {
+      return BUCKETS - 1;
+    }
+    final int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+  }
+
+  /**
+   * Returns the highest value that falls in the given bucket.
+   */
+  static long upperBoundOf(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    if (index == BUCKETS - 1) {
+      return Long.MAX_VALUE;
+    }
+    final int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+    final long sub = index % SUB_BUCKETS;
+    final long width = 1L << (exponent - SUB_BITS);
+    return (1L << exponent) + (sub + 1) * width - 1;
+  }
+}
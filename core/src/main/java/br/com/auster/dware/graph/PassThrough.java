@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.graph;
+
+/**
+ * Defines the filters, or the objects they give as input, that may forward what
+ * they receive without touching it.
+ * 
+ * <p>
+ * After connecting a graph for a request, the graph asks each sink that
+ * supplied its input to a source if it can be skipped. If so, the source is
+ * connected directly to the object returned by <code>getBypass</code>, saving
+ * one call per event for the whole request. Consecutive pass-through stages are
+ * skipped at once.
+ * </p>
+ * 
+ * @version $Id$
+ */
+public interface PassThrough {
+
+  /**
+   * Tells if this stage can be skipped for the request being processed. It is
+   * called after <code>prepare</code> and after the outputs of this stage were
+   * connected.
+   * 
+   * @return null if this stage must receive the data of the request, or the
+   *         object the sources of this stage should push data to instead: its
+   *         own output, if it would forward everything unchanged, or an object
+   *         that ignores everything, if it would forward nothing.
+   */
+  public Object getBypass();
+}
@@ -17,18 +17,29 @@
  */
 package br.com.auster.dware.graph;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
 import java.util.Map;
 
 /**
  * This is the superclass for every requests that wants to be
  * processed by the filter graphs.
  *
+ * <p>
+ * Many requests may be kept in memory at once, so a request is kept small: its
+ * ID is only built when first asked for, and its attributes are kept in a
+ * compact map that is not synchronized until the request is queued.
+ * </p>
+ *
  * @version $Id: Request.java 281 2006-12-22 14:45:54Z mtengelm $
  */
 public abstract class Request implements java.io.Serializable {
 
+  private static final long serialVersionUID = 1L;
+
 	public static final String KEY4_ID = "dware.id";
 	public static final String KEY4_TRANSACTION_ID = "dware.transactionid";
 	public static final String KEY4_USERKEY = "dware.userkey";
@@ -39,16 +50,54 @@ public abstract class Request implements java.io.Serializable {
   public static final String COMPOSITE_KEY_DELIMITER = "_";
   
   private String transactionId = null;
-  private String id = Integer.toString(super.hashCode());
-  private String userKey = "";
+  // built when first asked for, null until then
+  private String id = null;
+  // null if never set
+  private String userKey = null;
   
-  private Map attributes = Collections.synchronizedMap(new HashMap());
+  private final RequestAttributes attributes = new RequestAttributes(this);
+
+  // System.nanoTime() of when this request was last queued, 0 if never
+  private transient long queuedTime;
+
+  // estimated cost of processing this request, -1 if not estimated
+  private long cost = -1;
+
+  protected Request() {
+    // identified by its keys, when they are set
+  }
+
+  /**
+   * Creates a request with the given identifiers, as they were when it was
+   * written out.
+   */
+  protected Request(String id, String transactionId) {
+    this.id = id;
+    this.transactionId = transactionId;
+  }
 
   /**
    * Gets how difficulty is to process this request. The bigger the value the
    * more difficulty is to process it.
    */
   public abstract long getWeight();
+
+  /**
+   * Gets the estimated cost of processing this request, in the same unit of
+   * {@link #getWeight()}. It is the weight itself, unless the cost was
+   * estimated when this request was queued.
+   */
+  public final long getCost() {
+    return this.cost < 0 ? this.getWeight() : this.cost;
+  }
+
+  /**
+   * Sets the estimated cost of processing this request, or -1 to use its
+   * weight.
+   */
+  public final void setCost(long cost) {
+    this.cost = cost;
+  }
   
   /**
    * Gets the unique identifier of this request.
@@ -60,20 +109,31 @@ public abstract class Request implements java.io.Serializable {
    * @see #toString() for a more verbose alternative to identify a request.
    */
   public final String getId() {
-    return this.id;
+    String value = this.id;
+    if (value == null) {
+      if (this.userKey == null && this.transactionId == null) {
+        value = Integer.toString(super.hashCode());
+      } else {
+        value = buildId(this.transactionId, this.userKey);
+      }
+      this.id = value;
+    }
+    return value;
   }
-  
-  /***
-   * Sets the Request ID. 
-   * It Also puts the ID into the properties MAP.
-   * @param id
-   */
-  private void setId(String id) {
-    if (id == null) {
-      throw new IllegalArgumentException("Request ID cannot be null");
+
+  /**
+   * Returns the value of one of the <code>KEY4_*</code> attributes, or null if
+   * the given key is not one of them or it was not set yet.
+   */
+  final Object getKeyAttribute(Object key) {
+    if (KEY4_ID.equals(key)) {
+      return this.userKey == null && this.transactionId == null ? null : this.getId();
+    } else if (KEY4_USERKEY.equals(key)) {
+      return this.userKey;
+    } else if (KEY4_TRANSACTION_ID.equals(key)) {
+      return this.transactionId;
     }
-    this.id = id;
-    this.attributes.put(KEY4_ID, id);
+    return null;
   }
   
   public int hashCode() {
@@ -107,7 +167,7 @@ public abstract class Request implements java.io.Serializable {
    * @return the user key defined for this request.
    */
   public final String getUserKey() {
-    return this.userKey;
+    return this.userKey == null ? "" : this.userKey;
   }
   
   public final void setUserKey(String key) {
@@ -115,8 +175,7 @@ public abstract class Request implements java.io.Serializable {
       throw new IllegalStateException("User Key was already set - modification not allowed");
     }
     this.userKey = (key == null ? "" : key);
-    setId( buildId(getTransactionId(), this.userKey) );
-    this.attributes.put(KEY4_USERKEY, userKey);    
+    this.identityChanged();
   }
 
   /**
@@ -136,8 +195,16 @@ public abstract class Request implements java.io.Serializable {
       throw new IllegalArgumentException("Transaction ID cannot be null");
     }
     this.transactionId = id;
-    setId( buildId(this.transactionId, getUserKey()) );
-    this.attributes.put(KEY4_TRANSACTION_ID, transactionId);    
+    this.identityChanged();
+  }
+
+  /**
+   * Drops the ID built so far, as well as any identifier put explicitly in the
+   * attributes, since they are answered from the fields of this request.
+   */
+  private void identityChanged() {
+    this.id = null;
+    this.attributes.dropKeys();
   }
 
   /**
@@ -157,13 +224,97 @@ public abstract class Request implements java.io.Serializable {
     this.attributes.putAll(attributes);
   }
   
+  /**
+   * Returns when this request was last put in the queue, as given by
+   * <code>System.nanoTime()</code>, or 0 if it was never queued.
+   */
+  public final long getQueuedTime() {
+    return this.queuedTime;
+  }
+
+  /**
+   * Sets when this request was put in the queue. From then on, the request may
+   * be seen by other threads, so its attributes become synchronized.
+   */
+  public final void setQueuedTime(long nanos) {
+    this.queuedTime = nanos;
+    this.attributes.share();
+  }
+
+  /**
+   * Makes the attributes of this request synchronized, since other threads
+   * will see them from now on.
+   */
+  final void shareAttributes() {
+    this.attributes.share();
+  }
+
   public static final String buildId(String transactionId, String userKey) {
-    String id = "";
-    if (transactionId != null && transactionId.length() > 0) {
-      id += transactionId + COMPOSITE_KEY_DELIMITER;
+    if (transactionId == null || transactionId.length() == 0) {
+      return userKey == null ? "" : userKey;
     }
-    id += userKey == null ? "" : userKey;
-    return id;
+    return transactionId + COMPOSITE_KEY_DELIMITER + (userKey == null ? "" : userKey);
+  }
+
+  /**
+   * Writes this request as a compact record: its identifiers, its cost and its
+   * attributes, followed by the fields of its class, written by
+   * {@link #writeFields(DataOutput)}.
+   * 
+   * @throws NotSerializableException
+   *           if the class of this request does not write its fields.
+   */
+  public final void writeRecord(DataOutput out) throws IOException {
+    RequestAttributes.writeString(out, this.getId());
+    RequestAttributes.writeString(out, this.transactionId);
+    RequestAttributes.writeString(out, this.userKey);
+    out.writeLong(this.cost);
+    this.attributes.writeRecord(out);
+    this.writeFields(out);
+  }
+
+  /**
+   * Reads a record written by {@link #writeRecord(DataOutput)} into this
+   * request, which must have just been created by the constructor without
+   * arguments of its class.
+   */
+  public final void readRecord(DataInput in) throws IOException {
+    this.id = RequestAttributes.readString(in);
+    this.transactionId = RequestAttributes.readString(in);
+    this.userKey = RequestAttributes.readString(in);
+    this.cost = in.readLong();
+    this.attributes.readRecord(in);
+    this.readFields(in);
+  }
+
+  /**
+   * Writes the fields of the class of this request, after the ones written by
+   * {@link #writeRecord(DataOutput)}. Classes whose requests may be written
+   * out must override it, together with {@link #readFields(DataInput)}, and
+   * have a constructor without arguments.
+   * 
+   * @throws NotSerializableException
+   *           unless overridden.
+   */
+  protected void writeFields(DataOutput out) throws IOException {
+    throw new NotSerializableException(this.getClass().getName());
+  }
+
+  /**
+   * Reads the fields written by {@link #writeFields(DataOutput)}.
+   * 
+   * @throws NotSerializableException
+   *           unless overridden.
+   */
+  protected void readFields(DataInput in) throws IOException {
+    throw new NotSerializableException(this.getClass().getName());
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    // a request without keys is identified by its hash code, which would not
+    // survive the serialization
+    this.getId();
+    out.defaultWriteObject();
   }
 
 }
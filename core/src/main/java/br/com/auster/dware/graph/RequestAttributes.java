@@ -0,0 +1,524 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.graph;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The attributes of a request, kept in one array of keys and values instead of
+ * a hash table, since a request rarely has more than a few attributes.
+ * 
+ * <p>
+ * The identifiers of the request (<code>Request.KEY4_*</code>) are not
+ * stored: they are answered from the request itself, unless they were put
+ * explicitly. Short string keys are shared through a bounded dictionary, so
+ * that many requests with the same attribute names do not keep a copy of them
+ * each. Values are kept as given, since they are mostly unique to each request.
+ * </p>
+ * 
+ * <p>
+ * While the request is being built only its builder sees this map, so it is not
+ * synchronized. Once the request is queued, {@link #share()} is called and from
+ * then on every method synchronizes on this map.
+ * </p>
+ * 
+ * @version $Id$
+ */
+final class RequestAttributes extends AbstractMap implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  // keys longer than this are not kept in the dictionary
+  private static final int MAX_SHARED_LENGTH = 64;
+
+  private static final int MAX_DICTIONARY_SIZE = 8192;
+
+  private static final ConcurrentHashMap dictionary = new ConcurrentHashMap();
+
+  private static final Object[] EMPTY = new Object[0];
+
+  // the types of the values in a record
+  private static final byte NULL_VALUE = 0;
+  private static final byte STRING_VALUE = 1;
+  private static final byte INTEGER_VALUE = 2;
+  private static final byte LONG_VALUE = 3;
+  private static final byte BOOLEAN_VALUE = 4;
+  private static final byte DOUBLE_VALUE = 5;
+  private static final byte SERIALIZED_VALUE = 6;
+
+  private static final String[] KEY4 = { Request.KEY4_ID, Request.KEY4_USERKEY,
+      Request.KEY4_TRANSACTION_ID };
+
+  private final Request owner;
+
+  // keys in the even positions, each followed by its value
+  private Object[] table = EMPTY;
+
+  // how many positions of the table are used
+  private int stored = 0;
+
+  // null while the request is being built
+  private transient Object lock;
+
+  RequestAttributes(Request owner) {
+    this.owner = owner;
+  }
+
+  /**
+   * Makes every method of this map synchronized from now on.
+   */
+  void share() {
+    this.lock = this;
+  }
+
+  /**
+   * Removes the identifiers of the request put explicitly in this map, so that
+   * they are answered from the request again.
+   */
+  void dropKeys() {
+    if (this.lock == null) {
+      this.dropStoredKeys();
+      return;
+    }
+    synchronized (this) {
+      this.dropStoredKeys();
+    }
+  }
+
+  /**
+   * Returns the copy of the given key kept in the dictionary, adding it if
+   * there is still room. Keys that are not short strings are returned as they
+   * are.
+   */
+  private static Object internKey(Object key) {
+    if (!(key instanceof String) || ((String) key).length() > MAX_SHARED_LENGTH) {
+      return key;
+    }
+    final Object shared = dictionary.get(key);
+    if (shared != null) {
+      return shared;
+    }
+    if (dictionary.size() >= MAX_DICTIONARY_SIZE) {
+      return key;
+    }
+    final Object raced = dictionary.putIfAbsent(key, key);
+    return raced == null ? key : raced;
+  }
+
+  /**
+   * A map read from a stream may already be seen by other threads, so it is
+   * synchronized at once.
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    this.share();
+  }
+
+  /**
+   * Writes the attributes put in this map as part of the record of the
+   * request: their count and then each key and value, tagged with its type.
+   */
+  void writeRecord(DataOutput out) throws IOException {
+    if (this.lock == null) {
+      this.writeTable(out);
+      return;
+    }
+    synchronized (this) {
+      this.writeTable(out);
+    }
+  }
+
+  /**
+   * Reads the attributes written by {@link #writeRecord(DataOutput)} into this
+   * map, which is not shared yet.
+   */
+  void readRecord(DataInput in) throws IOException {
+    final int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      final Object key = readValue(in);
+      this.store(key, readValue(in));
+    }
+  }
+
+  /**
+   * Writes a string that may be null.
+   */
+  static void writeString(DataOutput out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    final byte[] bytes = value.getBytes("UTF-8");
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Reads a string written by {@link #writeString(DataOutput, String)}.
+   */
+  static String readString(DataInput in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, "UTF-8");
+  }
+
+  /**
+   * Writes a value tagged with its type. Strings, numbers and booleans are
+   * written as they are; any other value is serialized on its own.
+   */
+  static void writeValue(DataOutput out, Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(NULL_VALUE);
+    } else if (value instanceof String) {
+      out.writeByte(STRING_VALUE);
+      writeString(out, (String) value);
+    } else if (value instanceof Integer) {
+      out.writeByte(INTEGER_VALUE);
+      out.writeInt(((Integer) value).intValue());
+    } else if (value instanceof Long) {
+      out.writeByte(LONG_VALUE);
+      out.writeLong(((Long) value).longValue());
+    } else if (value instanceof Boolean) {
+      out.writeByte(BOOLEAN_VALUE);
+      out.writeBoolean(((Boolean) value).booleanValue());
+    } else if (value instanceof Double) {
+      out.writeByte(DOUBLE_VALUE);
+      out.writeDouble(((Double) value).doubleValue());
+    } else {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      final ObjectOutputStream objects = new ObjectOutputStream(bytes);
+      objects.writeObject(value);
+      objects.close();
+      out.writeByte(SERIALIZED_VALUE);
+      out.writeInt(bytes.size());
+      out.write(bytes.toByteArray());
+    }
+  }
+
+  /**
+   * Reads a value written by {@link #writeValue(DataOutput, Object)}.
+   */
+  static Object readValue(DataInput in) throws IOException {
+    final byte type = in.readByte();
+    switch (type) {
+    case NULL_VALUE:
+      return null;
+    case STRING_VALUE:
+      return readString(in);
+    case INTEGER_VALUE:
+      return new Integer(in.readInt());
+    case LONG_VALUE:
+      return new Long(in.readLong());
+    case BOOLEAN_VALUE:
+      return Boolean.valueOf(in.readBoolean());
+    case DOUBLE_VALUE:
+      return new Double(in.readDouble());
+    case SERIALIZED_VALUE:
+      final byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      try {
+        return new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+      } catch (ClassNotFoundException e) {
+        final IOException ioe = new IOException(e.getMessage());
+        ioe.initCause(e);
+        throw ioe;
+      }
+    default:
+      throw new IOException("Unknown attribute type " + type);
+    }
+  }
+
+  public int size() {
+    if (this.lock == null) {
+      return this.count();
+    }
+    synchronized (this) {
+      return this.count();
+    }
+  }
+
+  public boolean containsKey(Object key) {
+    if (this.lock == null) {
+      return this.indexOf(key) >= 0 || this.owner.getKeyAttribute(key) != null;
+    }
+    synchronized (this) {
+      return this.indexOf(key) >= 0 || this.owner.getKeyAttribute(key) != null;
+    }
+  }
+
+  public Object get(Object key) {
+    if (this.lock == null) {
+      return this.find(key);
+    }
+    synchronized (this) {
+      return this.find(key);
+    }
+  }
+
+  public Object put(Object key, Object value) {
+    if (this.lock == null) {
+      return this.store(key, value);
+    }
+    synchronized (this) {
+      return this.store(key, value);
+    }
+  }
+
+  /**
+   * Removes the given attribute.
+   * 
+   * @throws UnsupportedOperationException
+   *           if the attribute is one of the identifiers of the request, which
+   *           may not be removed.
+   */
+  public Object remove(Object key) {
+    if (this.lock == null) {
+      return this.delete(key);
+    }
+    synchronized (this) {
+      return this.delete(key);
+    }
+  }
+
+  /**
+   * Removes every attribute put in this map. The identifiers of the request
+   * are kept.
+   */
+  public void clear() {
+    if (this.lock == null) {
+      this.table = EMPTY;
+      this.stored = 0;
+      return;
+    }
+    synchronized (this) {
+      this.table = EMPTY;
+      this.stored = 0;
+    }
+  }
+
+  /**
+   * Returns a view of the attributes. Its iterators walk over a copy of the
+   * attributes taken when they were created.
+   */
+  public Set entrySet() {
+    return new AbstractSet() {
+      public int size() {
+        return RequestAttributes.this.size();
+      }
+
+      public Iterator iterator() {
+        if (RequestAttributes.this.lock == null) {
+          return new EntryIterator(RequestAttributes.this.snapshot());
+        }
+        synchronized (RequestAttributes.this) {
+          return new EntryIterator(RequestAttributes.this.snapshot());
+        }
+      }
+    };
+  }
+
+  private void writeTable(DataOutput out) throws IOException {
+    out.writeInt(this.stored / 2);
+    for (int i = 0; i < this.stored; i++) {
+      writeValue(out, this.table[i]);
+    }
+  }
+
+  private int indexOf(Object key) {
+    final Object[] keys = this.table;
+    for (int i = 0; i < this.stored; i += 2) {
+      if (keys[i] == key || (key != null && key.equals(keys[i]))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int count() {
+    int count = this.stored / 2;
+    for (int i = 0; i < KEY4.length; i++) {
+      if (this.indexOf(KEY4[i]) < 0 && this.owner.getKeyAttribute(KEY4[i]) != null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private Object find(Object key) {
+    final int i = this.indexOf(key);
+    return i >= 0 ? this.table[i + 1] : this.owner.getKeyAttribute(key);
+  }
+
+  private Object store(Object key, Object value) {
+    final int i = this.indexOf(key);
+    if (i >= 0) {
+      final Object old = this.table[i + 1];
+      this.table[i + 1] = value;
+      return old;
+    }
+    if (this.stored == this.table.length) {
+      final Object[] grown = new Object[Math.max(4, this.table.length * 2)];
+      System.arraycopy(this.table, 0, grown, 0, this.stored);
+      this.table = grown;
+    }
+    this.table[this.stored++] = internKey(key);
+    this.table[this.stored++] = value;
+    return this.owner.getKeyAttribute(key);
+  }
+
+  private Object delete(Object key) {
+    final int i = this.indexOf(key);
+    if (i < 0) {
+      if (this.owner.getKeyAttribute(key) != null) {
+        throw new UnsupportedOperationException("The request identifier " + key
+                                                + " cannot be removed");
+      }
+      return null;
+    }
+    final Object old = this.table[i + 1];
+    System.arraycopy(this.table, i + 2, this.table, i, this.stored - i - 2);
+    this.table[--this.stored] = null;
+    this.table[--this.stored] = null;
+    return old;
+  }
+
+  private void dropStoredKeys() {
+    for (int i = 0; i < KEY4.length; i++) {
+      if (this.indexOf(KEY4[i]) >= 0) {
+        this.delete(KEY4[i]);
+      }
+    }
+  }
+
+  private Object[] snapshot() {
+    final Object[] copy = new Object[this.stored + 2 * KEY4.length];
+    System.arraycopy(this.table, 0, copy, 0, this.stored);
+    int length = this.stored;
+    for (int i = 0; i < KEY4.length; i++) {
+      final Object value = this.owner.getKeyAttribute(KEY4[i]);
+      if (value != null && this.indexOf(KEY4[i]) < 0) {
+        copy[length++] = KEY4[i];
+        copy[length++] = value;
+      }
+    }
+    if (length == copy.length) {
+      return copy;
+    }
+    final Object[] trimmed = new Object[length];
+    System.arraycopy(copy, 0, trimmed, 0, length);
+    return trimmed;
+  }
+
+  /**
+   * Walks over a copy of the attributes. Removing an entry removes it from the
+   * map, and setting its value changes the map.
+   */
+  private final class EntryIterator implements Iterator {
+
+    private final Object[] entries;
+
+    private int next = 0;
+
+    EntryIterator(Object[] entries) {
+      this.entries = entries;
+    }
+
+    public boolean hasNext() {
+      return this.next < this.entries.length;
+    }
+
+    public Object next() {
+      if (!this.hasNext()) {
+        throw new NoSuchElementException();
+      }
+      this.next += 2;
+      return new Entry(this.entries[this.next - 2], this.entries[this.next - 1]);
+    }
+
+    public void remove() {
+      if (this.next == 0) {
+        throw new IllegalStateException();
+      }
+      RequestAttributes.this.remove(this.entries[this.next - 2]);
+    }
+  }
+
+  private final class Entry implements Map.Entry {
+
+    private final Object key;
+
+    private Object value;
+
+    Entry(Object key, Object value) {
+      this.key = key;
+      this.value = value;
+    }
+
+    public Object getKey() {
+      return this.key;
+    }
+
+    public Object getValue() {
+      return this.value;
+    }
+
+    public Object setValue(Object value) {
+      final Object old = this.value;
+      RequestAttributes.this.put(this.key, value);
+      this.value = value;
+      return old;
+    }
+
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Map.Entry)) {
+        return false;
+      }
+      final Map.Entry other = (Map.Entry) obj;
+      return (this.key == null ? other.getKey() == null : this.key.equals(other.getKey()))
+             && (this.value == null ? other.getValue() == null : this.value
+                 .equals(other.getValue()));
+    }
+
+    public int hashCode() {
+      return (this.key == null ? 0 : this.key.hashCode())
+             ^ (this.value == null ? 0 : this.value.hashCode());
+    }
+
+    public String toString() {
+      return this.key + "=" + this.value;
+    }
+  }
+}
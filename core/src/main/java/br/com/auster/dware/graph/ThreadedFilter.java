@@ -36,7 +36,8 @@ import br.com.auster.common.util.I18n;
  * 
  * @version $Id: ThreadedFilter.java 362 2008-07-12 19:42:00Z lmorozow $
  */
-public abstract class ThreadedFilter extends Thread implements Filter, Sink, Source, FilterMonitor {
+public abstract class ThreadedFilter extends Thread implements Filter, Sink, Source, FilterMonitor,
+    FilterLatencyAware {
 
   private static final Logger log = Logger.getLogger(ThreadedFilter.class);
 
@@ -55,7 +56,9 @@ public abstract class ThreadedFilter extends Thread implements Filter, Sink, Sou
 
   private Throwable problem = null;
 
-  private Graph graph = null;
+  private volatile Graph graph = null;
+
+  private volatile FilterLatency latency = null;
 
   public ThreadedFilter(String name) {
     this.filterName = name;
@@ -134,24 +137,7 @@ public abstract class ThreadedFilter extends Thread implements Filter, Sink, Sou
       if (this.closing)
         log.debug("Filter Shutting Down");
       else {
-        log.debug("Filter Started");
-        StatsMapping stats = ProcessingStats.starting(getClass(), "process()");
-        try {
-          this.process();
-        } catch (Throwable e) {
-          log.debug("Problems inside filter " + this.getName(), e);
-          this.problem = e;
-        } finally {
-          stats.finished();
-          synchronized (this.syncFinish) {
-            this.processing = false;
-            this.syncFinish.notifyAll();
-          }
-          // Notifies that this filter finished its job
-          if (this.graph != null)
-            this.graph.threadedFilterFinished(this, this.problem);
-          log.debug("Filter Finished");
-        }
+        this.runRequest();
       }
     }
     log.warn(i18n.getString("filterStopped"));
@@ -161,6 +147,50 @@ public abstract class ThreadedFilter extends Thread implements Filter, Sink, Sou
     this.closing = false;
   }
 
+  /**
+   * Processes the request given by the method <code>prepare</code> in the
+   * calling thread, notifying the graph when finished. This is used by the
+   * thread loop in {@link #run()} and, when the graph is configured to use a
+   * shared {@link ThreadedFilterExecutor}, by one of the executor workers.
+   */
+  final void runRequest() {
+    log.debug("Filter Started");
+    StatsMapping stats = ProcessingStats.starting(getClass(), "process()");
+    final long start = System.nanoTime();
+    try {
+      this.process();
+    } catch (Throwable e) {
+      log.debug("Problems inside filter " + this.getName(), e);
+      this.problem = e;
+    } finally {
+      stats.finished();
+      final FilterLatency latency = this.latency;
+      if (latency != null) {
+        latency.record(FilterLatency.PROCESS, System.nanoTime() - start);
+      }
+      synchronized (this.syncFinish) {
+        this.processing = false;
+        this.syncFinish.notifyAll();
+      }
+      // Notifies that this filter finished its job
+      final Graph graph = this.graph;
+      if (graph != null)
+        graph.threadedFilterFinished(this, this.problem);
+      log.debug("Filter Finished");
+    }
+  }
+
+  /**
+   * Called by the {@link ThreadedFilterExecutor} when the task of this filter
+   * was cancelled before it started, so the request will never be processed.
+   */
+  final void notStarted() {
+    synchronized (this.syncFinish) {
+      this.processing = false;
+      this.syncFinish.notifyAll();
+    }
+  }
+
   /**
    * Checks if this filter is still processing the request.
    * 
@@ -204,6 +234,19 @@ public abstract class ThreadedFilter extends Thread implements Filter, Sink, Sou
     }
   }
 
+  /**
+   * Detaches this filter from its graph, that gave up waiting for it. The
+   * filter is interrupted and, when (and if) it returns from
+   * <code>process</code>, the graph is not notified and the thread stops.
+   */
+  final void abandon() {
+    this.graph = null;
+    this.closing = true;
+    if (this.isAlive()) {
+      this.interrupt();
+    }
+  }
+
   /**
    * This method is used to start the processing of the request.
    */
@@ -258,13 +301,32 @@ public abstract class ThreadedFilter extends Thread implements Filter, Sink, Sou
     * @see br.com.auster.dware.graph.FilterMonitor#getCounters()
     */
    public AtomicLongArray getCounters() {
-      return null;
+      final FilterLatency latency = this.latency;
+      return latency == null ? null : latency.toCounters(true);
    }
 
 /* (non-Javadoc)
     * @see br.com.auster.dware.graph.FilterMonitor#resetCounters()
     */
    public void resetCounters() {      
+      final FilterLatency latency = this.latency;
+      if (latency != null) {
+         latency.reset();
+      }
+   }
+
+   /* (non-Javadoc)
+    * @see br.com.auster.dware.graph.FilterLatencyAware#getLatency()
+    */
+   public FilterLatency getLatency() {
+      return this.latency;
+   }
+
+   /* (non-Javadoc)
+    * @see br.com.auster.dware.graph.FilterLatencyAware#setLatency(br.com.auster.dware.graph.FilterLatency)
+    */
+   public void setLatency(FilterLatency latency) {
+      this.latency = latency;
    }
 
 /**
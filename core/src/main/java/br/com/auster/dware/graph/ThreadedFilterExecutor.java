@@ -0,0 +1,359 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.graph;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import br.com.auster.common.stats.ProcessingStats;
+import br.com.auster.common.util.I18n;
+
+/**
+ * Bounded pool of worker threads shared by every graph configured with
+ * <code>threaded-filter-runtime="executor"</code>. Instead of keeping one
+ * parked thread per <code>ThreadedFilter</code>, each request submits the
+ * <code>process()</code> method of the graph's threaded filters as tasks to
+ * this pool.
+ *
+ * <p>
+ * The threaded filters of one graph usually talk to each other through pipes,
+ * so they must all run at the same time. To avoid a graph holding part of the
+ * workers while waiting for the rest (which could deadlock the pool), a graph
+ * reserves all the workers it needs at once through {@link #reserve(int)}
+ * before submitting its tasks. Each task gives its slot back when it finishes.
+ * </p>
+ *
+ * <p>
+ * A task that does not stop when its graph gives up on it is abandoned by
+ * {@link #stop(Future[], long)}: its slot is given back at once and a new
+ * worker takes the place of the one it holds, until it returns. So stuck
+ * filters do not shrink the pool.
+ * </p>
+ *
+ * <p>
+ * There is only one instance per virtual machine. Its size is a setting of the
+ * graph manager, given to {@link #configure(int)} before the graphs are
+ * created; if never configured, it has four threads per processor.
+ * </p>
+ *
+ * @version $Id$
+ */
+public final class ThreadedFilterExecutor {
+
+  private static final Logger log = Logger.getLogger(ThreadedFilterExecutor.class);
+
+  private static final I18n i18n = I18n.getInstance(ThreadedFilterExecutor.class);
+
+  // the states of a task
+  private static final int NEW = 0;
+  private static final int RUNNING = 1;
+  private static final int FINISHED = 2;
+  private static final int CANCELLED = 3;
+  private static final int ABANDONED = 4;
+
+  private static ThreadedFilterExecutor instance = null;
+
+  private final ThreadPoolExecutor executor;
+
+  private final Slots slots;
+
+  private volatile int maxThreads;
+
+  // workers held by abandoned tasks, replaced by new ones
+  private int stuck = 0;
+
+  private ThreadedFilterExecutor(int maxThreads) {
+    this.maxThreads = maxThreads;
+    this.slots = new Slots(maxThreads);
+    this.executor = new ThreadPoolExecutor(maxThreads, maxThreads, 0L, TimeUnit.MILLISECONDS,
+                                           new LinkedBlockingQueue(), new WorkerFactory());
+  }
+
+  /**
+   * Sets the number of workers of the shared executor, creating it if this is
+   * the first call. It is resized if it already exists.
+   *
+   * @param maxThreads
+   *          the maximum number of worker threads.
+   */
+  public static synchronized void configure(int maxThreads) {
+    if (maxThreads <= 0) {
+      throw new IllegalArgumentException(i18n.getString("executorNoThreads"));
+    }
+    if (instance == null) {
+      log.info(i18n.getString("executorCreated", Integer.toString(maxThreads)));
+      instance = new ThreadedFilterExecutor(maxThreads);
+    } else if (instance.maxThreads != maxThreads) {
+      log.info(i18n.getString("executorResized", Integer.toString(instance.maxThreads),
+                              Integer.toString(maxThreads)));
+      instance.resize(maxThreads);
+    }
+  }
+
+  /**
+   * Returns the shared executor, creating it with the default size if it was
+   * never configured.
+   */
+  public static synchronized ThreadedFilterExecutor getInstance() {
+    if (instance == null) {
+      configure(Runtime.getRuntime().availableProcessors() * 4);
+    }
+    return instance;
+  }
+
+  /**
+   * Returns the maximum number of threads this executor runs at once.
+   */
+  public int getMaxThreads() {
+    return this.maxThreads;
+  }
+
+  /**
+   * Returns how many workers are currently running threaded filters.
+   */
+  public int getActiveCount() {
+    return this.executor.getActiveCount();
+  }
+
+  /**
+   * Blocks until <code>count</code> workers are free, and reserves them for
+   * the caller. Every reserved slot must be consumed by a call to
+   * {@link #submit(ThreadedFilter)} or given back by {@link #release(int)}.
+   *
+   * @param count
+   *          the number of threaded filters the caller will submit.
+   * @throws InterruptedException
+   *           if interrupted while waiting for free workers.
+   */
+  public void reserve(int count) throws InterruptedException {
+    if (count > this.maxThreads) {
+      throw new IllegalArgumentException(i18n.getString("executorCannotReserve", Integer.toString(count),
+                                                         Integer.toString(this.maxThreads)));
+    }
+    this.slots.acquire(count);
+  }
+
+  /**
+   * Gives back slots reserved by {@link #reserve(int)} that were not used.
+   */
+  public void release(int count) {
+    this.slots.release(count);
+  }
+
+  /**
+   * Runs the filter's current request in one of the reserved workers. The slot
+   * is released when the filter finishes.
+   *
+   * @param filter
+   *          the threaded filter to run.
+   * @return the future that can be used to stop the filter.
+   */
+  public Future submit(ThreadedFilter filter) {
+    FilterTask task = new FilterTask(filter);
+    this.executor.execute(task);
+    return task;
+  }
+
+  /**
+   * Interrupts the given tasks and waits up to <code>millis</code> for them to
+   * stop. The ones still running after that are abandoned: their slots are
+   * given back and their workers replaced, until they return.
+   *
+   * @param tasks
+   *          tasks returned by {@link #submit(ThreadedFilter)}; null entries
+   *          are skipped.
+   * @param millis
+   *          how long to wait, or 0 not to wait.
+   * @return true if every task stopped in time.
+   */
+  public boolean stop(Future[] tasks, long millis) {
+    for (int i = 0; i < tasks.length; i++) {
+      if (tasks[i] != null) {
+        tasks[i].cancel(true);
+      }
+    }
+    final long end = System.currentTimeMillis() + millis;
+    int abandoned = 0;
+    for (int i = 0; i < tasks.length; i++) {
+      final FilterTask task = (FilterTask) tasks[i];
+      if (task == null) {
+        continue;
+      }
+      try {
+        final long left = end - System.currentTimeMillis();
+        if (left > 0) {
+          task.stopped.await(left, TimeUnit.MILLISECONDS);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      if (task.abandon()) {
+        abandoned++;
+      }
+    }
+    if (abandoned > 0) {
+      log.warn(i18n.getString("executorTasksAbandoned", Integer.toString(abandoned)));
+    }
+    return abandoned == 0;
+  }
+
+  /*
+   * Changes the number of workers and slots.
+   */
+  private synchronized void resize(int maxThreads) {
+    final int delta = maxThreads - this.maxThreads;
+    this.maxThreads = maxThreads;
+    if (delta > 0) {
+      this.slots.release(delta);
+    } else {
+      this.slots.reducePermits(-delta);
+    }
+    this.resizePool();
+  }
+
+  /*
+   * Adds or removes the workers that replace the ones held by abandoned tasks.
+   */
+  private synchronized void stuckChanged(int delta) {
+    this.stuck += delta;
+    this.resizePool();
+  }
+
+  private void resizePool() {
+    final int size = this.maxThreads + this.stuck;
+    if (size > this.executor.getMaximumPoolSize()) {
+      this.executor.setMaximumPoolSize(size);
+      this.executor.setCorePoolSize(size);
+    } else {
+      this.executor.setCorePoolSize(size);
+      this.executor.setMaximumPoolSize(size);
+    }
+  }
+
+  /**
+   * Runs one request of a threaded filter. Its slot is released exactly once:
+   * when the filter returns, when it is abandoned or, if it is cancelled
+   * before starting, at cancellation time.
+   */
+  private final class FilterTask extends FutureTask {
+
+    private final AtomicInteger state;
+
+    // counted down when the filter is no longer running
+    private final CountDownLatch stopped;
+
+    private final ThreadedFilter filter;
+
+    FilterTask(ThreadedFilter filter) {
+      this(filter, new AtomicInteger(NEW), new CountDownLatch(1));
+    }
+
+    private FilterTask(final ThreadedFilter filter, final AtomicInteger state,
+                       final CountDownLatch stopped) {
+      super(new Runnable() {
+        public void run() {
+          if (!state.compareAndSet(NEW, RUNNING)) {
+            // cancelled before starting
+            return;
+          }
+          String oldName = Thread.currentThread().getName();
+          Thread.currentThread().setName(filter.getName());
+          try {
+            filter.runRequest();
+          } finally {
+            Thread.currentThread().setName(oldName);
+            if (state.compareAndSet(RUNNING, FINISHED)) {
+              slots.release();
+            } else {
+              // abandoned: the slot was given back, and this worker was replaced
+              stuckChanged(-1);
+            }
+            stopped.countDown();
+          }
+        }
+      }, null);
+      this.filter = filter;
+      this.state = state;
+      this.stopped = stopped;
+    }
+
+    protected void done() {
+      if (this.state.compareAndSet(NEW, CANCELLED)) {
+        slots.release();
+        this.filter.notStarted();
+        this.stopped.countDown();
+      }
+    }
+
+    /**
+     * Gives up the filter if it is still running.
+     *
+     * @return true if it was abandoned.
+     */
+    boolean abandon() {
+      if (!this.state.compareAndSet(RUNNING, ABANDONED)) {
+        return false;
+      }
+      stuckChanged(1);
+      slots.release();
+      return true;
+    }
+  }
+
+  /**
+   * Slots whose number may be reduced when the executor is resized.
+   */
+  private static final class Slots extends Semaphore {
+
+    Slots(int permits) {
+      super(permits, true);
+    }
+
+    protected void reducePermits(int reduction) {
+      super.reducePermits(reduction);
+    }
+  }
+
+  /**
+   * Creates daemon worker threads with a recognizable name.
+   */
+  private static final class WorkerFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    public Thread newThread(final Runnable r) {
+      Thread t = new Thread(new Runnable() {
+        public void run() {
+          ProcessingStats.dontDumpMyStats();
+          r.run();
+        }
+      }, "ThreadedFilterExecutor-" + count.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    }
+  }
+}
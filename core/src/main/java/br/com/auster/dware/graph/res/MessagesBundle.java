@@ -47,11 +47,13 @@ public class MessagesBundle extends ListResourceBundle {
         {"noConfig", "This graph is not configured. It may have already been shutted down. Configure it before trying to process any request."},
         {"threadAlive", "The thread \"{0}\" is already alive. Not starting it again."},
         {"noSuchFilter", "The filter \"{0}\" does not exist in graph \"{1}\"."},
+        {"noSuchFilterInConfig", "The filter \"{0}\" does not exist in the graph configuration."},
         {"configuringGraph", "Configuring the graph \"{0}\"..."},
         {"graphConfigured", "Finished configuring graph \"{0}\"."},
         {"gotInterruption", "Got an interruption."},
         {"graphGoingDown", "Started shutdown process for graph \"{0}\"."},
         {"graphDown", "Shutdown process for graph \"{0}\" finished."},
+        {"graphPipelined", "The graph \"{0}\" is pipelined: it has a second set of filters to start requests while others commit."},
         {"listenerConfigured", "Listener \"{1}\" configured for graph \"{0}\"."},
         {"listenerConfigError", "Error while configuring Listener \"{1}\" for graph \"{0}\"!"},
         {"listenerFinishError", "Error while alerting Listener for graph \"{0}\" of a finished request!"},
@@ -62,6 +64,9 @@ public class MessagesBundle extends ListResourceBundle {
         {"threadedFilterDown", "The threaded filter \"{1}\" of graph \"{0}\" is not alive - forcing reconfiguration of all filters."},
         {"invalidTimeout", "Invalid timeout configuration \"{0}\": must be an integer greater than zero."},
         {"idleTimeout", "Graph \"{0}\" idle timeout has been reached - shutting down graph..."},
+        {"deadlineExpired", "Request {0} did not finish within the deadline of {2} ms in graph \"{1}\" - abandoning its threaded filters."},
+        {"invalidThreadedRuntime", "Invalid threaded filter runtime \"{0}\": must be \"thread\" or \"executor\"."},
+        {"executorTooSmall", "Graph \"{0}\" has {1} threaded filters, but the shared executor only has {2} threads. Increase the \"threads\" attribute of the manager's \"threaded-filter-executor\" element."},
 
         // DefaultFilter.java
         {"methodNotSupported", "The method \"{0}\" is not supported by this class."},
@@ -72,6 +77,13 @@ public class MessagesBundle extends ListResourceBundle {
         {"filterStopped", "Filter thread stopped."},
         {"waitingThread", "Wating for the threaded filter {0} to finish."},
 
+        // ThreadedFilterExecutor.java
+        {"executorNoThreads", "The executor must have at least one thread."},
+        {"executorCreated", "Creating shared threaded filter executor with {0} threads."},
+        {"executorResized", "Resizing the shared threaded filter executor from {0} to {1} threads."},
+        {"executorTasksAbandoned", "{0} threaded filter task(s) did not stop in time and were abandoned; their workers are replaced until they return."},
+        {"executorCannotReserve", "Cannot reserve {0} threads from an executor with {1} threads."},
+
         // Edge.java
         {"noConnectorsAvailable", "Could not find any connectors available."},
         {"noConnectorAcceptable", "Could not find an acceptable connector for the edge [ {0} -> {1} ]"}
@@ -47,11 +47,13 @@ public class MessagesBundle_pt_BR extends ListResourceBundle {
         {"noConfig", "Este grafo no est configurado. Ele pode j ter sido desligado. Configure-o antes de tentar processar alguma requisio."},
         {"threadAlive", "A thread \"{0}\" j est ativa. O grafo no ir ativ-la novamente."},
         {"noSuchFilter", "O filtro \"{0}\" no existe no grafo \"{1}\"."},
+        {"noSuchFilterInConfig", "O filtro \"{0}\" no existe na configurao do grafo."},
         {"configuringGraph", "Configurando o grafo \"{0}\"..."},
         {"graphConfigured", "Configurao do grafo \"{0}\" terminada."},
         {"gotInterruption", "Interrupo recebida."},
         {"graphGoingDown", "Iniciado o processo de desativao do grafo \"{0}\"."},
         {"graphDown", "Processo de desativao do grafo \"{0}\" terminado."},
+        {"graphPipelined", "O grafo \"{0}\" trabalha em pipeline: tem um segundo conjunto de filtros para iniciar requisies enquanto outras so confirmadas."},
         {"listenerConfigured", "O Listener \"{1}\" foi configurado para o grafo \"{0}\"."},
         {"listenerConfigError", "Erro ao configurar o Listener \"{1}\" para o grafo \"{0}\"!"},
         {"listenerFinishError", "Erro ao alertar sobre o trmino de uma requisio para o Listener do grafo \"{0}\"!"},
@@ -62,6 +64,9 @@ public class MessagesBundle_pt_BR extends ListResourceBundle {
         {"threadedFilterDown", "O filtro 'threaded' \"{1}\" do grafo \"{0}\" est desativado - forando reconfigurao de todos os filtros."},
         {"invalidTimeout", "Configurao de timeout invlida \"{0}\": deve ser um nmero inteiro e maior do que zero."},
         {"idleTimeout", "O tempo de timeout do Grafo \"{0}\" foi alcanado - desligando o grafo..."},
+        {"deadlineExpired", "A requisio {0} no terminou dentro do prazo de {2} ms no grafo \"{1}\" - abandonando seus filtros com thread."},
+        {"invalidThreadedRuntime", "Modo de execuo de filtros \"{0}\" invlido: deve ser \"thread\" ou \"executor\"."},
+        {"executorTooSmall", "O grafo \"{0}\" tem {1} filtros com thread, mas o executor compartilhado tem apenas {2} threads. Aumente o atributo \"threads\" do elemento \"threaded-filter-executor\" do gerenciador."},
 
         // DefaultFilter.java
         {"methodNotSupported", "O mtodo \"{0}\" no  suportado por esta classe."},
@@ -72,6 +77,13 @@ public class MessagesBundle_pt_BR extends ListResourceBundle {
         {"filterStopped", "Thread do filtro parada."},
         {"waitingThread", "Aguardando pela finalizao da thread do filtro {0}."},
 
+        // ThreadedFilterExecutor.java
+        {"executorNoThreads", "O executor deve ter pelo menos uma thread."},
+        {"executorCreated", "Criando o executor compartilhado de filtros com {0} threads."},
+        {"executorResized", "Redimensionando o executor compartilhado de filtros de {0} para {1} threads."},
+        {"executorTasksAbandoned", "{0} tarefa(s) de filtros com thread no pararam a tempo e foram abandonadas; suas threads so substitudas at que retornem."},
+        {"executorCannotReserve", "No  possvel reservar {0} threads de um executor com {1} threads."},
+
         // Edge.java
         {"noConnectorsAvailable", "No foi possvel encontrar nenhum conector disponvel."},
         {"noConnectorAcceptable", "No foi possvel encontrar nenhum conector compatvel com a ligao [ {0} -> {1} ]"}
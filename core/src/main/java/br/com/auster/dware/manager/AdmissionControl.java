@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.manager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+import org.w3c.dom.Element;
+
+import br.com.auster.common.util.I18n;
+import br.com.auster.common.xml.DOMUtils;
+import br.com.auster.dware.graph.Request;
+
+/**
+ * Bounds how many requests, and how much weight, may wait in the request
+ * queue. Producers that enqueue beyond the limits wait until the graph groups
+ * take enough requests out of the queue, and the requests that can not be
+ * admitted before the timeout are rejected.
+ * 
+ * <p>
+ * The limits are soft: they are checked before requests are added, so a
+ * request heavier than <code>max-weight</code> is admitted when the queue is
+ * empty, and requeued requests are always admitted, since they were admitted
+ * before. A batch is admitted in slices that fit the limits, so, with limits,
+ * the graphs may start processing a batch before all of it is queued.
+ * </p>
+ * <p>
+ * The room given by {@link #admit(List, int, long)} is reserved until the
+ * caller stores the requests and calls {@link #release(List, int, int)}, so
+ * producers woken together do not all take the same room.
+ * </p>
+ * 
+ * Configuration:
+ * <pre>
+ * &lt;admission-control max-requests="100000" max-weight="53687091200"
+ *                    enqueue-timeout="0"/&gt;
+ * </pre>
+ * A limit not given, or not positive, does not bound the queue. The timeout
+ * is in milliseconds; if it is not positive, producers wait as long as needed.
+ * 
+ * @version $Id$
+ */
+public final class AdmissionControl {
+
+  /**
+   * {@value}
+   */
+  public static final String ADMISSION_CONTROL_ELEMENT = "admission-control";
+  /**
+   * {@value} - how many requests may wait in the queue.
+   */
+  public static final String MAX_REQUESTS_ATTR = "max-requests";
+  /**
+   * {@value} - the total weight of the requests that may wait in the queue.
+   */
+  public static final String MAX_WEIGHT_ATTR = "max-weight";
+  /**
+   * {@value} - how long, in milliseconds, <code>enqueue</code> waits for room.
+   */
+  public static final String ENQUEUE_TIMEOUT_ATTR = "enqueue-timeout";
+
+  private static final Logger log = Logger.getLogger(AdmissionControl.class);
+
+  private final I18n i18n = I18n.getInstance(AdmissionControl.class);
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final Condition notFull = this.lock.newCondition();
+
+  private final int maxRequests;
+
+  private final long maxWeight;
+
+  private final long timeout;
+
+  private int queuedRequests = 0;
+
+  private long queuedWeight = 0;
+
+  // room given by admit to requests not stored in the queue yet
+  private int reservedRequests = 0;
+
+  private long reservedWeight = 0;
+
+  private final AtomicLong throttled = new AtomicLong();
+
+  private final AtomicLong rejected = new AtomicLong();
+
+  /**
+   * Creates an admission control that does not bound the queue.
+   */
+  public AdmissionControl() {
+    this(0, 0, 0);
+  }
+
+  public AdmissionControl(Element config) {
+    this(DOMUtils.getIntAttribute(config, MAX_REQUESTS_ATTR, false),
+         getLongAttribute(config, MAX_WEIGHT_ATTR),
+         getLongAttribute(config, ENQUEUE_TIMEOUT_ATTR));
+    log.info(i18n.getString("admissionControlConfigured", Integer.toString(this.maxRequests),
+                            Long.toString(this.maxWeight), Long.toString(this.timeout)));
+  }
+
+  /**
+   * @param maxRequests
+   *          how many requests may wait in the queue, or 0 for no limit.
+   * @param maxWeight
+   *          the total weight that may wait in the queue, or 0 for no limit.
+   * @param timeout
+   *          how long, in milliseconds, <code>enqueue</code> waits for room,
+   *          or 0 to wait as long as needed.
+   */
+  public AdmissionControl(int maxRequests, long maxWeight, long timeout) {
+    this.maxRequests = Math.max(maxRequests, 0);
+    this.maxWeight = Math.max(maxWeight, 0);
+    this.timeout = Math.max(timeout, 0);
+  }
+
+  private static long getLongAttribute(Element config, String name) {
+    String value = DOMUtils.getAttribute(config, name, false);
+    if (value == null || value.length() == 0) {
+      return 0;
+    }
+    return Long.parseLong(value);
+  }
+
+  /**
+   * Tells if this object bounds the queue at all.
+   */
+  public boolean isBounded() {
+    return this.maxRequests > 0 || this.maxWeight > 0;
+  }
+
+  /**
+   * Returns how long, in nanoseconds, a plain <code>enqueue</code> waits for
+   * room, or a negative number to wait as long as needed.
+   */
+  public long getEnqueueTimeout() {
+    return this.timeout > 0 ? TimeUnit.MILLISECONDS.toNanos(this.timeout) : -1;
+  }
+
+  /**
+   * Waits until some of the given requests fit in the queue, and reserves
+   * room for them. The caller must call {@link #release(List, int, int)}
+   * once the admitted requests were stored in the queue, or dropped.
+   * 
+   * @param requests
+   *          the requests to be enqueued.
+   * @param from
+   *          the index of the first request not admitted yet.
+   * @param timeout
+   *          how long, in nanoseconds, to wait for room. If it is negative,
+   *          waits as long as needed.
+   * @return how many requests, starting at <code>from</code>, may be added to
+   *         the queue now, or 0 if none could be admitted in time.
+   * @throws InterruptedException
+   *           if the thread was interrupted while waiting.
+   */
+  public int admit(List<Request> requests, int from, long timeout) throws InterruptedException {
+    final int total = requests.size() - from;
+    if (!this.isBounded() || total <= 0) {
+      return total;
+    }
+    this.lock.lock();
+    try {
+      boolean waited = false;
+      while (!this.fits(requests.get(from).getWeight(), 0, 0)) {
+        if (!waited) {
+          waited = true;
+          this.throttled.incrementAndGet();
+        }
+        if (timeout < 0) {
+          this.notFull.await();
+        } else if (timeout == 0) {
+          return 0;
+        } else {
+          timeout = this.notFull.awaitNanos(timeout);
+          if (timeout <= 0 && !this.fits(requests.get(from).getWeight(), 0, 0)) {
+            return 0;
+          }
+        }
+      }
+      int count = 1;
+      long weight = requests.get(from).getWeight();
+      while (count < total && this.fits(requests.get(from + count).getWeight(), count, weight)) {
+        weight += requests.get(from + count).getWeight();
+        count++;
+      }
+      this.reservedRequests += count;
+      this.reservedWeight += weight;
+      return count;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /*
+   * Tells if one more request of the given weight fits in the queue, besides
+   * the ones already admitted in this call.
+   */
+  private boolean fits(long weight, int admittedRequests, long admittedWeight) {
+    final int requests = this.queuedRequests + this.reservedRequests + admittedRequests;
+    if (this.maxRequests > 0 && requests >= this.maxRequests) {
+      return false;
+    }
+    return this.maxWeight <= 0 || requests == 0
+        || this.queuedWeight + this.reservedWeight + admittedWeight + weight <= this.maxWeight;
+  }
+
+  /**
+   * Gives back the room reserved by {@link #admit(List, int, long)}. The
+   * requests that were stored in the queue meanwhile are already counted by
+   * {@link #queued(Request)}; the ones the queue dropped as duplicates are
+   * not counted at all.
+   * 
+   * @param requests
+   *          the requests given to <code>admit</code>.
+   * @param from
+   *          the index of the first admitted request.
+   * @param count
+   *          how many requests were admitted.
+   */
+  public void release(List<Request> requests, int from, int count) {
+    if (!this.isBounded() || count <= 0) {
+      return;
+    }
+    long weight = 0;
+    for (int i = from; i < from + count; i++) {
+      weight += requests.get(i).getWeight();
+    }
+    this.lock.lock();
+    try {
+      this.reservedRequests = Math.max(this.reservedRequests - count, 0);
+      this.reservedWeight = Math.max(this.reservedWeight - weight, 0);
+      this.notFull.signalAll();
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Counts requests that were rejected.
+   */
+  public void rejected(int count) {
+    this.rejected.addAndGet(count);
+  }
+
+  /**
+   * Counts a request that was stored in the queue.
+   */
+  public void queued(Request request) {
+    if (!this.isBounded()) {
+      return;
+    }
+    this.lock.lock();
+    try {
+      this.queuedRequests++;
+      this.queuedWeight += request.getWeight();
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Counts the requests that were stored in the queue.
+   */
+  public void queued(Collection<Request> requests) {
+    if (!this.isBounded()) {
+      return;
+    }
+    long weight = 0;
+    for (Request request : requests) {
+      weight += request.getWeight();
+    }
+    this.lock.lock();
+    try {
+      this.queuedRequests += requests.size();
+      this.queuedWeight += weight;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Counts a request that was taken out of the queue, letting the producers
+   * waiting for room try again.
+   */
+  public void dequeued(Request request) {
+    if (!this.isBounded()) {
+      return;
+    }
+    this.lock.lock();
+    try {
+      this.queuedRequests = Math.max(this.queuedRequests - 1, 0);
+      this.queuedWeight = Math.max(this.queuedWeight - request.getWeight(), 0);
+      this.notFull.signalAll();
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  public int getMaxRequests() {
+    return this.maxRequests;
+  }
+
+  public long getMaxWeight() {
+    return this.maxWeight;
+  }
+
+  /**
+   * Returns how many requests wait in the queue. It is only counted when the
+   * queue is bounded.
+   */
+  public int getQueuedRequests() {
+    this.lock.lock();
+    try {
+      return this.queuedRequests;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the total weight of the requests that wait in the queue. It is
+   * only counted when the queue is bounded.
+   */
+  public long getQueuedWeight() {
+    this.lock.lock();
+    try {
+      return this.queuedWeight;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Returns how many times a producer had to wait for room in the queue.
+   */
+  public long getThrottledEnqueues() {
+    return this.throttled.get();
+  }
+
+  /**
+   * Returns how many requests were rejected because the queue stayed full.
+   */
+  public long getRejectedRequests() {
+    return this.rejected.get();
+  }
+}
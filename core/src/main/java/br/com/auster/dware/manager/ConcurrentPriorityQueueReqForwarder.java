@@ -0,0 +1,545 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.manager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+import org.w3c.dom.Element;
+
+import br.com.auster.common.util.I18n;
+import br.com.auster.common.xml.DOMUtils;
+import br.com.auster.dware.graph.Request;
+
+/**
+ * <p>
+ * Priority queue forwarder that does not serialize producers and graph groups
+ * behind a single lock. It follows the same policy of
+ * {@link PriorityQueueReqForwarder}: requests are kept in queues separated by
+ * weight, a graph group gets a request from the heaviest queue whose requests
+ * fit in the weight it asked, and if none fits it gets one from the lightest
+ * queue that is not empty.
+ * </p>
+ * <p>
+ * The number of queues (bands) is fixed by configuration and each one is a
+ * lock-free queue with its own counters. The weight limits of the bands are
+ * recalculated from a sample of the last weights added, so that every band
+ * receives about the same total weight, and published at once; requests
+ * already queued are not moved.
+ * </p>
+ * <p>
+ * Graph groups are woken up one at a time through their own
+ * {@link GroupSignal}, so adding a request wakes a single waiting group.
+ * </p>
+ * 
+ * @version $Id$
+ */
+public class ConcurrentPriorityQueueReqForwarder implements GroupSignallingReqForwarder {
+
+  /**
+   * {@value} is the number of weight bands used to store the requests. The
+   * default is 8.
+   */
+  public static final String BANDS_ATTR = "bands";
+
+  private static final int DEFAULT_BANDS = 8;
+
+  // number of weights kept to calculate the band limits
+  private static final int SAMPLE_SIZE = 1024;
+
+  // minimum number of new requests between two band recalculations
+  private static final int MIN_NEW_REQ_FOR_MANAGE = 256;
+
+  /* when the number of new req is 10% of total manage bands. */
+  private static final float PERCENT_FOR_MANAGE = 0.10f;
+
+  private static final Logger log = Logger.getLogger(ConcurrentPriorityQueueReqForwarder.class);
+
+  // using PriorityQueueReqForwarder i18n resource
+  private final I18n i18n = I18n.getInstance(PriorityQueueReqForwarder.class);
+
+  private volatile Band[] bands;
+
+  // limits[i] is the upper (exclusive) weight of band i
+  private volatile long[] limits;
+
+  // number of requests in all bands
+  private final AtomicInteger numReq = new AtomicInteger();
+
+  // number of requests added since the last band recalculation
+  private final AtomicInteger numNewReq = new AtomicInteger();
+
+  // ring with the weights of the last requests added
+  private final AtomicLongArray sample = new AtomicLongArray(SAMPLE_SIZE);
+
+  private final AtomicLong sampleCount = new AtomicLong();
+
+  // only one thread recalculates the bands at a time
+  private final ReentrantLock manageLock = new ReentrantLock();
+
+  // the checkpoint lookup and the registration of a request are atomic
+  private final ReentrantLock loadLock = new ReentrantLock();
+
+  // signals of the graph groups waiting for requests
+  private final Queue parked = new ConcurrentLinkedQueue();
+
+  // kept for mediators that do not register graph groups individually
+  private final ReentrantLock legacyLock = new ReentrantLock();
+
+  private final Condition legacyQueueNotEmpty = this.legacyLock.newCondition();
+
+  private volatile boolean legacyUsed;
+
+  private volatile boolean shutdownFlag;
+
+  // mediator instace
+  protected DataAwareManagerMediator fmediator;
+
+  /**
+   * Contructor. Creates the default number of bands.
+   */
+  public ConcurrentPriorityQueueReqForwarder(DataAwareManagerMediator dwareManMed) {
+    if (dwareManMed != null) {
+      dwareManMed.registerReqForwarder(this);
+      this.fmediator = dwareManMed;
+    }
+    createBands(DEFAULT_BANDS);
+  }
+
+  /**
+   * Configures the number of bands. This must be done before any request is
+   * added.
+   * 
+   * @see br.com.auster.dware.manager.ReqForwarderInterface#configure(org.w3c.dom.Element)
+   */
+  public void configure(Element config) {
+    if (config != null) {
+      int count = DOMUtils.getIntAttribute(config, BANDS_ATTR, false);
+      if (count > 0 && count != this.bands.length && this.numReq.get() == 0) {
+        createBands(count);
+      }
+    }
+    log.info(i18n.getString("concurrentForwarderBands", new Integer(this.bands.length)));
+  }
+
+  private void createBands(int count) {
+    Band[] newBands = new Band[count];
+    for (int i = 0; i < count; i++) {
+      newBands[i] = new Band();
+    }
+    this.limits = new long[0];
+    this.bands = newBands;
+  }
+
+  /**
+   * Returns the number of bands used by this forwarder.
+   */
+  public int getBandCount() {
+    return this.bands.length;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public GroupSignal registerGroup(String groupName) {
+    return new GroupSignal(groupName, this, this.parked);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void unregisterGroup(String groupName) {
+    for (Iterator it = this.parked.iterator(); it.hasNext();) {
+      if (((GroupSignal) it.next()).getGroupName().equals(groupName)) {
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void addNewReq(Request newReq) {
+    this.loadLock.lock();
+    try {
+      if (!checkIfNotLoaded(newReq)) {
+        return;
+      }
+      // the mediator must know the request before any graph group can take it
+      if (this.fmediator != null) {
+        this.fmediator.reqQueued(newReq);
+      }
+    } finally {
+      this.loadLock.unlock();
+    }
+    addReq(newReq);
+    signalOne();
+    if (this.fmediator != null) {
+      this.fmediator.reqAvailable(newReq);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void addRetryReq(Request req) {
+    this.loadLock.lock();
+    try {
+      if (!checkIfNotLoaded(req)) {
+        return;
+      }
+      if (this.fmediator != null) {
+        this.fmediator.reqRequeued(req);
+      }
+    } finally {
+      this.loadLock.unlock();
+    }
+    addReq(req);
+    signalOne();
+    if (this.fmediator != null) {
+      this.fmediator.reqAvailable(req);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void addNewReqs(Collection<Request> newReqs) {
+    this.addReqs(newReqs, false);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void addRetryReqs(Collection<Request> reqs) {
+    this.addReqs(reqs, true);
+  }
+
+  private void addReqs(Collection<Request> newReqs, boolean retry) {
+    List<Request> reqs;
+    if (this.fmediator == null) {
+      reqs = new ArrayList<Request>(newReqs);
+    } else {
+      this.loadLock.lock();
+      try {
+        reqs = this.fmediator.filterNotLoaded(newReqs);
+        if (retry) {
+          for (Request req : reqs) {
+            this.fmediator.reqRequeued(req);
+          }
+        } else if (!reqs.isEmpty()) {
+          this.fmediator.reqsQueued(reqs);
+        }
+      } finally {
+        this.loadLock.unlock();
+      }
+      if (reqs.size() < newReqs.size()) {
+        log.warn(i18n.getString("reqsAlreadyLoaded", Integer.toString(newReqs.size() - reqs.size()),
+                                Integer.toString(newReqs.size())));
+      }
+    }
+    for (Request req : reqs) {
+      putReq(req);
+    }
+    if (!this.shutdownFlag && this.numNewReq.get() > Math.max(MIN_NEW_REQ_FOR_MANAGE, 
+                                                              Math.round(PERCENT_FOR_MANAGE * this.numReq.get()))) {
+      manageBands();
+    }
+    // wake up to one parked group per request
+    for (int i = 0; i < reqs.size(); i++) {
+      if (!signalOne()) {
+        break;
+      }
+    }
+    if (this.fmediator != null && !reqs.isEmpty()) {
+      this.fmediator.reqsAvailable(reqs);
+    }
+  }
+
+  /*
+   * Checks if a request was not already loaded to this queue.
+   */
+  private boolean checkIfNotLoaded(Request req) {
+    if (this.fmediator != null && this.fmediator.checkIfReqLoaded(req)) {
+      log.warn(i18n.getString("reqAlreadyLoaded", req.getId()));
+      return false;
+    }
+    return true;
+  }
+
+  /*
+   * Stores the request in its band and recalculates the bands if needed.
+   */
+  private void addReq(Request req) {
+    putReq(req);
+    if (!this.shutdownFlag && this.numNewReq.get() > Math.max(MIN_NEW_REQ_FOR_MANAGE, 
+                                                              Math.round(PERCENT_FOR_MANAGE * this.numReq.get()))) {
+      manageBands();
+    }
+  }
+
+  /*
+   * Stores the request in its band.
+   */
+  private void putReq(Request req) {
+    final long weight = req.getCost();
+    this.bands[getBandIndex(this.limits, weight)].put(req, weight);
+    this.numReq.incrementAndGet();
+    this.sample.set((int) (this.sampleCount.getAndIncrement() % SAMPLE_SIZE), weight);
+    this.numNewReq.incrementAndGet();
+  }
+
+  /*
+   * Returns the band where a request with the given weight must be stored.
+   */
+  private static int getBandIndex(long[] bandLimits, long weight) {
+    int low = 0;
+    int high = bandLimits.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (weight < bandLimits[mid]) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+
+  /*
+   * Wakes up one waiting graph group. Returns false if no group was parked.
+   */
+  private boolean signalOne() {
+    GroupSignal signal = (GroupSignal) this.parked.poll();
+    if (signal != null) {
+      signal.signal();
+    }
+    if (this.legacyUsed) {
+      this.legacyLock.lock();
+      try {
+        this.legacyQueueNotEmpty.signal();
+      } finally {
+        this.legacyLock.unlock();
+      }
+    }
+    return signal != null;
+  }
+
+  /*
+   * Recalculates the band limits so that each band gets about the same total
+   * weight of the sampled requests. Skipped if another thread is already doing
+   * it.
+   */
+  private void manageBands() {
+    if (!this.manageLock.tryLock()) {
+      return;
+    }
+    try {
+      this.numNewReq.set(0);
+      final Band[] current = this.bands;
+      final int count = (int) Math.min(this.sampleCount.get(), SAMPLE_SIZE);
+      if (count == 0 || current.length == 1) {
+        return;
+      }
+      long[] weights = new long[count];
+      long totalWei = 0;
+      for (int i = 0; i < count; i++) {
+        weights[i] = this.sample.get(i);
+        totalWei += weights[i];
+      }
+      Arrays.sort(weights);
+
+      long[] newLimits = new long[current.length - 1];
+      long accumulated = 0;
+      int pos = 0;
+      for (int i = 0; i < newLimits.length; i++) {
+        final double target = (double) totalWei * (i + 1) / current.length;
+        while (pos < count - 1 && accumulated + weights[pos] <= target) {
+          accumulated += weights[pos++];
+        }
+        // requests at least as heavy as this go to the next band
+        newLimits[i] = Math.max(weights[pos], i == 0 ? 0 : newLimits[i - 1]);
+      }
+      this.limits = newLimits;
+
+      if (log.isDebugEnabled()) {
+        StringBuffer sb = new StringBuffer("Concurrent priority queue bands:");
+        for (int i = 0; i < current.length; i++) {
+          sb.append(" [");
+          sb.append(i < newLimits.length ? Long.toString(newLimits[i]) : "-");
+          sb.append(" W:");
+          sb.append(current[i].totalWeight.get());
+          sb.append(" size:");
+          sb.append(current[i].size.get());
+          sb.append("]");
+        }
+        log.debug(sb.toString());
+      }
+    } finally {
+      this.manageLock.unlock();
+    }
+  }
+
+  /**
+   * Returns the request from the band with the greatest total weight whose
+   * requests fit in <code>maxWeight</code>. If no band fits, returns a
+   * request from the lightest band that is not empty. Therefore, it will throw
+   * <code>NoSuchElementException</code> only when there isn't any element
+   * avaiable.
+   * 
+   * @param maxWeight
+   *          maximum weight the request can have.
+   * @exception NoSuchElementException
+   *              when all the bands are empty.
+   */
+  public Request chooseNextRequest(long maxWeight) throws NoSuchElementException {
+    final Band[] current = this.bands;
+    final long[] currentLimits = this.limits;
+    Request req = null;
+
+    if (current.length > 1 && currentLimits.length > 0) {
+      // order bands by total weight, heaviest first
+      final int[] order = new int[current.length];
+      final long[] weights = new long[current.length];
+      for (int i = 0; i < current.length; i++) {
+        long wei = current[i].totalWeight.get();
+        int j = i;
+        while (j > 0 && weights[j - 1] < wei) {
+          weights[j] = weights[j - 1];
+          order[j] = order[j - 1];
+          j--;
+        }
+        weights[j] = wei;
+        order[j] = i;
+      }
+      for (int i = 0; i < order.length && req == null; i++) {
+        final int index = order[i];
+        if (current[index].size.get() == 0) {
+          continue;
+        }
+        // the last band has no upper limit, so use its lower one
+        final long limit = currentLimits[Math.min(index, currentLimits.length - 1)];
+        if (maxWeight > limit) {
+          req = current[index].get();
+        }
+      }
+    }
+
+    // no band fits, so use the "least worse"
+    for (int i = 0; i < current.length && req == null; i++) {
+      req = current[i].get();
+    }
+
+    if (req == null) {
+      throw new NoSuchElementException();
+    }
+    this.numReq.decrementAndGet();
+    return req;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public int size() {
+    return this.numReq.get();
+  }
+
+  /**
+   * Return the weight that the priority queue wish that someone ask him: the
+   * average weight of the band with the greatest total weight.
+   * 
+   * @return the weight that the priority queue wish that someone ask him.
+   */
+  public long getWishWeight() {
+    final Band[] current = this.bands;
+    long maxTotal = -1;
+    long wish = 0;
+    for (int i = 0; i < current.length; i++) {
+      final int size = current[i].size.get();
+      final long total = current[i].totalWeight.get();
+      if (size > 0 && total > maxTotal) {
+        maxTotal = total;
+        wish = Math.round((double) total / size);
+      }
+    }
+    return wish;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Lock getSyncObj() {
+    this.legacyUsed = true;
+    return this.legacyLock;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Condition getQueueNotEmptyCondition() {
+    this.legacyUsed = true;
+    return this.legacyQueueNotEmpty;
+  }
+
+  /**
+   * Stops recalculating the bands.
+   */
+  public void shutdown() {
+    this.shutdownFlag = true;
+  }
+
+  /*
+   * One weight band: a lock-free queue and its counters.
+   */
+  private static final class Band {
+
+    private final Queue queue = new ConcurrentLinkedQueue();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final AtomicLong totalWeight = new AtomicLong();
+
+    void put(Request req, long weight) {
+      this.totalWeight.addAndGet(weight);
+      this.size.incrementAndGet();
+      this.queue.offer(req);
+    }
+
+    Request get() {
+      Request req = (Request) this.queue.poll();
+      if (req != null) {
+        this.size.decrementAndGet();
+        this.totalWeight.addAndGet(-req.getCost());
+      }
+      return req;
+    }
+  }
+}
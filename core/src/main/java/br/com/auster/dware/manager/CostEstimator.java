@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.manager;
+
+import org.w3c.dom.Element;
+
+import br.com.auster.dware.graph.Request;
+
+/**
+ * Estimates how costly a request is to process, so that the request
+ * forwarders and the graph groups do not have to rely only on the raw weight
+ * of the requests.
+ * 
+ * <p>
+ * The graph manager asks for the cost once, when the request is queued, and
+ * keeps it in the request (see {@link Request#getCost()}). The estimators are
+ * told how long each request took to be processed, so they may learn from
+ * it. The costs must be given in the same unit of the weights, so that the
+ * thresholds and budgets already configured keep their meaning.
+ * </p>
+ * 
+ * Implementations must have a public constructor without arguments and must
+ * be thread-safe.
+ * 
+ * @version $Id$
+ */
+public interface CostEstimator {
+
+  /**
+   * Configures this estimator.
+   * 
+   * @param config
+   *          the <code>cost-estimator</code> element.
+   */
+  public void configure(Element config);
+
+  /**
+   * Estimates the cost of processing the request.
+   */
+  public long estimate(Request request);
+
+  /**
+   * Tells that a request was processed successfully.
+   * 
+   * @param request
+   *          the request processed.
+   * @param groupName
+   *          the name of the graph group that processed it.
+   * @param millis
+   *          how long, in milliseconds, the processing took.
+   */
+  public void observe(Request request, String groupName, long millis);
+}
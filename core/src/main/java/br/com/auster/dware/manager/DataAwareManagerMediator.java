@@ -17,6 +17,9 @@
  */
 package br.com.auster.dware.manager;
 
+import java.util.Collection;
+import java.util.List;
+
 import br.com.auster.dware.graph.Request;
 import br.com.auster.dware.manager.checkpoint.AbstractCheckpoint;
 import br.com.auster.dware.monitor.manager.JMXGraphGroupCounter;
@@ -80,6 +83,18 @@ public interface DataAwareManagerMediator {
    */
   public void reqFailed(Request req, String graphName, Throwable error);
 
+  /**
+   * This must be called when some queued request was lost before being
+   * processed, so it can never be processed. It fails for good, without being
+   * requeued.
+   * 
+   * @param req
+   *          what is known of the request.
+   * @param error
+   *          why it was lost.
+   */
+  public void reqLost(Request req, Throwable error);
+
   /**
    * This must be called when some request was enqueued.
    * 
@@ -87,6 +102,15 @@ public interface DataAwareManagerMediator {
    *          request object.
    */
   public void reqQueued(Request req);
+
+  /**
+   * This must be called when a batch of requests was enqueued. It has the
+   * same effect of calling {@link #reqQueued(Request)} for each request.
+   * 
+   * @param reqs
+   *          request objects.
+   */
+  public void reqsQueued(Collection<Request> reqs);
   
   /**
    * This must be called when some request was requeued.
@@ -96,6 +120,25 @@ public interface DataAwareManagerMediator {
    */
   public void reqRequeued(Request req);
 
+  /**
+   * This must be called after some request was put in the queue, so that the
+   * graph groups waiting for a suitable request may try again at once.
+   * 
+   * @param req
+   *          request object.
+   */
+  public void reqAvailable(Request req);
+
+  /**
+   * This must be called after a batch of requests was put in the queue. It
+   * has the same effect of calling {@link #reqAvailable(Request)} for each
+   * request.
+   * 
+   * @param reqs
+   *          request objects.
+   */
+  public void reqsAvailable(Collection<Request> reqs);
+
   /**
    * Check if the request has been already loaded.
    * 
@@ -104,6 +147,15 @@ public interface DataAwareManagerMediator {
    */
   public boolean checkIfReqLoaded(Request req);
 
+  /**
+   * Returns the requests of the collection that have not been loaded yet,
+   * checking all of them at once.
+   * 
+   * @param reqs
+   *          request objects.
+   */
+  public List<Request> filterNotLoaded(Collection<Request> reqs);
+
   /**
    * Must handle when some graph group stops to act for some reason.
    * 
@@ -119,4 +171,9 @@ public interface DataAwareManagerMediator {
   
   public JMXGraphGroupCounter getJMXCounters();
 
+  /**
+   * Returns how many requests are waiting in the queue.
+   */
+  public int getQueueSize();
+
 }
@@ -17,9 +17,16 @@
  */
 package br.com.auster.dware.manager;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -44,17 +51,24 @@ public class DataAwareManagerWishMediator implements DataAwareManagerMediator {
 
   private AbstractCheckpoint chkPt;
 
+  private AdmissionControl admission = new AdmissionControl();
+
+  private CostEstimator costEstimator;
+
+  private RetryScheduler retries;
+
   private GraphManager gmanager;
 
   private JMXGraphGroupCounter counters;
   
-  private ThreadGroup requeueWorkersGroup = new ThreadGroup("RequeueWorkers");
-  
   // number of requests by transaction
   private final Map<String,RequestCounter> reqCounterByTransaction = new HashMap<String,RequestCounter>();
   
   // used to synchronize access to numReqByTransaction
   protected final Lock reqCounterLock = new ReentrantLock();
+
+  // graph groups told about new requests
+  private final List<GraphGroup> graphGroups = new CopyOnWriteArrayList<GraphGroup>();
   
   
   /**
@@ -94,6 +108,39 @@ public class DataAwareManagerWishMediator implements DataAwareManagerMediator {
     chkPt = _chkPt;
   }
 
+  /**
+   * Register the <code>AdmissionControl</code> that counts the requests in
+   * the queue.
+   * 
+   * @param admission
+   *          <code>AdmissionControl</code> object.
+   */
+  public void registerAdmissionControl(AdmissionControl admission) {
+    this.admission = admission;
+  }
+
+  /**
+   * Register the <code>CostEstimator</code> that learns from the processing
+   * times of the requests.
+   * 
+   * @param estimator
+   *          <code>CostEstimator</code> object.
+   */
+  public void registerCostEstimator(CostEstimator estimator) {
+    this.costEstimator = estimator;
+  }
+
+  /**
+   * Register the <code>RetryScheduler</code> that requeues the failed
+   * requests.
+   * 
+   * @param retries
+   *          <code>RetryScheduler</code> object.
+   */
+  public void registerRetryScheduler(RetryScheduler retries) {
+    this.retries = retries;
+  }
+
   /**
    * Register a <code>GraphGroup</code> object to this mediator.
    * 
@@ -101,6 +148,11 @@ public class DataAwareManagerWishMediator implements DataAwareManagerMediator {
    *          <code>GraphGroup</code> object.
    */
   public void registerGraphGroup(GraphGroup graphGp) {
+    this.graphGroups.add(graphGp);
+    if (this.reqFwd instanceof GroupSignallingReqForwarder) {
+      graphGp.setRequestSyncObj(((GroupSignallingReqForwarder) this.reqFwd).registerGroup(graphGp.getName()));
+      return;
+    }
     graphGp.setRequestSyncObj(this.reqFwd.getSyncObj(), 
                               this.reqFwd.getQueueNotEmptyCondition());
   }
@@ -112,6 +164,14 @@ public class DataAwareManagerWishMediator implements DataAwareManagerMediator {
    *          nome of the graph group that will be unloaded.
    */
   public void unregisterGraphGroup(String graphGpName) {
+    for (GraphGroup graphGp : this.graphGroups) {
+      if (graphGp.getName().equals(graphGpName)) {
+        this.graphGroups.remove(graphGp);
+      }
+    }
+    if (this.reqFwd instanceof GroupSignallingReqForwarder) {
+      ((GroupSignallingReqForwarder) this.reqFwd).unregisterGroup(graphGpName);
+    }
     gmanager.unloadGraphGroup(graphGpName);
   }
 
@@ -122,18 +182,35 @@ public class DataAwareManagerWishMediator implements DataAwareManagerMediator {
    *          weight allowed.
    */
   public Request getNextRequest(long maxWeight) throws NoSuchElementException {
-
-    return reqFwd.chooseNextRequest(maxWeight);
+    Request req = reqFwd.chooseNextRequest(maxWeight);
+    if (req != null) {
+      this.admission.dequeued(req);
+    }
+    return req;
   }
 
   /**
    * Return the weight that the request forwarder wish to send.
    */
   public long getWishWeight() {
-    if (reqFwd instanceof PriorityQueueReqForwarder) {
-      return ((PriorityQueueReqForwarder) reqFwd).getWishWeight();
+    return reqFwd.getWishWeight();
+  }
+
+  /**
+   * This may be called when some request finish to process successfully, to
+   * tell how long it took.
+   * 
+   * @param req
+   *          request object.
+   * @param groupName
+   *          the name of the graph group that processed it.
+   * @param millis
+   *          the processing time, in milliseconds.
+   */
+  public void reqTimed(Request req, String groupName, long millis) {
+    if (this.costEstimator != null) {
+      this.costEstimator.observe(req, groupName, millis);
     }
-    return -1;
   }
 
   /**
@@ -143,9 +220,16 @@ public class DataAwareManagerWishMediator implements DataAwareManagerMediator {
    *          request object.
    */
   public void reqProcessed(Request req) {
+    if (req instanceof RequestPart) {
+      this.gmanager.getScatterGather().partFinished((RequestPart) req, null, null, this);
+      return;
+    }
     if (chkPt != null) {
       chkPt.checkReqProcessed(req);
     }
+    if (this.retries != null) {
+      this.retries.forget(req);
+    }
     incrementReqFinishedCounter(req);
   }
 
@@ -160,23 +244,47 @@ public class DataAwareManagerWishMediator implements DataAwareManagerMediator {
    *          exception thrown.
    */
   public void reqFailed(Request req, String graph, Throwable error) {
+    if (req instanceof RequestPart) {
+      // the parent fails (and may be requeued) when all its parts finish
+      this.gmanager.getScatterGather().partFinished((RequestPart) req, graph, error, this);
+      return;
+    }
     if (chkPt != null && chkPt.checkReqFailed(req, graph, error)) {
-      synchronized (this.requeueWorkersGroup) {
-        if (this.gmanager.isShuttingDown()) {
-          // must ensure that at least one Graph will process the requeued
-          // request before dying.
-          new RequeueWorker(req, this.chkPt.getRequeueSleepTime()).requeue();
-        } else {
-          // no shutdown called, we can delegate de requeue to a separate Thread.
-          Runnable worker = new RequeueWorker(req, this.chkPt.getRequeueSleepTime());
-          new Thread(this.requeueWorkersGroup, worker).start();
-        }
+      if (this.retries == null) {
+        this.gmanager.requeue(req);
+      } else if (!this.retries.schedule(req, this.chkPt.getRequeueSleepTime())) {
+        // the transaction has no retries left
+        chkPt.checkReqGaveUp(req, graph, error);
+        incrementReqFinishedCounter(req);
       }
     } else {
+      if (this.retries != null) {
+        this.retries.forget(req);
+      }
       incrementReqFinishedCounter(req);
     }
   }
 
+  /**
+   * This must be called when some queued request was lost before being
+   * processed. It leaves the queue and fails for good.
+   * 
+   * @param req
+   *          what is known of the request.
+   * @param error
+   *          why it was lost.
+   */
+  public void reqLost(Request req, Throwable error) {
+    this.admission.dequeued(req);
+    if (chkPt != null) {
+      chkPt.checkReqGaveUp(req, null, error);
+    }
+    if (this.retries != null) {
+      this.retries.forget(req);
+    }
+    incrementReqFinishedCounter(req);
+  }
+
   /**
    * This must be called when some request was enqueued.
    * 
@@ -184,6 +292,13 @@ public class DataAwareManagerWishMediator implements DataAwareManagerMediator {
    *          request object.
    */
   public void reqQueued(Request req) {
+    req.setQueuedTime(System.nanoTime());
+    this.admission.queued(req);
+    // the parts of a request are counted once, as their parent
+    req = ScatterGather.accountable(req);
+    if (req == null) {
+      return;
+    }
     if (chkPt != null) {
       chkPt.checkReqWillBeProcessed(req);
     }
@@ -202,11 +317,106 @@ public class DataAwareManagerWishMediator implements DataAwareManagerMediator {
     }
   }
   
-  public void reqRequeued(Request req) {
+  /**
+   * This must be called when a batch of requests was enqueued. The
+   * checkpoint is updated once and the transaction counters are updated
+   * under a single lock.
+   * 
+   * @param reqs
+   *          request objects.
+   */
+  public void reqsQueued(Collection<Request> reqs) {
+    long now = System.nanoTime();
+    for (Request req : reqs) {
+      req.setQueuedTime(now);
+    }
+    this.admission.queued(reqs);
+    // the parts of a request are counted once, as their parent
+    reqs = accountable(reqs);
     if (chkPt != null) {
+      chkPt.checkReqsWillBeProcessed(reqs);
+    }
+    // count the requests of each transaction before taking the lock
+    Map<String,Integer> countByTransaction = new HashMap<String,Integer>();
+    for (Request req : reqs) {
+      Integer count = countByTransaction.get(req.getTransactionId());
+      countByTransaction.put(req.getTransactionId(), 
+                             new Integer(count == null ? 1 : count.intValue() + 1));
+    }
+    this.reqCounterLock.lock();
+    try {
+      for (Map.Entry<String,Integer> entry : countByTransaction.entrySet()) {
+        RequestCounter currentCount = this.reqCounterByTransaction.get(entry.getKey());
+        if (currentCount == null) {
+          currentCount = new RequestCounter();
+          this.reqCounterByTransaction.put(entry.getKey(), currentCount);
+        }
+        currentCount.queueCount += entry.getValue().intValue();
+      }
+    } finally {
+      this.reqCounterLock.unlock();
+    }
+  }
+  
+  public void reqRequeued(Request req) {
+    req.setQueuedTime(System.nanoTime());
+    this.admission.queued(req);
+    req = ScatterGather.accountable(req);
+    if (chkPt != null && req != null) {
       chkPt.checkReqWillBeProcessed(req);
     }
   }
+
+  /*
+   * Returns the requests the checkpoint and the counters must see, replacing
+   * the parts of split requests by their parents.
+   */
+  private static Collection<Request> accountable(Collection<Request> reqs) {
+    if (!hasParts(reqs)) {
+      return reqs;
+    }
+    List<Request> result = new ArrayList<Request>(reqs.size());
+    for (Request req : reqs) {
+      Request acc = ScatterGather.accountable(req);
+      if (acc != null) {
+        result.add(acc);
+      }
+    }
+    return result;
+  }
+
+  private static boolean hasParts(Collection<Request> reqs) {
+    for (Request req : reqs) {
+      if (req instanceof RequestPart) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Tells the graph groups that the request may be taken.
+   * 
+   * @param req
+   *          request object.
+   */
+  public void reqAvailable(Request req) {
+    for (GraphGroup graphGp : this.graphGroups) {
+      graphGp.requestQueued(req);
+    }
+  }
+
+  /**
+   * Tells the graph groups that the requests may be taken.
+   * 
+   * @param reqs
+   *          request objects.
+   */
+  public void reqsAvailable(Collection<Request> reqs) {
+    for (GraphGroup graphGp : this.graphGroups) {
+      graphGp.requestsQueued(reqs);
+    }
+  }
   
   private void incrementReqFinishedCounter(Request req) {
     this.reqCounterLock.lock();
@@ -217,6 +427,12 @@ public class DataAwareManagerWishMediator implements DataAwareManagerMediator {
       } else if (++currentCount.finishedCount == currentCount.queueCount) {
         // finished processing all requests for this queue
         this.reqCounterByTransaction.remove(req.getTransactionId());
+        if (chkPt != null) {
+          chkPt.transactionFinished(req.getTransactionId());
+        }
+        if (this.retries != null) {
+          this.retries.transactionFinished(req.getTransactionId());
+        }
         this.gmanager.queueProcessed(req.getTransactionId(), currentCount.finishedCount);
       }
     } finally {
@@ -234,16 +450,57 @@ public class DataAwareManagerWishMediator implements DataAwareManagerMediator {
     if (chkPt == null) {
       return false;
     }
+    if (req instanceof RequestPart) {
+      req = ((RequestPart) req).getParent();
+    }
     return chkPt.contains(req);
   }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<Request> filterNotLoaded(Collection<Request> reqs) {
+    if (chkPt == null) {
+      return new ArrayList<Request>(reqs);
+    }
+    if (!hasParts(reqs)) {
+      return chkPt.filterNotContained(reqs);
+    }
+    // parts are kept only if their parent was not loaded yet
+    Map<Request,Request> parents = new LinkedHashMap<Request,Request>();
+    for (Request req : reqs) {
+      Request parent = req instanceof RequestPart ? ((RequestPart) req).getParent() : req;
+      parents.put(parent, parent);
+    }
+    Set<Request> notLoaded = 
+      new HashSet<Request>(chkPt.filterNotContained(new ArrayList<Request>(parents.keySet())));
+    List<Request> result = new ArrayList<Request>(reqs.size());
+    for (Request req : reqs) {
+      Request parent = req instanceof RequestPart ? ((RequestPart) req).getParent() : req;
+      if (notLoaded.contains(parent)) {
+        result.add(req);
+      }
+    }
+    return result;
+  }
   
   public JMXGraphGroupCounter getJMXCounters() {
 	  return counters;
   }
+
+  /**
+   * {@inheritDoc}
+   */
+  public int getQueueSize() {
+    if (reqFwd == null) {
+      return 0;
+    }
+    return reqFwd.size();
+  }
   
   public void shutdown() {
-    synchronized (this.requeueWorkersGroup) {
-      this.requeueWorkersGroup.interrupt();
+    if (this.retries != null) {
+      this.retries.shutdown();
     }
   }
   
@@ -254,27 +511,4 @@ public class DataAwareManagerWishMediator implements DataAwareManagerMediator {
   }
   
   
-  private class RequeueWorker implements Runnable {
-    private Request request;
-    private long sleepTime;
-    
-    RequeueWorker(Request request, long sleepTime) {
-      this.request = request;
-      this.sleepTime = sleepTime;;
-    }
-    
-    public void run() {
-      requeue();
-    }
-    
-    public void requeue() {
-      if (this.sleepTime > 0) {
-        try {
-          Thread.sleep(this.sleepTime);
-        } catch (InterruptedException e) {}
-      }
-      gmanager.requeue(this.request);
-    }
-  }
-  
 }
@@ -113,7 +113,7 @@ public class FIFOQueueReqForwarder extends PriorityQueueReqForwarder {
     this.queueLock.lock();
     try {
       LinkedList queue;
-      SortedMap weightMap = this.queueByWeight.tailMap(new Long(newReq.getWeight()));
+      SortedMap weightMap = this.queueByWeight.tailMap(new Long(newReq.getCost()));
       if (weightMap.isEmpty()) {
         // queueByWeight is initialized with infinite upper limit, 
         // so this should never happen, but we will try to recover!
@@ -183,7 +183,7 @@ public class FIFOQueueReqForwarder extends PriorityQueueReqForwarder {
           while (it.hasNext()) {
             LinkedList queue = (LinkedList) it.next();
             if (!queue.isEmpty()) {
-              if ( ((QueuedRequest)queue.getFirst()).request.getWeight() <= desiredWeight.longValue() ) {
+              if ( ((QueuedRequest)queue.getFirst()).request.getCost() <= desiredWeight.longValue() ) {
                 next = (QueuedRequest) queue.removeFirst();
               } else {
                 hasToReturnNull = true;
@@ -204,7 +204,7 @@ public class FIFOQueueReqForwarder extends PriorityQueueReqForwarder {
             }
           }
         }
-      } else if ( ((QueuedRequest)myQueue.getFirst()).request.getWeight() <= desiredWeight.longValue() ) {
+      } else if ( ((QueuedRequest)myQueue.getFirst()).request.getCost() <= desiredWeight.longValue() ) {
         // my queue is not empty yet, so request must be fetched from here
         // ...but only if it respects the desired weight limit
         next = (QueuedRequest) myQueue.removeFirst();
@@ -327,7 +327,7 @@ public class FIFOQueueReqForwarder extends PriorityQueueReqForwarder {
       QueuedRequest reqFrom = (QueuedRequest) itFrom.next();
       
       // first, discard request if it doesn't attend to specified weight
-      long weightFrom = reqFrom.request.getWeight();
+      long weightFrom = reqFrom.request.getCost();
       if ( (greaterEquals && weightFrom < weight) ||
           (!greaterEquals && weightFrom > weight) ) {
         continue;
@@ -0,0 +1,504 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.manager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import br.com.auster.common.jmx.AusterManagementServices;
+import br.com.auster.common.util.I18n;
+import br.com.auster.common.xml.DOMUtils;
+import br.com.auster.dware.graph.Request;
+
+/**
+ * <p>
+ * Request forwarder that shares the graphs among the transactions, so that a
+ * huge transaction does not starve a small one. The requests of each
+ * transaction (see {@link Request#getTransactionId()}) are kept in their own
+ * {@link PriorityQueueReqForwarder}, which still chooses the request that best
+ * fits the weight asked by the graph group.
+ * </p>
+ * <p>
+ * The transaction that gives the next request is chosen by start-time fair
+ * queuing: each transaction has a virtual time that advances by the weight of
+ * the requests it gave divided by its share, and the one with the smallest
+ * virtual time goes first. So, while they have requests, transactions
+ * receive weight in proportion to their shares. A transaction that had no
+ * requests does not accumulate credit: it starts from the current virtual time.
+ * </p>
+ * <p>
+ * Transactions of a higher priority class always go before the ones of lower
+ * classes. To avoid starvation, a transaction waiting longer than the aging
+ * period is promoted one class for each period it waited.
+ * </p>
+ * 
+ * Configuration:
+ * <pre>
+ * &lt;request-forwarder class-name="br.com.auster.dware.manager.FairShareReqForwarder"
+ *                    aging="300000"&gt;
+ *   &lt;transaction pattern="URGENT-.*" share="4" priority="1"/&gt;
+ *   &lt;transaction pattern="CYCLE-.*" share="1"/&gt;
+ * &lt;/request-forwarder&gt;
+ * </pre>
+ * The first pattern that matches the whole transaction id gives its share and
+ * priority; the others have share 1 and priority 0. The aging period is in
+ * milliseconds; 0, the default, disables aging.
+ * 
+ * @version $Id$
+ */
+public class FairShareReqForwarder implements ReqForwarderInterface {
+
+  /**
+   * {@value}
+   */
+  public static final String TRANSACTION_ELEMENT = "transaction";
+  /**
+   * {@value} - regular expression matched against the transaction id.
+   */
+  public static final String PATTERN_ATTR = "pattern";
+  /**
+   * {@value} - relative part of the graphs given to the transaction.
+   */
+  public static final String SHARE_ATTR = "share";
+  /**
+   * {@value} - higher classes are served first.
+   */
+  public static final String PRIORITY_ATTR = "priority";
+  /**
+   * {@value} - in milliseconds.
+   */
+  public static final String AGING_ATTR = "aging";
+
+  private static final Logger log = Logger.getLogger(FairShareReqForwarder.class);
+
+  // using PriorityQueueReqForwarder i18n resource
+  private final I18n i18n = I18n.getInstance(PriorityQueueReqForwarder.class);
+
+  private final ReentrantLock queueLock = new ReentrantLock();
+
+  private final Condition queueNotEmptyCondition = this.queueLock.newCondition();
+
+  // Map<String, Flow> of the transactions with queued requests
+  private final Map flows = new HashMap();
+
+  // List<Object[]{Pattern, Integer share, Integer priority}>
+  private final List rules = new ArrayList();
+
+  private long agingNanos = 0;
+
+  // virtual time of the last request given
+  private double virtualTime = 0;
+
+  private int numReq = 0;
+
+  // mediator instace
+  protected DataAwareManagerMediator fmediator;
+
+  /**
+   * Contructor.
+   */
+  public FairShareReqForwarder(DataAwareManagerMediator dwareManMed) {
+    if (dwareManMed != null) {
+      dwareManMed.registerReqForwarder(this);
+      this.fmediator = dwareManMed;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void configure(Element config) {
+    if (config == null) {
+      return;
+    }
+    String aging = DOMUtils.getAttribute(config, AGING_ATTR, false);
+    if (aging != null && aging.length() > 0) {
+      this.agingNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(aging));
+    }
+    NodeList list = DOMUtils.getElements(config, TRANSACTION_ELEMENT);
+    for (int i = 0; i < list.getLength(); i++) {
+      Element rule = (Element) list.item(i);
+      String pattern = DOMUtils.getAttribute(rule, PATTERN_ATTR, true);
+      int share = DOMUtils.getIntAttribute(rule, SHARE_ATTR, false);
+      int priority = DOMUtils.getIntAttribute(rule, PRIORITY_ATTR, false);
+      this.rules.add(new Object[] { Pattern.compile(pattern), new Integer(Math.max(share, 1)),
+                                    new Integer(priority) });
+      log.info(i18n.getString("fairShareRule", pattern, Integer.toString(Math.max(share, 1)),
+                              Integer.toString(priority)));
+    }
+    AusterManagementServices.registerMBean(true, config, this.getClass(), this);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void addNewReq(Request newReq) {
+    this.queueLock.lock();
+    try {
+      if (checkIfNotLoaded(newReq)) {
+        this.addReq(newReq);
+        if (this.fmediator != null) {
+          this.fmediator.reqQueued(newReq);
+        }
+        this.queueNotEmptyCondition.signal();
+        if (this.fmediator != null) {
+          this.fmediator.reqAvailable(newReq);
+        }
+      }
+    } finally {
+      this.queueLock.unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void addRetryReq(Request req) {
+    this.queueLock.lock();
+    try {
+      if (checkIfNotLoaded(req)) {
+        this.addReq(req);
+        if (this.fmediator != null) {
+          this.fmediator.reqRequeued(req);
+        }
+        this.queueNotEmptyCondition.signal();
+        if (this.fmediator != null) {
+          this.fmediator.reqAvailable(req);
+        }
+      }
+    } finally {
+      this.queueLock.unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void addNewReqs(Collection<Request> newReqs) {
+    this.addReqs(newReqs, false);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void addRetryReqs(Collection<Request> reqs) {
+    this.addReqs(reqs, true);
+  }
+
+  private void addReqs(Collection<Request> newReqs, boolean retry) {
+    this.queueLock.lock();
+    try {
+      // checked under the lock, so a concurrent batch can't load them too
+      List<Request> reqs;
+      if (this.fmediator == null) {
+        reqs = new ArrayList<Request>(newReqs);
+      } else {
+        reqs = this.fmediator.filterNotLoaded(newReqs);
+        if (reqs.size() < newReqs.size()) {
+          log.warn(i18n.getString("reqsAlreadyLoaded", Integer.toString(newReqs.size() - reqs.size()),
+                                  Integer.toString(newReqs.size())));
+        }
+      }
+      if (reqs.isEmpty()) {
+        return;
+      }
+      if (this.fmediator != null) {
+        if (retry) {
+          for (Request req : reqs) {
+            this.fmediator.reqRequeued(req);
+          }
+        } else {
+          this.fmediator.reqsQueued(reqs);
+        }
+      }
+      for (Request req : reqs) {
+        this.addReq(req);
+      }
+      this.queueNotEmptyCondition.signalAll();
+      if (this.fmediator != null) {
+        this.fmediator.reqsAvailable(reqs);
+      }
+    } finally {
+      this.queueLock.unlock();
+    }
+  }
+
+  private boolean checkIfNotLoaded(Request req) {
+    if (this.fmediator != null && this.fmediator.checkIfReqLoaded(req)) {
+      log.warn(i18n.getString("reqAlreadyLoaded", req.getId()));
+      return false;
+    }
+    return true;
+  }
+
+  /*
+   * Stores the request in the queue of its transaction. Must hold the lock.
+   */
+  private void addReq(Request req) {
+    Flow flow = (Flow) this.flows.get(req.getTransactionId());
+    if (flow == null) {
+      flow = this.newFlow(req.getTransactionId());
+      this.flows.put(flow.transactionId, flow);
+    }
+    flow.queue.addReq(req);
+    flow.queuedWeight += req.getCost();
+    this.numReq++;
+  }
+
+  private Flow newFlow(String transactionId) {
+    int share = 1;
+    int priority = 0;
+    for (Iterator it = this.rules.iterator(); it.hasNext();) {
+      Object[] rule = (Object[]) it.next();
+      if (transactionId != null && ((Pattern) rule[0]).matcher(transactionId).matches()) {
+        share = ((Integer) rule[1]).intValue();
+        priority = ((Integer) rule[2]).intValue();
+        break;
+      }
+    }
+    // no credit for the time it had no requests
+    return new Flow(transactionId, share, priority, this.virtualTime);
+  }
+
+  /**
+   * Chooses the transaction whose turn it is and, among its requests, the one
+   * that best fits the weight asked.
+   * 
+   * @exception NoSuchElementException
+   *              when there are no requests.
+   */
+  public Request chooseNextRequest(long maxWeight) throws NoSuchElementException {
+    this.queueLock.lock();
+    try {
+      Flow flow = this.nextFlow(System.nanoTime());
+      if (flow == null) {
+        throw new NoSuchElementException();
+      }
+      Request req = flow.queue.chooseNextRequest(maxWeight);
+      this.numReq--;
+      // the virtual time follows the start of the requests given
+      this.virtualTime = Math.max(this.virtualTime, flow.startTime);
+      flow.taken(req, this.virtualTime);
+      if (flow.queue.size() == 0) {
+        this.flows.remove(flow.transactionId);
+      }
+      return req;
+    } finally {
+      this.queueLock.unlock();
+    }
+  }
+
+  /*
+   * The transaction of the highest class, after aging, with the smallest
+   * virtual time. Must hold the lock.
+   */
+  private Flow nextFlow(long now) {
+    Flow best = null;
+    int bestPriority = 0;
+    for (Iterator it = this.flows.values().iterator(); it.hasNext();) {
+      Flow flow = (Flow) it.next();
+      int priority = flow.getPriority(now, this.agingNanos);
+      if (best == null || priority > bestPriority
+          || (priority == bestPriority && flow.startTime < best.startTime)) {
+        best = flow;
+        bestPriority = priority;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public int size() {
+    this.queueLock.lock();
+    try {
+      return this.numReq;
+    } finally {
+      this.queueLock.unlock();
+    }
+  }
+
+  /**
+   * Return the weight that the transaction whose turn it is wishes to send.
+   */
+  public long getWishWeight() {
+    this.queueLock.lock();
+    try {
+      Flow flow = this.nextFlow(System.nanoTime());
+      return (flow == null) ? 0 : flow.queue.getWishWeight();
+    } finally {
+      this.queueLock.unlock();
+    }
+  }
+
+  /**
+   * Returns, for each transaction with queued requests, a line with its share,
+   * priority, queued requests and weight, throughput, in requests per second,
+   * and the estimated time, in seconds, to give all its requests.
+   */
+  public List<String> getTransactionStats() {
+    List<String> stats = new ArrayList<String>();
+    this.queueLock.lock();
+    try {
+      long now = System.nanoTime();
+      for (Iterator it = this.flows.values().iterator(); it.hasNext();) {
+        Flow flow = (Flow) it.next();
+        double throughput = flow.getThroughput(now);
+        stats.add(flow.transactionId + ": share=" + flow.share + " priority="
+                  + flow.getPriority(now, this.agingNanos) + " queued=" + flow.queue.size()
+                  + " weight=" + flow.queuedWeight + " throughput=" + throughput + "/s eta="
+                  + (throughput > 0 ? Math.round(flow.queue.size() / throughput) + "s" : "?"));
+      }
+    } finally {
+      this.queueLock.unlock();
+    }
+    return stats;
+  }
+
+  /**
+   * Returns how many requests per second the transaction gave since its
+   * requests were first queued, or 0 if it has no queued requests.
+   */
+  public double getTransactionThroughput(String transactionId) {
+    this.queueLock.lock();
+    try {
+      Flow flow = (Flow) this.flows.get(transactionId);
+      return (flow == null) ? 0 : flow.getThroughput(System.nanoTime());
+    } finally {
+      this.queueLock.unlock();
+    }
+  }
+
+  /**
+   * Returns the estimated time, in seconds, to give all the requests of the
+   * transaction at its current throughput, or -1 if it is not known yet.
+   */
+  public long getTransactionEta(String transactionId) {
+    this.queueLock.lock();
+    try {
+      Flow flow = (Flow) this.flows.get(transactionId);
+      if (flow == null) {
+        return 0;
+      }
+      double throughput = flow.getThroughput(System.nanoTime());
+      return throughput > 0 ? Math.round(flow.queue.size() / throughput) : -1;
+    } finally {
+      this.queueLock.unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Lock getSyncObj() {
+    return this.queueLock;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Condition getQueueNotEmptyCondition() {
+    return this.queueNotEmptyCondition;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void shutdown() {
+    this.queueLock.lock();
+    try {
+      for (Iterator it = this.flows.values().iterator(); it.hasNext();) {
+        ((Flow) it.next()).queue.shutdown();
+      }
+    } finally {
+      this.queueLock.unlock();
+    }
+  }
+
+  /**
+   * The requests of one transaction.
+   */
+  private static final class Flow {
+
+    final String transactionId;
+
+    final int share;
+
+    final int priority;
+
+    // weight-aware queue of the requests of this transaction
+    final PriorityQueueReqForwarder queue = new PriorityQueueReqForwarder(null);
+
+    // virtual time at which this transaction may give its next request
+    double startTime;
+
+    long queuedWeight = 0;
+
+    // when it was created and when it last gave a request
+    final long created = System.nanoTime();
+
+    long lastTaken = this.created;
+
+    long taken = 0;
+
+    Flow(String transactionId, int share, int priority, double startTime) {
+      this.transactionId = transactionId;
+      this.share = share;
+      this.priority = priority;
+      this.startTime = startTime;
+    }
+
+    /*
+     * Advances the virtual time of this transaction by the weight of the
+     * request given, which started at the given virtual time.
+     */
+    void taken(Request req, double virtualTime) {
+      this.startTime = virtualTime + (double) Math.max(req.getCost(), 1) / this.share;
+      this.queuedWeight -= req.getCost();
+      this.lastTaken = System.nanoTime();
+      this.taken++;
+    }
+
+    int getPriority(long now, long agingNanos) {
+      if (agingNanos <= 0) {
+        return this.priority;
+      }
+      return this.priority + (int) Math.min((now - this.lastTaken) / agingNanos, 1000);
+    }
+
+    double getThroughput(long now) {
+      long elapsed = now - this.created;
+      return elapsed <= 0 ? 0 : this.taken * 1e9 / elapsed;
+    }
+  }
+}
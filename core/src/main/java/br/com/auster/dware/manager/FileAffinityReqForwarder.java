@@ -0,0 +1,513 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.manager;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+import org.w3c.dom.Element;
+
+import br.com.auster.common.util.I18n;
+import br.com.auster.common.xml.DOMUtils;
+import br.com.auster.dware.graph.Request;
+import br.com.auster.dware.request.file.FileRequest;
+import br.com.auster.dware.request.file.PartialFileListRequest;
+import br.com.auster.dware.request.file.PartialFileRequest;
+
+/**
+ * <p>
+ * Request forwarder that keeps the requests that read from files sorted by
+ * file and offset, and gives each graph group the requests of the files it is
+ * already reading. Input filters like <code>PartialInputFromFileList</code>
+ * keep the files they read open, so a group that goes through a file in
+ * ascending offsets reads it sequentially, instead of every group opening and
+ * seeking across the same files.
+ * </p>
+ * <p>
+ * A graph group reads up to <code>files-per-group</code> files at the same
+ * time, and gets, in this order:
+ * </p>
+ * <ol>
+ * <li>while it reads fewer files than that, the first request of a file no
+ * other group is reading, the file with the greatest backlog first, or else a
+ * request from the middle of the greatest backlog among the files it does
+ * not read yet;</li>
+ * <li>the next request of the files it is reading, after the last offset it
+ * read from each one, taking the file it read least recently first;</li>
+ * <li>the first request of a file no other group is reading, closing the file
+ * it read least recently;</li>
+ * <li>the oldest request that does not read from a file;</li>
+ * <li>a request from the middle of the file with the greatest backlog, so that
+ * the group reading the file and this one read different halves of it.</li>
+ * </ol>
+ * <p>
+ * Requests that fit the weight asked for are preferred. If none fits, the first
+ * one found in that order is returned.
+ * </p>
+ * <p>
+ * Since the group takes one file after the other, each of its graphs may
+ * follow one of the files when the group has <code>file-affinity</code> set.
+ * Like in <code>FIFOQueueReqForwarder</code>, graph groups are identified by
+ * their threads. A <code>PartialFileListRequest</code> is placed by its first
+ * piece.
+ * </p>
+ * 
+ * @version $Id$
+ */
+public class FileAffinityReqForwarder extends PriorityQueueReqForwarder {
+
+  /**
+   * {@value} - how many files each graph group reads at the same time. For
+   * groups with <code>file-affinity</code>, use their number of graphs times
+   * the <code>file-cache-size</code> of their input filter. Defaults to 1.
+   */
+  public static final String FILES_PER_GROUP_ATTR = "files-per-group";
+
+  // using parent i18n resource
+  private final I18n i18n = I18n.getInstance(PriorityQueueReqForwarder.class);
+
+  private static final Logger log = Logger.getLogger(FileAffinityReqForwarder.class);
+
+  // Map<File,FileQueue> - the requests of each file
+  private final Map queueByFile = new HashMap();
+
+  // requests that do not read from a file, in arrival order
+  private final LinkedList otherQueue = new LinkedList();
+
+  // Map<Thread,Affinity> - the files each graph group is reading
+  private final Map affinityByThread = new IdentityHashMap();
+
+  private int requestCount = 0;
+
+  private int filesPerGroup = 1;
+
+  // how many requests were taken in each step of the search
+  private long sequentialPicks = 0, claimedPicks = 0, otherPicks = 0, stolenPicks = 0;
+
+  public FileAffinityReqForwarder(DataAwareManagerMediator dwareManMed) {
+    super(dwareManMed);
+    // register to mediator, overriding parent's registration
+    if (dwareManMed != null) {
+      dwareManMed.registerReqForwarder(this);
+    }
+  }
+
+  public void configure(Element config) {
+    super.configure(config);
+    if (config != null) {
+      this.setFilesPerGroup(DOMUtils.getIntAttribute(config, FILES_PER_GROUP_ATTR, false));
+    }
+    log.info(i18n.getString("fileAffinityConfigured", Integer.toString(this.filesPerGroup)));
+  }
+
+  /**
+   * Sets how many files each graph group reads at the same time. Values
+   * smaller than 1 mean 1.
+   */
+  public void setFilesPerGroup(int files) {
+    this.queueLock.lock();
+    try {
+      this.filesPerGroup = Math.max(1, files);
+    } finally {
+      this.queueLock.unlock();
+    }
+  }
+
+  public int getFilesPerGroup() {
+    return this.filesPerGroup;
+  }
+
+  /**
+   * Returns the file the given request reads from, or null if it does not
+   * read from a file.
+   */
+  public static File getSourceFile(Request request) {
+    if (request instanceof FileRequest) {
+      return ((FileRequest) request).getFile();
+    } else if (request instanceof PartialFileListRequest) {
+      final PartialFileRequest[] pieces = ((PartialFileListRequest) request).getFiles();
+      return pieces.length == 0 ? null : pieces[0].getFile();
+    }
+    return null;
+  }
+
+  /**
+   * Returns where the given request starts reading its file, 0 if it reads
+   * the whole file.
+   */
+  public static long getSourceOffset(Request request) {
+    final PartialFileRequest piece = firstPiece(request);
+    return piece == null ? 0 : piece.getOffset();
+  }
+
+  /*
+   * Returns where the given request stops reading its file.
+   */
+  private static long getSourceEnd(Request request) {
+    final PartialFileRequest piece = firstPiece(request);
+    return piece == null ? Long.MAX_VALUE : piece.getOffset() + piece.getLength();
+  }
+
+  private static PartialFileRequest firstPiece(Request request) {
+    if (request instanceof PartialFileRequest) {
+      return (PartialFileRequest) request;
+    } else if (request instanceof PartialFileListRequest) {
+      final PartialFileRequest[] pieces = ((PartialFileListRequest) request).getFiles();
+      return pieces.length == 0 ? null : pieces[0];
+    }
+    return null;
+  }
+
+  protected boolean addReq(Request newReq) {
+    this.queueLock.lock();
+    try {
+      final File file = getSourceFile(newReq);
+      if (file == null) {
+        this.otherQueue.addLast(newReq);
+      } else {
+        FileQueue queue = (FileQueue) this.queueByFile.get(file);
+        if (queue == null) {
+          queue = new FileQueue(file, this.findReader(file));
+          this.queueByFile.put(file, queue);
+        }
+        queue.put(newReq);
+      }
+      this.requestCount++;
+      return true;
+    } finally {
+      this.queueLock.unlock();
+    }
+  }
+
+  /**
+   * Chooses the request the calling graph group can read with fewer opens and
+   * seeks, as described above.
+   * 
+   * @param maxWeight
+   *          maximum weight the request should have. Negative values accept
+   *          any weight.
+   * @exception NoSuchElementException
+   *              when the queue is empty.
+   */
+  public Request chooseNextRequest(long maxWeight) throws NoSuchElementException {
+    this.queueLock.lock();
+    try {
+      if (this.requestCount == 0) {
+        throw new NoSuchElementException();
+      }
+      Affinity group = (Affinity) this.affinityByThread.get(Thread.currentThread());
+      if (group == null) {
+        group = new Affinity();
+        this.affinityByThread.put(Thread.currentThread(), group);
+      }
+      Request next = this.pick(group, maxWeight);
+      if (next == null) {
+        // nothing fits, so the weight is not taken into account
+        next = this.pick(group, -1);
+      }
+      this.requestCount--;
+      if (log.isDebugEnabled()) {
+        log.debug(Thread.currentThread() + " got " + next);
+      }
+      return next;
+    } finally {
+      this.queueLock.unlock();
+    }
+  }
+
+  private Request pick(Affinity group, long maxWeight) {
+    // a new file, if the group may still read one more
+    FileQueue best = null;
+    if (group.files.size() < this.filesPerGroup) {
+      best = this.findUnread(maxWeight);
+      if (best != null) {
+        this.claimedPicks++;
+        return this.take(group, best, (Long) best.byOffset.firstKey());
+      }
+      best = this.findBacklog(group, maxWeight);
+      if (best != null) {
+        this.stolenPicks++;
+        return this.take(group, best, best.middle());
+      }
+    }
+
+    // the files this group is reading, the least recently read first
+    for (ListIterator it = group.files.listIterator(group.files.size()); it.hasPrevious();) {
+      final File file = (File) it.previous();
+      final FileQueue queue = (FileQueue) this.queueByFile.get(file);
+      if (queue == null) {
+        continue;
+      }
+      final SortedMap ahead = queue.byOffset.tailMap(group.positions.get(file));
+      if (ahead.isEmpty() && queue.reader != null && queue.reader != group) {
+        // the rest of the file is being read by the group that started it
+        continue;
+      }
+      final Long offset = (Long) (ahead.isEmpty() ? queue.byOffset.firstKey() : ahead.firstKey());
+      if (fits(queue.peek(offset), maxWeight)) {
+        this.sequentialPicks++;
+        return this.take(group, queue, offset);
+      }
+    }
+
+    // a file no one is reading
+    best = this.findUnread(maxWeight);
+    if (best != null) {
+      this.claimedPicks++;
+      return this.take(group, best, (Long) best.byOffset.firstKey());
+    }
+
+    // the requests that do not read from files
+    if (!this.otherQueue.isEmpty() && fits((Request) this.otherQueue.getFirst(), maxWeight)) {
+      this.otherPicks++;
+      return (Request) this.otherQueue.removeFirst();
+    }
+
+    // the middle of a file some other group is reading
+    best = this.findBacklog(group, maxWeight);
+    if (best == null) {
+      best = this.findBacklog(null, maxWeight);
+    }
+    if (best != null) {
+      this.stolenPicks++;
+      return this.take(group, best, best.middle());
+    }
+    return null;
+  }
+
+  /*
+   * Returns the file with the greatest backlog, among the ones the given group
+   * does not read, whose request in the middle fits the weight given.
+   */
+  private FileQueue findBacklog(Affinity group, long maxWeight) {
+    FileQueue best = null;
+    for (Iterator it = this.queueByFile.values().iterator(); it.hasNext();) {
+      final FileQueue queue = (FileQueue) it.next();
+      if ((best == null || queue.totalWeight > best.totalWeight)
+          && (group == null || !group.positions.containsKey(queue.file))
+          && fits(queue.peek(queue.middle()), maxWeight)) {
+        best = queue;
+      }
+    }
+    return best;
+  }
+
+  /*
+   * Returns the file no group is reading with the greatest backlog, whose
+   * first request fits the weight given.
+   */
+  private FileQueue findUnread(long maxWeight) {
+    FileQueue best = null;
+    for (Iterator it = this.queueByFile.values().iterator(); it.hasNext();) {
+      final FileQueue queue = (FileQueue) it.next();
+      if (queue.reader == null && (best == null || queue.totalWeight > best.totalWeight)
+          && fits(queue.peek(queue.byOffset.firstKey()), maxWeight)) {
+        best = queue;
+      }
+    }
+    return best;
+  }
+
+  private static boolean fits(Request request, long maxWeight) {
+    return maxWeight < 0 || request.getCost() <= maxWeight;
+  }
+
+  /*
+   * Takes a request from the queue of a file and marks the file as being read
+   * by the given group.
+   */
+  private Request take(Affinity group, FileQueue queue, Long offset) {
+    final Request request = queue.remove(offset);
+    if (queue.size == 0) {
+      this.queueByFile.remove(queue.file);
+    } else if (queue.reader == null) {
+      queue.reader = group;
+    }
+
+    group.files.remove(queue.file);
+    group.files.addFirst(queue.file);
+    group.positions.put(queue.file, new Long(getSourceEnd(request)));
+    if (group.files.size() > this.filesPerGroup) {
+      // the group closes the file it read least recently
+      final File closed = (File) group.files.removeLast();
+      group.positions.remove(closed);
+      final FileQueue other = (FileQueue) this.queueByFile.get(closed);
+      if (other != null && other.reader == group) {
+        other.reader = null;
+      }
+    }
+    return request;
+  }
+
+  /*
+   * Returns the group that still has the given file open, if any.
+   */
+  private Affinity findReader(File file) {
+    for (Iterator it = this.affinityByThread.values().iterator(); it.hasNext();) {
+      final Affinity group = (Affinity) it.next();
+      if (group.positions.containsKey(file)) {
+        return group;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public int size() {
+    this.queueLock.lock();
+    try {
+      return this.requestCount;
+    } finally {
+      this.queueLock.unlock();
+    }
+  }
+
+  public long getWishWeight() {
+    return -1L; // let PriorityQueueWishGraphGroup decide what to do
+  }
+
+  public List getQueueAsList() {
+    this.queueLock.lock();
+    try {
+      final List list = new ArrayList(this.otherQueue);
+      for (Iterator it = this.queueByFile.values().iterator(); it.hasNext();) {
+        for (Iterator pieces = ((FileQueue) it.next()).byOffset.values().iterator(); pieces
+            .hasNext();) {
+          list.addAll((List) pieces.next());
+        }
+      }
+      return list;
+    } finally {
+      this.queueLock.unlock();
+    }
+  }
+
+  /**
+   * Returns how many requests were the next piece of a file their graph group
+   * was already reading.
+   */
+  public long getSequentialPicks() {
+    return this.sequentialPicks;
+  }
+
+  /**
+   * Returns how many requests started the reading of a file by a graph group.
+   */
+  public long getClaimedPicks() {
+    return this.claimedPicks;
+  }
+
+  /**
+   * Returns how many requests were taken from a file another graph group was
+   * reading.
+   */
+  public long getStolenPicks() {
+    return this.stolenPicks;
+  }
+
+  /**
+   * Returns how many requests that do not read from a file were taken.
+   */
+  public long getOtherPicks() {
+    return this.otherPicks;
+  }
+
+  /*
+   * The requests of one file, sorted by offset.
+   */
+  private static final class FileQueue {
+
+    private final File file;
+
+    // Map<Long(offset),List<Request>>
+    private final TreeMap byOffset = new TreeMap();
+
+    private int size = 0;
+
+    private long totalWeight = 0;
+
+    // the graph group reading this file, if any
+    private Affinity reader;
+
+    FileQueue(File file, Affinity reader) {
+      this.file = file;
+      this.reader = reader;
+    }
+
+    void put(Request request) {
+      final Long offset = new Long(getSourceOffset(request));
+      List requests = (List) this.byOffset.get(offset);
+      if (requests == null) {
+        requests = new LinkedList();
+        this.byOffset.put(offset, requests);
+      }
+      requests.add(request);
+      this.size++;
+      this.totalWeight += request.getCost();
+    }
+
+    /*
+     * Returns the first offset at or after the middle of the backlog.
+     */
+    Long middle() {
+      final long first = ((Long) this.byOffset.firstKey()).longValue();
+      final long last = ((Long) this.byOffset.lastKey()).longValue();
+      return (Long) this.byOffset.tailMap(new Long(first + (last - first) / 2)).firstKey();
+    }
+
+    Request peek(Object offset) {
+      return (Request) ((List) this.byOffset.get(offset)).get(0);
+    }
+
+    Request remove(Long offset) {
+      final List requests = (List) this.byOffset.get(offset);
+      final Request request = (Request) requests.remove(0);
+      if (requests.isEmpty()) {
+        this.byOffset.remove(offset);
+      }
+      this.size--;
+      this.totalWeight -= request.getCost();
+      return request;
+    }
+  }
+
+  /*
+   * The files a graph group is reading.
+   */
+  private static final class Affinity {
+
+    // the file read last first
+    private final LinkedList files = new LinkedList();
+
+    // Map<File,Long> - where the group stopped reading each file
+    private final Map positions = new HashMap();
+  }
+}
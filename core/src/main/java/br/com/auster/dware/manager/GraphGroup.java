@@ -17,8 +17,10 @@
  */
 package br.com.auster.dware.manager;
 
+import java.util.Collection;
 import java.util.NoSuchElementException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 
@@ -28,7 +30,9 @@ import org.w3c.dom.Element;
 import br.com.auster.common.util.I18n;
 import br.com.auster.common.xml.DOMUtils;
 import br.com.auster.dware.graph.FilterException;
+import br.com.auster.dware.graph.FilterLatencyMonitor;
 import br.com.auster.dware.graph.GraphException;
+import br.com.auster.dware.graph.LatencyHistogram;
 import br.com.auster.dware.graph.Request;
 
 /**
@@ -43,9 +47,12 @@ import br.com.auster.dware.graph.Request;
 public abstract class GraphGroup extends Thread {
 
 	/**
-	 * {@value} - this configuration attribute defines how long
+	 * {@value} - this configuration attribute defines the longest time
 	 * (in milliseconds) the graph group will wait when no suitable 
-	 * request is available in the queue.
+	 * request is available in the queue. The group is woken as soon as
+	 * one of its graphs finishes or a request it can process is queued,
+	 * so this is only a safety bound for the changes that do not signal
+	 * the group, such as new wish weights. Defaults to 60 seconds.
 	 * 
 	 * The group never waits using this attribute when the queue is 
 	 * empty - it will just enter in idle state until a new request 
@@ -80,7 +87,19 @@ public abstract class GraphGroup extends Thread {
   
   protected Condition queueNotEmpty;
 
+  // set when the request forwarder wakes each graph group on its own
+  protected GroupSignal groupSignal;
+
   protected DataAwareManagerMediator fmediator; // mediator objects.
+
+  // latencies of the filters of all the graphs in this group
+  protected final FilterLatencyMonitor latencyMonitor = new FilterLatencyMonitor();
+
+  // time from a request being queued until it is given to a graph
+  protected final LatencyHistogram dispatchLatency = new LatencyHistogram();
+
+  // requests of this group whose deadline expired
+  protected final AtomicLong deadlineMisses = new AtomicLong();
   
   private String name;
   
@@ -91,6 +110,14 @@ public abstract class GraphGroup extends Thread {
    * @since Data-Aware 1.5
    */
   protected Condition graphFinished;
+
+  // counts the events that may let a waiting group find a request: graphs
+  // finishing, requests arriving and shutdown. Guarded by requestSync.
+  private long dispatchEvents;
+
+  // set while this group is looking for a request, so that arriving requests
+  // are only signalled to groups that may take them
+  private volatile boolean wantsRequest;
   
 
   /**
@@ -135,6 +162,31 @@ public abstract class GraphGroup extends Thread {
     this.graphFinished = this.requestSync.newCondition();
   }
 
+  /*
+   * Called by mediator object, when the request forwarder signals each graph
+   * group through its own lock.
+   */
+  protected void setRequestSyncObj(GroupSignal _groupSignal) {
+    this.groupSignal = _groupSignal;
+    setRequestSyncObj(_groupSignal.getLock(), _groupSignal.getQueueNotEmptyCondition());
+  }
+
+  /*
+   * Waits until the queue receives a request. Must be called holding
+   * requestSync.
+   */
+  private void awaitQueueNotEmpty() throws InterruptedException {
+    if (this.groupSignal == null) {
+      this.queueNotEmpty.await();
+    } else if (this.groupSignal.park()) {
+      try {
+        this.queueNotEmpty.await();
+      } finally {
+        this.groupSignal.unpark();
+      }
+    }
+  }
+
   /**
    * Starts to wait for free graphs and requests to process.
    */
@@ -142,6 +194,7 @@ public abstract class GraphGroup extends Thread {
     this.fmediator.registerGraphGroup(this);
     
     Request request = null;
+    long events;
 
     log.info(i18n.getString("graphGroupReady"));
     
@@ -150,7 +203,7 @@ public abstract class GraphGroup extends Thread {
     try {
       log.info("GraphGroup waiting queue to be ready for consumption.");
       this.status = STATUS_WAITING_EMPTY;
-      this.queueNotEmpty.await();
+      this.awaitQueueNotEmpty();
     } catch (InterruptedException e1) {
     } finally {
       this.requestSync.unlock();
@@ -168,16 +221,19 @@ public abstract class GraphGroup extends Thread {
       this.requestSync.lock();
       try {
         log.debug("Asking the queue for a request to process");
+        this.wantsRequest = true;
+        events = this.dispatchEvents;
         request = getNextRequest();
       } catch (NoSuchElementException e) {
         log.debug("Queue is empty!");
+        this.wantsRequest = false;
         // queue is empty, so we are done - notify all waiting Threads
         this.graphFinished.signalAll();
         // No request to process, wait for one
         try {
           log.debug("No requests to process. Waiting...");
           this.status = STATUS_WAITING_EMPTY;
-          this.queueNotEmpty.await();
+          this.awaitQueueNotEmpty();
         } catch (InterruptedException e1) {
         }
         continue;
@@ -189,14 +245,16 @@ public abstract class GraphGroup extends Thread {
         // no suitable request was found, so wait until 
         // a Graph finishes processing any request.
       	log.debug("No requests available for this queue");
-        waitForNextTry();
+        waitForNextTry(events);
         continue;
       }
+      this.wantsRequest = false;
       
       if (log.isDebugEnabled())
         log.debug("Got a request to process: " + request);
       try {
         this.status = STATUS_PROCESSING;
+        this.recordDispatch(request);
         process(request);
         this.status = STATUS_CONSUMING;
       } catch (RuntimeException e) {
@@ -220,15 +278,18 @@ public abstract class GraphGroup extends Thread {
       this.status = STATUS_CONSUMING;
       try {
       	log.debug("Asking the queue for a request to process");
+      	events = this.startLooking();
       	request = getNextRequest();
       	if (request == null) {
       		log.debug("No requests available for this queue");
-      		waitForNextTry();
+      		waitForNextTry(events);
       		continue;
       	}
+      	this.wantsRequest = false;
         log.debug("Got a request to process: " + request);
         try {
           this.status = STATUS_PROCESSING;
+          this.recordDispatch(request);
           process(request);
           this.status = STATUS_CONSUMING;
         } catch (RuntimeException e) {
@@ -262,13 +323,33 @@ public abstract class GraphGroup extends Thread {
     this.status = STATUS_DEAD;
   }
   
-  // no suitable request was found, so wait until 
-  // a Graph finishes processing any request.
-  protected void waitForNextTry() {
+  /*
+   * Marks this group as looking for a request and returns the events seen so
+   * far, for the callers that do not hold requestSync.
+   */
+  private long startLooking() {
+    this.requestSync.lock();
+    try {
+      this.wantsRequest = true;
+      return this.dispatchEvents;
+    } finally {
+      this.requestSync.unlock();
+    }
+  }
+
+  // no suitable request was found, so wait until a Graph finishes
+  // processing any request or a request this group accepts is queued.
+  // Events that happened after seenEvents was read are not lost.
+  protected void waitForNextTry(long seenEvents) {
     this.requestSync.lock();
     try {
       this.status = STATUS_WAITING_FULL;
-      this.graphFinished.await(this.waitTime, TimeUnit.MILLISECONDS);
+      while (this.dispatchEvents == seenEvents) {
+        if (!this.graphFinished.await(this.waitTime, TimeUnit.MILLISECONDS)) {
+          log.debug("Wait time elapsed with no graph finished or request queued");
+          break;
+        }
+      }
     } catch (InterruptedException e) {
       e.printStackTrace();
     } finally {
@@ -276,6 +357,72 @@ public abstract class GraphGroup extends Thread {
     }
     log.debug("Woke-up and will try again to find a request");
   }
+
+  /*
+   * Counts a dispatch event and wakes this group if it is waiting for one.
+   */
+  private void dispatchEvent() {
+    this.requestSync.lock();
+    try {
+      this.dispatchEvents++;
+      this.graphFinished.signalAll();
+    } finally {
+      this.requestSync.unlock();
+    }
+  }
+
+  /**
+   * Called by the mediator when a request is queued. If this group is looking
+   * for a request and could take this one, it tries again at once.
+   * 
+   * @param request
+   *          the request that was queued.
+   */
+  protected void requestQueued(Request request) {
+    if (this.wantsRequest && this.accepts(request)) {
+      this.dispatchEvent();
+    }
+  }
+
+  /**
+   * Called by the mediator when a batch of requests is queued. The group is
+   * woken at most once.
+   * 
+   * @param requests
+   *          the requests that were queued.
+   */
+  protected void requestsQueued(Collection<Request> requests) {
+    if (!this.wantsRequest) {
+      return;
+    }
+    for (Request request : requests) {
+      if (this.accepts(request)) {
+        this.dispatchEvent();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Tells if this group could take the request now. Used only to avoid waking
+   * groups that would not find it suitable, so it may be approximate.
+   * 
+   * @param request
+   *          the request that was queued.
+   * @return true if the request may fit in this group.
+   */
+  protected boolean accepts(Request request) {
+    return true;
+  }
+
+  /*
+   * Records how long the request waited in the queue.
+   */
+  private void recordDispatch(Request request) {
+    if (request.getQueuedTime() != 0) {
+      this.dispatchLatency.recordNanos(System.nanoTime() - request.getQueuedTime());
+    }
+  }
   
   /**
    * Use this method to shutdown this thread. It will process the last requests
@@ -289,6 +436,7 @@ public abstract class GraphGroup extends Thread {
 
     this.requestSync.lock();
     try {
+      this.dispatchEvents++;
       this.graphFinished.signalAll();
       this.queueNotEmpty.signalAll();
     } finally {
@@ -349,12 +497,7 @@ public abstract class GraphGroup extends Thread {
     // the only way a grah group will be awaken while waiting
     // on processSync is notifying it after a graph has
     // finished, so DO NOT REMOVE THE CODE BELLOW.
-    this.requestSync.lock();
-    try {
-      this.graphFinished.signalAll();
-    } finally {
-      this.requestSync.unlock();
-    }
+    this.dispatchEvent();
   }
   
   /**
@@ -438,6 +581,15 @@ public abstract class GraphGroup extends Thread {
   public boolean hasToProcessLastObjects() {
      return this.processLastObjects;
   }
+  public FilterLatencyMonitor getLatencyMonitor() {
+     return this.latencyMonitor;
+  }
+  public LatencyHistogram getDispatchLatency() {
+     return this.dispatchLatency;
+  }
+  public long getDeadlineMisses() {
+     return this.deadlineMisses.get();
+  }
 
   public void killGroup() {
      this.closing=true;
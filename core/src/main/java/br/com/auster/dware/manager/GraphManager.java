@@ -21,6 +21,7 @@ import java.rmi.NoSuchObjectException;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -44,9 +45,11 @@ import br.com.auster.dware.DataAware;
 import br.com.auster.dware.graph.FilterException;
 import br.com.auster.dware.graph.GraphException;
 import br.com.auster.dware.graph.Request;
+import br.com.auster.dware.graph.ThreadedFilterExecutor;
 import br.com.auster.dware.manager.checkpoint.AbstractCheckpoint;
 import br.com.auster.dware.manager.remote.ClientRemoteGraphInterface;
 import br.com.auster.dware.monitor.manager.JMXGraphGroupCounter;
+import br.com.auster.dware.request.RequestErrorHandler;
 
 /**
  * This is the main processing manager. It manages all the graph groups,
@@ -65,6 +68,19 @@ public class GraphManager {
    * {@value}
    */
   public static final String CHECKPOINT_ELEMENT = "checkpoint";
+  /**
+   * {@value}
+   */
+  public static final String COST_ESTIMATOR_ELEMENT = "cost-estimator";
+  /**
+   * {@value} - sizes the {@link ThreadedFilterExecutor} shared by the graphs
+   * that run their threaded filters as executor tasks.
+   */
+  public static final String THREADED_FILTER_EXECUTOR_ELEMENT = "threaded-filter-executor";
+  /**
+   * {@value}
+   */
+  public static final String THREADS_ATTR = "threads";
   /**
    * {@value}
    */
@@ -103,6 +119,18 @@ public class GraphManager {
 
   private AbstractCheckpoint chkPt;
 
+  // splits the requests that are too heavy (null if not configured)
+  private ScatterGather scatterGather = null;
+
+  // bounds the request queue (unbounded if not configured)
+  private AdmissionControl admission = new AdmissionControl();
+
+  // estimates the cost of the requests (they cost their weight if null)
+  private CostEstimator costEstimator = null;
+
+  // requeues the failed requests after a delay
+  private final RetryScheduler retries = new RetryScheduler(this);
+
   private final Map groupMap = new HashMap();
 
   private Element graphConfig = null;
@@ -132,6 +160,7 @@ public class GraphManager {
     isConfigured = false;
     isGraphConfigured = false;
     managerMediator.registerGraphManager(this);
+    ((DataAwareManagerWishMediator) managerMediator).registerRetryScheduler(this.retries);
   }
 
   /**
@@ -169,6 +198,12 @@ public class GraphManager {
       }
     }
     this.requestPriorQueue.configure(configRF);
+
+    // sizes the shared threaded filter executor before any graph is created
+    Element executorConf = DOMUtils.getElement(config, THREADED_FILTER_EXECUTOR_ELEMENT, false);
+    if (executorConf != null) {
+      ThreadedFilterExecutor.configure(DOMUtils.getIntAttribute(executorConf, THREADS_ATTR, true));
+    }
     
     // Configures the local graph groups.
     NodeList list = DOMUtils.getElements(config, 
@@ -186,6 +221,47 @@ public class GraphManager {
       log.warn(i18n.getString("checkpointNotConfigured"));
     }
     
+    // configure scatter/gather of heavy requests
+    Element scatterConf = DOMUtils.getElement(config, ScatterGather.SCATTER_GATHER_ELEMENT, false);
+    if (scatterConf != null) {
+      try {
+        this.scatterGather = new ScatterGather(scatterConf);
+      } catch (Exception e) {
+        log.error(i18n.getString("scatterGatherNotConfigured"), e);
+        this.scatterGather = null;
+      }
+    }
+    
+    // configure the bounds of the request queue
+    Element admissionConf = DOMUtils.getElement(config, AdmissionControl.ADMISSION_CONTROL_ELEMENT,
+                                                false);
+    if (admissionConf != null) {
+      this.admission = new AdmissionControl(admissionConf);
+      ((DataAwareManagerWishMediator) this.managerMediator).registerAdmissionControl(this.admission);
+    }
+    
+    // configure the delays of the retries
+    this.retries.configure(DOMUtils.getElement(config, RetryScheduler.RETRY_SCHEDULER_ELEMENT,
+                                               false));
+
+    // configure the estimation of the request costs
+    Element costConf = DOMUtils.getElement(config, COST_ESTIMATOR_ELEMENT, false);
+    if (costConf != null) {
+      try {
+        String className = DOMUtils.getAttribute(costConf, CLASS_NAME_ATTR, false);
+        if (className == null || className.length() == 0) {
+          className = OnlineCostEstimator.class.getName();
+        }
+        CostEstimator estimator = (CostEstimator) Class.forName(className).newInstance();
+        estimator.configure(costConf);
+        this.costEstimator = estimator;
+        ((DataAwareManagerWishMediator) this.managerMediator).registerCostEstimator(estimator);
+      } catch (Exception e) {
+        log.error(i18n.getString("costEstimatorNotConfigured"), e);
+        this.costEstimator = null;
+      }
+    }
+    
     // configure queue-processed listeners
     try {
       Element listenersElt = DOMUtils.getElement(config, QUEUE_PROCESSED_LISTENERS_ELEMENT, false);
@@ -249,8 +325,8 @@ public class GraphManager {
         throw new IllegalArgumentException(i18n.getString("groupAlreadyExists", name));
 
       try {
-        Element graphConfigClone = (Element) this.graphConfig.cloneNode(true);
-		group = new PriorityQueueWishGraphGroup(name, managerMediator, config, graphConfigClone);
+        // the group compiles its own graph blueprint, no need to clone the DOM
+		group = new PriorityQueueWishGraphGroup(name, managerMediator, config, this.graphConfig);
       } catch (ManagerException me) {
         throw new GraphException(me);
       }
@@ -306,14 +382,16 @@ public class GraphManager {
    */
   public void configureGraph(Element config) throws GraphException {
 
+    // the groups rebuild their graphs out of the lock, so that groups can
+    // still be looked up while they are reconfigured
+    List groups;
     synchronized (this.groupMap) {
-      Iterator it = this.groupMap.values().iterator();
-      while (it.hasNext()) {
-        GraphGroup group = (GraphGroup) it.next();
-        group.configureGraph(config);
-      }
+      groups = new ArrayList(this.groupMap.values());
       this.graphConfig = config;
     }
+    for (Iterator it = groups.iterator(); it.hasNext();) {
+      ((GraphGroup) it.next()).configureGraph(config);
+    }
 
     // initialize listener for remote graph groups.
     try {
@@ -337,30 +415,141 @@ public class GraphManager {
    */
   public void configureFilter(String filterName, Element config) throws GraphException,
       FilterException {
+    List groups;
     synchronized (this.groupMap) {
-      Iterator it = this.groupMap.values().iterator();
-      while (it.hasNext()) {
-        GraphGroup group = (GraphGroup) it.next();
-        group.configureFilter(filterName, config);
-      }
+      groups = new ArrayList(this.groupMap.values());
+    }
+    for (Iterator it = groups.iterator(); it.hasNext();) {
+      ((GraphGroup) it.next()).configureFilter(filterName, config);
     }
   }
 
   /**
-   * Put the request in the queue to be processed.
+   * Put the request in the queue to be processed. If the queue is bounded and
+   * full, waits for room up to the configured enqueue timeout; a request not
+   * admitted in time is given to the {@link RequestErrorHandler}.
    * 
    * @throws IllegalStateException
    *           if the manager is down, not configured or does not have any
    *           graphs or groups configured to process a request.
    */
   public void enqueue(Request request) {
+    this.enqueue(request, this.admission.getEnqueueTimeout(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Put the request in the queue to be processed, waiting up to the given
+   * time for room in the queue, if it is bounded. A request not admitted in
+   * time is given to the {@link RequestErrorHandler}.
+   * 
+   * @param timeout
+   *          how long to wait for room. If it is negative, waits as long as
+   *          needed; if it is zero, does not wait.
+   * @return true if the request was queued, false if it was rejected.
+   * @throws IllegalStateException
+   *           if the manager is down, not configured or does not have any
+   *           graphs or groups configured to process a request.
+   */
+  public boolean enqueue(Request request, long timeout, TimeUnit unit) {
     // This graph manager will not accept requests if it does not
     // have graph groups to process them.
     if (this.groupMap.isEmpty()) {
       throw new IllegalStateException(i18n.getString("cantEnqueueManagerDown", request));
     }
+    List<Request> requests = new ArrayList<Request>(1);
+    requests.add(request);
+    return this.admit(requests, timeout < 0 ? -1 : unit.toNanos(timeout), false) == 1;
+  }
+
+  /**
+   * Adds the requests to the queue as the admission control lets them in,
+   * and rejects the ones not admitted in time.
+   * 
+   * @param timeout
+   *          in nanoseconds, or negative to wait as long as needed.
+   * @return how many requests were queued.
+   */
+  private int admit(List<Request> requests, long timeout, boolean batch) {
+    final long deadline = System.nanoTime() + timeout;
+    this.estimate(requests);
+    int from = 0;
+    while (from < requests.size()) {
+      int count;
+      try {
+        count = this.admission.admit(requests, from, 
+                                     timeout < 0 ? -1 : Math.max(deadline - System.nanoTime(), 0));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        count = 0;
+      }
+      if (count == 0) {
+        this.reject(requests.subList(from, requests.size()));
+        break;
+      }
+      try {
+        if (count == requests.size()) {
+          this.queue(requests, batch);
+        } else {
+          this.queue(new ArrayList<Request>(requests.subList(from, from + count)), batch);
+        }
+      } finally {
+        // the queue counted what it kept
+        this.admission.release(requests, from, count);
+      }
+      from += count;
+    }
+    return from;
+  }
+
+  /*
+   * Stores admitted requests, splitting the heavy ones if configured.
+   */
+  private void queue(List<Request> requests, boolean batch) {
+    if (batch) {
+      Collection<Request> toQueue = requests;
+      if (this.scatterGather != null) {
+        toQueue = this.scatterGather.scatter(requests, this.managerMediator);
+        this.estimate(toQueue);
+      }
+      requestPriorQueue.addNewReqs(toQueue);
+      return;
+    }
+    Request request = requests.get(0);
+    if (this.scatterGather != null) {
+      List<Request> parts = this.scatterGather.scatter(request, this.managerMediator);
+      if (parts.size() != 1 || parts.get(0) != request) {
+        this.estimate(parts);
+        requestPriorQueue.addNewReqs(parts);
+        return;
+      }
+    }
     requestPriorQueue.addNewReq(request);
   }
+
+  /*
+   * Caches the estimated cost in the requests, if there is an estimator.
+   */
+  private void estimate(Collection<Request> requests) {
+    if (this.costEstimator == null) {
+      return;
+    }
+    for (Request request : requests) {
+      request.setCost(this.costEstimator.estimate(request));
+    }
+  }
+
+  /*
+   * Tells the request error listeners that the requests were not queued.
+   */
+  private void reject(List<Request> requests) {
+    this.admission.rejected(requests.size());
+    String message = i18n.getString("requestsRejected", Integer.toString(requests.size()),
+                                     Integer.toString(this.admission.getQueuedRequests()),
+                                     Long.toString(this.admission.getQueuedWeight()));
+    log.warn(message);
+    RequestErrorHandler.handleErrors(new ArrayList<Request>(requests),
+                                     new RequestRejectedException(message));
+  }
   
   /**
    * Put the request in the queue to be processed. This method differs from enqueue
@@ -378,8 +567,40 @@ public class GraphManager {
     if (this.groupMap.isEmpty()) {
       throw new IllegalStateException(i18n.getString("cantEnqueueManagerDown", request));
     }
+    if (this.scatterGather != null) {
+      // a failed parent is split again
+      for (Request part : this.scatterGather.scatter(request, null)) {
+        this.estimate(Collections.singletonList(part));
+        requestPriorQueue.addRetryReq(part);
+      }
+      return;
+    }
+    this.estimate(Collections.singletonList(request));
     requestPriorQueue.addRetryReq(request);
   }
+
+  /**
+   * Put the requests in the queue to be processed again, all at once.
+   * 
+   * @throws IllegalStateException
+   *           if the manager is down, not configured or does not have any
+   *           graphs or groups configured to process a request.
+   * @see #requeue(Request)
+   */
+  public void requeue(Collection<Request> requests) {
+    // This graph manager will not accept requests if it does not
+    // have graph groups to process them.
+    if (this.groupMap.isEmpty()) {
+      throw new IllegalStateException(i18n.getString("cantEnqueueManagerDown", requests));
+    }
+    Collection<Request> toQueue = requests;
+    if (this.scatterGather != null) {
+      // failed parents are split again
+      toQueue = this.scatterGather.scatter(requests, null);
+    }
+    this.estimate(toQueue);
+    requestPriorQueue.addRetryReqs(toQueue);
+  }
   
   /**
    * Put a collection of requests in the queue to be processed. This method will
@@ -390,17 +611,71 @@ public class GraphManager {
    * <p>This method is faster that a series of calls to {@link #enqueue(Request)}
    * for enqueueing a list of requests.
    * 
+   * <p>If the queue is bounded, the requests are queued in slices that fit
+   * in it, waiting for room up to the configured enqueue timeout, and the
+   * requests not admitted in time are given to the {@link RequestErrorHandler}.
+   * 
    * @throws IllegalStateException
    *           if the manager is down, not configured or does not have any
    *           graphs or groups configured to process a request.
    */
   public void enqueue(Collection<Request> requests) {
+    this.enqueue(requests, this.admission.getEnqueueTimeout(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Put a collection of requests in the queue to be processed, waiting up to
+   * the given time for room in the queue, if it is bounded.
+   * 
+   * @param timeout
+   *          how long to wait for room for all the requests. If it is
+   *          negative, waits as long as needed; if it is zero, does not wait.
+   * @return how many requests were queued; the others, at the end of the
+   *         collection, were rejected.
+   * @throws IllegalStateException
+   *           if the manager is down, not configured or does not have any
+   *           graphs or groups configured to process a request.
+   * @see #enqueue(Collection)
+   */
+  public int enqueue(Collection<Request> requests, long timeout, TimeUnit unit) {
     // This graph manager will not accept requests if it does not
     // have graph groups to process them.
     if (this.groupMap.isEmpty()) {
       throw new IllegalStateException(i18n.getString("cantEnqueueManagerDown", requests));
     }
-    requestPriorQueue.addNewReqs(requests);
+    List<Request> list = (requests instanceof List) ? (List<Request>) requests
+                                                     : new ArrayList<Request>(requests);
+    return this.admit(list, timeout < 0 ? -1 : unit.toNanos(timeout), true);
+  }
+
+  /**
+   * Returns what bounds the request queue.
+   */
+  public AdmissionControl getAdmissionControl() {
+    return this.admission;
+  }
+
+  /**
+   * Returns what estimates the cost of the requests, or null if they cost
+   * their weight.
+   */
+  public CostEstimator getCostEstimator() {
+    return this.costEstimator;
+  }
+
+  /**
+   * Returns what requeues the failed requests.
+   */
+  public RetryScheduler getRetryScheduler() {
+    return this.retries;
+  }
+
+  /**
+   * Returns what splits the requests that are too heavy, or null if it was
+   * not configured.
+   */
+  public ScatterGather getScatterGather() {
+    return this.scatterGather;
   }
   
   /**
@@ -467,6 +742,11 @@ public class GraphManager {
         remConnObj.shutdown();
     }
     
+    if (this.scatterGather != null) {
+      // the last merges still update the checkpoint
+      this.scatterGather.shutdown(wait);
+    }
+    
     if (this.chkPt != null) {
       this.chkPt.shutdown();
     }
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.manager;
+
+import java.util.Queue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lock and condition owned by a single graph group, used by request forwarders
+ * that do not want every graph group waiting on the same queue lock.
+ * 
+ * <p>
+ * A graph group that finds the queue empty parks its signal in the forwarder
+ * and waits on its own condition. When a request is added, the forwarder takes
+ * one parked signal and wakes only that group, instead of waking every group
+ * through a shared condition.
+ * </p>
+ * 
+ * @version $Id$
+ */
+public final class GroupSignal {
+
+  private final String groupName;
+
+  private final ReqForwarderInterface forwarder;
+
+  // signals of the groups waiting for requests, shared with the forwarder
+  private final Queue parked;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final Condition queueNotEmpty = this.lock.newCondition();
+
+  /**
+   * Constructor.
+   * 
+   * @param groupName
+   *          the name of the graph group that owns this signal.
+   * @param forwarder
+   *          the forwarder that will wake this group up.
+   * @param parked
+   *          the thread-safe queue where the forwarder keeps the parked
+   *          signals.
+   */
+  public GroupSignal(String groupName, ReqForwarderInterface forwarder, Queue parked) {
+    this.groupName = groupName;
+    this.forwarder = forwarder;
+    this.parked = parked;
+  }
+
+  /**
+   * Returns the name of the graph group that owns this signal.
+   */
+  public String getGroupName() {
+    return this.groupName;
+  }
+
+  /**
+   * Returns the lock of the graph group. It must be held while calling
+   * {@link #park()} and waiting on {@link #getQueueNotEmptyCondition()}.
+   */
+  public Lock getLock() {
+    return this.lock;
+  }
+
+  /**
+   * Returns the condition signalled when a request is available for this
+   * group.
+   */
+  public Condition getQueueNotEmptyCondition() {
+    return this.queueNotEmpty;
+  }
+
+  /**
+   * Tells the forwarder that this group is about to wait for requests. It
+   * must be called holding {@link #getLock()}, right before waiting on the
+   * condition.
+   * 
+   * @return <code>true</code> if the group must wait, or <code>false</code>
+   *         if some request was queued meanwhile and the group should try
+   *         again without waiting.
+   */
+  public boolean park() {
+    this.parked.offer(this);
+    // a request added before the offer above did not see this group parked
+    if (this.forwarder.size() > 0) {
+      this.parked.remove(this);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Removes this group from the parked ones, if it is still there. Called
+   * after the group wakes up.
+   */
+  public void unpark() {
+    this.parked.remove(this);
+  }
+
+  /**
+   * Wakes up the group if it is waiting for requests.
+   */
+  public void signal() {
+    this.lock.lock();
+    try {
+      this.queueNotEmpty.signal();
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  public String toString() {
+    return this.groupName;
+  }
+}
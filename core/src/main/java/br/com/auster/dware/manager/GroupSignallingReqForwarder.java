@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.manager;
+
+/**
+ * Request forwarder that wakes graph groups individually, through one
+ * {@link GroupSignal} per group, instead of a single condition shared by all
+ * of them.
+ * 
+ * <p>
+ * The locks returned by {@link #getSyncObj()} and
+ * {@link #getQueueNotEmptyCondition()} are kept only for mediators that do not
+ * know about this interface.
+ * </p>
+ * 
+ * @version $Id$
+ */
+public interface GroupSignallingReqForwarder extends ReqForwarderInterface {
+
+  /**
+   * Creates the signal a graph group must use to wait for new requests.
+   * 
+   * @param groupName
+   *          the name of the graph group.
+   * @return the signal of the graph group.
+   */
+  public GroupSignal registerGroup(String groupName);
+
+  /**
+   * Forgets a graph group that was unloaded. Its signal won't be woken up
+   * anymore, and any request still kept for it goes back to the other groups.
+   * 
+   * @param groupName
+   *          the name of the graph group.
+   */
+  public void unregisterGroup(String groupName);
+}
@@ -17,11 +17,23 @@
  */
 package br.com.auster.dware.manager;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.log4j.Logger;
 import org.w3c.dom.Element;
@@ -33,22 +45,53 @@ import br.com.auster.common.xml.DOMUtils;
 import br.com.auster.dware.graph.FilterException;
 import br.com.auster.dware.graph.FinishListener;
 import br.com.auster.dware.graph.Graph;
+import br.com.auster.dware.graph.GraphBlueprint;
 import br.com.auster.dware.graph.GraphException;
+import br.com.auster.dware.graph.GraphIdleListener;
 import br.com.auster.dware.graph.Request;
 
 /**
  * This class represents a local graph group. It contains local graphs, that are
  * running in the same virtual machine as this thread.
  * 
+ * <p>
+ * Reconfiguring the graphs does not stop the group. A new set of graphs is
+ * built from the new configuration while the current graphs keep processing;
+ * then the new set takes their place at once. The old graphs that are free are
+ * shut down in background, and the ones still processing a request finish it
+ * with the old configuration before being shut down.
+ * </p>
+ * 
  * @version $Id: LocalGraphGroup.java 246 2006-09-18 19:53:34Z framos $
  */
-public abstract class LocalGraphGroup extends GraphGroup implements FinishListener {
+public abstract class LocalGraphGroup extends GraphGroup implements FinishListener,
+      GraphIdleListener {
 
    public static final String MAX_GRAPH_ATTR = "max-graphs";
 
    public static final String GRAPHS_PER_PROCESSOR_ATTR = "graphs-per-processor";
 
-   // protected static final String MIN_GRAPH_ATTR = "min-graphs";
+   /**
+    * {@value} - if true, all the graphs of this group are built (in parallel)
+    * when the group is created, instead of being built while a request waits
+    * for them. The pool then grows back to the maximum when the queue is deep,
+    * and shrinks down to <code>min-graphs</code> as graphs stay idle longer
+    * than the graph's <code>idle-timeout</code>. Defaults to false.
+    */
+   public static final String GRAPH_POOL_ATTR = "graph-pool";
+
+   /**
+    * {@value} - the number of graphs that a graph pool keeps ready even when
+    * idle. Defaults to the maximum number of graphs.
+    */
+   public static final String MIN_GRAPH_ATTR = "min-graphs";
+
+   /**
+    * {@value} - if true, a request is given to the free graph that last read
+    * from the same file, whose input filter may still have it open. Best used
+    * with <code>FileAffinityReqForwarder</code>. Defaults to false.
+    */
+   public static final String FILE_AFFINITY_ATTR = "file-affinity";
    // protected static final String TIMEOUT_ATTR = "timeout";
 
    private static final Logger log = Logger.getLogger(LocalGraphGroup.class);
@@ -60,19 +103,50 @@ public abstract class LocalGraphGroup extends GraphGroup implements FinishListen
 
    protected final Set graphSet = new HashSet();
 
-   // protected volatile int min = 0;
+   protected volatile int min = 0;
+
    protected volatile int max = 0;
 
    protected volatile int count = 0;
 
+   protected boolean pooled = false;
+
+   protected boolean fileAffinity = false;
+
+   // Map<Graph,File> - the file each graph read last (guarded by the free
+   // graph stack lock)
+   private final Map fileByGraph = new WeakHashMap();
+
+   // graphs being built out of the graphSet lock (changed only inside it)
+   protected volatile int building = 0;
+
+   // builds graphs in background when the pool must grow
+   private ExecutorService graphBuilder = null;
+
    // protected volatile long timeout;
    protected Element graphConfig;
 
+   // compiled graph configuration, shared by all graphs of this group
+   protected volatile GraphBlueprint graphBlueprint;
+
+   // how many times the graphs were reconfigured
+   protected int graphVersion = 0;
+
+   // graphs of an old configuration still finishing a request, mapped to
+   // Boolean.TRUE once their shutdown was scheduled (guarded by graphSet)
+   private final Map retiringGraphs = new HashMap();
+
+   // serializes reconfigurations, which do not hold the graphSet lock
+   private final Object reconfigureSync = new Object();
+
    public LocalGraphGroup(String name, DataAwareManagerMediator dwareMediator,
          Element config, Element graphConfig) throws GraphException, ManagerException {
       super(name, dwareMediator);
       this.configure(config);
       this.configureGraph(graphConfig);
+      if (this.pooled) {
+         this.prebuildGraphs(this.max);
+      }
       // this.graphConfig = graphConfig;
       // this.configure(config);
       // for (int i = 0; i < this.min; i++) {
@@ -97,6 +171,21 @@ public abstract class LocalGraphGroup extends GraphGroup implements FinishListen
       }
       log.info(i18n.getString("maxGraphsNumber", this.getName(),
                               Integer.toString(this.max)));
+
+      this.pooled = DOMUtils.getBooleanAttribute(config, GRAPH_POOL_ATTR);
+      this.min = DOMUtils.getIntAttribute(config, MIN_GRAPH_ATTR, false);
+      if (this.min <= 0 || this.min > this.max) {
+         this.min = this.max;
+      }
+      if (this.pooled) {
+         log.info(i18n.getString("graphPoolSize", this.getName(),
+                                 Integer.toString(this.min), Integer.toString(this.max)));
+      }
+
+      this.fileAffinity = DOMUtils.getBooleanAttribute(config, FILE_AFFINITY_ATTR);
+      if (this.fileAffinity) {
+         log.info(i18n.getString("graphFileAffinity", this.getName()));
+      }
       
       AusterManagementServices.registerMBean(true, config, this.getClass(), this);
       // this.setMinGraphs(XMLUtils.getIntAttribute(config, MIN_GRAPH_ATTR));
@@ -112,11 +201,8 @@ public abstract class LocalGraphGroup extends GraphGroup implements FinishListen
     */
    public void configureGraph(Element config) throws GraphException {
       log.info(i18n.getString("settingGraphs", this.getName()));
-
-      synchronized (this.graphSet) {
-         for (Iterator it = this.graphSet.iterator(); it.hasNext();) {
-            ((Graph) it.next()).configureGraph(config);
-         }
+      synchronized (this.reconfigureSync) {
+         this.rollover(GraphBlueprint.compile(config));
          this.graphConfig = config;
       }
    }
@@ -132,12 +218,65 @@ public abstract class LocalGraphGroup extends GraphGroup implements FinishListen
    public void configureFilter(String filterName, Element config) throws GraphException,
          FilterException {
       log.info(i18n.getString("settingFilters", filterName, this.getName()));
+      synchronized (this.reconfigureSync) {
+         this.rollover(this.graphBlueprint.withFilterConfig(filterName, config));
+      }
+   }
+
+   /**
+    * Replaces all the graphs of this group by graphs built from
+    * <code>blueprint</code>. The new graphs are built before any old one is
+    * touched, so if some of them can not be built the group keeps running with
+    * the old configuration.
+    */
+   private void rollover(GraphBlueprint blueprint) throws GraphException {
+      final int size;
       synchronized (this.graphSet) {
-         for (Iterator it = this.graphSet.iterator(); it.hasNext();) {
-            ((Graph) it.next()).configureFilter(filterName, config);
+         size = this.graphSet.size();
+         if (size == 0) {
+            // nothing to replace, the next graphs will use it
+            this.graphBlueprint = blueprint;
+            this.graphVersion++;
+            return;
          }
-         this.graphConfig = config;
       }
+
+      // builds the new graphs without holding any lock of the group
+      final Graph[] fresh = this.buildGraphs(blueprint, size);
+
+      final List stale = new ArrayList();
+      int retiring = 0;
+      synchronized (this.graphSet) {
+         synchronized (this.freeGraphStack.getSyncObject()) {
+            for (Iterator it = this.graphSet.iterator(); it.hasNext();) {
+               final Graph graph = (Graph) it.next();
+               final boolean free = this.freeGraphStack.contains(graph);
+               if (free) {
+                  this.freeGraphStack.remove(graph);
+               }
+               if (free && !graph.isProcessing()) {
+                  stale.add(graph);
+               } else {
+                  // taken to process a request: finishes it before being shut down
+                  this.retiringGraphs.put(graph, Boolean.FALSE);
+                  retiring++;
+               }
+            }
+            this.graphSet.clear();
+            this.graphBlueprint = blueprint;
+            this.graphVersion++;
+            for (int i = 0; i < fresh.length; i++) {
+               this.graphSet.add(fresh[i]);
+               this.freeGraphStack.put(fresh[i]);
+            }
+         }
+         for (Iterator it = stale.iterator(); it.hasNext();) {
+            this.shutdownInBackground((Graph) it.next());
+         }
+      }
+      log.info(i18n.getString("graphsReconfigured", this.getName(),
+                              Integer.toString(this.graphVersion), Integer.toString(fresh.length),
+                              Integer.toString(retiring)));
    }
 
    /**
@@ -190,11 +329,19 @@ public abstract class LocalGraphGroup extends GraphGroup implements FinishListen
    protected void process(Request request) throws RuntimeException {
       Graph graph = null;
       log.debug("process request wei=" + request.getWeight());
+      if (this.pooled) {
+         this.growPool();
+      }
       do {
          try {
-            graph = (Graph) this.freeGraphStack.get();
+            graph = this.takeFreeGraph(request);
+            if (graph.getBlueprint() != this.graphBlueprint && this.retire(graph)) {
+               // put back by someone that did not see the reconfiguration
+               graph = null;
+               continue;
+            }
          } catch (NoSuchElementException e) {
-            if (this.graphSet.size() < this.max) {
+            if (this.getAllocatedGraphs() < this.max) {
                // Creates a new graph to process this request
                try {
                   graph = createGraph();
@@ -210,39 +357,327 @@ public abstract class LocalGraphGroup extends GraphGroup implements FinishListen
          }
       } while (graph == null); // || !graph.isAlive());
 
+      if (this.fileAffinity) {
+         final File file = FileAffinityReqForwarder.getSourceFile(request);
+         if (file != null) {
+            synchronized (this.freeGraphStack.getSyncObject()) {
+               this.fileByGraph.put(graph, file);
+            }
+         }
+      }
+
       log.debug("there is a free graph, process request wei=" + request.getWeight());
       graph.process(request, this);
    }
 
    /**
-    * Creates a graph.
+    * Takes a graph from the free graph stack. With file affinity, the graph
+    * that last read from the file of the request is preferred.
+    * 
+    * @throws NoSuchElementException
+    *            if there is no free graph.
+    */
+   private Graph takeFreeGraph(Request request) throws NoSuchElementException {
+      if (!this.fileAffinity) {
+         return (Graph) this.freeGraphStack.get();
+      }
+      final File file = FileAffinityReqForwarder.getSourceFile(request);
+      synchronized (this.freeGraphStack.getSyncObject()) {
+         Graph graph = null;
+         if (file != null) {
+            for (Iterator it = this.fileByGraph.entrySet().iterator(); it.hasNext();) {
+               final Map.Entry entry = (Map.Entry) it.next();
+               if (file.equals(entry.getValue())
+                     && this.freeGraphStack.contains(entry.getKey())) {
+                  graph = (Graph) entry.getKey();
+                  this.freeGraphStack.remove(graph);
+                  break;
+               }
+            }
+         }
+         return graph == null ? (Graph) this.freeGraphStack.get() : graph;
+      }
+   }
+
+   /**
+    * Creates a graph. The graph is built out of the <code>graphSet</code>
+    * lock, so that many graphs may be built at the same time.
     */
    protected Graph createGraph() throws GraphException {
+      return this.createGraph(false);
+   }
+
+   /**
+    * Creates a graph, optionally only if the group has not reached its maximum
+    * number of graphs yet.
+    * 
+    * @param belowMax
+    *           if true and the group already has (or is building) its maximum
+    *           number of graphs, no graph is created.
+    * @return the new graph, or null if none was created.
+    */
+   private Graph createGraph(boolean belowMax) throws GraphException {
+      GraphBlueprint blueprint;
       synchronized (this.graphSet) {
-         String graphName = "(" + this.getName() + ") #" + (++count);
-         Graph graph = new Graph(graphName, this.graphConfig);
-		 // setting the JMX shared counter object 
-		 graph.setJMXCounters(this.fmediator.getJMXCounters());
-         this.graphSet.add(graph);
-         return graph;
+         if (belowMax && this.graphSet.size() + this.building >= this.max) {
+            return null;
+         }
+         blueprint = this.graphBlueprint;
+         this.building++;
+      }
+      try {
+         final Graph graph = this.newGraph(blueprint);
+         while (true) {
+            synchronized (this.graphSet) {
+               if (blueprint == this.graphBlueprint) {
+                  this.graphSet.add(graph);
+                  return graph;
+               }
+               blueprint = this.graphBlueprint;
+            }
+            // the group was reconfigured while this graph was built; nobody
+            // else knows this graph, so it is reconfigured out of the lock
+            graph.configureGraph(blueprint);
+         }
+      } finally {
+         synchronized (this.graphSet) {
+            this.building--;
+         }
+      }
+   }
+
+   /**
+    * Builds graphs in parallel from the given blueprint, shutting down the ones
+    * already built if some of them fails.
+    */
+   private Graph[] buildGraphs(final GraphBlueprint blueprint, int quant) throws GraphException {
+      final int threads = Math.min(quant, Runtime.getRuntime().availableProcessors());
+      final ExecutorService builders = Executors.newFixedThreadPool(threads,
+                                                                    new BuilderFactory(this.getName()));
+      final List builds = new ArrayList(quant);
+      final List built = new ArrayList(quant);
+      try {
+         for (int i = 0; i < quant; i++) {
+            builds.add(builders.submit(new Callable() {
+               public Object call() throws GraphException {
+                  return newGraph(blueprint);
+               }
+            }));
+         }
+         GraphException error = null;
+         for (Iterator it = builds.iterator(); it.hasNext();) {
+            try {
+               built.add(((Future) it.next()).get());
+            } catch (ExecutionException e) {
+               error = new GraphException(e.getCause());
+            } catch (InterruptedException e) {
+               error = new GraphException(e);
+            }
+         }
+         if (error != null) {
+            log.error(i18n.getString("graphReconfigurationFailed", this.getName()), error);
+            for (Iterator it = built.iterator(); it.hasNext();) {
+               ((Graph) it.next()).shutdown(false);
+            }
+            throw error;
+         }
+      } finally {
+         builders.shutdown();
+      }
+      return (Graph[]) built.toArray(new Graph[built.size()]);
+   }
+
+   /**
+    * Creates a graph of this group, not yet added to the <code>graphSet</code>.
+    */
+   private Graph newGraph(GraphBlueprint blueprint) throws GraphException {
+      final String graphName;
+      synchronized (this.graphSet) {
+         graphName = "(" + this.getName() + ") #" + (++count);
+      }
+      final Graph graph = new Graph(graphName, blueprint);
+      // setting the JMX shared counter object
+      graph.setJMXCounters(this.fmediator.getJMXCounters());
+      graph.setLatencyMonitor(this.latencyMonitor);
+      graph.setDeadlineMisses(this.deadlineMisses);
+      if (this.pooled) {
+         graph.setIdleListener(this);
+      }
+      return graph;
+   }
+
+   /**
+    * Shuts down a graph that is no longer part of this group, without blocking
+    * the caller.
+    */
+   private void shutdownInBackground(final Graph graph) {
+      synchronized (this.graphSet) {
+         if (this.graphBuilder == null) {
+            this.graphBuilder = Executors.newSingleThreadExecutor(new BuilderFactory(this.getName()));
+         }
+         this.graphBuilder.submit(new Runnable() {
+            public void run() {
+               graph.shutdown(true);
+               synchronized (graphSet) {
+                  retiringGraphs.remove(graph);
+               }
+               log.info(i18n.getString("oldGraphRetired", graph, getName()));
+            }
+         });
+      }
+   }
+
+   /**
+    * Schedules the shutdown of a graph of an old configuration, once.
+    * 
+    * @return false if the graph is not retiring.
+    */
+   private boolean retire(Graph graph) {
+      synchronized (this.graphSet) {
+         final Object scheduled = this.retiringGraphs.get(graph);
+         if (scheduled == null) {
+            return false;
+         } else if (scheduled == Boolean.FALSE) {
+            this.retiringGraphs.put(graph, Boolean.TRUE);
+            this.shutdownInBackground(graph);
+         }
+         return true;
+      }
+   }
+
+   /**
+    * Returns how many graphs exist or are being built. It does not lock the
+    * <code>graphSet</code>, since it is called holding the free graph stack
+    * lock.
+    */
+   protected int getAllocatedGraphs() {
+      return this.graphSet.size() + this.building;
+   }
+
+   /**
+    * Builds graphs in parallel and puts them in the free graph stack, blocking
+    * until all of them are ready.
+    * 
+    * @param quant
+    *           the number of graphs to build.
+    */
+   protected void prebuildGraphs(int quant) throws GraphException {
+      final int threads = Math.min(quant, Runtime.getRuntime().availableProcessors());
+      if (threads <= 0) {
+         return;
+      }
+      log.info(i18n.getString("prebuildingGraphs", this.getName(), Integer.toString(quant)));
+      final ExecutorService builders = Executors.newFixedThreadPool(threads,
+                                                                    new BuilderFactory(this.getName()));
+      try {
+         final List builds = new ArrayList(quant);
+         for (int i = 0; i < quant; i++) {
+            builds.add(builders.submit(new GraphBuild()));
+         }
+         for (Iterator it = builds.iterator(); it.hasNext();) {
+            try {
+               ((Future) it.next()).get();
+            } catch (ExecutionException e) {
+               throw new GraphException(e.getCause());
+            } catch (InterruptedException e) {
+               throw new GraphException(e);
+            }
+         }
+      } finally {
+         builders.shutdown();
       }
    }
 
+   /**
+    * Starts building graphs in background when there are more requests waiting
+    * in the queue than free graphs, up to the maximum number of graphs.
+    */
+   protected void growPool() {
+      final int waiting = this.fmediator.getQueueSize();
+      final int missing;
+      synchronized (this.graphSet) {
+         missing = Math.min(waiting - this.freeGraphStack.size(),
+                            this.max - this.graphSet.size() - this.building);
+         if (missing <= 0) {
+            return;
+         }
+         if (this.graphBuilder == null) {
+            this.graphBuilder = Executors.newSingleThreadExecutor(new BuilderFactory(this.getName()));
+         }
+      }
+      log.debug("Growing graph pool of group " + this.getName() + " by " + missing + " graphs.");
+      for (int i = 0; i < missing; i++) {
+         this.graphBuilder.submit(new GraphBuild());
+      }
+   }
+
+   /**
+    * Called when a graph of the pool stays idle longer than its idle timeout.
+    * The graph is retired if the pool has more than <code>min-graphs</code>
+    * graphs and the graph is still free.
+    * 
+    * @see br.com.auster.dware.graph.GraphIdleListener#graphIdle(br.com.auster.dware.graph.Graph)
+    */
+   public boolean graphIdle(Graph graph) {
+      synchronized (this.graphSet) {
+         if (this.retiringGraphs.get(graph) == Boolean.FALSE) {
+            // left in the free graph stack by a graph builder during a reconfiguration
+            synchronized (this.freeGraphStack.getSyncObject()) {
+               if (!this.freeGraphStack.contains(graph)) {
+                  return false;
+               }
+               this.freeGraphStack.remove(graph);
+            }
+            this.retiringGraphs.remove(graph);
+            return true;
+         }
+         if (this.graphSet.size() <= this.min || !this.graphSet.contains(graph)) {
+            return false;
+         }
+         final Object graphSync = this.freeGraphStack.getSyncObject();
+         synchronized (graphSync) {
+            if (!this.freeGraphStack.contains(graph)) {
+               // it has just been taken to process a request
+               return false;
+            }
+            this.freeGraphStack.remove(graph);
+         }
+         this.graphSet.remove(graph);
+      }
+      log.info(i18n.getString("graphRetired", graph, this.getName(),
+                              Integer.toString(this.graphSet.size())));
+      return true;
+   }
+
    /**
     * When called, this method will tell to all the graphs that they must stop
     * when they finish their jobs.
     */
    protected void shutdownGraphs() {
+      final List graphs;
       synchronized (this.graphSet) {
-         // Waits for the thread's graphs.
+         // graphs still processing are told apart as retiring, so that they
+         // can finish while we wait for them out of this lock
          for (Iterator it = this.graphSet.iterator(); it.hasNext();) {
-            ((Graph) it.next()).shutdown(true);
+            this.retiringGraphs.put(it.next(), Boolean.TRUE);
          }
+         graphs = new ArrayList(this.retiringGraphs.keySet());
 
          // Clear the free graph stack, because we don't have any free
          // graph now.
          this.freeGraphStack.clear();
          this.graphSet.clear();
+         if (this.graphBuilder != null) {
+            this.graphBuilder.shutdownNow();
+            this.graphBuilder = null;
+         }
+      }
+      // Waits for the thread's graphs.
+      for (Iterator it = graphs.iterator(); it.hasNext();) {
+         ((Graph) it.next()).shutdown(true);
+      }
+      synchronized (this.graphSet) {
+         this.retiringGraphs.keySet().removeAll(graphs);
       }
    }
 
@@ -262,7 +697,7 @@ public abstract class LocalGraphGroup extends GraphGroup implements FinishListen
             // ones
             // not created yet.
             int freeGraphs = this.freeGraphStack.size()
-                  + (this.max - this.graphSet.size());
+                  + (this.max - this.getAllocatedGraphs());
 
             // If we have no graphs available, wait for one.
             if (freeGraphs < minVal) {
@@ -318,14 +753,26 @@ public abstract class LocalGraphGroup extends GraphGroup implements FinishListen
     *           represents the problem that ocurred.
     */
    public void graphFinished(Graph graph, Request request, Throwable error, Date time) {
-      if (this.graphSet.contains(graph)) {
-         this.freeGraphStack.put(graph);
-         log.debug("Putting the graph '" + graph
-                  + "' in the free graph stack. Number of free graphs = "
-                  + freeGraphStack.size());
-      } else {
-         throw new IllegalArgumentException(i18n.getString("graphDoesNotExist", graph,
-               this.getName()));
+      // decided under the graphSet lock, so that a reconfiguration can not
+      // retire the graph between the check and the offer
+      synchronized (this.graphSet) {
+         if (this.graphSet.contains(graph)) {
+            this.offerGraph(graph);
+            log.debug("Putting the graph '" + graph
+                     + "' in the free graph stack. Number of free graphs = "
+                     + freeGraphStack.size());
+         } else if (this.retire(graph)) {
+            log.debug("The graph '" + graph + "' has an old configuration and will be shut down.");
+         } else {
+            throw new IllegalArgumentException(i18n.getString("graphDoesNotExist", graph,
+                  this.getName()));
+         }
+      }
+      
+      if (error == null && time != null
+            && this.fmediator instanceof DataAwareManagerWishMediator) {
+         ((DataAwareManagerWishMediator) this.fmediator).reqTimed(request, this.getName(),
+                                                                  time.getTime());
       }
       
       // (since Data-Aware 1.5) mandatory call as specified in 
@@ -347,10 +794,83 @@ public abstract class LocalGraphGroup extends GraphGroup implements FinishListen
       return this.max;
    }
 
+   public int getMinGraphs() {
+      return this.min;
+   }
+
+   public int getGraphCount() {
+      return this.graphSet.size();
+   }
+
+   public int getFreeGraphCount() {
+      return this.freeGraphStack.size();
+   }
+
+   public boolean isPooled() {
+      return this.pooled;
+   }
+
    /**
-    * Do Nothing.
+    * Builds one graph of the pool and leaves it in the free graph stack.
+    */
+   private final class GraphBuild implements java.util.concurrent.Callable {
+      public Object call() throws GraphException {
+         Graph graph = createGraph(true);
+         if (graph != null) {
+            freeGraphStack.put(graph);
+         }
+         return graph;
+      }
+   }
+
+   /**
+    * Creates the daemon threads that build graphs for the pool.
+    */
+   private static final class BuilderFactory implements ThreadFactory {
+
+      private final String groupName;
+
+      private int count = 0;
+
+      BuilderFactory(String groupName) {
+         this.groupName = groupName;
+      }
+
+      public synchronized Thread newThread(Runnable r) {
+         Thread t = new Thread(r, "GraphBuilder (" + this.groupName + ") #" + (++this.count));
+         t.setDaemon(true);
+         return t;
+      }
+   }
+
+   /**
+    * Puts a graph in the free graph stack. A pipelined graph may already be
+    * there, since it is given back as soon as one of its filter sets is free.
+    */
+   private void offerGraph(Graph graph) {
+      if (graph.isPipelined()) {
+         synchronized (this.freeGraphStack.getSyncObject()) {
+            if (!this.freeGraphStack.contains(graph)) {
+               this.freeGraphStack.put(graph);
+            }
+         }
+      } else {
+         this.freeGraphStack.put(graph);
+      }
+   }
+
+   /**
+    * A pipelined graph is given back to the free graph stack when it starts
+    * committing, if its other filter set can already take the next request.
     */
    public void graphCommiting(Graph graph, Request request) {
+      if (graph.isPipelined() && graph.canAccept()) {
+         synchronized (this.graphSet) {
+            if (this.graphSet.contains(graph)) {
+               this.offerGraph(graph);
+            }
+         }
+      }
    }
 
    /**
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.manager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+import org.w3c.dom.Element;
+
+import br.com.auster.common.util.I18n;
+import br.com.auster.common.xml.DOMUtils;
+import br.com.auster.dware.graph.Request;
+
+/**
+ * Learns, while the requests are processed, how many milliseconds each unit
+ * of weight takes to be processed, for each class of requests. A class is
+ * made of the Java class of the request and the values of some of its
+ * attributes, so that, for instance, requests of different customers or
+ * layouts are told apart.
+ * 
+ * <p>
+ * The cost of a request is its weight scaled by how slower, or faster, its
+ * class is when compared to all the requests processed. So a request of an
+ * average class costs its weight, and a request of a class twice as slow per
+ * unit of weight costs twice its weight. Until a class has been seen enough
+ * times, its requests cost their weight. The rates are exponentially
+ * weighted moving averages, so the estimator follows changes in the load.
+ * </p>
+ * 
+ * <p>
+ * The group that is going to process a request is not known when it is
+ * queued, so the estimates do not depend on it: the completions of every
+ * group, local or remote, train the same rates.
+ * </p>
+ * 
+ * Configuration:
+ * <pre>
+ * &lt;cost-estimator class-name="br.com.auster.dware.manager.OnlineCostEstimator"
+ *                 attributes="customer,layout" smoothing="0.2" min-samples="5"/&gt;
+ * </pre>
+ * 
+ * @version $Id$
+ */
+public class OnlineCostEstimator implements CostEstimator {
+
+  /**
+   * {@value} - comma separated names of the request attributes that make a
+   * class of requests.
+   */
+  public static final String ATTRIBUTES_ATTR = "attributes";
+  /**
+   * {@value} - how much each new completion counts in the rates, between 0
+   * and 1. Defaults to 0.2.
+   */
+  public static final String SMOOTHING_ATTR = "smoothing";
+  /**
+   * {@value} - how many completions of a class are needed before its
+   * requests are estimated. Defaults to 5.
+   */
+  public static final String MIN_SAMPLES_ATTR = "min-samples";
+
+  private static final Logger log = Logger.getLogger(OnlineCostEstimator.class);
+
+  private final I18n i18n = I18n.getInstance(OnlineCostEstimator.class);
+
+  private String[] attributes = new String[0];
+
+  private double smoothing = 0.2;
+
+  private int minSamples = 5;
+
+  private final Rate globalRate = new Rate();
+
+  private final ConcurrentMap<String, Rate> classRates = new ConcurrentHashMap<String, Rate>();
+
+  public void configure(Element config) {
+    if (config == null) {
+      return;
+    }
+    String value = DOMUtils.getAttribute(config, ATTRIBUTES_ATTR, false);
+    if (value != null && value.trim().length() > 0) {
+      this.attributes = value.trim().split("\\s*,\\s*");
+    }
+    value = DOMUtils.getAttribute(config, SMOOTHING_ATTR, false);
+    if (value != null && value.length() > 0) {
+      this.smoothing = Double.parseDouble(value);
+      if (this.smoothing <= 0 || this.smoothing > 1) {
+        throw new IllegalArgumentException(SMOOTHING_ATTR + "=" + value);
+      }
+    }
+    value = DOMUtils.getAttribute(config, MIN_SAMPLES_ATTR, false);
+    if (value != null && value.length() > 0) {
+      this.minSamples = Math.max(Integer.parseInt(value), 1);
+    }
+    log.info(i18n.getString("costEstimatorConfigured", join(this.attributes),
+                            Double.toString(this.smoothing), Integer.toString(this.minSamples)));
+  }
+
+  /**
+   * Returns the weight of the request scaled by the rate of its class.
+   */
+  public long estimate(Request request) {
+    long weight = request.getWeight();
+    Rate rate = this.classRates.get(this.classOf(request));
+    double global = this.globalRate.get();
+    if (rate == null || rate.getSamples() < this.minSamples || global <= 0) {
+      return weight;
+    }
+    long cost = Math.round(weight * (rate.get() / global));
+    return (cost == 0 && weight > 0) ? 1 : cost;
+  }
+
+  public void observe(Request request, String groupName, long millis) {
+    long weight = Math.max(request.getWeight(), 1);
+    String key = this.classOf(request);
+    this.globalRate.add(millis, weight, this.smoothing);
+    rateOf(this.classRates, key).add(millis, weight, this.smoothing);
+  }
+
+  /**
+   * Sets the names of the request attributes that make a class of requests.
+   */
+  public void setAttributes(String[] attributes) {
+    this.attributes = attributes == null ? new String[0] : attributes;
+  }
+
+  /**
+   * Returns the class of the request, as used by the estimates.
+   */
+  public String classOf(Request request) {
+    StringBuilder key = new StringBuilder(request.getClass().getName());
+    Map attrs = request.getAttributes();
+    for (int i = 0; i < this.attributes.length; i++) {
+      key.append('|').append(attrs.get(this.attributes[i]));
+    }
+    return key.toString();
+  }
+
+  /**
+   * Returns how many milliseconds each unit of weight takes to be processed,
+   * considering all the requests, or 0 if no request finished yet.
+   */
+  public double getRate() {
+    return this.globalRate.get();
+  }
+
+  /**
+   * Returns how many milliseconds each unit of weight of the given class of
+   * requests takes to be processed, or 0 if none of them finished yet.
+   * 
+   * @see #classOf(Request)
+   */
+  public double getClassRate(String requestClass) {
+    Rate rate = this.classRates.get(requestClass);
+    return rate == null ? 0 : rate.get();
+  }
+
+  private static Rate rateOf(ConcurrentMap<String, Rate> rates, String key) {
+    Rate rate = rates.get(key);
+    if (rate == null) {
+      rate = new Rate();
+      Rate other = rates.putIfAbsent(key, rate);
+      if (other != null) {
+        rate = other;
+      }
+    }
+    return rate;
+  }
+
+  private static String join(String[] values) {
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        result.append(',');
+      }
+      result.append(values[i]);
+    }
+    return result.toString();
+  }
+
+  /*
+   * Moving averages of the processing times and of the weights. Their ratio
+   * is less disturbed by tiny requests than the average of the ratios.
+   */
+  private static final class Rate {
+
+    private double millis;
+
+    private double weight;
+
+    private long samples;
+
+    synchronized void add(long millis, long weight, double smoothing) {
+      if (this.samples++ == 0) {
+        this.millis = millis;
+        this.weight = weight;
+      } else {
+        this.millis += smoothing * (millis - this.millis);
+        this.weight += smoothing * (weight - this.weight);
+      }
+    }
+
+    synchronized double get() {
+      return this.weight <= 0 ? 0 : this.millis / this.weight;
+    }
+
+    synchronized long getSamples() {
+      return this.samples;
+    }
+  }
+}
@@ -19,6 +19,7 @@ package br.com.auster.dware.manager;
 
 import gnu.trove.TLongArrayList;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -35,7 +36,7 @@ import org.w3c.dom.Element;
 
 import br.com.auster.common.jmx.AusterManagementServices;
 import br.com.auster.common.util.I18n;
-import br.com.auster.common.util.SyncQueue;
+import br.com.auster.common.xml.DOMUtils;
 import br.com.auster.dware.graph.Request;
 
 /**
@@ -118,9 +119,15 @@ public class PriorityQueueReqForwarder implements ReqForwarderInterface {
    // if shutdown has already been called
    private boolean shutdownFlag;
 
+   // true while a batch is being added, so the queues are managed only once
+   private boolean addingBatch;
+
    // mediator instace
    protected DataAwareManagerMediator fmediator;
 
+   // where the cold tail of the queues is kept (in memory if null)
+   private RequestSpill spill;
+
    /**
      * Contructor. Initialize priority queues.
      */
@@ -160,9 +167,46 @@ public class PriorityQueueReqForwarder implements ReqForwarderInterface {
    public void configure(Element config) {
       if (config != null) {
          AusterManagementServices.registerMBean(true, config, this.getClass(), this);
+         Element spillConf = DOMUtils.getElement(config, RequestSpill.SPILL_ELEMENT, false);
+         if (spillConf != null) {
+            try {
+               this.setSpill(new RequestSpill(spillConf));
+            } catch (IOException e) {
+               log.error(i18n.getString("spillNotConfigured"), e);
+            }
+         }
       }      
    }
 
+   /**
+    * Sets where the cold tail of the queues is kept.
+    * 
+    * @param spill
+    *           the spill, or null to keep the queues in memory.
+    */
+   public void setSpill(RequestSpill spill) {
+      this.queueLock.lock();
+      try {
+         if (this.spill != null) {
+            this.spill.close();
+         }
+         this.spill = spill;
+         for (Iterator it = this.pqueue.iterator(); it.hasNext();) {
+            ((ReqQueue) it.next()).getReqQueue().setSpill(spill);
+         }
+      } finally {
+         this.queueLock.unlock();
+      }
+   }
+
+   /**
+    * Returns where the cold tail of the queues is kept, or null if they are
+    * kept in memory.
+    */
+   public RequestSpill getSpill() {
+      return this.spill;
+   }
+
    /*
      * Return queue pointer given a weight. This is NOT synchronized, take care.
      * @param wei Maximum request weight.
@@ -193,6 +237,7 @@ public class PriorityQueueReqForwarder implements ReqForwarderInterface {
       if ( checkIfNotLoaded(newReq) && addReq(newReq) ) {
         this.fmediator.reqQueued(newReq); // let mediator knows
         this.queueNotEmptyCondition.signal();
+        this.fmediator.reqAvailable(newReq);
       }
     } finally {
       this.queueLock.unlock();
@@ -208,25 +253,84 @@ public class PriorityQueueReqForwarder implements ReqForwarderInterface {
       if ( checkIfNotLoaded(req) && addReq(req) ) {
         this.fmediator.reqRequeued(req); // let mediator knows
         this.queueNotEmptyCondition.signal();
+        this.fmediator.reqAvailable(req);
       }
     } finally {
       this.queueLock.unlock();
     }
   }
    
-   /**
-     * {@inheritDoc}
-     */
+  /**
+   * Adds all the requests at once: the mediator checks and registers the whole
+   * batch in a single call each, and the queues are managed only after the
+   * last request is stored.
+   * 
+   * @param newReqs
+   *          a collection containing all new requests.
+   */
   public void addNewReqs(Collection<Request> newReqs) {
+    this.addReqs(newReqs, false);
+  }
+
+  /**
+   * Adds all the requeued requests at once, like
+   * {@link #addNewReqs(Collection)}.
+   * 
+   * @param reqs
+   *          a collection containing all the requests being requeued.
+   */
+  public void addRetryReqs(Collection<Request> reqs) {
+    this.addReqs(reqs, true);
+  }
+
+  private void addReqs(Collection<Request> newReqs, boolean retry) {
     this.queueLock.lock();
     try {
-      for (Request req : newReqs) {
-        addNewReq(req);
+      // checked under the lock, so a concurrent batch can't load them too
+      List<Request> reqs = filterNotLoaded(newReqs);
+      if (reqs.isEmpty()) {
+        return;
       }
+      // let mediator knows
+      if (retry) {
+        for (Request req : reqs) {
+          this.fmediator.reqRequeued(req);
+        }
+      } else {
+        this.fmediator.reqsQueued(reqs);
+      }
+      this.addingBatch = true;
+      try {
+        for (Request req : reqs) {
+          addReq(req);
+        }
+      } finally {
+        this.addingBatch = false;
+      }
+      if (this.numNewReq > Math.round(this.percent4Manage * (float) this.numReq)) {
+        manageList();
+      }
+      this.queueNotEmptyCondition.signalAll();
+      this.fmediator.reqsAvailable(reqs);
     } finally {
       this.queueLock.unlock();
     }
   }
+
+  /*
+   * Returns the requests of the batch that were not loaded yet.
+   */
+  private List<Request> filterNotLoaded(Collection<Request> reqs) {
+    if (fmediator == null) {
+      return new ArrayList<Request>(reqs);
+    }
+    List<Request> notLoaded = fmediator.filterNotLoaded(reqs);
+    if (notLoaded.size() < reqs.size()) {
+      log.warn(i18n.getString("reqsAlreadyLoaded", Integer.toString(reqs.size() - notLoaded.size()),
+                              Integer.toString(reqs.size())));
+    }
+    return notLoaded;
+  }
   
   /**
    * Checks if a request was not already loaded to this queue. This
@@ -255,10 +359,10 @@ public class PriorityQueueReqForwarder implements ReqForwarderInterface {
    protected boolean addReq(Request newReq) {
      this.queueLock.lock();
      try {
-         ((ReqQueue) this.pqueue.get(getQueueIndex(newReq.getWeight()))).put(newReq);
+         ((ReqQueue) this.pqueue.get(getQueueIndex(newReq.getCost()))).put(newReq);
          this.numReq++;
          this.numNewReq++;
-         if (numNewReq > Math.round(this.percent4Manage * (float) this.numReq)) {
+         if (!this.addingBatch && numNewReq > Math.round(this.percent4Manage * (float) this.numReq)) {
             manageList();
          }
          return true;
@@ -368,6 +472,18 @@ public class PriorityQueueReqForwarder implements ReqForwarderInterface {
       }
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   public int size() {
+      this.queueLock.lock();
+      try {
+         return this.numReq;
+      } finally {
+         this.queueLock.unlock();
+      }
+   }
+
    /**
     * Return the weight that the priority queue wish that someone ask him.
     * 
@@ -709,7 +825,7 @@ public class PriorityQueueReqForwarder implements ReqForwarderInterface {
          System.out.println("About to request REQUEUE");
          ReqQueue fila = (ReqQueue) itr.next();
          System.out.println("About to ADD ALL");
-         list.addAll((Collection) fila.getReqQueue());
+         list.addAll(fila.getReqQueue().toList());
          System.out.println("Added ALL");
       }
       return list;
@@ -724,7 +840,7 @@ public class PriorityQueueReqForwarder implements ReqForwarderInterface {
     */
    class ReqQueue {
 
-      private final SyncQueue reqQueue = new SyncQueue();
+      private final TieredRequestQueue reqQueue = new TieredRequestQueue(spill);
 
       private long totalWeight;
 
@@ -738,6 +854,16 @@ public class PriorityQueueReqForwarder implements ReqForwarderInterface {
       public ReqQueue() {
          totalWeight = 0;
          addLastPriority();
+         reqQueue.setListener(new TieredRequestQueue.Listener() {
+            public void requestsLost(List<Request> requests, IOException cause) {
+               for (Request req : requests) {
+                  totalWeight -= req.getCost();
+                  if (fmediator != null) {
+                     fmediator.reqLost(req, cause);
+                  }
+               }
+            }
+         });
       }
 
       /**
@@ -763,7 +889,7 @@ public class PriorityQueueReqForwarder implements ReqForwarderInterface {
        * 
        * @return the <code>Queue</code> object.
        */
-      public SyncQueue getReqQueue() {
+      public TieredRequestQueue getReqQueue() {
          return reqQueue;
       }
 
@@ -785,7 +911,7 @@ public class PriorityQueueReqForwarder implements ReqForwarderInterface {
        *           an item
        */
       public final void put(Request item) {
-         totalWeight += item.getWeight();
+         totalWeight += item.getCost();
          reqQueue.put(item);
          manageAdd();
       }
@@ -822,7 +948,7 @@ public class PriorityQueueReqForwarder implements ReqForwarderInterface {
       public final Request get() throws NoSuchElementException {
 
          Request raux = (Request) reqQueue.get();
-         totalWeight -= raux.getWeight();
+         totalWeight -= raux.getCost();
          manageRem();
          // manages list to decrease only
          if (shutdownFlag && totalWeight == 0) {
@@ -861,12 +987,11 @@ public class PriorityQueueReqForwarder implements ReqForwarderInterface {
        *           queue to be appended with this.
        */
       public final boolean append(ReqQueue q) {
-         boolean appOk = true;
          if (q.size() != 0) {
             // sum total weight
             totalWeight += q.getTotalWeight();// (totalWeight*size()+q.getTotalWeight()*q.size())/(size()+q.size());
             // append
-            appOk = reqQueue.append(q.getReqQueue());
+            reqQueue.append(q.getReqQueue());
             // mantain links
             q.prepareRemove();
             this.manageAdd();
@@ -894,8 +1019,8 @@ public class PriorityQueueReqForwarder implements ReqForwarderInterface {
                sb.append(" size:");
                sb.append(size());
                sb.append(" -> || ");
-               for (int j = 0; j < reqQueue.size(); j++) {
-                  Request req = (Request) reqQueue.elementAt(j);
+               for (Iterator it = reqQueue.inMemory().iterator(); it.hasNext();) {
+                  Request req = (Request) it.next();
                   sb.append(" ");
                   sb.append(req.getId());
                   sb.append(":");
@@ -116,7 +116,7 @@ public class PriorityQueueWishGraphGroup extends LocalGraphGroup {
     
     if (retReq != null) {
       // update avaiable space
-      avaiableWeight -= retReq.getWeight();
+      avaiableWeight -= retReq.getCost();
 
       if (log.isDebugEnabled())
         log.debug("got the request " + retReq.getId() + ": weight=" + retReq.getWeight()
@@ -139,12 +139,21 @@ public class PriorityQueueWishGraphGroup extends LocalGraphGroup {
    *          represents the problem that ocurred.
    */
   public void graphFinished(Graph graph, Request request, Throwable error, Date time) {
-    avaiableWeight += request.getWeight(); // update avaiable space
+    avaiableWeight += request.getCost(); // update avaiable space
     if (log.isDebugEnabled())
       log.debug("finishes  request " + request.getId() + ": weight=" + request.getWeight()
                 + "   weight avaiable=" + avaiableWeight);
     super.graphFinished(graph, request, error, time);
   }
+
+  /**
+   * A request is only worth a new try if it fits in the weight still
+   * avaiable.
+   */
+  protected boolean accepts(Request request) {
+    return maxWeight == -1 || request.getCost() <= avaiableWeight;
+  }
+
 //JMX Methods
   public long getMaxWeight() {
      return this.maxWeight;
@@ -108,7 +108,7 @@ public class PriorityQueueWishRemoteGraphGroup extends RemoteGraphGroup {
 
     if (retReq != null) {
       // update avaiable space
-      avaiableWeight -= retReq.getWeight();
+      avaiableWeight -= retReq.getCost();
   
       if (log.isDebugEnabled())
         log.debug("got the request " + retReq.getId() + ": weight=" + retReq.getWeight()
@@ -131,7 +131,7 @@ public class PriorityQueueWishRemoteGraphGroup extends RemoteGraphGroup {
    *          represents the problem that ocurred.
    */
   public void serverGraphFinishedAction(Request request, String graphName, Throwable error) {
-    avaiableWeight += request.getWeight(); // update avaiable space
+    avaiableWeight += request.getCost(); // update avaiable space
     if (log.isDebugEnabled())
       log.debug("finishes request " + request.getId() + ": weight=" + request.getWeight()
                 + "   weight avaiable=" + avaiableWeight);
@@ -142,6 +142,14 @@ public class PriorityQueueWishRemoteGraphGroup extends RemoteGraphGroup {
     super.serverGraphFinishedAction(request, graphName, error);
   }
 
+  /**
+   * A request is only worth a new try if it fits in the weight still
+   * avaiable.
+   */
+  protected boolean accepts(Request request) {
+    return request.getCost() <= avaiableWeight;
+  }
+
   /**
    * This method will be called by the graphs to let the server graph group know
    * that the remote graph group will commit it work.
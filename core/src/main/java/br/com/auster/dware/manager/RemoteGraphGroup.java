@@ -340,6 +340,10 @@ public abstract class RemoteGraphGroup extends GraphGroup {
 
         // default server action
         if (error == null) {
+          if (time != null && fmediator instanceof DataAwareManagerWishMediator) {
+            // the processing time measured by the remote graph
+            ((DataAwareManagerWishMediator) fmediator).reqTimed(request, getName(), time.getTime());
+          }
           fmediator.reqProcessed(request);
           if (log.isDebugEnabled())
             log.debug("The request " + request + " was processed successfully by graph '"
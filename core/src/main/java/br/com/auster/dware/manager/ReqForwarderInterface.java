@@ -62,6 +62,15 @@ public interface ReqForwarderInterface {
    *          a collection containing all new requests.
    */
   public void addNewReqs(Collection<Request> newReqs);
+
+  /**
+   * This method must implement how to store requests that are being
+   * reinserted in the queue, all at once.
+   * 
+   * @param reqs
+   *          a collection containing all the requests being requeued.
+   */
+  public void addRetryReqs(Collection<Request> reqs);
   
   /**
    * This method must return some request stored by the request forwarder given
@@ -72,6 +81,19 @@ public interface ReqForwarderInterface {
    */
   public Request chooseNextRequest(long maxWeight) throws NoSuchElementException;
 
+  /**
+   * This method must return how many requests are stored by the request
+   * forwarder, waiting to be chosen.
+   */
+  public int size();
+
+  /**
+   * This method must return the weight of the request the forwarder wishes to
+   * send next, or -1 if it has no preference, in which case the graph group
+   * decides what to ask for.
+   */
+  public long getWishWeight();
+
   /**
    * Must return a pointer to a lock that must be used to synchronize all access
    * to the queue.
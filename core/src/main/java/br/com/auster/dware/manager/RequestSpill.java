@@ -0,0 +1,513 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.manager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.w3c.dom.Element;
+
+import br.com.auster.common.util.I18n;
+import br.com.auster.common.xml.DOMUtils;
+import br.com.auster.dware.graph.Request;
+
+/**
+ * Keeps the cold tail of the request queues out of the heap, in segment
+ * files of a directory. Each segment holds a run of queued requests, each one
+ * written as the compact record of {@link Request#writeRecord(java.io.DataOutput)},
+ * preceded by the index of its class in the segment and the time it was
+ * queued. The segments are written and read through memory-mapped buffers,
+ * and each one is deleted as soon as it is read back.
+ * 
+ * <p>
+ * Split requests (see {@link RequestPart}) are never written, since their
+ * parents must stay the same objects; a run holding any of them, or any
+ * request whose class does not write its fields, is kept in memory.
+ * </p>
+ * 
+ * <p>
+ * Each segment keeps in memory the IDs, transactions, weights and costs of
+ * its requests, so that they can still be reported if the file can not be
+ * read back.
+ * </p>
+ * 
+ * Configuration, inside the <code>request-forwarder</code> element:
+ * <pre>
+ * &lt;spill directory="/var/tmp/dware" hot-size="10000" segment-size="10000"/&gt;
+ * </pre>
+ * The hot size is how many requests each queue keeps in memory before
+ * spilling; the segment size is how many requests each segment holds.
+ * 
+ * @see TieredRequestQueue
+ * @version $Id$
+ */
+public final class RequestSpill {
+
+  /**
+   * {@value}
+   */
+  public static final String SPILL_ELEMENT = "spill";
+  /**
+   * {@value} - where the segment files are written.
+   */
+  public static final String DIRECTORY_ATTR = "directory";
+  /**
+   * {@value} - how many requests each queue keeps in memory. Defaults to
+   * 10000.
+   */
+  public static final String HOT_SIZE_ATTR = "hot-size";
+  /**
+   * {@value} - how many requests each segment file holds. Defaults to 10000.
+   */
+  public static final String SEGMENT_SIZE_ATTR = "segment-size";
+
+  private static final String SEGMENT_PREFIX = "requests-";
+
+  private static final String SEGMENT_SUFFIX = ".seg";
+
+  private static final Logger log = Logger.getLogger(RequestSpill.class);
+
+  private static final I18n i18n = I18n.getInstance(RequestSpill.class);
+
+  private final File directory;
+
+  private final int hotSize;
+
+  private final int segmentSize;
+
+  private final AtomicLong sequence = new AtomicLong();
+
+  // reads the segments ahead of the queues
+  private final ExecutorService prefetcher;
+
+  private final AtomicLong spilled = new AtomicLong();
+
+  private final AtomicInteger segments = new AtomicInteger();
+
+  public RequestSpill(Element config) throws IOException {
+    this(new File(DOMUtils.getAttribute(config, DIRECTORY_ATTR, true)),
+         DOMUtils.getIntAttribute(config, HOT_SIZE_ATTR, false),
+         DOMUtils.getIntAttribute(config, SEGMENT_SIZE_ATTR, false));
+  }
+
+  /**
+   * @param directory
+   *          where the segment files are written. A new directory is created
+   *          in it for this object.
+   * @param hotSize
+   *          how many requests each queue keeps in memory, or 0 for the
+   *          default.
+   * @param segmentSize
+   *          how many requests each segment holds, or 0 for the default.
+   */
+  public RequestSpill(File directory, int hotSize, int segmentSize) throws IOException {
+    this.hotSize = hotSize > 0 ? hotSize : 10000;
+    this.segmentSize = segmentSize > 0 ? segmentSize : 10000;
+    File dir = File.createTempFile("spill-", "", directory);
+    if (!dir.delete() || !dir.mkdir()) {
+      throw new IOException(i18n.getString("spillDirNotCreated", dir.getPath()));
+    }
+    dir.deleteOnExit();
+    this.directory = dir;
+    this.prefetcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "RequestSpill-prefetch");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    log.info(i18n.getString("spillConfigured", this.directory.getPath(),
+                            Integer.toString(this.hotSize), Integer.toString(this.segmentSize)));
+  }
+
+  /**
+   * How many requests each queue keeps in memory.
+   */
+  public int getHotSize() {
+    return this.hotSize;
+  }
+
+  /**
+   * How many requests each segment holds.
+   */
+  public int getSegmentSize() {
+    return this.segmentSize;
+  }
+
+  /**
+   * Returns how many requests are out of the heap.
+   */
+  public long getSpilledRequests() {
+    return this.spilled.get();
+  }
+
+  /**
+   * Returns how many segment files exist.
+   */
+  public int getSegments() {
+    return this.segments.get();
+  }
+
+  /**
+   * Writes the requests to a new segment. If they can not be written, the
+   * segment keeps them in memory.
+   */
+  public Segment write(List<Request> requests) {
+    Segment segment = new Segment(requests.size());
+    for (Request request : requests) {
+      if (request instanceof RequestPart) {
+        segment.requests = requests;
+        return segment;
+      }
+    }
+    File file = new File(this.directory, SEGMENT_PREFIX + this.sequence.incrementAndGet()
+                                         + SEGMENT_SUFFIX);
+    try {
+      List<Class> types = new ArrayList<Class>();
+      List<Constructor> constructors = new ArrayList<Constructor>();
+      String[] ids = new String[requests.size()];
+      String[] transactions = new String[requests.size()];
+      long[] weights = new long[requests.size()];
+      long[] costs = new long[requests.size()];
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(requests.size() * 64);
+      DataOutputStream out = new DataOutputStream(bytes);
+      int i = 0;
+      for (Request request : requests) {
+        int type = types.indexOf(request.getClass());
+        if (type < 0) {
+          type = types.size();
+          types.add(request.getClass());
+          constructors.add(constructorOf(request.getClass()));
+        }
+        out.writeShort(type);
+        out.writeLong(request.getQueuedTime());
+        request.writeRecord(out);
+        ids[i] = request.getId();
+        transactions[i] = request.getTransactionId();
+        weights[i] = request.getWeight();
+        costs[i] = request.getCost();
+        i++;
+      }
+      out.close();
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                                                       bytes.size());
+        buffer.put(bytes.toByteArray());
+        buffer.force();
+      } finally {
+        raf.close();
+      }
+      segment.file = file;
+      segment.constructors = constructors.toArray(new Constructor[constructors.size()]);
+      segment.ids = ids;
+      segment.transactions = transactions;
+      segment.weights = weights;
+      segment.costs = costs;
+      this.spilled.addAndGet(requests.size());
+      this.segments.incrementAndGet();
+    } catch (IOException e) {
+      log.warn(i18n.getString("segmentNotWritten", file.getPath()), e);
+      file.delete();
+      segment.requests = requests;
+    }
+    return segment;
+  }
+
+  /**
+   * Stops the prefetching and deletes the segments not read.
+   */
+  public void close() {
+    this.prefetcher.shutdownNow();
+    File[] files = this.directory.listFiles();
+    if (files != null) {
+      for (int i = 0; i < files.length; i++) {
+        files[i].delete();
+      }
+    }
+    this.directory.delete();
+    this.spilled.set(0);
+    this.segments.set(0);
+  }
+
+  /*
+   * Returns the constructor the requests of the given class are read back
+   * with.
+   */
+  private static Constructor constructorOf(Class type) throws IOException {
+    try {
+      Constructor constructor = type.getDeclaredConstructor(new Class[0]);
+      constructor.setAccessible(true);
+      return constructor;
+    } catch (NoSuchMethodException e) {
+      IOException ioe = new IOException(e.getMessage());
+      ioe.initCause(e);
+      throw ioe;
+    }
+  }
+
+  /*
+   * Reads the requests of a segment file.
+   */
+  private List<Request> read(File file, Constructor[] constructors, int count) throws IOException {
+    List<Request> requests = new ArrayList<Request>(count);
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    BufferInputStream buffer = null;
+    try {
+      FileChannel channel = raf.getChannel();
+      buffer = new BufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                                 channel.size()));
+      DataInputStream in = new DataInputStream(buffer);
+      for (int i = 0; i < count; i++) {
+        Constructor constructor = constructors[in.readShort()];
+        long queuedTime = in.readLong();
+        Request request = (Request) constructor.newInstance(new Object[0]);
+        request.readRecord(in);
+        request.setQueuedTime(queuedTime);
+        requests.add(request);
+      }
+    } catch (InstantiationException e) {
+      throw readFailed(e);
+    } catch (IllegalAccessException e) {
+      throw readFailed(e);
+    } catch (InvocationTargetException e) {
+      throw readFailed(e.getCause());
+    } finally {
+      if (buffer != null) {
+        buffer.close();
+      }
+      raf.close();
+    }
+    return requests;
+  }
+
+  private static IOException readFailed(Throwable cause) {
+    IOException ioe = new IOException(cause.getMessage());
+    ioe.initCause(cause);
+    return ioe;
+  }
+
+  /**
+   * A run of requests, in a file or, if it could not be written, in memory.
+   */
+  public final class Segment {
+
+    private final int size;
+
+    private File file;
+
+    private List<Request> requests;
+
+    private Future<List<Request>> loading;
+
+    // the constructors of the classes of the requests in the file
+    private Constructor[] constructors;
+
+    // what is kept of the requests in the file, while it is not read back
+    private String[] ids;
+
+    private String[] transactions;
+
+    private long[] weights;
+
+    private long[] costs;
+
+    Segment(int size) {
+      this.size = size;
+    }
+
+    /**
+     * Returns how many requests this segment holds.
+     */
+    public int size() {
+      return this.size;
+    }
+
+    /**
+     * Starts reading the requests in the background, if they are in a file.
+     */
+    public synchronized void prefetch() {
+      if (this.requests != null || this.loading != null) {
+        return;
+      }
+      final File toRead = this.file;
+      try {
+        this.loading = prefetcher.submit(new Callable<List<Request>>() {
+          public List<Request> call() throws IOException {
+            return read(toRead, constructors, size);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        // closed: the segment is read when taken
+      }
+    }
+
+    /**
+     * Returns the requests of this segment, without removing its file.
+     */
+    public synchronized List<Request> peek() throws IOException {
+      if (this.requests != null) {
+        return Collections.unmodifiableList(this.requests);
+      }
+      return read(this.file, this.constructors, this.size);
+    }
+
+    /**
+     * Returns the requests of this segment, waiting for the prefetch if it
+     * was started, and deletes its file, even if it could not be read.
+     */
+    public synchronized List<Request> take() throws IOException {
+      if (this.requests != null) {
+        return this.requests;
+      }
+      try {
+        List<Request> result = null;
+        if (this.loading != null) {
+          try {
+            result = this.loading.get();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } catch (ExecutionException e) {
+            log.warn(i18n.getString("segmentPrefetchFailed", this.file.getPath()), e.getCause());
+          } catch (RuntimeException e) {
+            // the prefetcher was shut down
+            log.warn(i18n.getString("segmentPrefetchFailed", this.file.getPath()), e);
+          }
+        }
+        if (result == null) {
+          result = read(this.file, this.constructors, this.size);
+        }
+        this.requests = result;
+        this.ids = null;
+        this.transactions = null;
+        this.weights = null;
+        this.costs = null;
+        return result;
+      } finally {
+        // the mapped buffers were dropped by read()
+        this.loading = null;
+        if (!this.file.delete()) {
+          this.file.deleteOnExit();
+        }
+        spilled.addAndGet(-this.size);
+        segments.decrementAndGet();
+      }
+    }
+
+    /**
+     * Returns the requests of this segment as they were kept in memory: if
+     * they are in a file, only their IDs, transactions, weights and costs are
+     * known. This is how the requests of a segment that could not be read are
+     * reported.
+     */
+    public synchronized List<Request> lost() {
+      if (this.requests != null) {
+        return this.requests;
+      }
+      List<Request> lost = new ArrayList<Request>(this.size);
+      for (int i = 0; i < this.size; i++) {
+        lost.add(new LostRequest(this.ids[i], this.transactions[i], this.weights[i],
+                                 this.costs[i]));
+      }
+      return lost;
+    }
+  }
+
+  /*
+   * A request whose segment could not be read back, known only by what was
+   * kept of it in memory.
+   */
+  private static final class LostRequest extends Request {
+
+    private final long weight;
+
+    LostRequest(String id, String transactionId, long weight, long cost) {
+      super(id, transactionId);
+      this.weight = weight;
+      this.setCost(cost);
+    }
+
+    public long getWeight() {
+      return this.weight;
+    }
+
+    public String toString() {
+      return "[" + this.getId() + "]";
+    }
+  }
+
+  /*
+   * Reads a mapped buffer as a stream.
+   */
+  private static final class BufferInputStream extends InputStream {
+
+    private ByteBuffer buffer;
+
+    BufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    /**
+     * Drops the buffer, so that its mapping may be released before the file
+     * is deleted.
+     */
+    public void close() {
+      this.buffer = null;
+    }
+
+    public int read() {
+      return this.buffer.hasRemaining() ? (this.buffer.get() & 0xff) : -1;
+    }
+
+    public int read(byte[] b, int off, int len) {
+      if (!this.buffer.hasRemaining()) {
+        return -1;
+      }
+      len = Math.min(len, this.buffer.remaining());
+      this.buffer.get(b, off, len);
+      return len;
+    }
+
+    public int available() {
+      return this.buffer.remaining();
+    }
+  }
+}
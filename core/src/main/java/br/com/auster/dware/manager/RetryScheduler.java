@@ -0,0 +1,488 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.manager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+import org.w3c.dom.Element;
+
+import br.com.auster.common.util.I18n;
+import br.com.auster.common.xml.DOMUtils;
+import br.com.auster.dware.graph.Request;
+
+/**
+ * Requeues the requests that failed, after a delay, using a single thread.
+ * 
+ * <p>
+ * The pending retries are kept in a hashed timer wheel: a ring of buckets,
+ * one for each tick, where each request waits for the number of turns it
+ * still has to wait. On each tick the thread takes the requests due in the
+ * current bucket and requeues all of them at once. The thread only ticks
+ * while there are pending retries.
+ * </p>
+ * 
+ * <p>
+ * The delay starts at the <code>requeue-sleep-milis</code> of the checkpoint
+ * and is multiplied by the backoff factor at each new failure of the same
+ * request, up to the maximum delay. A random jitter spreads the retries of
+ * requests that failed together. Each transaction may also have a budget of
+ * retries: when it is spent, the failed requests of the transaction are not
+ * retried anymore.
+ * </p>
+ * 
+ * Configuration:
+ * <pre>
+ * &lt;retry-scheduler tick="100" wheel-size="512" backoff-factor="2"
+ *                  max-delay="300000" jitter="0.1" transaction-budget="0"/&gt;
+ * </pre>
+ * The times are in milliseconds. A budget not given, or not positive, does
+ * not limit the retries.
+ * 
+ * @version $Id$
+ */
+public final class RetryScheduler implements Runnable {
+
+  /**
+   * {@value}
+   */
+  public static final String RETRY_SCHEDULER_ELEMENT = "retry-scheduler";
+  /**
+   * {@value} - the resolution of the delays, in milliseconds. Defaults to 100.
+   */
+  public static final String TICK_ATTR = "tick";
+  /**
+   * {@value} - how many buckets the timer wheel has. Defaults to 512.
+   */
+  public static final String WHEEL_SIZE_ATTR = "wheel-size";
+  /**
+   * {@value} - how much the delay grows at each failure. Defaults to 2.
+   */
+  public static final String BACKOFF_FACTOR_ATTR = "backoff-factor";
+  /**
+   * {@value} - the longest delay, in milliseconds. Defaults to 300000.
+   */
+  public static final String MAX_DELAY_ATTR = "max-delay";
+  /**
+   * {@value} - the fraction of the delay that is random, between 0 and 1.
+   * Defaults to 0.1.
+   */
+  public static final String JITTER_ATTR = "jitter";
+  /**
+   * {@value} - how many retries each transaction may have.
+   */
+  public static final String TRANSACTION_BUDGET_ATTR = "transaction-budget";
+
+  private static final Logger log = Logger.getLogger(RetryScheduler.class);
+
+  private final I18n i18n = I18n.getInstance(RetryScheduler.class);
+
+  private final GraphManager manager;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final Condition hasPending = this.lock.newCondition();
+
+  private final Random random = new Random();
+
+  private long tick = 100;
+
+  private double backoffFactor = 2;
+
+  private long maxDelay = 300000;
+
+  private double jitter = 0.1;
+
+  private int transactionBudget = 0;
+
+  // the timer wheel: each bucket is a linked list of entries
+  private Entry[] wheel = new Entry[512];
+
+  // the bucket of the last tick
+  private int cursor = 0;
+
+  // System.nanoTime() of the next tick
+  private long nextTick;
+
+  private int pending = 0;
+
+  // number of failures of each request retried, by id
+  private final Map<String, Integer> attempts = new HashMap<String, Integer>();
+
+  // number of retries of each transaction
+  private final Map<String, Integer> retriesByTransaction = new HashMap<String, Integer>();
+
+  private long scheduled = 0;
+
+  private long exhausted = 0;
+
+  private Thread worker = null;
+
+  private boolean shutdown = false;
+
+  public RetryScheduler(GraphManager manager) {
+    this.manager = manager;
+  }
+
+  /**
+   * Configures this scheduler. Pending retries are kept.
+   * 
+   * @param config
+   *          the <code>retry-scheduler</code> element, or null to use the
+   *          defaults.
+   */
+  public void configure(Element config) {
+    this.lock.lock();
+    try {
+      if (config != null) {
+        this.tick = Math.max(getLongAttribute(config, TICK_ATTR, this.tick), 1);
+        this.backoffFactor = Math.max(getDoubleAttribute(config, BACKOFF_FACTOR_ATTR,
+                                                         this.backoffFactor), 1);
+        this.maxDelay = getLongAttribute(config, MAX_DELAY_ATTR, this.maxDelay);
+        this.jitter = Math.min(Math.max(getDoubleAttribute(config, JITTER_ATTR, this.jitter), 0), 1);
+        this.transactionBudget = (int) getLongAttribute(config, TRANSACTION_BUDGET_ATTR, 0);
+        int size = (int) getLongAttribute(config, WHEEL_SIZE_ATTR, this.wheel.length);
+        if (size > 0 && size != this.wheel.length) {
+          this.resize(size);
+        }
+      }
+      this.shutdown = false;
+    } finally {
+      this.lock.unlock();
+    }
+    log.info(i18n.getString("retrySchedulerConfigured", Long.toString(this.tick),
+                            Integer.toString(this.wheel.length), Double.toString(this.backoffFactor),
+                            Long.toString(this.maxDelay), Double.toString(this.jitter),
+                            Integer.toString(this.transactionBudget)));
+  }
+
+  private static long getLongAttribute(Element config, String name, long defaultValue) {
+    String value = DOMUtils.getAttribute(config, name, false);
+    if (value == null || value.length() == 0) {
+      return defaultValue;
+    }
+    return Long.parseLong(value);
+  }
+
+  private static double getDoubleAttribute(Element config, String name, double defaultValue) {
+    String value = DOMUtils.getAttribute(config, name, false);
+    if (value == null || value.length() == 0) {
+      return defaultValue;
+    }
+    return Double.parseDouble(value);
+  }
+
+  /*
+   * Moves the pending entries to a wheel of another size.
+   */
+  private void resize(int size) {
+    Entry[] old = this.wheel;
+    int oldCursor = this.cursor;
+    this.wheel = new Entry[size];
+    this.cursor = 0;
+    for (int i = 1; i <= old.length; i++) {
+      Entry entry = old[(oldCursor + i) % old.length];
+      while (entry != null) {
+        Entry next = entry.next;
+        this.insert(entry, entry.rounds * old.length + i);
+        entry = next;
+      }
+    }
+  }
+
+  /**
+   * Schedules the request to be requeued. If the manager is shutting down,
+   * the request is requeued by the calling thread, after the base delay, so
+   * that a graph is still there to process it.
+   * 
+   * @param request
+   *          the request that failed.
+   * @param baseDelay
+   *          the delay of the first retry, in milliseconds.
+   * @return false if the request will not be retried, because the retry
+   *         budget of its transaction was spent.
+   */
+  public boolean schedule(Request request, long baseDelay) {
+    this.lock.lock();
+    try {
+      if (this.transactionBudget > 0) {
+        Integer used = this.retriesByTransaction.get(request.getTransactionId());
+        int count = (used == null) ? 0 : used.intValue();
+        if (count >= this.transactionBudget) {
+          this.exhausted++;
+          this.attempts.remove(request.getId());
+          log.error(i18n.getString("retryBudgetExhausted", request,
+                                   request.getTransactionId(), Integer.toString(count)));
+          return false;
+        }
+        this.retriesByTransaction.put(request.getTransactionId(), new Integer(count + 1));
+      }
+      Integer failed = this.attempts.get(request.getId());
+      int attempt = (failed == null) ? 1 : failed.intValue() + 1;
+      this.attempts.put(request.getId(), new Integer(attempt));
+      this.scheduled++;
+
+      if (!this.shutdown && !this.manager.isShuttingDown()) {
+        long delay = this.delayFor(baseDelay, attempt);
+        this.insert(new Entry(request), (delay + this.tick - 1) / this.tick);
+        this.pending++;
+        if (this.worker == null) {
+          // the first retry, or the previous worker was interrupted
+          this.worker = new Thread(this, "RetryScheduler");
+          this.worker.setDaemon(true);
+          this.worker.start();
+        }
+        this.hasPending.signal();
+        if (log.isDebugEnabled()) {
+          log.debug("request " + request.getId() + " will be retried in " + delay + " ms");
+        }
+        return true;
+      }
+    } finally {
+      this.lock.unlock();
+    }
+
+    // must ensure that at least one Graph will process the requeued request
+    // before dying.
+    if (baseDelay > 0) {
+      try {
+        Thread.sleep(baseDelay);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    this.manager.requeue(request);
+    return true;
+  }
+
+  /**
+   * Returns the delay, in milliseconds, before the given retry of a request.
+   */
+  long delayFor(long baseDelay, int attempt) {
+    if (baseDelay <= 0) {
+      return 0;
+    }
+    double delay = baseDelay * Math.pow(this.backoffFactor, attempt - 1);
+    if (this.maxDelay > 0 && delay > this.maxDelay) {
+      delay = this.maxDelay;
+    }
+    delay *= 1 - this.jitter + 2 * this.jitter * this.random.nextDouble();
+    return Math.round(delay);
+  }
+
+  /*
+   * Puts the entry in the bucket it must be in after the given ticks. Must
+   * hold the lock.
+   */
+  private void insert(Entry entry, long ticks) {
+    ticks = Math.max(ticks, 1);
+    int index = (int) ((this.cursor + ticks) % this.wheel.length);
+    entry.rounds = (ticks - 1) / this.wheel.length;
+    entry.next = this.wheel[index];
+    this.wheel[index] = entry;
+  }
+
+  /**
+   * Forgets the failures of a request, when it was processed or it will not
+   * be retried anymore.
+   */
+  public void forget(Request request) {
+    this.lock.lock();
+    try {
+      this.attempts.remove(request.getId());
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Gives back the retry budget of a transaction that finished.
+   */
+  public void transactionFinished(String transactionId) {
+    this.lock.lock();
+    try {
+      this.retriesByTransaction.remove(transactionId);
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Ticks the wheel while there are pending retries, and requeues the
+   * requests that are due.
+   */
+  public void run() {
+    List<Request> due = new ArrayList<Request>();
+    this.lock.lock();
+    try {
+      this.nextTick = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.tick);
+      while (!this.shutdown) {
+        if (this.pending == 0) {
+          this.hasPending.awaitUninterruptibly();
+          this.nextTick = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.tick);
+          continue;
+        }
+        long wait = this.nextTick - System.nanoTime();
+        if (wait > 0) {
+          this.hasPending.awaitNanos(wait);
+          continue;
+        }
+        this.nextTick += TimeUnit.MILLISECONDS.toNanos(this.tick);
+        this.cursor = (this.cursor + 1) % this.wheel.length;
+        Entry previous = null;
+        Entry entry = this.wheel[this.cursor];
+        while (entry != null) {
+          if (entry.rounds-- > 0) {
+            previous = entry;
+          } else {
+            due.add(entry.request);
+            if (previous == null) {
+              this.wheel[this.cursor] = entry.next;
+            } else {
+              previous.next = entry.next;
+            }
+          }
+          entry = entry.next;
+        }
+        if (!due.isEmpty()) {
+          this.pending -= due.size();
+          this.lock.unlock();
+          try {
+            this.requeue(due);
+          } finally {
+            this.lock.lock();
+          }
+          due = new ArrayList<Request>();
+        }
+      }
+    } catch (InterruptedException e) {
+      log.warn(i18n.getString("retrySchedulerInterrupted"), e);
+      // nobody ticks the wheel now, so its retries are requeued at once
+      due.addAll(this.drain());
+    } finally {
+      this.worker = null;
+      this.lock.unlock();
+    }
+    if (!due.isEmpty()) {
+      this.requeue(due);
+    }
+  }
+
+  /**
+   * Removes all the pending retries from the wheel. Must be called holding
+   * the lock.
+   */
+  private List<Request> drain() {
+    List<Request> due = new ArrayList<Request>();
+    for (int i = 0; i < this.wheel.length; i++) {
+      for (Entry entry = this.wheel[i]; entry != null; entry = entry.next) {
+        due.add(entry.request);
+      }
+      this.wheel[i] = null;
+    }
+    this.pending = 0;
+    return due;
+  }
+
+  private void requeue(List<Request> requests) {
+    try {
+      this.manager.requeue(requests);
+    } catch (RuntimeException e) {
+      log.error(i18n.getString("requeueFailed", Integer.toString(requests.size())), e);
+    }
+  }
+
+  /**
+   * Requeues all the pending retries at once and stops the thread. The
+   * requests that fail after this are requeued by the calling thread.
+   */
+  public void shutdown() {
+    List<Request> due;
+    this.lock.lock();
+    try {
+      this.shutdown = true;
+      due = this.drain();
+      this.hasPending.signalAll();
+    } finally {
+      this.lock.unlock();
+    }
+    if (!due.isEmpty()) {
+      this.requeue(due);
+    }
+  }
+
+  /**
+   * Returns how many requests wait to be retried.
+   */
+  public int getPendingRetries() {
+    this.lock.lock();
+    try {
+      return this.pending;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Returns how many retries were scheduled.
+   */
+  public long getScheduledRetries() {
+    this.lock.lock();
+    try {
+      return this.scheduled;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Returns how many failed requests were not retried because the retry
+   * budget of their transactions was spent.
+   */
+  public long getExhaustedRetries() {
+    this.lock.lock();
+    try {
+      return this.exhausted;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /*
+   * A pending retry, linked to the next one of the same bucket.
+   */
+  private static final class Entry {
+
+    final Request request;
+
+    long rounds;
+
+    Entry next;
+
+    Entry(Request request) {
+      this.request = request;
+    }
+  }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.manager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.w3c.dom.Element;
+
+import br.com.auster.common.util.I18n;
+import br.com.auster.common.xml.DOMUtils;
+import br.com.auster.dware.graph.Request;
+
+/**
+ * Splits requests heavier than a given weight into parts that are processed
+ * in parallel by several graphs, and merges their results back, in order,
+ * when the last part finishes.
+ * 
+ * <p>
+ * The parent request is what the checkpoint and the transaction counters
+ * see: it is counted once when its parts are queued and it is processed (or
+ * failed) only after all the parts finished and their results were merged.
+ * If any part fails the results are discarded and the parent fails with the
+ * first error found; requeueing the parent splits it again.
+ * </p>
+ * 
+ * Configuration:
+ * <pre>
+ * &lt;scatter-gather split-weight="1073741824" merge-threads="1"&gt;
+ *   &lt;splitter class-name="..."&gt; ... &lt;/splitter&gt;
+ *   &lt;merger class-name="..."&gt; ... &lt;/merger&gt;
+ * &lt;/scatter-gather&gt;
+ * </pre>
+ * The splitter and the merger are created through a constructor that takes
+ * their configuration element. The merger is optional.
+ * 
+ * @version $Id$
+ */
+public class ScatterGather {
+
+  /**
+   * {@value}
+   */
+  public static final String SCATTER_GATHER_ELEMENT = "scatter-gather";
+  /**
+   * {@value} - requests heavier than this are split.
+   */
+  public static final String SPLIT_WEIGHT_ATTR = "split-weight";
+  /**
+   * {@value} - how many parent requests may be merged at the same time.
+   */
+  public static final String MERGE_THREADS_ATTR = "merge-threads";
+  /**
+   * {@value}
+   */
+  public static final String SPLITTER_ELEMENT = "splitter";
+  /**
+   * {@value}
+   */
+  public static final String MERGER_ELEMENT = "merger";
+  /**
+   * {@value}
+   */
+  public static final String CLASS_NAME_ATTR = "class-name";
+
+  /**
+   * Splits a request into parts. Each part must implement
+   * {@link RequestPart} and have the parent's transaction id.
+   */
+  public interface Splitter {
+
+    /**
+     * Splits the request.
+     * 
+     * @return the parts, in order, or null if this request can not be split.
+     */
+    public List<Request> split(Request request) throws Exception;
+  }
+
+  /**
+   * Rebuilds the result of a parent request from the results of its parts.
+   */
+  public interface Merger {
+
+    /**
+     * Called when all the parts were processed successfully.
+     * 
+     * @param parts
+     *          the parts, in order.
+     */
+    public void merge(Request parent, Request[] parts) throws Exception;
+
+    /**
+     * Called when some part failed, to clean the results of the others.
+     * 
+     * @param parts
+     *          the parts, in order.
+     */
+    public void discard(Request parent, Request[] parts);
+  }
+
+  private static final Logger log = Logger.getLogger(ScatterGather.class);
+
+  private final I18n i18n = I18n.getInstance(ScatterGather.class);
+
+  private final long splitWeight;
+
+  private final Splitter splitter;
+
+  private final Merger merger;
+
+  private final ExecutorService mergeExecutor;
+
+  // Map<String, Gather> of the parents not finished yet, by id
+  private final Map pending = new HashMap();
+
+  public ScatterGather(Element config) throws Exception {
+    this.splitWeight = Long.parseLong(DOMUtils.getAttribute(config, SPLIT_WEIGHT_ATTR, true));
+    Element splitterConf = DOMUtils.getElement(config, SPLITTER_ELEMENT, true);
+    this.splitter = (Splitter) newInstance(splitterConf);
+    Element mergerConf = DOMUtils.getElement(config, MERGER_ELEMENT, false);
+    this.merger = mergerConf == null ? null : (Merger) newInstance(mergerConf);
+    int threads = DOMUtils.getIntAttribute(config, MERGE_THREADS_ATTR, false);
+    this.mergeExecutor = Executors.newFixedThreadPool(threads <= 0 ? 1 : threads,
+                                                      new MergerFactory());
+    log.info(i18n.getString("scatterGatherConfigured", Long.toString(this.splitWeight),
+                            this.splitter.getClass().getName()));
+  }
+
+  private static Object newInstance(Element config) throws Exception {
+    String className = DOMUtils.getAttribute(config, CLASS_NAME_ATTR, true);
+    Class[] c = { Element.class };
+    Object[] o = { config };
+    return Class.forName(className).getConstructor(c).newInstance(o);
+  }
+
+  /**
+   * Returns the request itself, if it is not too heavy, or its parts.
+   * 
+   * @param mediator
+   *          used to skip the requests already loaded by the checkpoint, which
+   *          are not split. May be null.
+   */
+  public List<Request> scatter(Request request, DataAwareManagerMediator mediator) {
+    final List<Request> result = new ArrayList<Request>(1);
+    this.scatter(request, result, mediator);
+    return result;
+  }
+
+  /**
+   * Replaces the requests that are too heavy by their parts, keeping the
+   * order.
+   * 
+   * @param mediator
+   *          used to skip the requests already loaded by the checkpoint, which
+   *          are not split. May be null.
+   */
+  public List<Request> scatter(Collection<Request> requests, DataAwareManagerMediator mediator) {
+    final List<Request> result = new ArrayList<Request>(requests.size());
+    for (Request request : requests) {
+      this.scatter(request, result, mediator);
+    }
+    return result;
+  }
+
+  private void scatter(Request request, List<Request> result, DataAwareManagerMediator mediator) {
+    if (request.getWeight() <= this.splitWeight || request instanceof RequestPart
+        || (mediator != null && mediator.checkIfReqLoaded(request))) {
+      result.add(request);
+      return;
+    }
+    List<Request> parts;
+    try {
+      parts = this.splitter.split(request);
+    } catch (Exception e) {
+      log.error(i18n.getString("splitFailed", request), e);
+      parts = null;
+    }
+    if (parts == null || parts.size() < 2) {
+      result.add(request);
+      return;
+    }
+    synchronized (this.pending) {
+      if (this.pending.containsKey(request.getId())) {
+        // its parts are still being processed
+        log.warn(i18n.getString("reqAlreadyScattered", request));
+        return;
+      }
+      this.pending.put(request.getId(), new Gather(request, parts));
+    }
+    log.info(i18n.getString("reqScattered", request, Integer.toString(parts.size())));
+    result.addAll(parts);
+  }
+
+  /**
+   * Returns the request the checkpoint and the transaction counters must see
+   * for a queued request: the parent for the first part, null for the other
+   * parts and the request itself otherwise.
+   */
+  public static Request accountable(Request request) {
+    if (request instanceof RequestPart) {
+      RequestPart part = (RequestPart) request;
+      return part.getPartIndex() == 0 ? part.getParent() : null;
+    }
+    return request;
+  }
+
+  /**
+   * Records that a part finished. When it is the last one of its parent, the
+   * results are merged (or discarded) out of the calling thread and the
+   * mediator is told that the parent was processed or failed.
+   * 
+   * @param error
+   *          null if the part was processed successfully.
+   */
+  public void partFinished(RequestPart part, String graph, Throwable error,
+                           final DataAwareManagerMediator mediator) {
+    final Request parent = part.getParent();
+    final Gather gather;
+    synchronized (this.pending) {
+      gather = (Gather) this.pending.get(parent.getId());
+      if (gather == null) {
+        log.error(i18n.getString("unknownPart", part));
+        return;
+      }
+      if (error != null && gather.error == null) {
+        gather.error = error;
+        gather.graph = graph;
+      }
+      if (--gather.remaining > 0) {
+        return;
+      }
+      this.pending.remove(parent.getId());
+    }
+    this.mergeExecutor.execute(new Runnable() {
+      public void run() {
+        gather(gather, mediator);
+      }
+    });
+  }
+
+  private void gather(Gather gather, DataAwareManagerMediator mediator) {
+    final Request[] parts = (Request[]) gather.parts.toArray(new Request[gather.parts.size()]);
+    if (gather.error == null && this.merger != null) {
+      try {
+        this.merger.merge(gather.parent, parts);
+        log.info(i18n.getString("reqGathered", gather.parent, Integer.toString(parts.length)));
+      } catch (Throwable t) {
+        gather.error = t;
+        gather.graph = getClass().getName();
+      }
+    }
+    if (gather.error == null) {
+      mediator.reqProcessed(gather.parent);
+    } else {
+      if (this.merger != null) {
+        this.merger.discard(gather.parent, parts);
+      }
+      mediator.reqFailed(gather.parent, gather.graph, gather.error);
+    }
+  }
+
+  /**
+   * Returns how many parent requests have parts not finished yet.
+   */
+  public int getPendingCount() {
+    synchronized (this.pending) {
+      return this.pending.size();
+    }
+  }
+
+  /**
+   * Stops the merge threads after the merges in progress.
+   * 
+   * @param wait
+   *          if true, blocks until the merges in progress finish.
+   */
+  public void shutdown(boolean wait) {
+    this.mergeExecutor.shutdown();
+    while (wait && !this.mergeExecutor.isTerminated()) {
+      try {
+        this.mergeExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * The parts of a parent request and how many of them are still running.
+   */
+  private static final class Gather {
+    final Request parent;
+    final List parts;
+    int remaining;
+    Throwable error = null;
+    String graph = null;
+
+    Gather(Request parent, List parts) {
+      this.parent = parent;
+      this.parts = parts;
+      this.remaining = parts.size();
+    }
+  }
+
+  /**
+   * Creates the daemon threads that merge the results.
+   */
+  private static final class MergerFactory implements ThreadFactory {
+
+    private int count = 0;
+
+    public synchronized Thread newThread(Runnable r) {
+      Thread t = new Thread(r, "ScatterGather merger #" + (++this.count));
+      t.setDaemon(true);
+      return t;
+    }
+  }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.manager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.log4j.Logger;
+
+import br.com.auster.common.util.I18n;
+import br.com.auster.dware.graph.Request;
+
+/**
+ * FIFO queue of requests whose cold tail may be kept out of the heap.
+ * 
+ * <p>
+ * The head of the queue, up to the hot size of the {@link RequestSpill},
+ * stays in memory. The requests put after it are gathered in runs of the
+ * segment size, and each full run is written to a segment file. When the head
+ * drains to half the hot size, the next segment is read in the background,
+ * so it is usually ready when the head is empty. Without a spill, this is a
+ * plain in-memory queue.
+ * </p>
+ * 
+ * <p>
+ * The order of the requests is always kept. The requests read back from the
+ * segments are copies of the ones put, so anything that depends on their
+ * identity, other than split requests, must not be kept while they are
+ * queued. If a segment can not be read back, its requests are removed and
+ * reported to the {@link Listener}, as they were kept in memory.
+ * </p>
+ * 
+ * Instances of this class are thread-safe.
+ * 
+ * @version $Id$
+ */
+public class TieredRequestQueue {
+
+  private static final Logger log = Logger.getLogger(TieredRequestQueue.class);
+
+  private static final I18n i18n = I18n.getInstance(TieredRequestQueue.class);
+
+  private RequestSpill spill;
+
+  // the head of the queue
+  private final LinkedList<Request> hot = new LinkedList<Request>();
+
+  // the runs after the head, in order
+  private final LinkedList<RequestSpill.Segment> cold = new LinkedList<RequestSpill.Segment>();
+
+  // the requests after the last run
+  private List<Request> tail = new ArrayList<Request>();
+
+  private int size = 0;
+
+  private Listener listener;
+
+  /**
+   * Creates a queue kept in memory.
+   */
+  public TieredRequestQueue() {
+    this(null);
+  }
+
+  /**
+   * @param spill
+   *          where the cold tail is kept, or null to keep it in memory.
+   */
+  public TieredRequestQueue(RequestSpill spill) {
+    this.spill = spill;
+  }
+
+  /**
+   * Sets where the cold tail is kept from now on.
+   */
+  public synchronized void setSpill(RequestSpill spill) {
+    this.spill = spill;
+  }
+
+  /**
+   * Sets who is told of the requests lost from now on.
+   */
+  public synchronized void setListener(Listener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Returns how many requests are in this queue.
+   */
+  public synchronized int size() {
+    return this.size;
+  }
+
+  /**
+   * Puts the request at the end of this queue.
+   */
+  public synchronized void put(Request request) {
+    this.size++;
+    if (this.spill == null
+        || (this.cold.isEmpty() && this.tail.isEmpty() && this.hot.size() < this.spill.getHotSize())) {
+      this.hot.addLast(request);
+      return;
+    }
+    this.tail.add(request);
+    if (this.tail.size() >= this.spill.getSegmentSize()) {
+      this.flushTail();
+    }
+  }
+
+  /*
+   * Makes a run of the requests after the last one.
+   */
+  private void flushTail() {
+    if (this.tail.isEmpty()) {
+      return;
+    }
+    if (this.spill == null) {
+      this.hot.addAll(this.tail);
+    } else {
+      this.cold.addLast(this.spill.write(this.tail));
+    }
+    this.tail = new ArrayList<Request>();
+  }
+
+  /**
+   * Removes and returns the first request of this queue.
+   * 
+   * @throws NoSuchElementException
+   *           if the queue is empty.
+   */
+  public synchronized Request get() throws NoSuchElementException {
+    if (this.hot.isEmpty()) {
+      this.refill();
+    }
+    Request request = this.hot.removeFirst();
+    this.size--;
+    if (this.spill != null && !this.cold.isEmpty() && this.hot.size() <= this.spill.getHotSize() / 2) {
+      this.cold.getFirst().prefetch();
+    }
+    return request;
+  }
+
+  /*
+   * Brings the next run to the head of the queue.
+   */
+  private void refill() {
+    while (this.hot.isEmpty() && !this.cold.isEmpty()) {
+      RequestSpill.Segment segment = this.cold.removeFirst();
+      try {
+        this.hot.addAll(segment.take());
+      } catch (IOException e) {
+        log.error(i18n.getString("segmentLost", Integer.toString(segment.size())), e);
+        this.size -= segment.size();
+        if (this.listener != null) {
+          this.listener.requestsLost(segment.lost(), e);
+        }
+      }
+    }
+    if (this.hot.isEmpty()) {
+      this.hot.addAll(this.tail);
+      this.tail = new ArrayList<Request>();
+    }
+  }
+
+  /**
+   * Moves all the requests of the other queue to the end of this one.
+   */
+  public synchronized void append(TieredRequestQueue other) {
+    if (other == this) {
+      return;
+    }
+    synchronized (other) {
+      for (Request request : other.hot) {
+        this.put(request);
+      }
+      if (!other.cold.isEmpty()) {
+        this.flushTail();
+        for (RequestSpill.Segment segment : other.cold) {
+          this.cold.addLast(segment);
+          this.size += segment.size();
+        }
+      }
+      for (Request request : other.tail) {
+        this.put(request);
+      }
+      other.hot.clear();
+      other.cold.clear();
+      other.tail = new ArrayList<Request>();
+      other.size = 0;
+    }
+  }
+
+  /**
+   * Returns a copy of the requests of this queue, in order, reading the
+   * segments without removing them. The requests of a segment that can not be
+   * read are returned as they were kept in memory.
+   */
+  public synchronized List<Request> toList() {
+    List<Request> list = new ArrayList<Request>(this.size);
+    list.addAll(this.hot);
+    for (RequestSpill.Segment segment : this.cold) {
+      try {
+        list.addAll(segment.peek());
+      } catch (IOException e) {
+        log.warn(i18n.getString("segmentNotRead", Integer.toString(segment.size())), e);
+        list.addAll(segment.lost());
+      }
+    }
+    list.addAll(this.tail);
+    return list;
+  }
+
+  /**
+   * Returns the requests of this queue that are in memory.
+   */
+  public synchronized List<Request> inMemory() {
+    List<Request> list = new ArrayList<Request>(this.hot);
+    list.addAll(this.tail);
+    return list;
+  }
+
+  /**
+   * Is told of the requests removed from a queue because their segment could
+   * not be read back.
+   */
+  public interface Listener {
+
+    /**
+     * @param requests
+     *          the lost requests, known only by their IDs, transactions,
+     *          weights and costs.
+     * @param cause
+     *          why their segment could not be read.
+     */
+    void requestsLost(List<Request> requests, IOException cause);
+  }
+}
@@ -0,0 +1,636 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.manager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+import org.w3c.dom.Element;
+
+import br.com.auster.common.util.I18n;
+import br.com.auster.dware.graph.Request;
+
+/**
+ * <p>
+ * Request forwarder that keeps one local queue per graph group instead of a
+ * single central queue. New requests are spread among the local queues by
+ * weight: each request goes to the queue with the smallest total weight, so
+ * that the groups receive about the same amount of work. The order in which
+ * the requests were enqueued is kept inside each queue.
+ * </p>
+ * <p>
+ * A graph group takes requests from its own queue, choosing among the first
+ * ones the heaviest that fits the weight it asked for. When its queue is
+ * empty it steals from the group with the greatest backlog: the requests
+ * lighter than the average of that queue are taken, starting from its end,
+ * until about half of its weight has been moved. The heavier ones are left to
+ * the owner, so a thief rarely ends up with all the heavy work.
+ * </p>
+ * <p>
+ * Graph groups are identified by their threads, so
+ * {@link #registerGroup(String)} must be called by the graph group thread, as
+ * the mediator does when the group starts. Requests asked by other threads,
+ * or added before any group is registered, use a shared queue that is also
+ * open for stealing. When a group is unregistered, the requests left in its
+ * queue are moved back to the shared queue.
+ * </p>
+ * 
+ * @version $Id$
+ */
+public class WorkStealingReqForwarder implements GroupSignallingReqForwarder {
+
+  // how many requests at the head of a queue are checked for the best fit
+  private static final int SCAN_WINDOW = 16;
+
+  private static final Logger log = Logger.getLogger(WorkStealingReqForwarder.class);
+
+  // using PriorityQueueReqForwarder i18n resource
+  private final I18n i18n = I18n.getInstance(PriorityQueueReqForwarder.class);
+
+  // queue used before groups are registered and by unregistered threads
+  private final LocalQueue sharedQueue = new LocalQueue(null);
+
+  // all queues, including the shared one
+  private final List queues = new CopyOnWriteArrayList();
+
+  // queue of the graph group that owns the current thread
+  private final ThreadLocal ownQueue = new ThreadLocal();
+
+  // the checkpoint lookup and the registration of a request are atomic
+  private final ReentrantLock loadLock = new ReentrantLock();
+
+  // number of requests in all queues
+  private final AtomicInteger numReq = new AtomicInteger();
+
+  // signals of the graph groups waiting for requests
+  private final Queue parked = new ConcurrentLinkedQueue();
+
+  // kept for mediators that do not register graph groups individually
+  private final ReentrantLock legacyLock = new ReentrantLock();
+
+  private final Condition legacyQueueNotEmpty = this.legacyLock.newCondition();
+
+  private volatile boolean legacyUsed;
+
+  // mediator instace
+  protected DataAwareManagerMediator fmediator;
+
+  /**
+   * Contructor.
+   */
+  public WorkStealingReqForwarder(DataAwareManagerMediator dwareManMed) {
+    if (dwareManMed != null) {
+      dwareManMed.registerReqForwarder(this);
+      this.fmediator = dwareManMed;
+    }
+    this.queues.add(this.sharedQueue);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void configure(Element config) {
+    // nothing to configure
+  }
+
+  /**
+   * Creates the local queue of a graph group and binds it to the calling
+   * thread, which must be the graph group thread.
+   */
+  public GroupSignal registerGroup(String groupName) {
+    GroupSignal signal = new GroupSignal(groupName, this, this.parked);
+    LocalQueue queue = new LocalQueue(signal);
+    this.queues.add(queue);
+    this.ownQueue.set(queue);
+    log.info(i18n.getString("workStealingGroup", groupName, Integer.toString(this.queues.size() - 1)));
+    return signal;
+  }
+
+  /**
+   * Removes the local queue of a graph group and moves the requests left in
+   * it to the shared queue, where the other groups will steal them.
+   */
+  public void unregisterGroup(String groupName) {
+    Iterator it = this.queues.iterator();
+    while (it.hasNext()) {
+      LocalQueue queue = (LocalQueue) it.next();
+      if (queue.owner != null && queue.owner.getGroupName().equals(groupName)) {
+        this.queues.remove(queue);
+        this.parked.remove(queue.owner);
+        List left = queue.close();
+        if (!left.isEmpty()) {
+          this.sharedQueue.addAll(left);
+          for (int i = 0; i < left.size(); i++) {
+            if (!signalOne()) {
+              break;
+            }
+          }
+        }
+        log.info(i18n.getString("workStealingGroupRemoved", groupName, Integer.toString(left.size())));
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void addNewReq(Request newReq) {
+    this.loadLock.lock();
+    try {
+      if (!checkIfNotLoaded(newReq)) {
+        return;
+      }
+      // the mediator must know the request before any graph group can take it
+      if (this.fmediator != null) {
+        this.fmediator.reqQueued(newReq);
+      }
+    } finally {
+      this.loadLock.unlock();
+    }
+    addReq(newReq);
+    if (this.fmediator != null) {
+      this.fmediator.reqAvailable(newReq);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void addRetryReq(Request req) {
+    this.loadLock.lock();
+    try {
+      if (!checkIfNotLoaded(req)) {
+        return;
+      }
+      if (this.fmediator != null) {
+        this.fmediator.reqRequeued(req);
+      }
+    } finally {
+      this.loadLock.unlock();
+    }
+    addReq(req);
+    if (this.fmediator != null) {
+      this.fmediator.reqAvailable(req);
+    }
+  }
+
+  /**
+   * Spreads the requests among the local queues, always giving the next
+   * request to the queue with the smallest total weight. Each queue is locked
+   * only once for the whole batch.
+   * 
+   * @param newReqs
+   *          a collection containing all new requests.
+   */
+  public void addNewReqs(Collection<Request> newReqs) {
+    this.addReqs(newReqs, false);
+  }
+
+  /**
+   * Spreads the requeued requests like {@link #addNewReqs(Collection)}.
+   * 
+   * @param reqs
+   *          a collection containing all the requests being requeued.
+   */
+  public void addRetryReqs(Collection<Request> reqs) {
+    this.addReqs(reqs, true);
+  }
+
+  private void addReqs(Collection<Request> newReqs, boolean retry) {
+    List<Request> reqs;
+    if (this.fmediator == null) {
+      reqs = new ArrayList<Request>(newReqs);
+    } else {
+      this.loadLock.lock();
+      try {
+        reqs = this.fmediator.filterNotLoaded(newReqs);
+        if (retry) {
+          for (Request req : reqs) {
+            this.fmediator.reqRequeued(req);
+          }
+        } else if (!reqs.isEmpty()) {
+          this.fmediator.reqsQueued(reqs);
+        }
+      } finally {
+        this.loadLock.unlock();
+      }
+      if (reqs.size() < newReqs.size()) {
+        log.warn(i18n.getString("reqsAlreadyLoaded", Integer.toString(newReqs.size() - reqs.size()),
+                                Integer.toString(newReqs.size())));
+      }
+      if (reqs.isEmpty()) {
+        return;
+      }
+    }
+    LocalQueue[] targets = getTargetQueues();
+    long[] weights = new long[targets.length];
+    List[] assigned = new List[targets.length];
+    for (int i = 0; i < targets.length; i++) {
+      weights[i] = targets[i].totalWeight;
+      assigned[i] = new ArrayList();
+    }
+    for (Request req : reqs) {
+      int lightest = 0;
+      for (int i = 1; i < targets.length; i++) {
+        if (weights[i] < weights[lightest]) {
+          lightest = i;
+        }
+      }
+      weights[lightest] += req.getCost();
+      assigned[lightest].add(req);
+    }
+
+    int toWake = reqs.size();
+    for (int i = 0; i < targets.length; i++) {
+      if (!assigned[i].isEmpty()) {
+        LocalQueue target = store(targets[i], assigned[i]);
+        this.numReq.addAndGet(assigned[i].size());
+        if (wakeOwner(target)) {
+          toWake--;
+        }
+      }
+    }
+    // the other waiting groups will steal
+    for (; toWake > 0; toWake--) {
+      if (!signalOne()) {
+        break;
+      }
+    }
+    if (this.fmediator != null) {
+      this.fmediator.reqsAvailable(reqs);
+    }
+  }
+
+  /*
+   * Checks if a request was not already loaded to this queue.
+   */
+  private boolean checkIfNotLoaded(Request req) {
+    if (this.fmediator != null && this.fmediator.checkIfReqLoaded(req)) {
+      log.warn(i18n.getString("reqAlreadyLoaded", req.getId()));
+      return false;
+    }
+    return true;
+  }
+
+  /*
+   * Stores the request in the queue with the smallest total weight and wakes
+   * up some group to process it.
+   */
+  private void addReq(Request req) {
+    LocalQueue[] targets = getTargetQueues();
+    LocalQueue lightest = targets[0];
+    for (int i = 1; i < targets.length; i++) {
+      if (targets[i].totalWeight < lightest.totalWeight) {
+        lightest = targets[i];
+      }
+    }
+    List single = new ArrayList(1);
+    single.add(req);
+    lightest = store(lightest, single);
+    this.numReq.incrementAndGet();
+    if (!wakeOwner(lightest)) {
+      signalOne();
+    }
+  }
+
+  /*
+   * Adds the requests to the queue, or to the shared queue if the group was
+   * unregistered meanwhile. Returns the queue that kept them.
+   */
+  private LocalQueue store(LocalQueue queue, List reqs) {
+    if (queue.addAll(reqs)) {
+      return queue;
+    }
+    this.sharedQueue.addAll(reqs);
+    return this.sharedQueue;
+  }
+
+  /*
+   * Returns the queues of the registered groups, or the shared queue if there
+   * is none.
+   */
+  private LocalQueue[] getTargetQueues() {
+    Object[] all = this.queues.toArray();
+    if (all.length == 1) {
+      return new LocalQueue[] { this.sharedQueue };
+    }
+    LocalQueue[] targets = new LocalQueue[all.length - 1];
+    for (int i = 1; i < all.length; i++) {
+      targets[i - 1] = (LocalQueue) all[i];
+    }
+    return targets;
+  }
+
+  /*
+   * Wakes up the owner of the queue if it is waiting for requests.
+   */
+  private boolean wakeOwner(LocalQueue queue) {
+    if (queue.owner != null && this.parked.remove(queue.owner)) {
+      queue.owner.signal();
+      return true;
+    }
+    return false;
+  }
+
+  /*
+   * Wakes up one waiting graph group. Returns false if no group was parked.
+   */
+  private boolean signalOne() {
+    GroupSignal signal = (GroupSignal) this.parked.poll();
+    if (signal != null) {
+      signal.signal();
+    }
+    if (this.legacyUsed) {
+      this.legacyLock.lock();
+      try {
+        this.legacyQueueNotEmpty.signal();
+      } finally {
+        this.legacyLock.unlock();
+      }
+    }
+    return signal != null;
+  }
+
+  /**
+   * Returns a request from the local queue of the calling graph group, or
+   * steals from the greatest backlog if it is empty. It will throw
+   * <code>NoSuchElementException</code> only when all the queues are empty.
+   * 
+   * @param maxWeight
+   *          maximum weight the request can have. Negative values accept any
+   *          weight.
+   * @exception NoSuchElementException
+   *              when all the queues are empty.
+   */
+  public Request chooseNextRequest(long maxWeight) throws NoSuchElementException {
+    LocalQueue own = (LocalQueue) this.ownQueue.get();
+    if (own == null) {
+      own = this.sharedQueue;
+    }
+    Request req = own.take(maxWeight);
+    while (req == null) {
+      LocalQueue victim = getGreatestBacklog(own);
+      if (victim == null) {
+        throw new NoSuchElementException();
+      }
+      if (own == this.sharedQueue) {
+        req = victim.take(maxWeight);
+      } else {
+        List stolen = victim.steal();
+        if (!stolen.isEmpty()) {
+          req = store(own, stolen).take(maxWeight);
+        }
+      }
+    }
+    this.numReq.decrementAndGet();
+    return req;
+  }
+
+  /*
+   * Returns the queue with the greatest total weight, other than the given
+   * one, or null if all of them are empty.
+   */
+  private LocalQueue getGreatestBacklog(LocalQueue own) {
+    LocalQueue victim = null;
+    Iterator it = this.queues.iterator();
+    while (it.hasNext()) {
+      LocalQueue queue = (LocalQueue) it.next();
+      if (queue != own && queue.size > 0 && (victim == null || queue.totalWeight > victim.totalWeight)) {
+        victim = queue;
+      }
+    }
+    return victim;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public int size() {
+    return this.numReq.get();
+  }
+
+  /**
+   * Return the weight of the next request the calling graph group would get
+   * from its own queue, or from the greatest backlog if its queue is empty.
+   * 
+   * @return the weight that the forwarder wish that someone ask him.
+   */
+  public long getWishWeight() {
+    LocalQueue own = (LocalQueue) this.ownQueue.get();
+    if (own == null) {
+      own = this.sharedQueue;
+    }
+    if (own.size == 0) {
+      own = getGreatestBacklog(own);
+      if (own == null) {
+        return 0;
+      }
+    }
+    return own.peekWeight();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Lock getSyncObj() {
+    this.legacyUsed = true;
+    return this.legacyLock;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Condition getQueueNotEmptyCondition() {
+    this.legacyUsed = true;
+    return this.legacyQueueNotEmpty;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void shutdown() {
+    // nothing to do
+  }
+
+  /*
+   * Local queue of one graph group. The counters are written under the lock
+   * and read without it to choose where to add and from where to steal.
+   */
+  private static final class LocalQueue {
+
+    private final GroupSignal owner;
+
+    private final LinkedList requests = new LinkedList();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile int size;
+
+    private volatile long totalWeight;
+
+    // set when the owner group is unregistered
+    private boolean closed;
+
+    LocalQueue(GroupSignal owner) {
+      this.owner = owner;
+    }
+
+    /*
+     * Adds the requests at the end of the queue. Returns false, adding
+     * nothing, if the queue was closed.
+     */
+    boolean addAll(List reqs) {
+      this.lock.lock();
+      try {
+        if (this.closed) {
+          return false;
+        }
+        Iterator it = reqs.iterator();
+        while (it.hasNext()) {
+          Request req = (Request) it.next();
+          this.requests.addLast(req);
+          this.totalWeight += req.getCost();
+        }
+        this.size = this.requests.size();
+        return true;
+      } finally {
+        this.lock.unlock();
+      }
+    }
+
+    /*
+     * Closes the queue and returns the requests left in it, in order.
+     */
+    List close() {
+      this.lock.lock();
+      try {
+        this.closed = true;
+        List left = new ArrayList(this.requests);
+        this.requests.clear();
+        this.totalWeight = 0;
+        this.size = 0;
+        return left;
+      } finally {
+        this.lock.unlock();
+      }
+    }
+
+    /*
+     * Removes, among the first requests, the heaviest one that fits in
+     * maxWeight, or the lightest one if none fits.
+     */
+    Request take(long maxWeight) {
+      this.lock.lock();
+      try {
+        if (this.requests.isEmpty()) {
+          return null;
+        }
+        Request req;
+        if (maxWeight < 0) {
+          req = (Request) this.requests.removeFirst();
+        } else {
+          int best = -1;
+          int lightest = 0;
+          long bestWeight = -1;
+          long lightestWeight = Long.MAX_VALUE;
+          Iterator it = this.requests.iterator();
+          for (int i = 0; i < SCAN_WINDOW && it.hasNext(); i++) {
+            long weight = ((Request) it.next()).getCost();
+            if (weight <= maxWeight && weight > bestWeight) {
+              best = i;
+              bestWeight = weight;
+            }
+            if (weight < lightestWeight) {
+              lightest = i;
+              lightestWeight = weight;
+            }
+          }
+          req = (Request) this.requests.remove(best >= 0 ? best : lightest);
+        }
+        this.totalWeight -= req.getCost();
+        this.size = this.requests.size();
+        return req;
+      } finally {
+        this.lock.unlock();
+      }
+    }
+
+    /*
+     * Removes the requests lighter than the average of this queue, from its
+     * end backwards, until about half of the weight of this queue was taken.
+     * If none is lighter, the last request is taken. Returns the requests in
+     * their original order.
+     */
+    List steal() {
+      List stolen = new ArrayList();
+      this.lock.lock();
+      try {
+        if (this.requests.isEmpty()) {
+          return stolen;
+        }
+        long half = this.totalWeight / 2;
+        long average = this.totalWeight / this.requests.size();
+        long moved = 0;
+        ListIterator it = this.requests.listIterator(this.requests.size());
+        while (it.hasPrevious() && moved < half) {
+          Request req = (Request) it.previous();
+          if (req.getCost() <= average) {
+            it.remove();
+            moved += req.getCost();
+            stolen.add(req);
+          }
+        }
+        if (stolen.isEmpty()) {
+          Request req = (Request) this.requests.removeLast();
+          moved = req.getCost();
+          stolen.add(req);
+        }
+        this.totalWeight -= moved;
+        this.size = this.requests.size();
+      } finally {
+        this.lock.unlock();
+      }
+      // keep the original order
+      Collections.reverse(stolen);
+      return stolen;
+    }
+
+    long peekWeight() {
+      this.lock.lock();
+      try {
+        return this.requests.isEmpty() ? 0 : ((Request) this.requests.getFirst()).getCost();
+      } finally {
+        this.lock.unlock();
+      }
+    }
+  }
+}
@@ -17,8 +17,11 @@
  */
 package br.com.auster.dware.manager.checkpoint;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 
 import org.apache.log4j.Logger;
 import org.w3c.dom.Element;
@@ -131,6 +134,36 @@ public abstract class AbstractCheckpoint {
     }
   }
 
+  /**
+   * Returns the requests of the collection that were not processed nor queued
+   * yet, checking all of them at once. A request that appears more than once
+   * in the collection is returned only the first time.
+   *
+   * @param reqs
+   *          Request objects that will be checked.
+   * @return the requests that can be queued, in the same order.
+   */
+  public List<Request> filterNotContained(Collection<Request> reqs) {
+    List<Request> notContained = new ArrayList<Request>(reqs.size());
+    HashSet batchIds = new HashSet();
+
+    synchronized (syncObj) {
+      if (reqProcessedHash == null)
+        reqProcessedHash = initReqProcessedHash();
+      if (reqQueuedHash == null)
+        reqQueuedHash = initReqQueuedHash();
+
+      for (Request req : reqs) {
+        String reqId = req.getId();
+        if (!reqProcessedHash.contains(reqId) && !reqQueuedHash.contains(reqId)
+            && batchIds.add(reqId)) {
+          notContained.add(req);
+        }
+      }
+    }
+    return notContained;
+  }
+
   /**
    * Warn this class that some request was processed.
    *
@@ -157,6 +190,7 @@ public abstract class AbstractCheckpoint {
         checkReqProcessed(req);
       }
     }
+    afterStore(req);
   }
 
   /**
@@ -171,6 +205,12 @@ public abstract class AbstractCheckpoint {
    * @return if the request fails less than the maximum number of fails allowed.
    */
   public boolean checkReqFailed(Request req, String graphName, Throwable error) {
+    boolean isRetry = storeReqFailed(req, graphName, error);
+    afterStore(req);
+    return isRetry;
+  }
+
+  private boolean storeReqFailed(Request req, String graphName, Throwable error) {
 
     String reqId = req.getId();
 
@@ -199,9 +239,41 @@ public abstract class AbstractCheckpoint {
         return isRetry;
       } catch (NullPointerException e) { // some set was not initialized
         fillReqFailedMap(e);
-        return checkReqFailed(req, graphName, error);
+        return storeReqFailed(req, graphName, error);
+      }
+    }
+  }
+
+  /**
+   * Warn this class that a request accepted by {@link #checkReqFailed} for a
+   * retry will not be retried after all, because the retry budget of its
+   * transaction was spent. It is stored as failed for good.
+   *
+   * @param req
+   *          Request object that failed.
+   * @param graphName
+   *          graph name.
+   * @param error
+   *          exception thrown.
+   */
+  public void checkReqGaveUp(Request req, String graphName, Throwable error) {
+    String reqId = req.getId();
+
+    synchronized (syncObj) {
+      try {
+        int numFail = 1;
+        if (reqFailedMap.containsKey(reqId)) {
+          numFail = ((Integer) reqFailedMap.get(reqId)).intValue();
+        }
+        log.fatal(i18n.getString("processFailed", req, graphName), error);
+        loadReqFailed(req, false, numFail); // call for custom action
+      } catch (NullPointerException e) { // some set was not initialized
+        fillReqFailedMap(e);
+        checkReqGaveUp(req, graphName, error);
+        return;
       }
     }
+    afterStore(req);
   }
 
   /**
@@ -228,6 +300,45 @@ public abstract class AbstractCheckpoint {
           throw e;
       }
     }
+    afterStore(req);
+  }
+
+  /**
+   * Warn this class that all the requests are on list of requests that will be
+   * processed. The data source is updated once for the whole collection.
+   *
+   * @param reqs
+   *          Request objects queued.
+   */
+  public void checkReqsWillBeProcessed(Collection<Request> reqs) {
+
+    synchronized (syncObj) {
+      // call for custom action
+      loadReqsWillBeProcessed(reqs);
+
+      if (reqQueuedHash == null)
+        reqQueuedHash = initReqQueuedHash();
+      for (Request req : reqs) {
+        reqQueuedHash.add(req.getId());
+      }
+    }
+    afterStore(reqs);
+  }
+
+  /*
+   * Waits for the data source, never while holding the synchronization
+   * object, so that other threads may keep changing the checkpoint.
+   */
+  private void afterStore(Request req) {
+    if (!Thread.holdsLock(syncObj) && !awaitStored()) {
+      log.error(i18n.getString("changeNotStored", req));
+    }
+  }
+
+  private void afterStore(Collection<Request> reqs) {
+    if (!Thread.holdsLock(syncObj) && !awaitStored()) {
+      log.error(i18n.getString("changesNotStored", Integer.toString(reqs.size())));
+    }
   }
 
   /**
@@ -286,4 +397,43 @@ public abstract class AbstractCheckpoint {
    */
   protected abstract void loadReqWillBeProcessed(Request req);
 
+  /**
+   * Store in some data storage the information of all the requests that will
+   * be processed. The default implementation calls
+   * {@link #loadReqWillBeProcessed(Request)} for each one; subclasses that
+   * can store many requests at once should override it.
+   *
+   * @param reqs
+   *          Request objects queued.
+   */
+  protected void loadReqsWillBeProcessed(Collection<Request> reqs) {
+    for (Request req : reqs) {
+      loadReqWillBeProcessed(req);
+    }
+  }
+
+  /**
+   * Warn this class that all the requests of a transaction were processed.
+   * The default implementation does nothing.
+   *
+   * @param transactionId
+   *          the transaction ID, or <code>null</code> for the requests
+   *          without one.
+   */
+  public void transactionFinished(String transactionId) {
+  }
+
+  /**
+   * Called after each change to the checkpoint, out of the synchronization
+   * object. Subclasses that store the changes in background should block here
+   * until they are stored, if they were configured to do so. The default
+   * implementation does nothing.
+   * 
+   * @return false if the changes could not be stored, so they are not
+   *         durable.
+   */
+  protected boolean awaitStored() {
+    return true;
+  }
+
 }
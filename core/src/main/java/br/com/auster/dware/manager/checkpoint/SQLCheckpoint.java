@@ -3,9 +3,12 @@ package br.com.auster.dware.manager.checkpoint;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 
 import javax.naming.NamingException;
 
@@ -123,6 +126,24 @@ import br.com.auster.dware.manager.DataAwareManagerMediator;
  * &lt;/checkpoint&gt;
  * </pre>
  *
+ * By default each change is written and committed before the caller goes on.
+ * If the <code>journal-size</code> attribute is set, the changes are kept in
+ * a journal of that size and written in background, in JDBC batches of up to
+ * <code>flush-size</code> changes (default 500), at least every
+ * <code>flush-interval</code> milliseconds (default 200). With
+ * <code>durability="flush"</code> the caller still waits until its change
+ * is committed, sharing the commit with the other changes of the batch; with
+ * <code>durability="enqueue"</code> (the default) it only waits for room in
+ * the journal, and the last changes may be lost if the JVM stops abruptly.
+ * <pre>
+ * &lt;checkpoint class-name="br.com.auster.dware.manager.checkpoint.SQLCheckpoint"
+ *             database-name="db"
+ *             journal-size="10000"
+ *             flush-size="500"
+ *             flush-interval="200"
+ *             durability="flush"&gt;
+ * </pre>
+ *
  * @author rbarone
  * @version $Id$
  */
@@ -149,6 +170,14 @@ public class SQLCheckpoint extends AbstractCheckpoint {
   public static final String REQUEST_ID_ATT = "request-id";
   public static final String STATUS_ATT = "status";
 
+  public static final String JOURNAL_SIZE_ATT = "journal-size";
+  public static final String FLUSH_SIZE_ATT = "flush-size";
+  public static final String FLUSH_INTERVAL_ATT = "flush-interval";
+  public static final String DURABILITY_ATT = "durability";
+
+  public static final String ENQUEUE_DURABILITY = "enqueue";
+  public static final String FLUSH_DURABILITY = "flush";
+
   public static final char QUEUED_STATUS = 'q';
   public static final char PROCESSED_STATUS = 'p';
   public static final char RETRY_STATUS = 'r';
@@ -166,6 +195,16 @@ public class SQLCheckpoint extends AbstractCheckpoint {
   // HashMap<CheckpointItem>
   private HashSet checkpoint;
 
+  // the insert and update statements, for the JDBC batches
+  private final SQLJournal.Target insertTarget;
+  private final SQLJournal.Target updateTarget;
+
+  // writes the changes in background; null if they are written at once
+  private final SQLJournal journal;
+
+  // if true, changes are only acknowledged after the journal stores them
+  private final boolean waitFlush;
+
   public SQLCheckpoint(Element config, DataAwareManagerMediator _dwareManMed) {
     super(config, _dwareManMed);
 
@@ -193,6 +232,36 @@ public class SQLCheckpoint extends AbstractCheckpoint {
     // configure update
     elt = DOMUtils.getElement(config, UPDATE_ELT, true);
     this.update = new Query(this.sqlManager, elt, true, true, true);
+    this.insertTarget = target(this.insert);
+    this.updateTarget = target(this.update);
+
+    // configure the write-behind journal
+    int journalSize = DOMUtils.getIntAttribute(config, JOURNAL_SIZE_ATT, false);
+    if (journalSize > 0) {
+      int flushSize = DOMUtils.getIntAttribute(config, FLUSH_SIZE_ATT, false);
+      if (flushSize <= 0) {
+        flushSize = 500;
+      }
+      int flushInterval = DOMUtils.getIntAttribute(config, FLUSH_INTERVAL_ATT, false);
+      if (flushInterval <= 0) {
+        flushInterval = 200;
+      }
+      String durability = DOMUtils.getAttribute(config, DURABILITY_ATT, false);
+      this.waitFlush = FLUSH_DURABILITY.equals(durability);
+      this.journal = new SQLJournal("SQLCheckpoint-" + dbName, journalSize, flushSize,
+                                    flushInterval, this.insertTarget, this.updateTarget) {
+        protected Connection getConnection() throws SQLException {
+          return sqlManager.getConnection();
+        }
+      };
+      this.journal.start();
+      log.info(i18n.getString("journalEnabled", Integer.toString(journalSize),
+                              Integer.toString(flushSize), Integer.toString(flushInterval),
+                              this.waitFlush ? FLUSH_DURABILITY : ENQUEUE_DURABILITY));
+    } else {
+      this.waitFlush = false;
+      this.journal = null;
+    }
   }
 
   protected HashMap initReqFailedMap() {
@@ -242,8 +311,66 @@ public class SQLCheckpoint extends AbstractCheckpoint {
     updateCheckpoint( new CheckpointItem(tid, req.getUserKey(), QUEUED_STATUS) );
   }
 
+  /**
+   * Stores all the queued requests with one connection and one JDBC batch for
+   * the inserts and another for the updates.
+   */
+  protected void loadReqsWillBeProcessed(Collection<Request> reqs) {
+    List inserts = new ArrayList();
+    List updates = new ArrayList();
+    for (Request req : reqs) {
+      String tid = req.getTransactionId();
+      if (tid == null) {
+        tid = INITIAL_TRANSACTION_ID;
+      }
+      CheckpointItem item = new CheckpointItem(tid, req.getUserKey(), QUEUED_STATUS);
+      boolean isUpdate = this.checkpoint.remove(item);
+      this.checkpoint.add(item);
+      SQLJournal.Entry entry = entry(isUpdate, item);
+      if (this.journal != null) {
+        this.journal.append(entry);
+      } else if (isUpdate) {
+        updates.add(entry);
+      } else {
+        inserts.add(entry);
+      }
+    }
+    if (this.journal != null) {
+      return;
+    }
+
+    Connection conn = null;
+    try {
+      conn = this.sqlManager.getConnection();
+      SQLJournal.executeBatch(conn, this.insertTarget, inserts);
+      SQLJournal.executeBatch(conn, this.updateTarget, updates);
+      if (!conn.getAutoCommit()) {
+        conn.commit();
+      }
+    } catch (SQLException e) {
+      log.error(i18n.getString("dbError"), e);
+    } finally {
+      if (conn != null) {
+        try { conn.close(); } catch (Exception e) {}
+      }
+    }
+  }
+
+  /**
+   * Waits until the journal has stored all the changes made so far, if the
+   * durability requires it.
+   */
+  protected boolean awaitStored() {
+    if (this.waitFlush) {
+      return this.journal.awaitFlushed(this.journal.getLastSequence());
+    }
+    return true;
+  }
+
   public void shutdown() {
-    // nothing to do
+    if (this.journal != null) {
+      this.journal.close();
+    }
   }
 
   private void initCheckpoint() {
@@ -287,8 +414,13 @@ public class SQLCheckpoint extends AbstractCheckpoint {
   private void updateCheckpoint(CheckpointItem item) {
 	// TODO instead of removing and adding the item (thus always updating the database),
 	//      compare the status and update it (both the object and the database) only when necessary
-    Query query = this.checkpoint.remove(item) ? this.update : this.insert;
+    boolean isUpdate = this.checkpoint.remove(item);
     this.checkpoint.add(item);
+    if (this.journal != null) {
+      this.journal.append(entry(isUpdate, item));
+      return;
+    }
+    Query query = isUpdate ? this.update : this.insert;
     Connection conn = null;
     try {
       conn = this.sqlManager.getConnection();
@@ -312,6 +444,19 @@ public class SQLCheckpoint extends AbstractCheckpoint {
     }
   }
 
+  private static SQLJournal.Target target(Query query) {
+    QueryFields params = query.getParams();
+    return new SQLJournal.Target(query.getStatement().getStatementText(),
+                                 params.getTransactionIdForJDBC(),
+                                 params.getRequestIdForJDBC(),
+                                 params.getStatusForJDBC());
+  }
+
+  private static SQLJournal.Entry entry(boolean isUpdate, CheckpointItem item) {
+    return new SQLJournal.Entry(isUpdate, item.getTransactionId(), item.getRequestId(),
+                                item.getStatus());
+  }
+
 
   //###################
   // INNER CLASSES
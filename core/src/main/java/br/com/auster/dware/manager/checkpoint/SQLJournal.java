@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.manager.checkpoint;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Write-behind journal of the {@link SQLCheckpoint}. Each batch is stored with
+ * one connection, one JDBC batch for the inserts and another for the updates,
+ * and one commit. Only the last status of each request is written: an insert
+ * followed by updates of the same request becomes a single insert.
+ * 
+ * @version $Id$
+ */
+public abstract class SQLJournal extends WriteBehindJournal {
+
+  private static final Logger log = Logger.getLogger(SQLJournal.class);
+
+  private final Target insert;
+
+  private final Target update;
+
+  /**
+   * Constructor. The thread must be started by the caller.
+   * 
+   * @param insert
+   *          the statement that inserts the status of a new request.
+   * @param update
+   *          the statement that updates the status of a known request.
+   * @see WriteBehindJournal#WriteBehindJournal(String, int, int, long)
+   */
+  public SQLJournal(String name, int capacity, int flushSize, long flushInterval, Target insert,
+                    Target update) {
+    super(name, capacity, flushSize, flushInterval);
+    this.insert = insert;
+    this.update = update;
+  }
+
+  /**
+   * Returns a connection to the database, closed after each batch.
+   */
+  protected abstract Connection getConnection() throws SQLException;
+
+  protected void flush(List entries) throws SQLException {
+    // Map<Entry, Entry(last status)>
+    Map inserts = new LinkedHashMap();
+    Map updates = new LinkedHashMap();
+    Iterator it = entries.iterator();
+    while (it.hasNext()) {
+      Entry entry = (Entry) it.next();
+      if (!entry.isUpdate || inserts.containsKey(entry)) {
+        inserts.put(entry, entry);
+      } else {
+        updates.put(entry, entry);
+      }
+    }
+
+    Connection conn = null;
+    try {
+      conn = this.getConnection();
+      executeBatch(conn, this.insert, new ArrayList(inserts.values()));
+      executeBatch(conn, this.update, new ArrayList(updates.values()));
+      if (!conn.getAutoCommit()) {
+        conn.commit();
+      }
+    } finally {
+      if (conn != null) {
+        try { conn.close(); } catch (Exception e) {}
+      }
+    }
+  }
+
+  /**
+   * Runs the statement once for each entry, in one JDBC batch. The connection
+   * is not committed.
+   */
+  public static void executeBatch(Connection conn, Target target, List entries) throws SQLException {
+    if (entries.isEmpty()) {
+      return;
+    }
+    PreparedStatement stmt = conn.prepareStatement(target.text);
+    try {
+      Iterator it = entries.iterator();
+      while (it.hasNext()) {
+        Entry entry = (Entry) it.next();
+        stmt.setString(target.transactionId, entry.transactionId);
+        stmt.setString(target.requestId, entry.requestId);
+        stmt.setString(target.status, String.valueOf(entry.status));
+        stmt.addBatch();
+      }
+      int[] rowCounts = stmt.executeBatch();
+      for (int i = 0; i < rowCounts.length; i++) {
+        if (rowCounts[i] == 0) {
+          log.error("No rows affected for checkpoint update: " + entries.get(i));
+        }
+      }
+    } finally {
+      stmt.close();
+    }
+  }
+
+  /**
+   * A statement and the positions (starting at 1) of its parameters.
+   */
+  public static final class Target {
+
+    private final String text;
+    private final int transactionId;
+    private final int requestId;
+    private final int status;
+
+    public Target(String text, int transactionId, int requestId, int status) {
+      this.text = text;
+      this.transactionId = transactionId;
+      this.requestId = requestId;
+      this.status = status;
+    }
+  }
+
+  /**
+   * A new status of a request. Entries of the same request are equal, whatever
+   * their status.
+   */
+  public static final class Entry {
+
+    private final boolean isUpdate;
+    private final String transactionId;
+    private final String requestId;
+    private final char status;
+
+    /**
+     * @param isUpdate
+     *          false if the request is not in the database yet.
+     */
+    public Entry(boolean isUpdate, String transactionId, String requestId, char status) {
+      this.isUpdate = isUpdate;
+      this.transactionId = transactionId;
+      this.requestId = requestId;
+      this.status = status;
+    }
+
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Entry)) {
+        return false;
+      }
+      Entry that = (Entry) obj;
+      return equal(this.transactionId, that.transactionId) && equal(this.requestId, that.requestId);
+    }
+
+    public int hashCode() {
+      return (this.transactionId == null ? 0 : this.transactionId.hashCode()) * 31
+             + (this.requestId == null ? 0 : this.requestId.hashCode());
+    }
+
+    public String toString() {
+      return "[" + this.transactionId + ";" + this.requestId + ";" + this.status + "]";
+    }
+
+    private static boolean equal(String a, String b) {
+      return a == null ? b == null : a.equals(b);
+    }
+  }
+}
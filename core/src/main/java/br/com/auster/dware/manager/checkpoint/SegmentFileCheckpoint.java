@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.manager.checkpoint;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.w3c.dom.Element;
+
+import br.com.auster.common.xml.DOMUtils;
+import br.com.auster.dware.graph.Request;
+import br.com.auster.dware.manager.DataAwareManagerMediator;
+
+/**
+ * This class implements a file storage for checkpoint information, using a
+ * binary append-only log split in segments (see {@link SegmentLog}).
+ * 
+ * <p>
+ * Processed requests are written in background, in batches that share a
+ * single write and a single disk sync. With <code>durability="flush"</code>
+ * (the default) a graph only goes on after its request is on disk, as in
+ * {@link FileCheckpoint}; with <code>durability="enqueue"</code> it does not
+ * wait, and the last requests may be processed again after a crash.
+ * </p>
+ * 
+ * <p>
+ * When a transaction finishes, its requests are no longer needed in the log.
+ * If <code>compact-interval</code> is set, the log is rewritten without them
+ * at most once per interval. On start, the segments are read in parallel,
+ * memory-mapped, to rebuild the set of processed requests.
+ * </p>
+ * 
+ * <pre>
+ * &lt;checkpoint class-name="br.com.auster.dware.manager.checkpoint.SegmentFileCheckpoint"
+ *             directory="/var/dware/checkpoint"
+ *             segment-size="67108864"
+ *             journal-size="10000"
+ *             flush-size="1000"
+ *             flush-interval="20"
+ *             durability="flush"
+ *             compact-interval="600000"
+ *             recovery-threads="4"/&gt;
+ * </pre>
+ * 
+ * @version $Id$
+ */
+public class SegmentFileCheckpoint extends AbstractCheckpoint {
+
+  public static final String DIRECTORY_ATT = "directory";
+  public static final String SEGMENT_SIZE_ATT = "segment-size";
+  public static final String JOURNAL_SIZE_ATT = "journal-size";
+  public static final String FLUSH_SIZE_ATT = "flush-size";
+  public static final String FLUSH_INTERVAL_ATT = "flush-interval";
+  public static final String DURABILITY_ATT = "durability";
+  public static final String COMPACT_INTERVAL_ATT = "compact-interval";
+  public static final String RECOVERY_THREADS_ATT = "recovery-threads";
+
+  public static final String ENQUEUE_DURABILITY = "enqueue";
+  public static final String FLUSH_DURABILITY = "flush";
+
+  private static final Logger log = Logger.getLogger(SegmentFileCheckpoint.class);
+
+  private final SegmentLog segmentLog;
+
+  private final WriteBehindJournal journal;
+
+  // if true, changes are only acknowledged after they are on disk
+  private final boolean waitFlush;
+
+  // milliseconds between compactions; 0 means never
+  private final long compactInterval;
+
+  // requests read on start, given to the first call to initReqProcessedHash
+  private HashSet recovered;
+
+  /**
+   * Creates a new instance, reading the existing segments.
+   * 
+   * @param config
+   *          configuration in a Element object.
+   * @param _dwareManMed
+   *          manager mediator.
+   */
+  public SegmentFileCheckpoint(Element config, DataAwareManagerMediator _dwareManMed) {
+    super(config, _dwareManMed);
+
+    File directory = new File(DOMUtils.getAttribute(config, DIRECTORY_ATT, true));
+    long segmentSize = DOMUtils.getIntAttribute(config, SEGMENT_SIZE_ATT, false);
+    if (segmentSize <= 0) {
+      segmentSize = 64 * 1024 * 1024;
+    }
+    int journalSize = DOMUtils.getIntAttribute(config, JOURNAL_SIZE_ATT, false);
+    if (journalSize <= 0) {
+      journalSize = 10000;
+    }
+    int flushSize = DOMUtils.getIntAttribute(config, FLUSH_SIZE_ATT, false);
+    if (flushSize <= 0) {
+      flushSize = 1000;
+    }
+    int flushInterval = DOMUtils.getIntAttribute(config, FLUSH_INTERVAL_ATT, false);
+    if (flushInterval <= 0) {
+      flushInterval = 20;
+    }
+    this.waitFlush = !ENQUEUE_DURABILITY.equals(DOMUtils.getAttribute(config, DURABILITY_ATT, false));
+    this.compactInterval = Math.max(0, DOMUtils.getIntAttribute(config, COMPACT_INTERVAL_ATT, false));
+    int threads = DOMUtils.getIntAttribute(config, RECOVERY_THREADS_ATT, false);
+    if (threads <= 0) {
+      threads = Runtime.getRuntime().availableProcessors();
+    }
+
+    try {
+      this.segmentLog = new SegmentLog(directory, segmentSize);
+      long start = System.currentTimeMillis();
+      this.recovered = this.segmentLog.recover(threads);
+      log.info(i18n.getString("segmentsRecovered", Integer.toString(this.recovered.size()),
+                              Long.toString(System.currentTimeMillis() - start)));
+      this.segmentLog.open();
+      log.info(i18n.getString("checkPointEnabled", directory.getCanonicalPath()));
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e.getMessage());
+    }
+    this.journal = new SegmentJournal(journalSize, flushSize, flushInterval);
+    this.journal.start();
+  }
+
+  /**
+   * Returns the processed requests read from the segments.
+   */
+  protected HashSet initReqProcessedHash() {
+    HashSet procHash = this.recovered == null ? new HashSet() : this.recovered;
+    this.recovered = null;
+    return procHash;
+  }
+
+  /**
+   * Returns an empty set, queued requests are not stored.
+   */
+  protected HashSet initReqQueuedHash() {
+    return new HashSet();
+  }
+
+  /**
+   * Returns an empty map, failed requests are not stored.
+   */
+  protected HashMap initReqFailedMap() {
+    return new HashMap();
+  }
+
+  /**
+   * Appends the request to the log.
+   * 
+   * @param req
+   *          Request object that was processed.
+   */
+  protected void loadReqProcessed(Request req) {
+    this.journal.append(new SegmentLog.Record(SegmentLog.PROCESSED, req.getTransactionId(),
+                                              req.getId()));
+  }
+
+  /**
+   * No action implemented.
+   */
+  protected void loadReqFailed(Request req, boolean isRetry, int failCount) {
+  }
+
+  /**
+   * No action implemented.
+   */
+  protected void loadReqWillBeProcessed(Request req) {
+  }
+
+  /**
+   * Appends the end of the transaction to the log, so that its requests are
+   * dropped by the next compaction.
+   */
+  public void transactionFinished(String transactionId) {
+    this.journal.append(new SegmentLog.Record(SegmentLog.FINISHED, transactionId, null));
+  }
+
+  /**
+   * Waits until the requests processed so far are on disk, if the durability
+   * requires it.
+   */
+  protected boolean awaitStored() {
+    if (this.waitFlush) {
+      return this.journal.awaitFlushed(this.journal.getLastSequence());
+    }
+    return true;
+  }
+
+  /**
+   * This method is called when this instance will be no more used.
+   */
+  public void shutdown() {
+    this.journal.close();
+    try {
+      this.segmentLog.close();
+    } catch (IOException e) {
+      log.warn(i18n.getString("problemCloseOutput", e), e);
+    }
+  }
+
+  /**
+   * Writes the batches to the log and compacts it when due. Both run in the
+   * journal thread, so the log is never used by two threads at once.
+   */
+  private class SegmentJournal extends WriteBehindJournal {
+
+    private long lastCompaction = System.currentTimeMillis();
+
+    private boolean transactionsFinished = false;
+
+    public SegmentJournal(int capacity, int flushSize, long flushInterval) {
+      super("SegmentFileCheckpoint", capacity, flushSize, flushInterval);
+    }
+
+    protected void flush(List entries) throws IOException {
+      segmentLog.append(entries);
+      if (compactInterval == 0) {
+        return;
+      }
+      for (int i = 0; i < entries.size() && !this.transactionsFinished; i++) {
+        this.transactionsFinished = ((SegmentLog.Record) entries.get(i)).getType() == SegmentLog.FINISHED;
+      }
+      long now = System.currentTimeMillis();
+      if (this.transactionsFinished && now - this.lastCompaction >= compactInterval) {
+        this.lastCompaction = now;
+        this.transactionsFinished = false;
+        segmentLog.compact();
+      }
+    }
+  }
+}
@@ -0,0 +1,467 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.manager.checkpoint;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+import br.com.auster.common.util.I18n;
+
+/**
+ * Append-only log of checkpoint records, kept in numbered segment files in a
+ * directory. Each record is stored as its length, its body and the CRC32 of
+ * the body, so a record cut in the middle by a crash is detected and ignored
+ * on recovery.
+ * 
+ * <p>
+ * Two kinds of record exist: a request of some transaction was processed, and
+ * a transaction has finished. A finished transaction cancels the records of
+ * that transaction written before it, so compaction may drop them.
+ * </p>
+ * 
+ * <p>
+ * This class is not thread-safe, except for the recovery, which reads the
+ * segments in parallel.
+ * </p>
+ * 
+ * @version $Id$
+ */
+public class SegmentLog {
+
+  public static final byte PROCESSED = 'P';
+
+  public static final byte FINISHED = 'T';
+
+  private static final String SEGMENT_PREFIX = "checkpoint-";
+
+  private static final String SEGMENT_SUFFIX = ".seg";
+
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private static final Logger log = Logger.getLogger(SegmentLog.class);
+
+  private final I18n i18n = I18n.getInstance(SegmentLog.class);
+
+  private final File directory;
+
+  private final long segmentSize;
+
+  // the segment being written, if open
+  private FileChannel active;
+
+  private long activeSequence;
+
+  /**
+   * A checkpoint record. The transaction ID is never null: requests without a
+   * transaction use an empty one.
+   */
+  public static final class Record {
+
+    private final byte type;
+
+    private final String transactionId;
+
+    private final String requestId;
+
+    public Record(byte type, String transactionId, String requestId) {
+      this.type = type;
+      this.transactionId = transactionId == null ? "" : transactionId;
+      this.requestId = requestId == null ? "" : requestId;
+    }
+
+    public byte getType() {
+      return this.type;
+    }
+
+    public String getTransactionId() {
+      return this.transactionId;
+    }
+
+    public String getRequestId() {
+      return this.requestId;
+    }
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param directory
+   *          where the segments are kept. It is created if needed.
+   * @param segmentSize
+   *          how many bytes a segment may have before the next one is started.
+   */
+  public SegmentLog(File directory, long segmentSize) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException(directory.getPath());
+    }
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+  }
+
+  /**
+   * Reads all the segments, using up to <code>threads</code> threads, and
+   * returns the IDs of the processed requests whose transaction was not
+   * finished after them.
+   */
+  public HashSet recover(int threads) throws IOException {
+    long[] sequences = listSegments();
+    List results = new ArrayList(sequences.length);
+    ExecutorService readers = Executors.newFixedThreadPool(Math.max(1, Math.min(threads,
+                                                                                sequences.length)));
+    try {
+      List futures = new ArrayList(sequences.length);
+      for (int i = 0; i < sequences.length; i++) {
+        final File segment = segmentFile(sequences[i]);
+        futures.add(readers.submit(new Callable() {
+          public Object call() throws IOException {
+            return readSegment(segment);
+          }
+        }));
+      }
+      for (Iterator it = futures.iterator(); it.hasNext();) {
+        results.add(((Future) it.next()).get());
+      }
+    } catch (InterruptedException e) {
+      throw new IOException(e.toString());
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause().toString());
+    } finally {
+      readers.shutdown();
+    }
+
+    // merges in segment order, so that a finished transaction only cancels
+    // the records written before it
+    Map processedByTransaction = new HashMap();
+    for (Iterator it = results.iterator(); it.hasNext();) {
+      SegmentContent content = (SegmentContent) it.next();
+      processedByTransaction.keySet().removeAll(content.finished);
+      for (Iterator entries = content.processed.entrySet().iterator(); entries.hasNext();) {
+        Map.Entry entry = (Map.Entry) entries.next();
+        HashSet ids = (HashSet) processedByTransaction.get(entry.getKey());
+        if (ids == null) {
+          processedByTransaction.put(entry.getKey(), entry.getValue());
+        } else {
+          ids.addAll((HashSet) entry.getValue());
+        }
+      }
+    }
+    HashSet processed = new HashSet();
+    for (Iterator it = processedByTransaction.values().iterator(); it.hasNext();) {
+      processed.addAll((HashSet) it.next());
+    }
+    if (sequences.length > 0) {
+      this.activeSequence = sequences[sequences.length - 1];
+    }
+    return processed;
+  }
+
+  /**
+   * Starts a new segment after the existing ones. Records are never appended
+   * to a segment written by a previous execution.
+   */
+  public void open() throws IOException {
+    openSegment(this.activeSequence + 1);
+  }
+
+  /**
+   * Writes the records at the end of the log and forces them to disk with a
+   * single call.
+   */
+  public void append(List records) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(encode(records));
+    while (buffer.hasRemaining()) {
+      this.active.write(buffer);
+    }
+    this.active.force(false);
+    if (this.active.size() >= this.segmentSize) {
+      this.active.close();
+      openSegment(this.activeSequence + 1);
+    }
+  }
+
+  /**
+   * Rewrites the whole log without the records cancelled by finished
+   * transactions, nor the finished transaction records themselves.
+   * 
+   * <p>
+   * The compacted segments are numbered after the old ones, and the old ones
+   * are removed only after them, so an interrupted compaction leaves
+   * duplicated records at most.
+   * </p>
+   */
+  public void compact() throws IOException {
+    this.active.close();
+    long[] sequences = listSegments();
+
+    // first pass: the position of the last finish of each transaction
+    Map lastFinish = new HashMap();
+    long position = 0;
+    long totalSize = 0;
+    for (int i = 0; i < sequences.length; i++) {
+      File segment = segmentFile(sequences[i]);
+      totalSize += segment.length();
+      List records = readRecords(segment, false);
+      for (Iterator it = records.iterator(); it.hasNext(); position++) {
+        Record record = (Record) it.next();
+        if (record.getType() == FINISHED) {
+          lastFinish.put(record.getTransactionId(), new Long(position));
+        }
+      }
+    }
+    long next = this.activeSequence + 1;
+    if (lastFinish.isEmpty()) {
+      openSegment(next);
+      return;
+    }
+
+    // second pass: copies the records that are still needed
+    long reserved = totalSize / this.segmentSize + 1;
+    long output = next;
+    List kept = new ArrayList();
+    long keptSize = 0;
+    int keptCount = 0;
+    int dropped = 0;
+    position = 0;
+    for (int i = 0; i < sequences.length; i++) {
+      List records = readRecords(segmentFile(sequences[i]), false);
+      for (Iterator it = records.iterator(); it.hasNext(); position++) {
+        Record record = (Record) it.next();
+        Long finish = (Long) lastFinish.get(record.getTransactionId());
+        if (record.getType() == FINISHED || (finish != null && finish.longValue() > position)) {
+          dropped++;
+          continue;
+        }
+        kept.add(record);
+        keptCount++;
+        keptSize += record.getTransactionId().length() + record.getRequestId().length() + 16;
+        if (keptSize >= this.segmentSize && output < next + reserved - 1) {
+          writeSegment(output++, kept);
+          kept.clear();
+          keptSize = 0;
+        }
+      }
+    }
+    if (!kept.isEmpty()) {
+      writeSegment(output, kept);
+    }
+    for (int i = 0; i < sequences.length; i++) {
+      segmentFile(sequences[i]).delete();
+    }
+    log.info(i18n.getString("segmentsCompacted", Integer.toString(sequences.length),
+                            Integer.toString(keptCount), Integer.toString(dropped)));
+    openSegment(next + reserved);
+  }
+
+  /**
+   * Closes the segment being written.
+   */
+  public void close() throws IOException {
+    if (this.active != null) {
+      this.active.close();
+      this.active = null;
+    }
+  }
+
+  /*
+   * Returns the sequence numbers of the segments, in order. Temporary files
+   * left by an interrupted compaction are removed.
+   */
+  private long[] listSegments() {
+    String[] names = this.directory.list();
+    long[] sequences = new long[names.length];
+    int count = 0;
+    for (int i = 0; i < names.length; i++) {
+      if (names[i].endsWith(TEMP_SUFFIX)) {
+        new File(this.directory, names[i]).delete();
+      } else if (names[i].startsWith(SEGMENT_PREFIX) && names[i].endsWith(SEGMENT_SUFFIX)) {
+        try {
+          sequences[count] = Long.parseLong(names[i].substring(SEGMENT_PREFIX.length(),
+                                                               names[i].length()
+                                                                   - SEGMENT_SUFFIX.length()));
+          count++;
+        } catch (NumberFormatException e) {
+          log.warn(i18n.getString("segmentIgnored", names[i]));
+        }
+      }
+    }
+    long[] result = new long[count];
+    System.arraycopy(sequences, 0, result, 0, count);
+    Arrays.sort(result);
+    return result;
+  }
+
+  private File segmentFile(long sequence) {
+    return new File(this.directory, SEGMENT_PREFIX + String.format("%012d", new Long(sequence))
+                                    + SEGMENT_SUFFIX);
+  }
+
+  private void openSegment(long sequence) throws IOException {
+    this.active = new RandomAccessFile(segmentFile(sequence), "rw").getChannel();
+    this.activeSequence = sequence;
+  }
+
+  /*
+   * Writes a whole segment to a temporary file, forces it to disk and only
+   * then gives it its name.
+   */
+  private void writeSegment(long sequence, List records) throws IOException {
+    File segment = segmentFile(sequence);
+    File temp = new File(segment.getPath() + TEMP_SUFFIX);
+    FileChannel channel = new RandomAccessFile(temp, "rw").getChannel();
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(encode(records));
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(false);
+    } finally {
+      channel.close();
+    }
+    if (!temp.renameTo(segment)) {
+      throw new IOException(temp.getPath());
+    }
+  }
+
+  /*
+   * Encodes each record as: body length, body (type, transaction ID, request
+   * ID) and CRC32 of the body.
+   */
+  private static byte[] encode(List records) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(records.size() * 64);
+    DataOutputStream out = new DataOutputStream(bytes);
+    ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream(64);
+    DataOutputStream body = new DataOutputStream(bodyBytes);
+    CRC32 crc = new CRC32();
+    for (Iterator it = records.iterator(); it.hasNext();) {
+      Record record = (Record) it.next();
+      bodyBytes.reset();
+      body.writeByte(record.getType());
+      body.writeUTF(record.getTransactionId());
+      body.writeUTF(record.getRequestId());
+      body.flush();
+      crc.reset();
+      crc.update(bodyBytes.toByteArray());
+      out.writeInt(bodyBytes.size());
+      bodyBytes.writeTo(out);
+      out.writeInt((int) crc.getValue());
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  /*
+   * Decodes the records of the segment, stopping at the first one that is
+   * incomplete or corrupted. The segment is memory-mapped if asked; otherwise
+   * it is read to the heap, so that it can be deleted right after.
+   */
+  private List readRecords(File segment, boolean mapped) throws IOException {
+    List records = new ArrayList();
+    FileInputStream in = new FileInputStream(segment);
+    try {
+      FileChannel channel = in.getChannel();
+      ByteBuffer buffer;
+      if (mapped) {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      } else {
+        buffer = ByteBuffer.allocate((int) channel.size());
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        }
+        buffer.flip();
+      }
+      CRC32 crc = new CRC32();
+      while (buffer.remaining() >= 4) {
+        int start = buffer.position();
+        int length = buffer.getInt();
+        if (length <= 0 || length + 4 > buffer.remaining()) {
+          log.warn(i18n.getString("segmentTruncated", segment.getPath(), Integer.toString(start)));
+          break;
+        }
+        byte[] body = new byte[length];
+        buffer.get(body);
+        crc.reset();
+        crc.update(body);
+        if (buffer.getInt() != (int) crc.getValue()) {
+          log.warn(i18n.getString("segmentTruncated", segment.getPath(), Integer.toString(start)));
+          break;
+        }
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(body));
+        records.add(new Record(data.readByte(), data.readUTF(), data.readUTF()));
+      }
+    } finally {
+      in.close();
+    }
+    return records;
+  }
+
+  /*
+   * Reads a segment, keeping the processed IDs by transaction and which
+   * transactions finished in it.
+   */
+  private SegmentContent readSegment(File segment) throws IOException {
+    SegmentContent content = new SegmentContent();
+    for (Iterator it = readRecords(segment, true).iterator(); it.hasNext();) {
+      Record record = (Record) it.next();
+      if (record.getType() == FINISHED) {
+        content.processed.remove(record.getTransactionId());
+        content.finished.add(record.getTransactionId());
+      } else {
+        HashSet ids = (HashSet) content.processed.get(record.getTransactionId());
+        if (ids == null) {
+          ids = new HashSet();
+          content.processed.put(record.getTransactionId(), ids);
+        }
+        ids.add(record.getRequestId());
+      }
+    }
+    return content;
+  }
+
+  private static final class SegmentContent {
+    // Map<String(transaction ID), HashSet<String(request ID)>>
+    final Map processed = new HashMap();
+
+    // transactions that finished in this segment
+    final HashSet finished = new HashSet();
+  }
+}
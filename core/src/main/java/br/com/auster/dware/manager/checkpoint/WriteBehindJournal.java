@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.manager.checkpoint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+
+import br.com.auster.common.util.I18n;
+
+/**
+ * Write-behind journal for checkpoint transitions. Entries are appended to a
+ * bounded ring buffer and a background thread stores them in groups, when
+ * <code>flushSize</code> entries are waiting or <code>flushInterval</code>
+ * milliseconds have passed since the first one arrived, whichever comes first.
+ * 
+ * <p>
+ * Appending only blocks when the buffer is full. Callers that need the entry
+ * to be stored before going on use {@link #awaitFlushed(long)} with the
+ * sequence returned by {@link #append(Object)}, which tells them if it could
+ * not be stored.
+ * </p>
+ * 
+ * @version $Id$
+ */
+public abstract class WriteBehindJournal extends Thread {
+
+  private static final Logger log = Logger.getLogger(WriteBehindJournal.class);
+
+  private final I18n i18n = I18n.getInstance(WriteBehindJournal.class);
+
+  private final BlockingQueue buffer;
+
+  private final int flushSize;
+
+  private final long flushInterval;
+
+  // makes the sequence follow the order of the entries in the buffer
+  private final Object appendLock = new Object();
+
+  private long appended;
+
+  private final Lock flushLock = new ReentrantLock();
+
+  private final Condition flushedCondition = this.flushLock.newCondition();
+
+  private long flushed;
+
+  // the sequences of the batches that could not be stored, last by first
+  private final TreeMap failed = new TreeMap();
+
+  // failed batches remembered for the threads still waiting for them
+  private static final int MAX_FAILED_BATCHES = 1024;
+
+  private volatile boolean closing = false;
+
+  /**
+   * Constructor. The thread must be started by the caller.
+   * 
+   * @param name
+   *          the thread name.
+   * @param capacity
+   *          how many entries may wait in the buffer.
+   * @param flushSize
+   *          how many entries are stored at once, at most.
+   * @param flushInterval
+   *          how long (in milliseconds) an entry may wait for others before
+   *          being stored.
+   */
+  public WriteBehindJournal(String name, int capacity, int flushSize, long flushInterval) {
+    super(name);
+    this.buffer = new ArrayBlockingQueue(capacity);
+    this.flushSize = Math.max(1, Math.min(flushSize, capacity));
+    this.flushInterval = Math.max(1, flushInterval);
+    this.setDaemon(true);
+  }
+
+  /**
+   * Appends an entry to the journal, blocking while the buffer is full.
+   * 
+   * @return the sequence of the entry, to be given to
+   *         {@link #awaitFlushed(long)}.
+   */
+  public long append(Object entry) {
+    synchronized (this.appendLock) {
+      boolean interrupted = false;
+      while (true) {
+        try {
+          this.buffer.put(entry);
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      return ++this.appended;
+    }
+  }
+
+  /**
+   * Returns the sequence of the last appended entry.
+   */
+  public long getLastSequence() {
+    synchronized (this.appendLock) {
+      return this.appended;
+    }
+  }
+
+  /**
+   * Blocks until the entry with the given sequence, and all the ones before
+   * it, were flushed.
+   * 
+   * @return true if the entry was stored, false if its batch failed or the
+   *         journal stopped before flushing it.
+   */
+  public boolean awaitFlushed(long sequence) {
+    this.flushLock.lock();
+    try {
+      while (this.flushed < sequence && this.isAlive()) {
+        this.flushedCondition.await(this.flushInterval, TimeUnit.MILLISECONDS);
+      }
+      if (this.flushed < sequence) {
+        return false;
+      }
+      final SortedMap after = this.failed.tailMap(new Long(sequence));
+      return after.isEmpty() || ((Long) after.get(after.firstKey())).longValue() > sequence;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } finally {
+      this.flushLock.unlock();
+    }
+  }
+
+  /**
+   * Stores the entries still in the buffer and stops the thread.
+   */
+  public void close() {
+    this.closing = true;
+    try {
+      this.join();
+    } catch (InterruptedException e) {
+      log.debug("Got interruption.", e);
+    }
+  }
+
+  public void run() {
+    List batch = new ArrayList(this.flushSize);
+    while (!this.closing || !this.buffer.isEmpty()) {
+      try {
+        collect(batch);
+      } catch (InterruptedException e) {
+        log.debug("Got interruption.", e);
+      }
+      if (this.closing) {
+        this.buffer.drainTo(batch, this.flushSize - batch.size());
+      }
+      if (!batch.isEmpty()) {
+        store(batch);
+        batch.clear();
+      }
+    }
+  }
+
+  /*
+   * Waits for the first entry, then for more entries until the batch is full
+   * or the flush interval has passed. Returns with an empty batch if nothing
+   * arrives during an interval, so that closing is noticed.
+   */
+  private void collect(List batch) throws InterruptedException {
+    if (this.closing) {
+      return;
+    }
+    Object first = this.buffer.poll(this.flushInterval, TimeUnit.MILLISECONDS);
+    if (first == null) {
+      return;
+    }
+    batch.add(first);
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.flushInterval);
+    while (batch.size() < this.flushSize) {
+      this.buffer.drainTo(batch, this.flushSize - batch.size());
+      long left = deadline - System.nanoTime();
+      if (batch.size() >= this.flushSize || left <= 0) {
+        return;
+      }
+      Object entry = this.buffer.poll(left, TimeUnit.NANOSECONDS);
+      if (entry == null) {
+        return;
+      }
+      batch.add(entry);
+    }
+  }
+
+  /*
+   * Flushes the batch and releases the threads waiting for it. Entries that
+   * could not be stored are dropped, as a failed synchronous write would be,
+   * but the threads waiting for them are told so.
+   */
+  private void store(List batch) {
+    boolean stored = false;
+    try {
+      flush(batch);
+      stored = true;
+    } catch (Exception e) {
+      log.error(i18n.getString("journalFlushFailed", this.getName(),
+                               Integer.toString(batch.size())), e);
+    }
+    this.flushLock.lock();
+    try {
+      if (!stored) {
+        // keyed by the last sequence, so a waiter finds its batch by ceiling
+        this.failed.put(new Long(this.flushed + batch.size()), new Long(this.flushed + 1));
+        if (this.failed.size() > MAX_FAILED_BATCHES) {
+          this.failed.remove(this.failed.firstKey());
+        }
+      }
+      this.flushed += batch.size();
+      this.flushedCondition.signalAll();
+    } finally {
+      this.flushLock.unlock();
+    }
+  }
+
+  /**
+   * Stores the entries, in the order they were appended.
+   * 
+   * @param entries
+   *          the entries to store.
+   * @throws Exception
+   *           if the entries could not be stored.
+   */
+  protected abstract void flush(List entries) throws Exception;
+
+}
@@ -25,7 +25,34 @@ public class MessagesBundle extends ListResourceBundle {
         {"maxGraphsNumber", "Setting the maximum number of graphs for group \"{0}\" to {1}."},
         {"settingGraphs", "Setting the graph configuration for Graph Group \"{0}\"."},
         {"settingFilters", "Setting the filter \"{0}\" configuration for Graph Group \"{1}\"."},
+        {"admissionControlConfigured", "The request queue admits up to {0} requests and a total weight of {1} (0 is unbounded); enqueue waits up to {2} ms for room (0 waits as long as needed)."},
+        {"requestsRejected", "{0} requests were rejected because the request queue stayed full ({1} requests weighting {2} queued)."},
+        {"costEstimatorConfigured", "Request costs are estimated by the request attributes [{0}], with smoothing {1}, after {2} completions of each class."},
+        {"costEstimatorNotConfigured", "The cost estimator could not be created; requests will cost their weight."},
+        {"retrySchedulerConfigured", "Failed requests are retried on a wheel of {1} ticks of {0} ms, with backoff factor {2}, maximum delay of {3} ms, jitter {4} and {5} retries per transaction (0 is unbounded)."},
+        {"retryBudgetExhausted", "Request {0} will not be retried: transaction {1} already had {2} retries."},
+        {"retrySchedulerInterrupted", "The retry scheduler was interrupted."},
+        {"requeueFailed", "Could not requeue {0} failed requests."},
+        {"spillConfigured", "The request queues keep {1} requests in memory and spill the others to {0}, in segments of {2} requests."},
+        {"spillNotConfigured", "The request queues could not be spilled to disk; they will be kept in memory."},
+        {"spillDirNotCreated", "Could not create the directory {0}."},
+        {"segmentNotWritten", "Could not write the segment {0}; its requests are kept in memory."},
+        {"segmentPrefetchFailed", "Could not prefetch the segment {0}; it will be read again."},
+        {"segmentLost", "{0} queued requests could not be read back from disk and were failed."},
+        {"segmentNotRead", "{0} queued requests could not be read from disk; only their IDs are listed."},
+        {"fileAffinityConfigured", "Request forwarder keeps {0} file(s) open per graph group."},
+        {"graphsReconfigured", "Graph Group \"{0}\" now runs version {1} of the graph configuration on {2} new graphs; {3} old graphs finish their requests before being shut down."},
+        {"graphReconfigurationFailed", "Could not build the new graphs of Graph Group \"{0}\". The group keeps running with the current configuration."},
+        {"oldGraphRetired", "Graph \"{0}\" of an old configuration of Graph Group \"{1}\" was shut down."},
         {"graphDoesNotExist", "The graph \"{0}\" does not exist in the graph list for Graph Group \"{1}\"!"},
+        {"graphPoolSize", "Graph Group \"{0}\" keeps a pool of {1} to {2} graphs."},
+        {"graphFileAffinity", "Graph Group \"{0}\" gives each request to the graph that last read its file."},
+        {"prebuildingGraphs", "Building {1} graphs for Graph Group \"{0}\"."},
+        {"graphRetired", "Idle graph \"{0}\" retired from Graph Group \"{1}\". {2} graphs left."},
+        {"concurrentForwarderBands", "Concurrent request forwarder using {0} weight bands."},
+        {"fairShareRule", "Transactions matching \"{0}\" have share {1} and priority {2}."},
+        {"workStealingGroup", "Graph Group \"{0}\" registered with its own request queue ({1} groups)."},
+        {"workStealingGroupRemoved", "Graph Group \"{0}\" unregistered, {1} requests moved to the shared queue."},
         {"listenerConfigured", "Listener \"{1}\" configured for group \"{0}\"."},
         {"listenerConfigError", "Error while configuring Listener \"{1}\" for group \"{0}\"!"},
         {"listenerFinishError", "Error while alerting Listener for group \"{0}\" of a finished request!"},
@@ -45,9 +72,19 @@ public class MessagesBundle extends ListResourceBundle {
         {"queueListenerConfigured", "Added and configured QueueEmptyListener \"{0}\"."},
         {"checkpointNotConfigured", "The checkpoint was not configured."},
         {"checkpointCreationError", "The checkpoint was not succesfully created."},
+        {"scatterGatherNotConfigured", "Error while configuring the scatter/gather of heavy requests - requests will not be split."},
+
+        // ScatterGather
+        {"scatterGatherConfigured", "Requests heavier than {0} will be split by \"{1}\"."},
+        {"splitFailed", "Could not split the request \"{0}\" - it will be processed by a single graph."},
+        {"reqScattered", "The request \"{0}\" was split into {1} parts."},
+        {"reqAlreadyScattered", "The parts of the request \"{0}\" are still being processed - ignoring it."},
+        {"reqGathered", "The results of the {1} parts of the request \"{0}\" were merged."},
+        {"unknownPart", "Part \"{0}\" finished but its parent request is not being processed."},
 
         // ReqForwarder
         {"reqAlreadyLoaded", "The request \"{0}\" is already loaded."},
+        {"reqsAlreadyLoaded", "{0} of the {1} requests were already loaded and will not be queued."},
 
         // remote
         {"creatingRemoteGraphGroup", "Creating remote graph group."},
@@ -42,7 +42,34 @@ public class MessagesBundle_pt_BR extends ListResourceBundle {
         {"maxGraphsNumber", "Ajustando o nmero mximo de grafos de processamento para o grupo \"{0}\" para {1}."},
         {"settingGraphs", "Configurando os grafos do Grupo de Processamento \"{0}\"."},
         {"settingFilters", "Configurando os filtros nomeados \"{0}\" para o Grupo de Processamento \"{1}\"."},
+        {"admissionControlConfigured", "A fila de requisies admite at {0} requisies e um peso total de {1} (0 no limita); enqueue espera at {2} ms por espao (0 espera o quanto for preciso)."},
+        {"requestsRejected", "{0} requisies foram rejeitadas porque a fila de requisies continuou cheia ({1} requisies com peso {2} na fila)."},
+        {"costEstimatorConfigured", "Os custos das requisies so estimados pelos atributos [{0}], com suavizao {1}, aps {2} finalizaes de cada classe."},
+        {"costEstimatorNotConfigured", "O estimador de custos no pde ser criado; as requisies custaro o seu peso."},
+        {"retrySchedulerConfigured", "As requisies que falharem sero repetidas numa roda de {1} intervalos de {0} ms, com fator de espera {2}, espera mxima de {3} ms, variao {4} e {5} repeties por transao (0 no limita)."},
+        {"retryBudgetExhausted", "A requisio {0} no ser repetida: a transao {1} j teve {2} repeties."},
+        {"retrySchedulerInterrupted", "O agendador de repeties foi interrompido."},
+        {"requeueFailed", "No foi possvel recolocar na fila {0} requisies que falharam."},
+        {"spillConfigured", "As filas de requisies mantm {1} requisies em memria e gravam as outras em {0}, em segmentos de {2} requisies."},
+        {"spillNotConfigured", "As filas de requisies no puderam ser gravadas em disco; elas sero mantidas em memria."},
+        {"spillDirNotCreated", "No foi possvel criar o diretrio {0}."},
+        {"segmentNotWritten", "No foi possvel gravar o segmento {0}; suas requisies so mantidas em memria."},
+        {"segmentPrefetchFailed", "No foi possvel ler antecipadamente o segmento {0}; ele ser lido de novo."},
+        {"segmentLost", "{0} requisies da fila no puderam ser lidas do disco e foram dadas como falhas."},
+        {"segmentNotRead", "{0} requisies da fila no puderam ser lidas do disco; apenas seus IDs so listados."},
+        {"fileAffinityConfigured", "O distribuidor de requisies mantm {0} arquivo(s) aberto(s) por grupo de processamento."},
+        {"graphsReconfigured", "O Grupo de Processamento \"{0}\" agora executa a verso {1} da configurao em {2} novos grafos; {3} grafos antigos terminam suas requisies antes de serem finalizados."},
+        {"graphReconfigurationFailed", "No foi possvel construir os novos grafos do Grupo de Processamento \"{0}\". O grupo continua executando com a configurao atual."},
+        {"oldGraphRetired", "O grafo \"{0}\" de uma configurao antiga do Grupo de Processamento \"{1}\" foi finalizado."},
         {"graphDoesNotExist", "O grafo \"{0}\" no existe na lista de grafos do Grupo de Processamento \"{1}\"!"},
+        {"graphPoolSize", "O Grupo de Processamento \"{0}\" mantm um pool de {1} a {2} grafos."},
+        {"graphFileAffinity", "O Grupo de Processamento \"{0}\" entrega cada requisio ao grafo que leu seu arquivo por ltimo."},
+        {"prebuildingGraphs", "Criando {1} grafos para o Grupo de Processamento \"{0}\"."},
+        {"graphRetired", "O grafo ocioso \"{0}\" foi retirado do Grupo de Processamento \"{1}\". Restam {2} grafos."},
+        {"concurrentForwarderBands", "Distribuidor concorrente de requisies usando {0} faixas de peso."},
+        {"fairShareRule", "Transaes que casam com \"{0}\" tm cota {1} e prioridade {2}."},
+        {"workStealingGroup", "O Grupo de Processamento \"{0}\" foi registrado com sua prpria fila de requisies ({1} grupos)."},
+        {"workStealingGroupRemoved", "O Grupo de Processamento \"{0}\" foi removido, {1} requisies movidas para a fila compartilhada."},
         {"listenerConfigured", "O Listener \"{1}\" foi configurado para o grupo \"{0}\"."},
         {"listenerConfigError", "Erro ao configurar o Listener \"{1}\" para o grupo \"{0}\"!"},
         {"listenerFinishError", "Erro ao alertar sobre o trmino de uma requisio para o Listener do grupo \"{0}\"!"},
@@ -62,9 +89,19 @@ public class MessagesBundle_pt_BR extends ListResourceBundle {
         {"queueListenerConfigured", "QueueEmptyListener \"{0}\" adicionado e configurado."},
         {"checkpointNotConfigured", "O checkpoint no foi configurado."},
        	{"checkpointCreationError", "O checkpoint no foi com sucesso."},
+        {"scatterGatherNotConfigured", "Erro ao configurar a diviso de requisies pesadas - as requisies no sero divididas."},
+
+        // ScatterGather
+        {"scatterGatherConfigured", "Requisies mais pesadas que {0} sero divididas por \"{1}\"."},
+        {"splitFailed", "No foi possvel dividir a requisio \"{0}\" - ela ser processada por um nico grafo."},
+        {"reqScattered", "A requisio \"{0}\" foi dividida em {1} partes."},
+        {"reqAlreadyScattered", "As partes da requisio \"{0}\" ainda esto sendo processadas - ignorando-a."},
+        {"reqGathered", "Os resultados das {1} partes da requisio \"{0}\" foram unidos."},
+        {"unknownPart", "A parte \"{0}\" terminou mas sua requisio original no est sendo processada."},
 
         // ReqForwarder
         {"reqAlreadyLoaded", "A requisio \"{0}\" j foi carregada."},
+        {"reqsAlreadyLoaded", "{0} das {1} requisies j foram carregadas e no sero enfileiradas."},
 
         // remote
         {"creatingRemoteGraphGroup", "Criando graph group remoto."},
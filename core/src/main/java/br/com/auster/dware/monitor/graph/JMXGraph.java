@@ -18,10 +18,14 @@
 package br.com.auster.dware.monitor.graph;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 import org.apache.log4j.Logger;
 
 import br.com.auster.common.jmx.AusterMBean;
+import br.com.auster.dware.manager.GraphGroup;
 import br.com.auster.dware.manager.GraphManager;
 import br.com.auster.dware.monitor.manager.JMXGraphGroupCounter;
 
@@ -174,6 +178,30 @@ public class JMXGraph implements AusterMBean, JMXGraphMBean {
 //      return Graph.getSmallestTimer();
    }
 
+   /* (non-Javadoc)
+    * @see br.com.auster.dware.monitor.graph.JMXGraphMBean#getFilterLatencies()
+    */
+   public String[] getFilterLatencies() {
+      List latencies = new ArrayList();
+      for (Iterator it = graphManger.getGroups().iterator(); it.hasNext();) {
+         GraphGroup group = (GraphGroup) it.next();
+         String[] lines = group.getLatencyMonitor().describe();
+         for (int i = 0; i < lines.length; i++) {
+            latencies.add(group.getGraphGroupName() + ":" + lines[i]);
+         }
+      }
+      return (String[]) latencies.toArray(new String[latencies.size()]);
+   }
+
+   /* (non-Javadoc)
+    * @see br.com.auster.dware.monitor.graph.JMXGraphMBean#resetFilterLatencies()
+    */
+   public void resetFilterLatencies() {
+      for (Iterator it = graphManger.getGroups().iterator(); it.hasNext();) {
+         ((GraphGroup) it.next()).getLatencyMonitor().reset();
+      }
+   }
+
    /* (non-Javadoc)
     * @see br.com.auster.dware.monitor.graph.JMXGraphMBean#log()
     */
@@ -190,6 +218,10 @@ public class JMXGraph implements AusterMBean, JMXGraphMBean {
       log.info("|Smallest Timer of Finished Requests=" + this.getSmallestTimer());      
       log.info("|Largest Weight of Finished Requests=" + this.getLargestWeight());
       log.info("|Smallest Weight of Finished Requests=" + this.getSmallestWeight());
+      String[] latencies = this.getFilterLatencies();
+      for (int i = 0; i < latencies.length; i++) {
+         log.info("|Latency " + latencies[i]);
+      }
       log.info("---------------------------------------------");
    }
 
@@ -49,6 +49,10 @@ public interface JMXGraphMBean {
    public long getLargestTimer();
    
    public long getSmallestTimer();
+
+   public String[] getFilterLatencies();
+
+   public void resetFilterLatencies();
    
    public void log();
 }
\ No newline at end of file
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.monitor.manager;
+
+import java.text.MessageFormat;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import br.com.auster.common.jmx.AusterMBean;
+import br.com.auster.dware.manager.FairShareReqForwarder;
+
+/**
+ * Publishes the per-transaction statistics of the fair-share request
+ * forwarder.
+ *
+ * @version $Id$
+ */
+public class JMXFairShareReqForwarder implements AusterMBean, JMXFairShareReqForwarderMBean {
+
+   private static final Logger log = Logger.getLogger(JMXFairShareReqForwarder.class);
+   private static final String MBEAN_NAME = "type=DataAware,name=RequestForwarder";
+   private FairShareReqForwarder rf;
+   private String name = MBEAN_NAME;
+
+   public JMXFairShareReqForwarder(FairShareReqForwarder rf) {
+      super();
+      this.rf = rf;
+   }
+
+   public String getMBeanName() {
+      return name;
+   }
+
+   public void setMBeanName(String _name) {
+      name = MessageFormat.format(AusterMBean.MBEAN_NAME_FORMAT, new Object[] {_name, _name } );
+   }
+
+   public void setMBeanName(String _type, String _name) {
+      name = MessageFormat.format(AusterMBean.MBEAN_NAME_FORMAT, new Object[] {_type, _name } );
+   }
+
+   public List getTransactions() {
+      return this.rf.getTransactionStats();
+   }
+
+   public double getTransactionThroughput(String transactionId) {
+      return this.rf.getTransactionThroughput(transactionId);
+   }
+
+   public long getTransactionEta(String transactionId) {
+      return this.rf.getTransactionEta(transactionId);
+   }
+
+   public void log() {
+      log.info("-----------------" + this.getMBeanName() + "----------------------------");
+      log.info("Transactions:");
+      for (Iterator itr=this.getTransactions().iterator();itr.hasNext();) {
+         log.info((String) itr.next());
+      }
+      log.info("---------------------------------------------");
+   }
+}
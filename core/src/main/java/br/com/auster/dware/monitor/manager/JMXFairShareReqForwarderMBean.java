@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.monitor.manager;
+
+import java.util.List;
+
+/**
+ * Management interface of the fair-share request forwarder.
+ *
+ * @version $Id$
+ */
+public interface JMXFairShareReqForwarderMBean {
+
+   /**
+    * Gets one line for each transaction with queued requests, with its share,
+    * priority, queued requests and weight, throughput and estimated time.
+    */
+   public List getTransactions();
+
+   /**
+    * Gets how many requests per second the transaction is given to the graphs.
+    */
+   public double getTransactionThroughput(String transactionId);
+
+   /**
+    * Gets the estimated time, in seconds, to give all the queued requests of
+    * the transaction, or -1 if it is not known yet.
+    */
+   public long getTransactionEta(String transactionId);
+
+   public void log();
+}
@@ -97,6 +97,41 @@ public class JMXGraphGroup implements AusterMBean, JMXGraphGroupMBean {
       return this.gg.hasToProcessLastObjects();
    }
 
+   /* (non-Javadoc)
+    * @see br.com.auster.dware.monitor.manager.JMXGraphGroupMBean#getFilterLatencies()
+    */
+   public String[] getFilterLatencies() {
+      return this.gg.getLatencyMonitor().describe();
+   }
+
+   /* (non-Javadoc)
+    * @see br.com.auster.dware.monitor.manager.JMXGraphGroupMBean#resetFilterLatencies()
+    */
+   public void resetFilterLatencies() {
+      this.gg.getLatencyMonitor().reset();
+   }
+
+   /* (non-Javadoc)
+    * @see br.com.auster.dware.monitor.manager.JMXGraphGroupMBean#getDispatchLatency()
+    */
+   public String getDispatchLatency() {
+      return this.gg.getDispatchLatency().toString();
+   }
+
+   /* (non-Javadoc)
+    * @see br.com.auster.dware.monitor.manager.JMXGraphGroupMBean#resetDispatchLatency()
+    */
+   public void resetDispatchLatency() {
+      this.gg.getDispatchLatency().reset();
+   }
+
+   /* (non-Javadoc)
+    * @see br.com.auster.dware.monitor.manager.JMXGraphGroupMBean#getDeadlineMisses()
+    */
+   public long getDeadlineMisses() {
+      return this.gg.getDeadlineMisses();
+   }
+
    /* (non-Javadoc)
     * @see br.com.auster.dware.monitor.manager.JMXGraphGroupMBean#log()
     */
@@ -106,6 +141,12 @@ public class JMXGraphGroup implements AusterMBean, JMXGraphGroupMBean {
       log.info("Process Last Object? " + this.isToProcessLastObjects());
       log.info("Graph Group Name " + this.getGraphGroupName());
       log.info("Thread State is " + this.getState());
+      String[] latencies = this.getFilterLatencies();
+      for (int i = 0; i < latencies.length; i++) {
+         log.info("Latency " + latencies[i]);
+      }
+      log.info("Dispatch Latency " + this.getDispatchLatency());
+      log.info("Deadline Misses " + this.getDeadlineMisses());
       log.info("---------------------------------------------");
    }
 
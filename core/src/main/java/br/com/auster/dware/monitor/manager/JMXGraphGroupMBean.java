@@ -36,6 +36,11 @@ public interface JMXGraphGroupMBean {
    public String getGraphGroupName();
    public boolean isClosing();
    public boolean isToProcessLastObjects();
+   public String[] getFilterLatencies();
+   public void resetFilterLatencies();
+   public String getDispatchLatency();
+   public void resetDispatchLatency();
+   public long getDeadlineMisses();
   
 }
  
\ No newline at end of file
@@ -80,12 +80,45 @@ public class JMXGraphManager implements AusterMBean, JMXGraphManagerMBean {
       return this.graphManger.getGroupNames();      
    }
 
+   public int getQueuedRequests() {
+      return this.graphManger.getAdmissionControl().getQueuedRequests();
+   }
+
+   public long getQueuedWeight() {
+      return this.graphManger.getAdmissionControl().getQueuedWeight();
+   }
+
+   public long getThrottledEnqueues() {
+      return this.graphManger.getAdmissionControl().getThrottledEnqueues();
+   }
+
+   public long getRejectedRequests() {
+      return this.graphManger.getAdmissionControl().getRejectedRequests();
+   }
+
+   public int getPendingRetries() {
+      return this.graphManger.getRetryScheduler().getPendingRetries();
+   }
+
+   public long getScheduledRetries() {
+      return this.graphManger.getRetryScheduler().getScheduledRetries();
+   }
+
+   public long getExhaustedRetries() {
+      return this.graphManger.getRetryScheduler().getExhaustedRetries();
+   }
+
    public void log() {
       log.info("-----------------" + this.getMBeanName() + "----------------------------");
       log.info("Group Names:");
       for (Iterator itr=this.getGroupNames().iterator();itr.hasNext();) {
          log.info("Group name is " + (String) itr.next());
       }
+      log.info("Queued requests: " + this.getQueuedRequests() + " weighting " + this.getQueuedWeight());
+      log.info("Throttled enqueues: " + this.getThrottledEnqueues() + ", rejected requests: "
+               + this.getRejectedRequests());
+      log.info("Pending retries: " + this.getPendingRetries() + ", scheduled: "
+               + this.getScheduledRetries() + ", exhausted: " + this.getExhaustedRetries());
       log.info("---------------------------------------------");
    }
   
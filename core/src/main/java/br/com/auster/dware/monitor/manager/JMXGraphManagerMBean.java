@@ -34,6 +34,43 @@ public interface JMXGraphManagerMBean {
     * @return
     */
    public List getGroupNames();
+
+   /**
+    * Gets how many requests wait in the request queue, when it is bounded.
+    */
+   public int getQueuedRequests();
+
+   /**
+    * Gets the total weight of the requests waiting in the request queue, when
+    * it is bounded.
+    */
+   public long getQueuedWeight();
+
+   /**
+    * Gets how many times a producer had to wait for room in the request queue.
+    */
+   public long getThrottledEnqueues();
+
+   /**
+    * Gets how many requests were rejected because the request queue was full.
+    */
+   public long getRejectedRequests();
+
+   /**
+    * Gets how many failed requests wait to be retried.
+    */
+   public int getPendingRetries();
+
+   /**
+    * Gets how many retries of failed requests were scheduled.
+    */
+   public long getScheduledRetries();
+
+   /**
+    * Gets how many failed requests were not retried because their
+    * transactions had no retries left.
+    */
+   public long getExhaustedRetries();
    
    public void log();  
 }
@@ -55,6 +55,14 @@ public class JMXLocalGraphGroup extends JMXGraphGroup implements AusterMBean, JM
       log.info("Graph Group Name " + this.getGraphGroupName());
       log.info("Thread State is " + this.getState());
       log.info("Max Threads for this group is " + this.getMaxThreads());
+      if (this.isPooled()) {
+         log.info("Graph pool keeps at least " + this.getMinGraphs() + " graphs");
+      }
+      log.info("Graphs: " + this.getGraphCount() + " (" + this.getFreeGraphCount() + " free)");
+      String[] latencies = this.getFilterLatencies();
+      for (int i = 0; i < latencies.length; i++) {
+         log.info("Latency " + latencies[i]);
+      }
       log.info("---------------------------------------------");
    }
    /* (non-Javadoc)
@@ -63,6 +71,30 @@ public class JMXLocalGraphGroup extends JMXGraphGroup implements AusterMBean, JM
    public int getMaxThreads() {
       return this.lgg.getMaxThreads();
    }
+   /* (non-Javadoc)
+    * @see br.com.auster.dware.monitor.manager.JMXLocalGraphGroupMBean#getMinGraphs()
+    */
+   public int getMinGraphs() {
+      return this.lgg.getMinGraphs();
+   }
+   /* (non-Javadoc)
+    * @see br.com.auster.dware.monitor.manager.JMXLocalGraphGroupMBean#getGraphCount()
+    */
+   public int getGraphCount() {
+      return this.lgg.getGraphCount();
+   }
+   /* (non-Javadoc)
+    * @see br.com.auster.dware.monitor.manager.JMXLocalGraphGroupMBean#getFreeGraphCount()
+    */
+   public int getFreeGraphCount() {
+      return this.lgg.getFreeGraphCount();
+   }
+   /* (non-Javadoc)
+    * @see br.com.auster.dware.monitor.manager.JMXLocalGraphGroupMBean#isPooled()
+    */
+   public boolean isPooled() {
+      return this.lgg.isPooled();
+   }
    /* (non-Javadoc)
     * @see br.com.auster.dware.monitor.manager.JMXLocalGraphGroupMBean#setMaxThreads(int)
     */
@@ -31,6 +31,10 @@ package br.com.auster.dware.monitor.manager;
 public interface JMXLocalGraphGroupMBean extends JMXGraphGroupMBean {
  
    public int getMaxThreads();
+   public int getMinGraphs();
+   public int getGraphCount();
+   public int getFreeGraphCount();
+   public boolean isPooled();
 //   public void changeMaxThreads(int maxThreads);
 }
  
\ No newline at end of file
@@ -25,6 +25,7 @@ import org.apache.log4j.Logger;
 
 import br.com.auster.common.jmx.AusterMBean;
 import br.com.auster.dware.manager.PriorityQueueReqForwarder;
+import br.com.auster.dware.manager.RequestSpill;
 
 /**
  * <p><b>Title:</b> JMXmanagerMBean</p>
@@ -95,6 +96,16 @@ public class JMXPriorityQueueReqForwarder implements AusterMBean, JMXPriorityQue
       }
       return list;
    }
+
+   public long getSpilledRequests() {
+      RequestSpill spill = this.rf.getSpill();
+      return spill == null ? 0 : spill.getSpilledRequests();
+   }
+
+   public int getSpillSegments() {
+      RequestSpill spill = this.rf.getSpill();
+      return spill == null ? 0 : spill.getSegments();
+   }
   
 }
  
\ No newline at end of file
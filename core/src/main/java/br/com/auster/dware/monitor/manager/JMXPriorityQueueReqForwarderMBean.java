@@ -31,6 +31,16 @@ import java.util.List;
 public interface JMXPriorityQueueReqForwarderMBean {
 
    public List getQueue();
+
+   /**
+    * Gets how many queued requests are in segment files instead of the heap.
+    */
+   public long getSpilledRequests();
+
+   /**
+    * Gets how many segment files hold queued requests.
+    */
+   public int getSpillSegments();
    
    public void log();  
 }
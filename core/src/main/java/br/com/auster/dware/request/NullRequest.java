@@ -17,6 +17,9 @@
  */
 package br.com.auster.dware.request;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+
 import br.com.auster.dware.graph.Request;
 
 /**
@@ -36,11 +39,23 @@ public class NullRequest extends Request {
    * 
    * @param userKey the user key of the request
    */
+  private NullRequest() {
+    // used only when read back
+  }
+
   public NullRequest(String userKey) {
     super();
     setUserKey(userKey);
   }
 
+  protected void writeFields(DataOutput out) {
+    // nothing besides the ID
+  }
+
+  protected void readFields(DataInput in) {
+    // nothing besides the ID
+  }
+
   /**
    * @inheritDoc
    */
@@ -17,7 +17,10 @@
  */
 package br.com.auster.dware.request.file;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
+import java.io.IOException;
 
 import br.com.auster.dware.graph.Request;
 
@@ -28,12 +31,17 @@ import br.com.auster.dware.graph.Request;
  */
 public class FileListRequest extends Request {
 
-  protected final File[] files;
+  // not final, since they are read back when the request is written out
+  protected File[] files;
 
   protected long weight = 0;
 
   protected String string;
 
+  protected FileListRequest() {
+    // used only when read back
+  }
+
   public FileListRequest(File[] files) {
     this(null, files);
   }
@@ -76,6 +84,24 @@ public class FileListRequest extends Request {
     return this.weight;
   }
 
+  protected void writeFields(DataOutput out) throws IOException {
+    out.writeInt(this.files.length);
+    for (int i = 0; i < this.files.length; i++) {
+      out.writeUTF(this.files[i].getPath());
+    }
+    out.writeLong(this.weight);
+  }
+
+  protected void readFields(DataInput in) throws IOException {
+    this.files = new File[in.readInt()];
+    this.string = "[";
+    for (int i = 0; i < this.files.length; i++) {
+      this.files[i] = FileTable.share(new File(in.readUTF()));
+      this.string += this.files[i].getName() + (i < this.files.length - 1 ? "," : "");
+    }
+    this.weight = in.readLong();
+  }
+
   public String toString() {
     return this.string;
   }
@@ -17,7 +17,11 @@
  */
 package br.com.auster.dware.request.file;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 
 import br.com.auster.dware.graph.Request;
 
@@ -29,6 +33,9 @@ import br.com.auster.dware.graph.Request;
 public class FileRequest extends Request {
 
   protected File file;
+
+  // the length of the file, read only once
+  private long length = -1;
   
   protected FileRequest() {
     // do nothing - used only be child classes
@@ -48,7 +55,10 @@ public class FileRequest extends Request {
   }
 
   public long getWeight() {
-    return this.file.length();
+    if (this.length < 0) {
+      this.length = this.file.length();
+    }
+    return this.length;
   }
 
   public String toString() {
@@ -75,4 +85,20 @@ public class FileRequest extends Request {
     return this.file;
   }
 
+  protected void writeFields(DataOutput out) throws IOException {
+    out.writeUTF(this.file.getPath());
+    out.writeLong(this.length);
+  }
+
+  protected void readFields(DataInput in) throws IOException {
+    this.file = FileTable.share(new File(in.readUTF()));
+    this.length = in.readLong();
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    // requests read back from different streams share the same file again
+    this.file = FileTable.share(this.file);
+  }
+
 }
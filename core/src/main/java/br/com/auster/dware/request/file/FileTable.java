@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.request.file;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Shares <code>File</code> instances among the requests that read from the
+ * same file, so that thousands of requests built from an index do not keep a
+ * copy of the same path each.
+ * 
+ * <p>
+ * Files are kept only while some request still uses them.
+ * </p>
+ * 
+ * @version $Id$
+ */
+public final class FileTable {
+
+  // path -> WeakReference(File), the path being the one kept by the file itself
+  private static final Map files = new WeakHashMap();
+
+  private FileTable() {
+    // only static methods
+  }
+
+  /**
+   * Returns the shared file for the given path, creating it if needed.
+   */
+  public static File getFile(String path) {
+    synchronized (files) {
+      final WeakReference ref = (WeakReference) files.get(path);
+      File file = ref == null ? null : (File) ref.get();
+      if (file == null) {
+        file = new File(path);
+        files.put(file.getPath(), new WeakReference(file));
+      }
+      return file;
+    }
+  }
+
+  /**
+   * Returns the shared file with the same path of the given one. The given
+   * file becomes the shared one if there is none yet.
+   */
+  public static File share(File file) {
+    if (file == null) {
+      return null;
+    }
+    synchronized (files) {
+      final WeakReference ref = (WeakReference) files.get(file.getPath());
+      final File shared = ref == null ? null : (File) ref.get();
+      if (shared != null) {
+        return shared;
+      }
+      files.put(file.getPath(), new WeakReference(file));
+      return file;
+    }
+  }
+
+  /**
+   * Returns how many files are shared now.
+   */
+  public static int size() {
+    synchronized (files) {
+      return files.size();
+    }
+  }
+}
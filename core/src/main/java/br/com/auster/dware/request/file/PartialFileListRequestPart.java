@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.request.file;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import br.com.auster.dware.filter.OutputToFile;
+import br.com.auster.dware.graph.Request;
+import br.com.auster.dware.manager.RequestPart;
+
+/**
+ * A part of a partial file request (or of a list of them) that was too heavy
+ * to be processed by a single graph. It is processed like any other
+ * <code>PartialFileListRequest</code>.
+ * 
+ * @see PartialFileRequestSplitter
+ * @version $Id$
+ */
+public class PartialFileListRequestPart extends PartialFileListRequest implements RequestPart {
+
+  /**
+   * {@value} - separates the user key of the parent from the part number.
+   */
+  public static final String PART_DELIMITER = "#part";
+
+  protected final Request parent;
+
+  protected final int index, count;
+
+  /**
+   * @param parent
+   *          the request this part was split from.
+   * @param index
+   *          the position of this part, starting at zero.
+   * @param count
+   *          how many parts the parent was split into.
+   * @param fileRequests
+   *          the pieces of data of this part.
+   */
+  public PartialFileListRequestPart(Request parent, int index, int count,
+                                    PartialFileRequest[] fileRequests) {
+    super(parent.getUserKey() + PART_DELIMITER + (index + 1) + "of" + count, fileRequests);
+    this.parent = parent;
+    this.index = index;
+    this.count = count;
+    if (parent.getTransactionId() != null) {
+      setTransactionId(parent.getTransactionId());
+    }
+    // the parts see the attributes of the parent, but not its identity nor
+    // the files it may have generated before
+    Map attributes = new HashMap(parent.getAttributes());
+    attributes.remove(KEY4_ID);
+    attributes.remove(KEY4_USERKEY);
+    attributes.remove(KEY4_TRANSACTION_ID);
+    attributes.remove(OutputToFile.GENERATED_FILES_KEY);
+    setAttributes(attributes);
+  }
+
+  public Request getParent() {
+    return this.parent;
+  }
+
+  public int getPartIndex() {
+    return this.index;
+  }
+
+  public int getPartCount() {
+    return this.count;
+  }
+
+  public boolean equals(Object obj) {
+    if (obj == null || !(obj instanceof PartialFileListRequestPart)) {
+      return false;
+    }
+    return ((PartialFileListRequestPart) obj).getId().equals(this.getId());
+  }
+
+  public int hashCode() {
+    return getId().hashCode();
+  }
+
+}
@@ -17,7 +17,10 @@
  */
 package br.com.auster.dware.request.file;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
+import java.io.IOException;
 
 /**
  * This class represents a piece of data from a input file. It has a offset, a
@@ -27,7 +30,12 @@ import java.io.File;
  */
 public class PartialFileRequest extends FileRequest implements PartialDataRequest {
 
-  protected final long offset, length;
+  // not final, since they are read back when the request is written out
+  protected long offset, length;
+
+  protected PartialFileRequest() {
+    // used only when read back
+  }
 
   public PartialFileRequest(long offset, long length, File file) {
     this(null, offset, length, file);
@@ -69,6 +77,18 @@ public class PartialFileRequest extends FileRequest implements PartialDataReques
     return this.length;
   }
 
+  protected void writeFields(DataOutput out) throws IOException {
+    super.writeFields(out);
+    out.writeLong(this.offset);
+    out.writeLong(this.length);
+  }
+
+  protected void readFields(DataInput in) throws IOException {
+    super.readFields(in);
+    this.offset = in.readLong();
+    this.length = in.readLong();
+  }
+
   public String toString() {
     return "[" + this.getUserKey() + ": " + this.file + ": " + this.offset + "(+" + this.length
            + ")]";
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.request.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.Element;
+
+import br.com.auster.common.xml.DOMUtils;
+import br.com.auster.dware.graph.Request;
+import br.com.auster.dware.manager.ScatterGather;
+
+/**
+ * Splits a <code>PartialFileRequest</code> or a
+ * <code>PartialFileListRequest</code> into
+ * {@link PartialFileListRequestPart parts} of about the same weight. The
+ * pieces of data are only cut right after a record delimiter, so that no
+ * record is divided between two parts, and the list requests are cut between
+ * their files when possible.
+ * 
+ * Configuration:
+ * <pre>
+ * &lt;splitter class-name="br.com.auster.dware.request.file.PartialFileRequestSplitter"
+ *           part-weight="268435456" record-delimiter="\n"/&gt;
+ * </pre>
+ * The delimiter accepts the escapes <code>\n</code>, <code>\r</code> and
+ * <code>\t</code>, and defaults to a new line.
+ * 
+ * @version $Id$
+ */
+public class PartialFileRequestSplitter implements ScatterGather.Splitter {
+
+  /**
+   * {@value}
+   */
+  public static final String PART_WEIGHT_ATTR = "part-weight";
+  /**
+   * {@value}
+   */
+  public static final String RECORD_DELIMITER_ATTR = "record-delimiter";
+
+  private static final int READ_SIZE = 64 * 1024;
+
+  private final long partWeight;
+
+  private final byte[] delimiter;
+
+  public PartialFileRequestSplitter(Element config) throws UnsupportedEncodingException {
+    this(Long.parseLong(DOMUtils.getAttribute(config, PART_WEIGHT_ATTR, true)),
+         unescape(DOMUtils.getAttribute(config, RECORD_DELIMITER_ATTR, false)));
+  }
+
+  /**
+   * @param partWeight
+   *          the weight each part should have.
+   * @param delimiter
+   *          the bytes that end a record.
+   */
+  public PartialFileRequestSplitter(long partWeight, byte[] delimiter) {
+    if (partWeight <= 0 || delimiter.length == 0) {
+      throw new IllegalArgumentException(PART_WEIGHT_ATTR + "=" + partWeight);
+    }
+    this.partWeight = partWeight;
+    this.delimiter = delimiter;
+  }
+
+  private static byte[] unescape(String delimiter) throws UnsupportedEncodingException {
+    if (delimiter == null || delimiter.length() == 0) {
+      return new byte[] { '\n' };
+    }
+    StringBuffer sb = new StringBuffer();
+    for (int i = 0; i < delimiter.length(); i++) {
+      char c = delimiter.charAt(i);
+      if (c == '\\' && i + 1 < delimiter.length()) {
+        switch (delimiter.charAt(++i)) {
+          case 'n': c = '\n'; break;
+          case 'r': c = '\r'; break;
+          case 't': c = '\t'; break;
+          default: c = delimiter.charAt(i);
+        }
+      }
+      sb.append(c);
+    }
+    return sb.toString().getBytes("ISO-8859-1");
+  }
+
+  /**
+   * Splits the request, returning null if it is not a partial file request.
+   */
+  public List<Request> split(Request request) throws IOException {
+    final PartialFileRequest[] files;
+    if (request instanceof PartialFileRequest) {
+      files = new PartialFileRequest[] { (PartialFileRequest) request };
+    } else if (request instanceof PartialFileListRequest) {
+      files = ((PartialFileListRequest) request).getFiles();
+    } else {
+      return null;
+    }
+
+    // the pieces of data, none heavier than a part unless it has no delimiter
+    final List pieces = new ArrayList();
+    for (int i = 0; i < files.length; i++) {
+      if (files[i].getLength() > this.partWeight) {
+        this.cut(files[i], pieces);
+      } else {
+        pieces.add(files[i]);
+      }
+    }
+
+    // packs the pieces, in order, into parts
+    final List groups = new ArrayList();
+    List group = new ArrayList();
+    long weight = 0;
+    for (int i = 0; i < pieces.size(); i++) {
+      PartialFileRequest piece = (PartialFileRequest) pieces.get(i);
+      if (!group.isEmpty() && weight + piece.getLength() > this.partWeight) {
+        groups.add(group);
+        group = new ArrayList();
+        weight = 0;
+      }
+      group.add(piece);
+      weight += piece.getLength();
+    }
+    groups.add(group);
+
+    final List<Request> parts = new ArrayList<Request>(groups.size());
+    for (int i = 0; i < groups.size(); i++) {
+      List g = (List) groups.get(i);
+      parts.add(new PartialFileListRequestPart(request, i, groups.size(),
+          (PartialFileRequest[]) g.toArray(new PartialFileRequest[g.size()])));
+    }
+    return parts;
+  }
+
+  /**
+   * Cuts a piece of data right after the record delimiters found near each
+   * multiple of the part weight.
+   */
+  private void cut(PartialFileRequest request, List pieces) throws IOException {
+    final File file = request.getFile();
+    final long end = request.getOffset() + request.getLength();
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      final FileChannel channel = raf.getChannel();
+      long start = request.getOffset();
+      while (end - start > this.partWeight) {
+        long boundary = this.nextBoundary(channel, start + this.partWeight, end);
+        if (boundary >= end) {
+          break;
+        }
+        pieces.add(new PartialFileRequest(start, boundary - start, file));
+        start = boundary;
+      }
+      pieces.add(new PartialFileRequest(start, end - start, file));
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Returns the first position, not before <code>from</code>, that comes
+   * right after a record delimiter, or <code>end</code> if there is none.
+   */
+  private long nextBoundary(FileChannel channel, long from, long end) throws IOException {
+    final byte[] delim = this.delimiter;
+    final byte[] window = new byte[delim.length];
+    final ByteBuffer bb = ByteBuffer.allocate(READ_SIZE);
+    // the delimiter may start a little before 'from'
+    long position = Math.max(0, from - delim.length);
+    int seen = 0;
+    while (position < end) {
+      bb.clear();
+      if (end - position < bb.capacity()) {
+        bb.limit((int) (end - position));
+      }
+      int read = channel.read(bb, position);
+      if (read <= 0) {
+        break;
+      }
+      for (int i = 0; i < read; i++) {
+        // keeps the last bytes read to compare with the delimiter
+        System.arraycopy(window, 1, window, 0, window.length - 1);
+        window[window.length - 1] = bb.get(i);
+        seen++;
+        long after = position + i + 1;
+        if (seen >= window.length && after >= from && matches(window, delim)) {
+          return after;
+        }
+      }
+      position += read;
+    }
+    return end;
+  }
+
+  private static boolean matches(byte[] window, byte[] delim) {
+    for (int i = 0; i < delim.length; i++) {
+      if (window[i] != delim[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
@@ -30,6 +30,7 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 import org.apache.log4j.Logger;
 import br.com.auster.common.io.NIOBufferUtils;
+import br.com.auster.dware.request.file.FileTable;
 import br.com.auster.dware.request.file.PartialFileRequest;
 import br.com.auster.dware.request.utils.RequestUtils;
 
@@ -180,7 +181,7 @@ public class IndexFileMatcher implements Callable<Set<PartialFileRequest>> {
 		String combined = RequestUtils.assemblePieces(indexPieces, fields[1]);
 		if (this.list.contains(combined)) {
 			log.debug("Found a match:" + combined); 
-			PartialFileRequest partialFileRequest = new PartialFileRequest(combined,Long.parseLong(fields[3]),Long.parseLong(fields[4]), new File(fields[5]));
+			PartialFileRequest partialFileRequest = new PartialFileRequest(combined,Long.parseLong(fields[3]),Long.parseLong(fields[4]), FileTable.getFile(fields[5]));
 			partialFileRequest.setTransactionId(fields[2]);
 			for (int i=6; i < fields.length; i+=2) {
 				partialFileRequest.getAttributes().put(fields[i], fields[i+1]);
@@ -32,6 +32,7 @@ import br.com.auster.common.io.FileSet;
 import br.com.auster.common.util.I18n;
 import br.com.auster.dware.graph.Request;
 import br.com.auster.dware.request.RequestBuilder;
+import br.com.auster.dware.request.file.FileTable;
 import br.com.auster.dware.request.file.PartialFileRequest;
 import br.com.auster.dware.request.index.IndexMatcherDef;
 
@@ -239,7 +240,7 @@ public class RequestUtils {
 			File file = null;
 			String fileName = null;
 			try {
-				file = new File(pieces[5]);
+				file = FileTable.getFile(pieces[5]);
 				fileName = file.getCanonicalPath();
 				if (!file.canRead()) {
 					throw new IOException(i18n.getString("file.cannot.read", fileName));
@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.sax;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.LocatorImpl;
+
+/**
+ * A reusable buffer of SAX events. It records the events it receives as a
+ * <code>ContentHandler</code> and later replays them, in the same order, to
+ * another <code>ContentHandler</code>, usually in another thread.
+ * 
+ * <p>
+ * Events are kept in a few flat arrays instead of one object per event:
+ * character data is copied into a single <code>char</code> array, and names,
+ * attribute values and the other strings given by the parser are kept by
+ * reference (parsers usually give the same interned instance for every
+ * occurrence of a name). After <code>clear()</code> the arrays are reused, so
+ * a batch stops allocating memory once it has grown to the size of its
+ * biggest content.
+ * </p>
+ * 
+ * @version $Id$
+ */
+public final class SAXEventBatch implements ContentHandler {
+
+  private static final byte START_DOCUMENT = 0;
+
+  private static final byte END_DOCUMENT = 1;
+
+  private static final byte START_ELEMENT = 2;
+
+  private static final byte END_ELEMENT = 3;
+
+  private static final byte CHARACTERS = 4;
+
+  private static final byte IGNORABLE_WHITESPACE = 5;
+
+  private static final byte START_PREFIX_MAPPING = 6;
+
+  private static final byte END_PREFIX_MAPPING = 7;
+
+  private static final byte PROCESSING_INSTRUCTION = 8;
+
+  private static final byte SKIPPED_ENTITY = 9;
+
+  private static final byte DOCUMENT_LOCATOR = 10;
+
+  // the number of events after which the batch is full
+  private final int capacity;
+
+  private byte[] types;
+
+  private int events;
+
+  // character data offsets and lengths, attribute counts
+  private int[] ints;
+
+  private int intCount;
+
+  private String[] strings;
+
+  private int stringCount;
+
+  private char[] chars;
+
+  private int charCount;
+
+  // the number of characters after which the batch is full
+  private final int charCapacity;
+
+  private Locator locator;
+
+  private boolean ended;
+
+  // used to replay the attributes of the elements
+  private final AttributesImpl attributes = new AttributesImpl();
+
+  /**
+   * Creates a batch that is full after <code>capacity</code> events.
+   */
+  public SAXEventBatch(int capacity) {
+    this.capacity = capacity;
+    this.types = new byte[capacity];
+    this.ints = new int[capacity];
+    this.strings = new String[capacity * 3];
+    this.charCapacity = capacity * 32;
+    this.chars = new char[this.charCapacity];
+  }
+
+  /**
+   * Forgets all the recorded events, keeping the memory already allocated.
+   */
+  public void clear() {
+    this.events = 0;
+    this.intCount = 0;
+    // releases the strings so they may be collected
+    for (int i = 0; i < this.stringCount; i++) {
+      this.strings[i] = null;
+    }
+    this.stringCount = 0;
+    this.charCount = 0;
+    this.locator = null;
+    this.ended = false;
+  }
+
+  /**
+   * Returns true if no events were recorded since the last <code>clear()</code>.
+   */
+  public boolean isEmpty() {
+    return this.events == 0;
+  }
+
+  /**
+   * Returns true if the batch should be replayed before recording more events.
+   */
+  public boolean isFull() {
+    return this.events >= this.capacity || this.charCount >= this.charCapacity;
+  }
+
+  /**
+   * Returns true if the batch contains the end of the document.
+   */
+  public boolean hasEnded() {
+    return this.ended;
+  }
+
+  /**
+   * Returns the number of recorded events.
+   */
+  public int size() {
+    return this.events;
+  }
+
+  /**
+   * Sends all the recorded events to <code>handler</code>.
+   */
+  public void replay(ContentHandler handler) throws SAXException {
+    int intPos = 0, stringPos = 0;
+    for (int i = 0; i < this.events; i++) {
+      switch (this.types[i]) {
+      case START_DOCUMENT:
+        handler.startDocument();
+        break;
+      case END_DOCUMENT:
+        handler.endDocument();
+        break;
+      case START_ELEMENT:
+        final String uri = this.strings[stringPos++];
+        final String localName = this.strings[stringPos++];
+        final String qName = this.strings[stringPos++];
+        final AttributesImpl atts = this.attributes;
+        atts.clear();
+        for (int count = this.ints[intPos++]; count > 0; count--) {
+          atts.addAttribute(this.strings[stringPos], this.strings[stringPos + 1],
+                            this.strings[stringPos + 2], this.strings[stringPos + 3],
+                            this.strings[stringPos + 4]);
+          stringPos += 5;
+        }
+        handler.startElement(uri, localName, qName, atts);
+        break;
+      case END_ELEMENT:
+        handler.endElement(this.strings[stringPos], this.strings[stringPos + 1],
+                           this.strings[stringPos + 2]);
+        stringPos += 3;
+        break;
+      case CHARACTERS:
+        handler.characters(this.chars, this.ints[intPos], this.ints[intPos + 1]);
+        intPos += 2;
+        break;
+      case IGNORABLE_WHITESPACE:
+        handler.ignorableWhitespace(this.chars, this.ints[intPos], this.ints[intPos + 1]);
+        intPos += 2;
+        break;
+      case START_PREFIX_MAPPING:
+        handler.startPrefixMapping(this.strings[stringPos], this.strings[stringPos + 1]);
+        stringPos += 2;
+        break;
+      case END_PREFIX_MAPPING:
+        handler.endPrefixMapping(this.strings[stringPos++]);
+        break;
+      case PROCESSING_INSTRUCTION:
+        handler.processingInstruction(this.strings[stringPos], this.strings[stringPos + 1]);
+        stringPos += 2;
+        break;
+      case SKIPPED_ENTITY:
+        handler.skippedEntity(this.strings[stringPos++]);
+        break;
+      case DOCUMENT_LOCATOR:
+        handler.setDocumentLocator(this.locator);
+        break;
+      }
+    }
+  }
+
+  private void addEvent(byte type) {
+    if (this.events == this.types.length) {
+      final byte[] types = new byte[this.events * 2];
+      System.arraycopy(this.types, 0, types, 0, this.events);
+      this.types = types;
+    }
+    this.types[this.events++] = type;
+  }
+
+  private void addInt(int value) {
+    if (this.intCount == this.ints.length) {
+      final int[] ints = new int[this.intCount * 2];
+      System.arraycopy(this.ints, 0, ints, 0, this.intCount);
+      this.ints = ints;
+    }
+    this.ints[this.intCount++] = value;
+  }
+
+  private void addString(String value) {
+    if (this.stringCount == this.strings.length) {
+      final String[] strings = new String[this.stringCount * 2];
+      System.arraycopy(this.strings, 0, strings, 0, this.stringCount);
+      this.strings = strings;
+    }
+    this.strings[this.stringCount++] = value;
+  }
+
+  private void addChars(char[] ch, int start, int length) {
+    if (this.charCount + length > this.chars.length) {
+      final char[] chars = new char[Math.max(this.chars.length * 2, this.charCount + length)];
+      System.arraycopy(this.chars, 0, chars, 0, this.charCount);
+      this.chars = chars;
+    }
+    System.arraycopy(ch, start, this.chars, this.charCount, length);
+    addInt(this.charCount);
+    addInt(length);
+    this.charCount += length;
+  }
+
+  /** ***************************************** */
+  /* START OF CONTENTHANDLER IMPLEMENTATION */
+  /** ***************************************** */
+
+  public void setDocumentLocator(Locator locator) {
+    // the original locator is only meaningful in the parser thread
+    this.locator = new LocatorImpl(locator);
+    addEvent(DOCUMENT_LOCATOR);
+  }
+
+  public void startDocument() {
+    addEvent(START_DOCUMENT);
+  }
+
+  public void endDocument() {
+    addEvent(END_DOCUMENT);
+    this.ended = true;
+  }
+
+  public void startPrefixMapping(String prefix, String uri) {
+    addEvent(START_PREFIX_MAPPING);
+    addString(prefix);
+    addString(uri);
+  }
+
+  public void endPrefixMapping(String prefix) {
+    addEvent(END_PREFIX_MAPPING);
+    addString(prefix);
+  }
+
+  public void startElement(String uri, String localName, String qName, Attributes atts) {
+    addEvent(START_ELEMENT);
+    addString(uri);
+    addString(localName);
+    addString(qName);
+    final int count = atts == null ? 0 : atts.getLength();
+    addInt(count);
+    for (int i = 0; i < count; i++) {
+      addString(atts.getURI(i));
+      addString(atts.getLocalName(i));
+      addString(atts.getQName(i));
+      addString(atts.getType(i));
+      addString(atts.getValue(i));
+    }
+  }
+
+  public void endElement(String uri, String localName, String qName) {
+    addEvent(END_ELEMENT);
+    addString(uri);
+    addString(localName);
+    addString(qName);
+  }
+
+  public void characters(char[] ch, int start, int length) {
+    addEvent(CHARACTERS);
+    addChars(ch, start, length);
+  }
+
+  public void ignorableWhitespace(char[] ch, int start, int length) {
+    addEvent(IGNORABLE_WHITESPACE);
+    addChars(ch, start, length);
+  }
+
+  public void processingInstruction(String target, String data) {
+    addEvent(PROCESSING_INSTRUCTION);
+    addString(target);
+    addString(data);
+  }
+
+  public void skippedEntity(String name) {
+    addEvent(SKIPPED_ENTITY);
+    addString(name);
+  }
+}
@@ -29,6 +29,7 @@ import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
 
 import br.com.auster.common.xml.DOMUtils;
+import br.com.auster.dware.graph.PassThrough;
 
 
 /**
@@ -37,7 +38,7 @@ import br.com.auster.common.xml.DOMUtils;
  * @author Ricardo Barone
  * @version $Id: TagDropperPipe.java 189 2006-05-25 20:43:38Z framos $
  */
-public class TagDropperPipe extends ContentHandlerPipe {
+public class TagDropperPipe extends ContentHandlerPipe implements PassThrough {
 
   protected static final String TAG_ELT = "tag";
   protected static final String NAME_ATT = "name";
@@ -71,6 +72,13 @@ public class TagDropperPipe extends ContentHandlerPipe {
   public void setOutput(ContentHandler output) {
     this.output = output;
   }
+
+  /**
+   * Without tags to drop, everything is forwarded as is.
+   */
+  public Object getBypass() {
+    return this.tags.isEmpty() ? this.output : null;
+  }
   
   //##################################################
   // SAX event handling
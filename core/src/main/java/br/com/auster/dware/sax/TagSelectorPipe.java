@@ -32,6 +32,7 @@ import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
 
 import br.com.auster.common.xml.DOMUtils;
+import br.com.auster.dware.graph.PassThrough;
 
 /**
  * TODO comments
@@ -39,7 +40,7 @@ import br.com.auster.common.xml.DOMUtils;
  * @author Ricardo Barone
  * @version $Id: TagSelectorPipe.java 87 2005-08-04 21:21:25Z rbarone $
  */
-public class TagSelectorPipe extends ContentHandlerPipe {
+public class TagSelectorPipe extends ContentHandlerPipe implements PassThrough {
 
   //##################################################
   // Class variables
@@ -127,6 +128,13 @@ public class TagSelectorPipe extends ContentHandlerPipe {
     this.output = output;
   }
 
+  /**
+   * Without tags to select, everything is forwarded as is.
+   */
+  public Object getBypass() {
+    return this.tagDefinition.getChilds().isEmpty() ? this.output : null;
+  }
+
   //##################################################
   // SAX event handling
   //##################################################
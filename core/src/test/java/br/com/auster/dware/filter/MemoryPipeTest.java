@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.filter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test to MemoryPipe.
+ * 
+ * @version $Id$
+ */
+public class MemoryPipeTest extends TestCase {
+
+  /**
+   * Writes <code>data</code> to the pipe in chunks of random sizes from another
+   * thread and reads it back.
+   */
+  private byte[] transfer(MemoryPipe pipe, final byte[] data) throws Exception {
+    final WritableByteChannel sink = pipe.sink();
+    final Throwable[] error = new Throwable[1];
+    Thread writer = new Thread(new Runnable() {
+      public void run() {
+        try {
+          Random rand = new Random(1);
+          int pos = 0;
+          while (pos < data.length) {
+            int len = Math.min(data.length - pos, 1 + rand.nextInt(100));
+            sink.write(ByteBuffer.wrap(data, pos, len));
+            pos += len;
+          }
+          sink.close();
+        } catch (Throwable t) {
+          error[0] = t;
+        }
+      }
+    });
+    writer.start();
+
+    ReadableByteChannel source = pipe.source();
+    ByteBuffer result = ByteBuffer.allocate(data.length);
+    ByteBuffer chunk = ByteBuffer.allocate(37);
+    int read;
+    while ((read = source.read(chunk)) >= 0) {
+      assertTrue(read > 0);
+      chunk.flip();
+      result.put(chunk);
+      chunk.clear();
+    }
+    source.close();
+    writer.join();
+    assertNull(error[0]);
+    return result.array();
+  }
+
+  public void testTransfer() throws Exception {
+    byte[] data = new byte[10000];
+    new Random(2).nextBytes(data);
+    MemoryPipe pipe = new MemoryPipe(3, 64);
+    assertTrue(Arrays.equals(data, transfer(pipe.open(), data)));
+    // the same buffers carry the next stream
+    byte[] other = new byte[777];
+    new Random(3).nextBytes(other);
+    assertTrue(Arrays.equals(other, transfer(pipe.open(), other)));
+  }
+
+  public void testWriterBlocksWhenFull() throws Exception {
+    MemoryPipe pipe = new MemoryPipe(2, 10).open();
+    final WritableByteChannel sink = pipe.sink();
+    final boolean[] written = new boolean[1];
+    Thread writer = new Thread(new Runnable() {
+      public void run() {
+        try {
+          sink.write(ByteBuffer.wrap(new byte[25]));
+          written[0] = true;
+        } catch (IOException e) {
+        }
+      }
+    });
+    writer.start();
+    writer.join(300);
+    assertTrue(writer.isAlive());
+    assertFalse(written[0]);
+
+    ByteBuffer dst = ByteBuffer.allocate(10);
+    assertEquals(10, pipe.source().read(dst));
+    writer.join(1000);
+    assertTrue(written[0]);
+  }
+
+  public void testWriteAfterSourceClosed() throws Exception {
+    MemoryPipe pipe = new MemoryPipe(2, 10).open();
+    pipe.source().close();
+    try {
+      pipe.sink().write(ByteBuffer.wrap(new byte[5]));
+      fail();
+    } catch (IOException e) {
+    }
+  }
+
+  public void testInterruptedReader() throws Exception {
+    final MemoryPipe pipe = new MemoryPipe(2, 10).open();
+    final Throwable[] error = new Throwable[1];
+    Thread reader = new Thread(new Runnable() {
+      public void run() {
+        try {
+          pipe.source().read(ByteBuffer.allocate(10));
+        } catch (Throwable t) {
+          error[0] = t;
+        }
+      }
+    });
+    reader.start();
+    reader.interrupt();
+    reader.join(1000);
+    assertTrue(error[0] instanceof ClosedByInterruptException);
+    assertFalse(pipe.sink().isOpen());
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.filter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Compares the throughput of <code>java.nio.channels.Pipe</code> and
+ * <code>MemoryPipe</code> between two threads that copy data the way
+ * <code>NIOFilter</code> does, with a direct buffer on each side.
+ * 
+ * <p>
+ * This is not a unit test. Run it with:
+ * <code>PipeBenchmark [megabytes] [chunk-size] [buffers] [buffer-size] [rounds]</code>
+ * </p>
+ * 
+ * @version $Id$
+ */
+public class PipeBenchmark {
+
+  private final long bytes;
+
+  private final int chunkSize;
+
+  private final MemoryPipe memoryPipe;
+
+  public PipeBenchmark(long bytes, int chunkSize, int buffers, int bufferSize) {
+    this.bytes = bytes;
+    this.chunkSize = chunkSize;
+    this.memoryPipe = new MemoryPipe(buffers, bufferSize);
+  }
+
+  public static void main(String[] args) throws Exception {
+    int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+    int chunkSize = args.length > 1 ? Integer.parseInt(args[1]) : 8192;
+    int buffers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+    int bufferSize = args.length > 3 ? Integer.parseInt(args[3]) : 64 * 1024;
+    int rounds = args.length > 4 ? Integer.parseInt(args[4]) : 5;
+
+    PipeBenchmark bench = new PipeBenchmark(megabytes * 1024L * 1024L, chunkSize, buffers,
+                                            bufferSize);
+    System.out.println(megabytes + "MB per round, chunks of " + chunkSize + " bytes, " + buffers
+                       + " buffers of " + bufferSize + " bytes");
+    // first round of each one is warm up
+    for (int i = 0; i <= rounds; i++) {
+      Pipe pipe = Pipe.open();
+      long os = bench.run(pipe.sink(), pipe.source());
+      bench.memoryPipe.open();
+      long memory = bench.run(bench.memoryPipe.sink(), bench.memoryPipe.source());
+      if (i > 0) {
+        System.out.println("round " + i + ": Pipe " + rate(megabytes, os) + " MB/s, MemoryPipe "
+                           + rate(megabytes, memory) + " MB/s");
+      }
+    }
+  }
+
+  private static long rate(int megabytes, long nanos) {
+    return Math.round(megabytes / (nanos / 1e9));
+  }
+
+  /**
+   * Runs one round and returns how long it took, in nanoseconds.
+   */
+  public long run(final WritableByteChannel sink, ReadableByteChannel source)
+      throws IOException, InterruptedException {
+    final IOException[] error = new IOException[1];
+    Thread writer = new Thread(new Runnable() {
+      public void run() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(chunkSize);
+        try {
+          for (long left = bytes; left > 0; left -= buffer.limit()) {
+            buffer.clear();
+            buffer.limit((int) Math.min(left, chunkSize));
+            while (buffer.hasRemaining()) {
+              sink.write(buffer);
+            }
+          }
+          sink.close();
+        } catch (IOException e) {
+          error[0] = e;
+        }
+      }
+    });
+
+    long begin = System.nanoTime();
+    writer.start();
+    ByteBuffer buffer = ByteBuffer.allocateDirect(this.chunkSize);
+    long read = 0;
+    for (int n; (n = source.read(buffer)) >= 0; buffer.clear()) {
+      read += n;
+    }
+    source.close();
+    writer.join();
+    long elapsed = System.nanoTime() - begin;
+    if (error[0] != null) {
+      throw error[0];
+    } else if (read != this.bytes) {
+      throw new IllegalStateException(read + " bytes read, " + this.bytes + " expected");
+    }
+    return elapsed;
+  }
+}
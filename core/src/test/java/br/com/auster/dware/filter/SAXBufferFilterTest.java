@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.filter;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
+
+import junit.framework.TestCase;
+
+import org.w3c.dom.Element;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Unit test to SAXBufferFilter.
+ * 
+ * @version $Id$
+ */
+public class SAXBufferFilterTest extends TestCase {
+
+  private SAXBufferFilter filter;
+
+  private String document;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+    StringBuffer sb = new StringBuffer("<?xml version=\"1.0\"?><a:root xmlns:a=\"urn:a\">");
+    for (int i = 0; i < 5000; i++) {
+      sb.append("<item id=\"").append(i).append("\" kind=\"k").append(i % 3).append("\">");
+      sb.append("text &amp; more ").append(i).append("</item><?pi data?>");
+    }
+    sb.append("</a:root>");
+    this.document = sb.toString();
+
+    Element config = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument()
+        .createElement("config");
+    config.setAttribute("batch-size", "64");
+    config.setAttribute("batches", "3");
+    this.filter = new SAXBufferFilter("buffer");
+    this.filter.configure(config);
+    this.filter.setDaemon(true);
+    this.filter.start();
+  }
+
+  protected void tearDown() throws Exception {
+    this.filter.shutdown(false);
+    super.tearDown();
+  }
+
+  private void parse(ContentHandler handler) throws Exception {
+    SAXParserFactory factory = SAXParserFactory.newInstance();
+    factory.setNamespaceAware(true);
+    XMLReader reader = factory.newSAXParser().getXMLReader();
+    reader.setContentHandler(handler);
+    reader.parse(new InputSource(new StringReader(this.document)));
+  }
+
+  private TransformerHandler serializer(StringWriter writer) throws Exception {
+    TransformerHandler th = ((SAXTransformerFactory) SAXTransformerFactory.newInstance())
+        .newTransformerHandler();
+    th.setResult(new StreamResult(writer));
+    return th;
+  }
+
+  public void testSameEvents() throws Exception {
+    StringWriter direct = new StringWriter();
+    parse(serializer(direct));
+
+    // twice, to reuse the batches
+    for (int i = 0; i < 2; i++) {
+      StringWriter buffered = new StringWriter();
+      this.filter.setOutput(null, serializer(buffered));
+      this.filter.prepare(null);
+      this.filter.go();
+      parse((ContentHandler) this.filter.getInput(null));
+      this.filter.waitProcessing(5000);
+      assertFalse(this.filter.isProcessing());
+      assertNull(this.filter.getProblem());
+      assertEquals(direct.toString(), buffered.toString());
+    }
+  }
+
+  public void testConsumerFailureReleasesProducer() throws Exception {
+    this.filter.setOutput(null, new DefaultHandler() {
+      public void startElement(String uri, String localName, String qName,
+                               org.xml.sax.Attributes atts) throws SAXException {
+        throw new SAXException("failed");
+      }
+    });
+    this.filter.prepare(null);
+    this.filter.go();
+    try {
+      parse((ContentHandler) this.filter.getInput(null));
+      fail();
+    } catch (SAXException e) {
+      // the producer got the abort instead of waiting forever
+    }
+    this.filter.waitProcessing(5000);
+    assertNotNull(this.filter.getProblem());
+  }
+}
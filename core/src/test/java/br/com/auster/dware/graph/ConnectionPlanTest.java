@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.graph;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test to the choice of the connection methods a filter really
+ * implements.
+ * 
+ * @version $Id$
+ */
+public class ConnectionPlanTest extends TestCase {
+
+  /**
+   * Supplies its output, like most sources extending DefaultFilter.
+   */
+  public static class OutputFilter extends DefaultFilter {
+
+    public OutputFilter(String name) {
+      super(name);
+    }
+
+    public Object getOutput(String sinkName) {
+      return null;
+    }
+  }
+
+  /**
+   * Takes its input from the source.
+   */
+  public static class InputThreadedFilter extends ThreadedFilter {
+
+    public InputThreadedFilter(String name) {
+      super(name);
+    }
+
+    public void setInput(String sourceName, Object input) {
+    }
+
+    public void process() {
+    }
+  }
+
+  /**
+   * Implements no connection method at all.
+   */
+  public static class BareThreadedFilter extends ThreadedFilter {
+
+    public BareThreadedFilter(String name) {
+      super(name);
+    }
+
+    public void process() {
+    }
+  }
+
+  /**
+   * Extends a filter that implements the output.
+   */
+  public static class ExtendedOutputFilter extends OutputFilter {
+
+    public ExtendedOutputFilter(String name) {
+      super(name);
+    }
+  }
+
+  /**
+   * Only the methods overridden below DefaultFilter are used.
+   */
+  public void testDefaultFilter() {
+    assertTrue(Graph.supports(OutputFilter.class, "getOutput", false));
+    assertTrue(Graph.supports(ExtendedOutputFilter.class, "getOutput", false));
+    assertFalse(Graph.supports(OutputFilter.class, "setOutput", true));
+    assertFalse(Graph.supports(OutputFilter.class, "getInput", false));
+    assertFalse(Graph.supports(OutputFilter.class, "setInput", true));
+  }
+
+  /**
+   * The methods ThreadedFilter declares only throw, like DefaultFilter's.
+   */
+  public void testThreadedFilter() {
+    assertTrue(Graph.supports(InputThreadedFilter.class, "setInput", true));
+    assertFalse(Graph.supports(InputThreadedFilter.class, "getInput", false));
+    assertFalse(Graph.supports(InputThreadedFilter.class, "getOutput", false));
+    assertFalse(Graph.supports(InputThreadedFilter.class, "setOutput", true));
+    assertFalse(Graph.supports(BareThreadedFilter.class, "getOutput", false));
+    assertFalse(Graph.supports(BareThreadedFilter.class, "setInput", true));
+  }
+
+  /**
+   * A method with other parameters is not a connection method.
+   */
+  public void testUnknownMethod() {
+    assertFalse(Graph.supports(OutputFilter.class, "getOutput", true));
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.graph;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.CountDownLatch;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.TestCase;
+
+import org.w3c.dom.Element;
+
+import br.com.auster.dware.monitor.manager.JMXGraphGroupCounter;
+
+/**
+ * Unit test to the deadline of the requests processed by a graph.
+ * 
+ * @version $Id$
+ */
+public class DeadlineTest extends TestCase {
+
+  // lets the stuck filters return at the end of each test
+  static CountDownLatch release;
+
+  // set if a stuck filter was rolled back while still inside process()
+  static volatile boolean rolledBackWhileProcessing;
+
+  /**
+   * Never returns from <code>process</code> until the test ends, not even if
+   * interrupted.
+   */
+  public static class StuckFilter extends ThreadedFilter {
+
+    public StuckFilter(String name) {
+      super(name);
+    }
+
+    public void process() {
+      boolean done = false;
+      while (!done) {
+        try {
+          release.await();
+          done = true;
+        } catch (InterruptedException e) {
+          // stuck anyway
+        }
+      }
+    }
+
+    public void rollback() {
+      if (this.isProcessing()) {
+        rolledBackWhileProcessing = true;
+      }
+    }
+  }
+
+  /**
+   * Processes at once, but never returns from <code>commit</code> until the
+   * test ends.
+   */
+  public static class StuckCommitFilter extends ThreadedFilter {
+
+    public StuckCommitFilter(String name) {
+      super(name);
+    }
+
+    public void process() {
+      // nothing to do
+    }
+
+    public void commit() {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        // stuck until released
+      }
+    }
+  }
+
+  /**
+   * Fails as soon as it starts.
+   */
+  public static class FailingFilter extends ThreadedFilter {
+
+    public FailingFilter(String name) {
+      super(name);
+    }
+
+    public void process() throws FilterException {
+      throw new FilterException("failed on purpose");
+    }
+  }
+
+  static class TestRequest extends Request {
+
+    TestRequest() {
+      this.setUserKey("deadline");
+    }
+
+    public long getWeight() {
+      return 100;
+    }
+  }
+
+  protected void setUp() throws Exception {
+    release = new CountDownLatch(1);
+    rolledBackWhileProcessing = false;
+  }
+
+  protected void tearDown() throws Exception {
+    release.countDown();
+  }
+
+  private Graph createGraph(String filters) throws Exception {
+    String design = "<graph-design deadline='200'>" + filters + "</graph-design>";
+    Element config = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+        .parse(new ByteArrayInputStream(design.getBytes())).getDocumentElement();
+    final Graph graph = new Graph("deadline", GraphBlueprint.compile(config));
+    graph.setJMXCounters(new JMXGraphGroupCounter());
+    return graph;
+  }
+
+  private static String filter(String name, Class type) {
+    return "<filter name='" + name + "' class-name='" + type.getName() + "'/>";
+  }
+
+  /**
+   * Processes a request in another thread, returning what it threw, or null
+   * if it did not return in time.
+   */
+  private static Throwable processInTime(final Graph graph) throws InterruptedException {
+    final Throwable[] result = new Throwable[1];
+    Thread caller = new Thread() {
+      public void run() {
+        try {
+          graph.process(new TestRequest());
+          result[0] = new AssertionError("the request should have failed");
+        } catch (Throwable t) {
+          result[0] = t;
+        }
+      }
+    };
+    caller.start();
+    caller.join(5000);
+    return caller.isAlive() ? null : result[0];
+  }
+
+  /**
+   * A request whose only filter never returns is released by the deadline.
+   */
+  public void testStuckFilter() throws Exception {
+    Graph graph = this.createGraph(filter("stuck", StuckFilter.class));
+    try {
+      Throwable problem = processInTime(graph);
+      assertNotNull(problem);
+      assertTrue(problem instanceof GraphException);
+      assertFalse(graph.isProcessing());
+      assertFalse(rolledBackWhileProcessing);
+    } finally {
+      graph.shutdown(false);
+    }
+  }
+
+  /**
+   * A request whose commit never returns is released by the deadline, and the
+   * graph can still process the next request.
+   */
+  public void testStuckCommit() throws Exception {
+    Graph graph = this.createGraph(filter("commit", StuckCommitFilter.class));
+    try {
+      Throwable problem = processInTime(graph);
+      assertNotNull(problem);
+      assertTrue(problem instanceof GraphException);
+      assertFalse(graph.isProcessing());
+
+      problem = processInTime(graph);
+      assertNotNull(problem);
+      assertTrue(problem instanceof GraphException);
+      assertFalse(graph.isProcessing());
+    } finally {
+      graph.shutdown(false);
+    }
+  }
+
+  /**
+   * A request already rolled back because a filter failed is released by the
+   * deadline even if another filter never returns, keeping the first problem.
+   */
+  public void testStuckFilterWithFailingSibling() throws Exception {
+    Graph graph = this.createGraph(filter("stuck", StuckFilter.class)
+                                   + filter("failing", FailingFilter.class));
+    try {
+      Throwable problem = processInTime(graph);
+      assertNotNull(problem);
+      assertTrue(problem instanceof FilterException);
+      assertFalse(graph.isProcessing());
+    } finally {
+      graph.shutdown(false);
+    }
+  }
+}
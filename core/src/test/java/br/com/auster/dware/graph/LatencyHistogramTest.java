@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.graph;
+
+import junit.framework.TestCase;
+
+/**
+ * @version $Id$
+ */
+public class LatencyHistogramTest extends TestCase {
+
+	private LatencyHistogram histogram;
+
+	protected void setUp() throws Exception {
+		histogram = new LatencyHistogram();
+	}
+
+	public void testEmpty() {
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getMin());
+		assertEquals(0, histogram.getPercentile(0.99));
+	}
+
+	public void testSmallValuesAreExact() {
+		for (int i = 1; i <= 10; i++) {
+			histogram.record(i);
+		}
+		assertEquals(10, histogram.getCount());
+		assertEquals(55, histogram.getTotal());
+		assertEquals(1, histogram.getMin());
+		assertEquals(10, histogram.getMax());
+		assertEquals(5, histogram.getPercentile(0.5));
+		assertEquals(10, histogram.getPercentile(1));
+	}
+
+	public void testPercentileRelativeError() {
+		for (long i = 1; i <= 100000; i++) {
+			histogram.record(i);
+		}
+		assertEquals(100000, histogram.getMax());
+		long p50 = histogram.getPercentile(0.5);
+		long p99 = histogram.getPercentile(0.99);
+		assertTrue("p50=" + p50, p50 >= 50000 && p50 <= 50000 * 1.07);
+		assertTrue("p99=" + p99, p99 >= 99000 && p99 <= 100000);
+	}
+
+	public void testBucketsAreContiguous() {
+		for (long value = 0; value < 1000000; value += 7) {
+			int index = LatencyHistogram.indexOf(value);
+			assertTrue(value <= LatencyHistogram.upperBoundOf(index));
+			if (index > 0) {
+				assertTrue(value > LatencyHistogram.upperBoundOf(index - 1));
+			}
+		}
+	}
+
+	public void testReset() {
+		histogram.recordNanos(5000000);
+		assertEquals(5000, histogram.getMax());
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getPercentile(0.5));
+	}
+}
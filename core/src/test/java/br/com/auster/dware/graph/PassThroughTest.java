@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.graph;
+
+import java.io.ByteArrayInputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.SAXParserFactory;
+
+import junit.framework.TestCase;
+
+import org.w3c.dom.Element;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Unit test to the skipping of pass-through filters by the graph.
+ * 
+ * @version $Id$
+ */
+public class PassThroughTest extends TestCase {
+
+  private static final String DOCUMENT = "<root><a>1</a><b>2</b><a>3</a></root>";
+
+  /**
+   * Parses the document into its output.
+   */
+  public static class ParserFilter extends ThreadedFilter {
+
+    static volatile Object lastOutput;
+
+    private ContentHandler output;
+
+    public ParserFilter(String name) {
+      super(name);
+    }
+
+    public void prepare(Request request) {
+    }
+
+    public void setOutput(String sinkName, Object output) {
+      this.output = (ContentHandler) output;
+    }
+
+    public void process() throws FilterException {
+      lastOutput = this.output;
+      try {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        XMLReader reader = factory.newSAXParser().getXMLReader();
+        reader.setContentHandler(this.output);
+        reader.parse(new InputSource(new ByteArrayInputStream(DOCUMENT.getBytes())));
+      } catch (Exception e) {
+        throw new FilterException(e);
+      }
+    }
+  }
+
+  /**
+   * Counts the elements it receives.
+   */
+  public static class CountingFilter extends DefaultFilter {
+
+    static Handler instance;
+
+    public CountingFilter(String name) {
+      super(name);
+    }
+
+    public void prepare(Request request) {
+      instance = new Handler();
+    }
+
+    public Object getInput(String sourceName) {
+      return instance;
+    }
+  }
+
+  static class Handler extends DefaultHandler {
+
+    int elements = 0;
+
+    public void startElement(String uri, String localName, String qName,
+                             org.xml.sax.Attributes atts) throws SAXException {
+      this.elements++;
+    }
+  }
+
+  static class TestRequest extends Request {
+
+    TestRequest() {
+      this.setTransactionId("t");
+      this.setUserKey("u");
+    }
+
+    public long getWeight() {
+      return 100;
+    }
+  }
+
+  private Graph createGraph(String limiterConfig) throws Exception {
+    String design = "<graph-design>"
+        + "<filter name='parser' class-name='" + ParserFilter.class.getName() + "'>"
+        + "<connect-to>limiter</connect-to></filter>"
+        + "<filter name='limiter' class-name='br.com.auster.dware.filter.CHLimiterPipeFilter'>"
+        + limiterConfig + "<connect-to>dropper</connect-to></filter>"
+        + "<filter name='dropper' class-name='br.com.auster.dware.filter.ContentHandlerPipeFilter'>"
+        + "<config class-name='br.com.auster.dware.sax.TagDropperPipe'><content-handler/></config>"
+        + "<connect-to>counter</connect-to></filter>"
+        + "<filter name='counter' class-name='" + CountingFilter.class.getName() + "'/>"
+        + "</graph-design>";
+    Element config = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+        .parse(new ByteArrayInputStream(design.getBytes())).getDocumentElement();
+    return new Graph("passThrough", GraphBlueprint.compile(config));
+  }
+
+  /**
+   * A limiter without limit and a dropper without tags are skipped.
+   */
+  public void testSkipsTransparentStages() throws Throwable {
+    Graph graph = this.createGraph("<config/>");
+    try {
+      graph.process(new TestRequest());
+      assertSame(CountingFilter.instance, ParserFilter.lastOutput);
+      assertEquals(4, CountingFilter.instance.elements);
+    } finally {
+      graph.shutdown(true);
+    }
+  }
+
+  /**
+   * The events of a request over the limit go straight to a handler that
+   * ignores them.
+   */
+  public void testSkipsExceededLimiter() throws Throwable {
+    Graph graph = this.createGraph("<config max-size='10' ignore-exception='true'/>");
+    try {
+      graph.process(new TestRequest());
+      assertTrue(CountingFilter.instance != ParserFilter.lastOutput);
+      assertFalse(ParserFilter.lastOutput instanceof PassThrough);
+      assertEquals(0, CountingFilter.instance.elements);
+    } finally {
+      graph.shutdown(true);
+    }
+  }
+
+  /**
+   * A limiter that lets the request pass is kept, but the dropper behind it is
+   * skipped.
+   */
+  public void testKeepsWorkingStages() throws Throwable {
+    Graph graph = this.createGraph("<config max-size='1000'/>");
+    try {
+      graph.process(new TestRequest());
+      assertTrue(ParserFilter.lastOutput instanceof PassThrough);
+      assertEquals(4, CountingFilter.instance.elements);
+    } finally {
+      graph.shutdown(true);
+    }
+  }
+}
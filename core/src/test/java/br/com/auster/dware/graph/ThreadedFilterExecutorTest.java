@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.graph;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test to the slots of the shared threaded filter executor.
+ * 
+ * @version $Id$
+ */
+public class ThreadedFilterExecutorTest extends TestCase {
+
+  private ThreadedFilterExecutor executor;
+
+  public ThreadedFilterExecutorTest(String name) {
+    super(name);
+  }
+
+  protected void setUp() {
+    DeadlineTest.release = new CountDownLatch(1);
+    ThreadedFilterExecutor.configure(2);
+    this.executor = ThreadedFilterExecutor.getInstance();
+  }
+
+  protected void tearDown() {
+    DeadlineTest.release.countDown();
+  }
+
+  /**
+   * Reserves all the slots from another thread, telling if it got them in
+   * time.
+   */
+  private boolean reserveAll(long millis) throws InterruptedException {
+    final boolean[] reserved = new boolean[1];
+    Thread t = new Thread() {
+      public void run() {
+        try {
+          executor.reserve(executor.getMaxThreads());
+          reserved[0] = true;
+          executor.release(executor.getMaxThreads());
+        } catch (InterruptedException e) {
+          // not reserved
+        }
+      }
+    };
+    t.start();
+    t.join(millis);
+    t.interrupt();
+    t.join();
+    return reserved[0];
+  }
+
+  /**
+   * A task that ignores the interruption is abandoned, and gives its slot back
+   * without waiting for it to return.
+   */
+  public void testStuckTaskReleasesSlot() throws Exception {
+    this.executor.reserve(1);
+    final CountDownLatch started = new CountDownLatch(1);
+    Future task = this.executor.submit(new DeadlineTest.StuckFilter("stuck") {
+      public void process() {
+        started.countDown();
+        super.process();
+      }
+    });
+    started.await();
+    assertFalse(this.executor.stop(new Future[] { task }, 100));
+    assertTrue(this.reserveAll(2000));
+    // a later request still gets all its workers while the stuck one runs
+    this.executor.reserve(2);
+    final CountDownLatch ran = new CountDownLatch(2);
+    for (int i = 0; i < 2; i++) {
+      this.executor.submit(new ThreadedFilter("quick" + i) {
+        public void process() {
+          ran.countDown();
+        }
+      });
+    }
+    ran.await();
+    assertTrue(this.reserveAll(2000));
+  }
+
+  /**
+   * A task that stops when interrupted is waited for, not abandoned.
+   */
+  public void testInterruptedTaskStops() throws Exception {
+    this.executor.reserve(1);
+    final CountDownLatch started = new CountDownLatch(1);
+    Future task = this.executor.submit(new ThreadedFilter("sleeping") {
+      public void process() {
+        started.countDown();
+        try {
+          Thread.sleep(60000);
+        } catch (InterruptedException e) {
+          // stops at once
+        }
+      }
+    });
+    started.await();
+    assertTrue(this.executor.stop(new Future[] { task }, 5000));
+    assertTrue(this.reserveAll(2000));
+  }
+
+  /**
+   * Resizing the executor changes how many slots can be reserved.
+   */
+  public void testResize() throws Exception {
+    ThreadedFilterExecutor.configure(3);
+    try {
+      assertEquals(3, this.executor.getMaxThreads());
+      assertTrue(this.reserveAll(2000));
+    } finally {
+      ThreadedFilterExecutor.configure(2);
+    }
+    assertTrue(this.reserveAll(2000));
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.request.file;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import br.com.auster.dware.graph.Request;
+
+/**
+ * Unit test to PartialFileRequestSplitter.
+ * 
+ * @version $Id$
+ */
+public class PartialFileRequestSplitterTest extends TestCase {
+
+  private File file;
+
+  private byte[] content;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+    this.file = File.createTempFile("splitter", ".txt");
+    StringBuffer sb = new StringBuffer();
+    for (int i = 0; i < 200; i++) {
+      sb.append("record ").append(i);
+      for (int j = 0; j < i % 7; j++) {
+        sb.append(" field");
+      }
+      sb.append('\n');
+    }
+    this.content = sb.toString().getBytes("ISO-8859-1");
+    FileOutputStream out = new FileOutputStream(this.file);
+    out.write(this.content);
+    out.close();
+  }
+
+  protected void tearDown() throws Exception {
+    this.file.delete();
+    super.tearDown();
+  }
+
+  public void testSplitAtRecordBoundaries() throws IOException {
+    PartialFileRequest request = new PartialFileRequest("big", 0, this.content.length, this.file);
+    request.setTransactionId("tx");
+    PartialFileRequestSplitter splitter = new PartialFileRequestSplitter(500, new byte[] { '\n' });
+    List<Request> parts = splitter.split(request);
+
+    assertTrue("request was not split", parts.size() > 2);
+    long expectedOffset = 0;
+    for (int i = 0; i < parts.size(); i++) {
+      PartialFileListRequestPart part = (PartialFileListRequestPart) parts.get(i);
+      assertSame(request, part.getParent());
+      assertEquals(i, part.getPartIndex());
+      assertEquals(parts.size(), part.getPartCount());
+      assertEquals("tx", part.getTransactionId());
+      PartialFileRequest[] pieces = part.getFiles();
+      for (int j = 0; j < pieces.length; j++) {
+        assertEquals("pieces must be contiguous", expectedOffset, pieces[j].getOffset());
+        expectedOffset += pieces[j].getLength();
+        assertEquals("pieces must end a record", '\n', this.content[(int) expectedOffset - 1]);
+      }
+    }
+    assertEquals(this.content.length, expectedOffset);
+    assertFalse(parts.get(0).getId().equals(parts.get(1).getId()));
+  }
+
+  public void testSplitListKeepsOrder() throws IOException {
+    int third = this.content.length / 3;
+    PartialFileRequest[] files = {
+        new PartialFileRequest(0, third, this.file),
+        new PartialFileRequest(third, third, this.file),
+        new PartialFileRequest(2 * third, this.content.length - 2 * third, this.file) };
+    PartialFileListRequest request = new PartialFileListRequest("list", files);
+    // no piece is cut, and no two pieces fit in one part
+    long partWeight = files[2].getLength();
+    PartialFileRequestSplitter splitter = new PartialFileRequestSplitter(partWeight,
+                                                                         new byte[] { '\n' });
+    List<Request> parts = splitter.split(request);
+
+    assertEquals(3, parts.size());
+    for (int i = 0; i < parts.size(); i++) {
+      PartialFileRequest[] pieces = ((PartialFileListRequest) parts.get(i)).getFiles();
+      assertEquals(1, pieces.length);
+      assertSame(files[i], pieces[0]);
+    }
+  }
+
+  public void testRecordWithoutDelimiter() throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(this.file, "rw");
+    raf.setLength(0);
+    raf.write(new byte[2000]);
+    raf.close();
+    PartialFileRequest request = new PartialFileRequest(0, 2000, this.file);
+    List<Request> parts = new PartialFileRequestSplitter(500, new byte[] { '\n' }).split(request);
+    // a single record can not be divided
+    assertEquals(1, parts.size());
+  }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.request.file;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import br.com.auster.dware.graph.Request;
+
+/**
+ * Compares the heap used by <code>PartialFileRequest</code> with the one used
+ * by a replica of the former request layout: a synchronized
+ * <code>HashMap</code> of attributes, an ID built as soon as the keys are set
+ * and a <code>File</code> per request.
+ * 
+ * <p>
+ * The requests are built the way the index builders do, parsing each field from
+ * a line, so names, values and paths are new strings for every request.
+ * </p>
+ * 
+ * <p>
+ * This is not a unit test. Run it with:
+ * <code>RequestFootprintBenchmark [requests] [attributes] [files]</code>
+ * </p>
+ * 
+ * @version $Id$
+ */
+public class RequestFootprintBenchmark {
+
+  private final int requests, attributes, files;
+
+  public RequestFootprintBenchmark(int requests, int attributes, int files) {
+    this.requests = requests;
+    this.attributes = attributes;
+    this.files = files;
+  }
+
+  public static void main(String[] args) {
+    int requests = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+    int attributes = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+    int files = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+    RequestFootprintBenchmark bench = new RequestFootprintBenchmark(requests, attributes, files);
+    System.out.println(requests + " requests, " + attributes + " attributes each, from " + files
+                       + " files");
+    // first round is warm up
+    for (int i = 0; i <= 2; i++) {
+      long legacy = bench.measure(false);
+      long compact = bench.measure(true);
+      if (i > 0) {
+        System.out.println("round " + i + ": former layout " + legacy / requests
+                           + " bytes/request, PartialFileRequest " + compact / requests
+                           + " bytes/request");
+      }
+    }
+  }
+
+  /**
+   * Returns how many bytes of heap the requests built take.
+   */
+  public long measure(boolean compact) {
+    Object[] built = new Object[this.requests];
+    long before = usedHeap();
+    for (int i = 0; i < this.requests; i++) {
+      String path = new StringBuffer("/data/input/file-").append(i % this.files).append(".txt")
+          .toString();
+      String key = "account-" + i;
+      long offset = i * 1024L;
+      if (compact) {
+        PartialFileRequest request = new PartialFileRequest(key, offset, 1024,
+                                                            FileTable.getFile(path));
+        request.setTransactionId(new String("transaction-1"));
+        fill(request.getAttributes(), this.attributes);
+        built[i] = request;
+      } else {
+        LegacyRequest request = new LegacyRequest(key, offset, 1024, new File(path));
+        request.setTransactionId(new String("transaction-1"));
+        fill(request.attributes, this.attributes);
+        built[i] = request;
+      }
+    }
+    long used = usedHeap() - before;
+    if (built[built.length - 1] == null) {
+      // keeps the requests alive until measured
+      throw new IllegalStateException();
+    }
+    return used;
+  }
+
+  private static void fill(Map attributes, int count) {
+    for (int i = 0; i < count; i++) {
+      attributes.put(new String("attribute." + i), new String("value-" + (i % 3)));
+    }
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 4; i++) {
+      System.gc();
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /**
+   * The fields a partial file request used to keep.
+   */
+  private static final class LegacyRequest {
+
+    String transactionId = null;
+
+    String id = Integer.toString(super.hashCode());
+
+    String userKey = "";
+
+    final Map attributes = Collections.synchronizedMap(new HashMap());
+
+    final File file;
+
+    final long offset, length;
+
+    LegacyRequest(String userKey, long offset, long length, File file) {
+      this.offset = offset;
+      this.length = length;
+      this.file = file;
+      this.userKey = userKey;
+      this.id = buildId(this.transactionId, userKey);
+      this.attributes.put(Request.KEY4_ID, this.id);
+      this.attributes.put(Request.KEY4_USERKEY, userKey);
+    }
+
+    void setTransactionId(String id) {
+      this.transactionId = id;
+      this.id = buildId(id, this.userKey);
+      this.attributes.put(Request.KEY4_ID, this.id);
+      this.attributes.put(Request.KEY4_TRANSACTION_ID, id);
+    }
+
+    private static String buildId(String transactionId, String userKey) {
+      String id = "";
+      if (transactionId != null && transactionId.length() > 0) {
+        id += transactionId + Request.COMPOSITE_KEY_DELIMITER;
+      }
+      id += userKey == null ? "" : userKey;
+      return id;
+    }
+  }
+}
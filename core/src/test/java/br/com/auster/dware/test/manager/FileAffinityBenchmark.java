@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.test.manager;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import br.com.auster.dware.manager.FileAffinityReqForwarder;
+import br.com.auster.dware.manager.PriorityQueueReqForwarder;
+import br.com.auster.dware.manager.ReqForwarderInterface;
+import br.com.auster.dware.request.file.PartialFileRequest;
+
+/**
+ * Counts how many times the graphs open and seek their input files when the
+ * requests come from <code>PriorityQueueReqForwarder</code> and when they
+ * come from <code>FileAffinityReqForwarder</code>, with graph groups that give
+ * each request to the graph that last read its file.
+ * 
+ * <p>
+ * Each graph keeps its open files the way <code>PartialInputFromFileList</code>
+ * does: a file is opened again when it is not in the cache or the request is
+ * behind the position read, and it is seeked when the request is ahead of it.
+ * Each graph group takes as many requests as it has graphs, as if all of them
+ * had just finished.
+ * </p>
+ * 
+ * <p>
+ * This is not a unit test. Run it with:
+ * <code>FileAffinityBenchmark [files] [pieces per file] [groups] [graphs per group] [file-cache-size]</code>
+ * </p>
+ * 
+ * @version $Id$
+ */
+public class FileAffinityBenchmark {
+
+  private static final long PIECE = 4096;
+
+  private final TestPriorityQueueReqFwd helper = new TestPriorityQueueReqFwd("benchmark");
+
+  private final int files, pieces, groups, graphs, cacheSize;
+
+  public FileAffinityBenchmark(int files, int pieces, int groups, int graphs, int cacheSize) {
+    this.files = files;
+    this.pieces = pieces;
+    this.groups = groups;
+    this.graphs = graphs;
+    this.cacheSize = cacheSize;
+  }
+
+  public static void main(String[] args) throws Exception {
+    int files = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+    int pieces = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+    int groups = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+    int graphs = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+    int cacheSize = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+
+    FileAffinityBenchmark bench = new FileAffinityBenchmark(files, pieces, groups, graphs,
+                                                            cacheSize);
+    System.out.println(files + " files of " + pieces + " pieces, " + groups + " groups of "
+                       + graphs + " graphs, file-cache-size " + cacheSize);
+    bench.report("PriorityQueueReqForwarder", bench.run(false));
+    bench.report("FileAffinityReqForwarder", bench.run(true));
+  }
+
+  private void report(String name, long[] counts) {
+    double requests = (double) this.files * this.pieces;
+    System.out.println(name + ": " + format(counts[0] / requests) + " opens/request, "
+                       + format(counts[1] / requests) + " seeks/request");
+  }
+
+  private static String format(double value) {
+    return Double.toString(Math.round(value * 10000) / 10000.0);
+  }
+
+  /**
+   * Returns the opens and seeks of all graphs.
+   */
+  public long[] run(boolean affinity) throws InterruptedException {
+    final ReqForwarderInterface fwd;
+    if (affinity) {
+      FileAffinityReqForwarder affinityFwd = new FileAffinityReqForwarder(
+          this.helper.new DummyDataAwareManagerMediator());
+      affinityFwd.setFilesPerGroup(this.graphs * this.cacheSize);
+      fwd = affinityFwd;
+    } else {
+      fwd = new PriorityQueueReqForwarder(this.helper.new DummyDataAwareManagerMediator());
+    }
+    // the builder reads one file after the other
+    for (int f = 0; f < this.files; f++) {
+      File file = new File("input-" + f + ".txt");
+      for (int i = 0; i < this.pieces; i++) {
+        fwd.addNewReq(new PartialFileRequest(i * PIECE, PIECE, file));
+      }
+    }
+
+    Group[] running = new Group[this.groups];
+    for (int i = 0; i < running.length; i++) {
+      running[i] = new Group(fwd, affinity);
+      running[i].start();
+    }
+    long[] counts = new long[2];
+    for (int i = 0; i < running.length; i++) {
+      running[i].join();
+      for (int j = 0; j < running[i].readers.length; j++) {
+        counts[0] += running[i].readers[j].opens;
+        counts[1] += running[i].readers[j].seeks;
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * A graph group that takes one request for each of its graphs at a time.
+   */
+  private final class Group extends Thread {
+
+    private final ReqForwarderInterface fwd;
+
+    private final boolean affinity;
+
+    private final Reader[] readers = new Reader[graphs];
+
+    Group(ReqForwarderInterface fwd, boolean affinity) {
+      this.fwd = fwd;
+      this.affinity = affinity;
+      for (int i = 0; i < this.readers.length; i++) {
+        this.readers[i] = new Reader();
+      }
+    }
+
+    public void run() {
+      PartialFileRequest[] batch = new PartialFileRequest[this.readers.length];
+      boolean empty = false;
+      while (!empty) {
+        int taken = 0;
+        try {
+          while (taken < batch.length) {
+            batch[taken] = (PartialFileRequest) this.fwd.chooseNextRequest(-1);
+            taken++;
+          }
+        } catch (NoSuchElementException e) {
+          empty = true;
+        }
+        boolean[] busy = new boolean[this.readers.length];
+        for (int i = 0; i < taken; i++) {
+          int graph = -1;
+          if (this.affinity) {
+            for (int j = 0; j < this.readers.length && graph < 0; j++) {
+              if (!busy[j] && batch[i].getFile().equals(this.readers[j].last)) {
+                graph = j;
+              }
+            }
+          }
+          for (int j = 0; j < this.readers.length && graph < 0; j++) {
+            if (!busy[j]) {
+              graph = j;
+            }
+          }
+          busy[graph] = true;
+          this.readers[graph].read(batch[i]);
+        }
+        Thread.yield();
+      }
+    }
+  }
+
+  /**
+   * The open files of one graph.
+   */
+  private final class Reader {
+
+    // Map<File,long[]> - the position of each open file, the least used first
+    private final Map positions = new LinkedHashMap(16, 0.75f, true);
+
+    private File last;
+
+    private long opens = 0, seeks = 0;
+
+    void read(PartialFileRequest request) {
+      long[] position = (long[]) this.positions.get(request.getFile());
+      if (position == null || request.getOffset() < position[0]) {
+        if (position == null && this.positions.size() >= cacheSize) {
+          Iterator eldest = this.positions.keySet().iterator();
+          eldest.next();
+          eldest.remove();
+        }
+        position = new long[1];
+        this.positions.put(request.getFile(), position);
+        this.opens++;
+      }
+      if (position[0] < request.getOffset()) {
+        this.seeks++;
+      }
+      position[0] = request.getOffset() + request.getLength();
+      this.last = request.getFile();
+    }
+  }
+}
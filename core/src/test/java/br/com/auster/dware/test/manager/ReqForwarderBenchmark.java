@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.test.manager;
+
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+import br.com.auster.dware.manager.ConcurrentPriorityQueueReqForwarder;
+import br.com.auster.dware.manager.GroupSignal;
+import br.com.auster.dware.manager.PriorityQueueReqForwarder;
+import br.com.auster.dware.manager.ReqForwarderInterface;
+
+/**
+ * Compares the throughput of <code>PriorityQueueReqForwarder</code> and
+ * <code>ConcurrentPriorityQueueReqForwarder</code> with several producer
+ * threads adding requests and several consumer threads taking them, the
+ * consumers waiting the same way graph groups do when the queue is empty.
+ * 
+ * <p>
+ * This is not a unit test. Run it with:
+ * <code>ReqForwarderBenchmark [producers] [consumers] [requests] [rounds]</code>
+ * </p>
+ * 
+ * @version $Id$
+ */
+public class ReqForwarderBenchmark {
+
+  private static final int MAX_WEIGHT = 10000;
+
+  private final TestPriorityQueueReqFwd helper = new TestPriorityQueueReqFwd("benchmark");
+
+  private final int producers, consumers, requests;
+
+  public ReqForwarderBenchmark(int producers, int consumers, int requests) {
+    this.producers = producers;
+    this.consumers = consumers;
+    this.requests = requests;
+  }
+
+  public static void main(String[] args) throws Exception {
+    int producers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+    int consumers = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+    int requests = args.length > 2 ? Integer.parseInt(args[2]) : 200000;
+    int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+    ReqForwarderBenchmark bench = new ReqForwarderBenchmark(producers, consumers, requests);
+    System.out.println(producers + " producers, " + consumers + " consumers, " + requests
+                       + " requests per round");
+    // first round of each one is warm up
+    for (int i = 0; i <= rounds; i++) {
+      long locked = bench.run(false);
+      long concurrent = bench.run(true);
+      if (i > 0) {
+        System.out.println("round " + i + ": PriorityQueueReqForwarder " + rate(requests, locked)
+                           + " req/s, ConcurrentPriorityQueueReqForwarder "
+                           + rate(requests, concurrent) + " req/s");
+      }
+    }
+  }
+
+  private static long rate(int requests, long nanos) {
+    return Math.round(requests / (nanos / 1e9));
+  }
+
+  /**
+   * Runs one round and returns how long it took, in nanoseconds.
+   */
+  public long run(boolean concurrent) throws InterruptedException {
+    final ReqForwarderInterface fwd;
+    if (concurrent) {
+      fwd = new ConcurrentPriorityQueueReqForwarder(this.helper.new DummyDataAwareManagerMediator());
+    } else {
+      fwd = new PriorityQueueReqForwarder(this.helper.new DummyDataAwareManagerMediator());
+    }
+    final AtomicInteger taken = new AtomicInteger();
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(this.producers + this.consumers);
+
+    for (int i = 0; i < this.producers; i++) {
+      final int count = this.requests / this.producers + (i < this.requests % this.producers ? 1 : 0);
+      final Random rand = new Random(i);
+      new Thread(new Runnable() {
+        public void run() {
+          try {
+            start.await();
+            for (int j = 0; j < count; j++) {
+              fwd.addNewReq(helper.new TestRequest(1 + rand.nextInt(MAX_WEIGHT)));
+            }
+          } catch (InterruptedException e) {
+          } finally {
+            done.countDown();
+          }
+        }
+      }).start();
+    }
+
+    for (int i = 0; i < this.consumers; i++) {
+      final Random rand = new Random(-i);
+      final Lock lock;
+      final Condition notEmpty;
+      final GroupSignal signal;
+      if (concurrent) {
+        signal = ((ConcurrentPriorityQueueReqForwarder) fwd).registerGroup("consumer-" + i);
+        lock = signal.getLock();
+        notEmpty = signal.getQueueNotEmptyCondition();
+      } else {
+        signal = null;
+        lock = fwd.getSyncObj();
+        notEmpty = fwd.getQueueNotEmptyCondition();
+      }
+      new Thread(new Runnable() {
+        public void run() {
+          try {
+            start.await();
+            while (taken.get() < requests) {
+              lock.lock();
+              try {
+                fwd.chooseNextRequest(rand.nextInt(MAX_WEIGHT));
+                taken.incrementAndGet();
+              } catch (NoSuchElementException e) {
+                // the timeout lets consumers leave when the round is over
+                if (signal == null) {
+                  notEmpty.await(10, TimeUnit.MILLISECONDS);
+                } else if (signal.park()) {
+                  try {
+                    notEmpty.await(10, TimeUnit.MILLISECONDS);
+                  } finally {
+                    signal.unpark();
+                  }
+                }
+              } finally {
+                lock.unlock();
+              }
+            }
+          } catch (InterruptedException e) {
+          } finally {
+            done.countDown();
+          }
+        }
+      }).start();
+    }
+
+    long begin = System.nanoTime();
+    start.countDown();
+    done.await();
+    return System.nanoTime() - begin;
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.test.manager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import br.com.auster.dware.graph.Request;
+import br.com.auster.dware.manager.AdmissionControl;
+
+/**
+ * This class handles all unit tests over class <code>
+ * br.com.auster.dware.manager.AdmissionControl</code>.
+ * 
+ * @version $Id$
+ */
+public class TestAdmissionControl extends TestCase {
+
+  /**
+   * Constructor
+   * 
+   * @param method
+   *          test method name.
+   */
+  public TestAdmissionControl(String method) {
+    super(method);
+  }
+
+  private static List<Request> requests(long[] weights) {
+    List<Request> list = new ArrayList<Request>();
+    for (int i = 0; i < weights.length; i++) {
+      list.add(new WeightedRequest("r" + i, weights[i]));
+    }
+    return list;
+  }
+
+  /**
+   * Without limits everything is admitted at once.
+   */
+  public void testUnbounded() throws InterruptedException {
+    AdmissionControl admission = new AdmissionControl();
+    List<Request> reqs = requests(new long[] { 10, 20, 30 });
+    Assert.assertEquals(3, admission.admit(reqs, 0, 0));
+    Assert.assertEquals(2, admission.admit(reqs, 1, 0));
+    Assert.assertFalse(admission.isBounded());
+  }
+
+  /**
+   * A batch is admitted in slices that fit the limits.
+   */
+  public void testSlices() throws InterruptedException {
+    AdmissionControl admission = new AdmissionControl(3, 100, 0);
+    List<Request> reqs = requests(new long[] { 10, 20, 30, 40, 50 });
+    int count = admission.admit(reqs, 0, 0);
+    Assert.assertEquals(3, count);
+    admission.queued(reqs.subList(0, count));
+    admission.release(reqs, 0, count);
+    Assert.assertEquals(3, admission.getQueuedRequests());
+    Assert.assertEquals(60, admission.getQueuedWeight());
+
+    // full by count
+    Assert.assertEquals(0, admission.admit(reqs, 3, 0));
+    Assert.assertEquals(1, admission.getThrottledEnqueues());
+
+    // 40 fits in the weight, but 50 does not
+    admission.dequeued(reqs.get(0));
+    admission.dequeued(reqs.get(1));
+    Assert.assertEquals(1, admission.admit(reqs, 3, 0));
+  }
+
+  /**
+   * A request heavier than the limit gets in when the queue is empty.
+   */
+  public void testHeavyRequest() throws InterruptedException {
+    AdmissionControl admission = new AdmissionControl(0, 100, 0);
+    List<Request> reqs = requests(new long[] { 500, 1 });
+    Assert.assertEquals(1, admission.admit(reqs, 0, 0));
+    admission.queued(reqs.get(0));
+    admission.release(reqs, 0, 1);
+    Assert.assertEquals(0, admission.admit(reqs, 1, 0));
+    admission.dequeued(reqs.get(0));
+    Assert.assertEquals(1, admission.admit(reqs, 1, 0));
+  }
+
+  /**
+   * A producer waiting for room goes on when a request leaves the queue, and
+   * gives up after the timeout.
+   */
+  public void testWaitForRoom() throws Exception {
+    final AdmissionControl admission = new AdmissionControl(1, 0, 0);
+    final List<Request> reqs = requests(new long[] { 1, 1 });
+    admission.queued(reqs.get(0));
+
+    long start = System.nanoTime();
+    Assert.assertEquals(0, admission.admit(reqs, 1, 50000000L));
+    Assert.assertTrue(System.nanoTime() - start >= 50000000L);
+
+    Thread consumer = new Thread() {
+      public void run() {
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException e) {
+          // goes on
+        }
+        admission.dequeued(reqs.get(0));
+      }
+    };
+    consumer.start();
+    Assert.assertEquals(1, admission.admit(reqs, 1, -1));
+    consumer.join();
+    Assert.assertEquals(2, admission.getThrottledEnqueues());
+  }
+
+  /**
+   * Producers woken together share the room left, instead of all of them
+   * taking it, and the room of a request the queue did not keep is given
+   * back.
+   */
+  public void testProducersWokenTogether() throws Exception {
+    final AdmissionControl admission = new AdmissionControl(2, 0, 0);
+    final List<Request> queued = requests(new long[] { 1, 1 });
+    admission.queued(queued);
+
+    final int[] admitted = new int[1];
+    Thread[] producers = new Thread[4];
+    for (int i = 0; i < producers.length; i++) {
+      final List<Request> reqs = requests(new long[] { 1 });
+      producers[i] = new Thread() {
+        public void run() {
+          try {
+            if (admission.admit(reqs, 0, 5000000000L) == 1) {
+              synchronized (admitted) {
+                admitted[0]++;
+                admitted.notifyAll();
+              }
+            }
+          } catch (InterruptedException e) {
+            // gives up
+          }
+        }
+      };
+      producers[i].start();
+    }
+    Thread.sleep(100);
+    admission.dequeued(queued.get(0));
+    admission.dequeued(queued.get(1));
+    Thread.sleep(200);
+    synchronized (admitted) {
+      Assert.assertEquals(2, admitted[0]);
+    }
+
+    // the queue dropped both as duplicates: the others get their room
+    admission.release(requests(new long[] { 1 }), 0, 1);
+    admission.release(requests(new long[] { 1 }), 0, 1);
+    for (int i = 0; i < producers.length; i++) {
+      producers[i].join(5000);
+    }
+    Assert.assertEquals(4, admitted[0]);
+    Assert.assertEquals(0, admission.getQueuedRequests());
+  }
+
+  private static class WeightedRequest extends Request {
+
+    private final long weight;
+
+    WeightedRequest(String id, long weight) {
+      this.setTransactionId("t");
+      this.setUserKey(id);
+      this.weight = weight;
+    }
+
+    public long getWeight() {
+      return this.weight;
+    }
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.test.manager;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import br.com.auster.dware.graph.Request;
+import br.com.auster.dware.manager.FairShareReqForwarder;
+
+/**
+ * This class handles all unit tests over class <code>
+ * br.com.auster.dware.manager.FairShareReqForwarder</code>.
+ * 
+ * @version $Id$
+ */
+public class TestFairShareReqFwd extends TestCase {
+
+  private Document doc;
+
+  /**
+   * Constructor
+   * 
+   * @param method
+   *          test method name.
+   */
+  public TestFairShareReqFwd(String method) {
+    super(method);
+  }
+
+  protected void setUp() throws Exception {
+    this.doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+  }
+
+  private Element rule(Element config, String pattern, int share, int priority) {
+    Element rule = this.doc.createElement(FairShareReqForwarder.TRANSACTION_ELEMENT);
+    rule.setAttribute(FairShareReqForwarder.PATTERN_ATTR, pattern);
+    rule.setAttribute(FairShareReqForwarder.SHARE_ATTR, Integer.toString(share));
+    rule.setAttribute(FairShareReqForwarder.PRIORITY_ATTR, Integer.toString(priority));
+    config.appendChild(rule);
+    return config;
+  }
+
+  private static void add(FairShareReqForwarder fwd, String transactionId, int count) {
+    for (int i = 0; i < count; i++) {
+      fwd.addNewReq(new TxRequest(transactionId, transactionId + i, 10));
+    }
+  }
+
+  private static int countOf(FairShareReqForwarder fwd, String transactionId, int picks) {
+    int count = 0;
+    for (int i = 0; i < picks; i++) {
+      if (transactionId.equals(fwd.chooseNextRequest(100).getTransactionId())) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * A small transaction enqueued after a big one is not starved.
+   */
+  public void testEqualShares() {
+    FairShareReqForwarder fwd = new FairShareReqForwarder(null);
+    fwd.configure(this.doc.createElement("request-forwarder"));
+    add(fwd, "big", 100);
+    add(fwd, "small", 5);
+    Assert.assertEquals(105, fwd.size());
+    Assert.assertEquals(5, countOf(fwd, "small", 10));
+    Assert.assertEquals(95, fwd.size());
+  }
+
+  /**
+   * Transactions get requests in proportion to their shares.
+   */
+  public void testShares() {
+    FairShareReqForwarder fwd = new FairShareReqForwarder(null);
+    fwd.configure(this.rule(this.doc.createElement("request-forwarder"), "A.*", 3, 0));
+    add(fwd, "A1", 50);
+    add(fwd, "B1", 50);
+    Assert.assertEquals(30, countOf(fwd, "A1", 40));
+  }
+
+  /**
+   * A higher class goes first, unless the others waited for too long.
+   */
+  public void testPriorityAndAging() throws InterruptedException {
+    FairShareReqForwarder fwd = new FairShareReqForwarder(null);
+    fwd.configure(this.rule(this.doc.createElement("request-forwarder"), "urgent", 1, 1));
+    add(fwd, "batch", 5);
+    add(fwd, "urgent", 5);
+    Assert.assertEquals(5, countOf(fwd, "urgent", 5));
+    Assert.assertEquals("batch", fwd.chooseNextRequest(100).getTransactionId());
+
+    Element config = this.rule(this.doc.createElement("request-forwarder"), "urgent", 1, 1);
+    config.setAttribute(FairShareReqForwarder.AGING_ATTR, "20");
+    fwd = new FairShareReqForwarder(null);
+    fwd.configure(config);
+    add(fwd, "batch", 5);
+    Thread.sleep(50);
+    add(fwd, "urgent", 5);
+    Assert.assertEquals("batch", fwd.chooseNextRequest(100).getTransactionId());
+  }
+
+  /**
+   * Throughput and estimated time are kept for the queued transactions.
+   */
+  public void testStats() {
+    FairShareReqForwarder fwd = new FairShareReqForwarder(null);
+    fwd.configure(null);
+    add(fwd, "t", 4);
+    fwd.chooseNextRequest(100);
+    Assert.assertTrue(fwd.getTransactionThroughput("t") > 0);
+    Assert.assertTrue(fwd.getTransactionEta("t") >= 0);
+    Assert.assertEquals(1, fwd.getTransactionStats().size());
+    Assert.assertEquals(0, fwd.getTransactionEta("none"));
+  }
+
+  private static class TxRequest extends Request {
+
+    private final long weight;
+
+    TxRequest(String transactionId, String key, long weight) {
+      this.setTransactionId(transactionId);
+      this.setUserKey(key);
+      this.weight = weight;
+    }
+
+    public long getWeight() {
+      return this.weight;
+    }
+  }
+}
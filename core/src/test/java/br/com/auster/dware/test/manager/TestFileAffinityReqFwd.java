@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.test.manager;
+
+import java.io.File;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.w3c.dom.Element;
+
+import br.com.auster.dware.graph.Request;
+import br.com.auster.dware.manager.FileAffinityReqForwarder;
+import br.com.auster.dware.request.file.PartialFileRequest;
+
+/**
+ * This class handles all unit tests over class <code>
+ * br.com.auster.dware.manager.FileAffinityReqForwarder</code>.
+ * 
+ * @version $Id$
+ */
+public class TestFileAffinityReqFwd extends TestCase {
+
+  private static final long PIECE = 100;
+
+  private final File fileA = new File("affinity-a.txt");
+
+  private final File fileB = new File("affinity-b.txt");
+
+  // each executor is one graph group, since groups are known by their threads
+  private ExecutorService groupA, groupB;
+
+  /**
+   * Constructor
+   * 
+   * @param method
+   *          test method name.
+   */
+  public TestFileAffinityReqFwd(String method) {
+    super(method);
+  }
+
+  protected void setUp() throws Exception {
+    this.groupA = Executors.newSingleThreadExecutor();
+    this.groupB = Executors.newSingleThreadExecutor();
+  }
+
+  protected void tearDown() throws Exception {
+    this.groupA.shutdownNow();
+    this.groupB.shutdownNow();
+  }
+
+  private FileAffinityReqForwarder newForwarder(int filesPerGroup) throws Exception {
+    FileAffinityReqForwarder fwd = new FileAffinityReqForwarder(new TestPriorityQueueReqFwd(
+        "affinity").new DummyDataAwareManagerMediator());
+    Element config = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument()
+        .createElement("request-forwarder");
+    config.setAttribute(FileAffinityReqForwarder.FILES_PER_GROUP_ATTR,
+                        Integer.toString(filesPerGroup));
+    fwd.configure(config);
+    return fwd;
+  }
+
+  /*
+   * Adds the pieces of both files interleaved, the last ones first.
+   */
+  private void addPieces(FileAffinityReqForwarder fwd, int pieces) {
+    for (int i = pieces - 1; i >= 0; i--) {
+      fwd.addNewReq(new PartialFileRequest(i * PIECE, PIECE, this.fileA));
+      fwd.addNewReq(new PartialFileRequest(i * PIECE, PIECE, this.fileB));
+    }
+  }
+
+  private static PartialFileRequest take(ExecutorService group,
+                                         final FileAffinityReqForwarder fwd) throws Exception {
+    return (PartialFileRequest) group.submit(new Callable() {
+      public Object call() {
+        return fwd.chooseNextRequest(-1);
+      }
+    }).get();
+  }
+
+  /**
+   * A group reads a whole file in ascending offsets before going to the next.
+   */
+  public void testSequentialReads() throws Exception {
+    FileAffinityReqForwarder fwd = this.newForwarder(1);
+    this.addPieces(fwd, 5);
+    Assert.assertEquals(10, fwd.size());
+
+    File first = null;
+    for (int i = 0; i < 10; i++) {
+      PartialFileRequest req = take(this.groupA, fwd);
+      if (i == 0) {
+        first = req.getFile();
+      } else if (i == 5) {
+        Assert.assertNotSame(first, req.getFile());
+      }
+      Assert.assertEquals((i % 5) * PIECE, req.getOffset());
+    }
+    Assert.assertEquals(0, fwd.size());
+    Assert.assertEquals(8, fwd.getSequentialPicks());
+    Assert.assertEquals(2, fwd.getClaimedPicks());
+  }
+
+  /**
+   * Two groups read different files.
+   */
+  public void testGroupsKeepTheirFiles() throws Exception {
+    FileAffinityReqForwarder fwd = this.newForwarder(1);
+    this.addPieces(fwd, 4);
+
+    File fileOfA = take(this.groupA, fwd).getFile();
+    File fileOfB = take(this.groupB, fwd).getFile();
+    Assert.assertFalse(fileOfA.equals(fileOfB));
+    for (int i = 1; i < 4; i++) {
+      PartialFileRequest reqA = take(this.groupA, fwd);
+      PartialFileRequest reqB = take(this.groupB, fwd);
+      Assert.assertEquals(fileOfA, reqA.getFile());
+      Assert.assertEquals(fileOfB, reqB.getFile());
+      Assert.assertEquals(i * PIECE, reqA.getOffset());
+      Assert.assertEquals(i * PIECE, reqB.getOffset());
+    }
+    Assert.assertEquals(0, fwd.getStolenPicks());
+  }
+
+  /**
+   * A group with nothing else to do reads the second half of a file another
+   * group is reading, and both go on in ascending offsets.
+   */
+  public void testStealing() throws Exception {
+    FileAffinityReqForwarder fwd = this.newForwarder(1);
+    for (int i = 0; i < 10; i++) {
+      fwd.addNewReq(new PartialFileRequest(i * PIECE, PIECE, this.fileA));
+    }
+
+    Assert.assertEquals(0, take(this.groupA, fwd).getOffset());
+    Assert.assertEquals(5 * PIECE, take(this.groupB, fwd).getOffset());
+    Assert.assertEquals(1, fwd.getStolenPicks());
+    Assert.assertEquals(1 * PIECE, take(this.groupA, fwd).getOffset());
+    Assert.assertEquals(6 * PIECE, take(this.groupB, fwd).getOffset());
+  }
+
+  /**
+   * Requests that fit the weight asked for are preferred, and requests that do
+   * not read from files are also given.
+   */
+  public void testWeightAndOthers() throws Exception {
+    FileAffinityReqForwarder fwd = this.newForwarder(1);
+    TestPriorityQueueReqFwd helper = new TestPriorityQueueReqFwd("affinity");
+    fwd.addNewReq(new PartialFileRequest(0, 500, this.fileA));
+    Request light = helper.new TestRequest(10);
+    fwd.addNewReq(light);
+
+    Assert.assertSame(light, fwd.chooseNextRequest(50));
+    Assert.assertEquals(1, fwd.getOtherPicks());
+    // nothing fits, but it is given anyway
+    Assert.assertEquals(500, fwd.chooseNextRequest(50).getWeight());
+    try {
+      fwd.chooseNextRequest(-1);
+      Assert.fail("the queue should be empty");
+    } catch (NoSuchElementException e) {
+      // expected
+    }
+  }
+}
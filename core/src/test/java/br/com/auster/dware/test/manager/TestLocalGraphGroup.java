@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.test.manager;
+
+import java.io.ByteArrayInputStream;
+import java.util.Date;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.w3c.dom.Element;
+
+import br.com.auster.dware.graph.Graph;
+import br.com.auster.dware.graph.Request;
+import br.com.auster.dware.graph.ThreadedFilter;
+import br.com.auster.dware.manager.DataAwareManagerMediator;
+import br.com.auster.dware.manager.DataAwareManagerWishMediator;
+import br.com.auster.dware.manager.GraphManager;
+import br.com.auster.dware.manager.PriorityQueueReqForwarder;
+import br.com.auster.dware.manager.PriorityQueueWishGraphGroup;
+
+/**
+ * This class handles all unit tests over class <code>
+ * br.com.auster.dware.manager.LocalGraphGroup</code>.
+ * 
+ * @version $Id$
+ */
+public class TestLocalGraphGroup extends TestCase {
+
+  private static final int REQUESTS = 300;
+
+  /**
+   * Constructor
+   * 
+   * @param method
+   *          test method name.
+   */
+  public TestLocalGraphGroup(String method) {
+    super(method);
+  }
+
+  /**
+   * Takes a little while to process each request.
+   */
+  public static class SlowFilter extends ThreadedFilter {
+
+    public SlowFilter(String name) {
+      super(name);
+    }
+
+    public void process() {
+      try {
+        Thread.sleep(20);
+      } catch (InterruptedException e) {
+        // done anyway
+      }
+    }
+  }
+
+  /**
+   * Reconfiguring the graphs while they process requests must leave only
+   * graphs of the new configuration in the free graph stack.
+   */
+  public void testReconfigureUnderLoad() throws Exception {
+    final CountingGroup group = createGroup();
+    Thread feeder = new Thread() {
+      public void run() {
+        for (int i = 0; i < REQUESTS; i++) {
+          group.submit(new SimpleRequest(i));
+        }
+      }
+    };
+    feeder.start();
+    for (int i = 0; i < 30 && feeder.isAlive(); i++) {
+      group.configureGraph(graphConfig());
+      Thread.sleep(5);
+    }
+    feeder.join(30000);
+    Assert.assertFalse(feeder.isAlive());
+
+    group.awaitFinished(REQUESTS, 30000);
+    Assert.assertEquals(group.getGraphCount(), group.getFreeGraphCount());
+    Assert.assertTrue(group.getGraphCount() <= 4);
+    group.shutdownAll();
+  }
+
+  /**
+   * Shutting down the graphs waits for the requests in flight, which must be
+   * able to finish meanwhile.
+   */
+  public void testShutdownWhileProcessing() throws Exception {
+    final CountingGroup group = createGroup();
+    for (int i = 0; i < 4; i++) {
+      group.submit(new SimpleRequest(i));
+    }
+    Thread closer = new Thread() {
+      public void run() {
+        group.shutdownAll();
+      }
+    };
+    closer.start();
+    closer.join(30000);
+    Assert.assertFalse(closer.isAlive());
+    group.awaitFinished(4, 1000);
+    Assert.assertEquals(0, group.getGraphCount());
+  }
+
+  private static CountingGroup createGroup() throws Exception {
+    DataAwareManagerWishMediator mediator = new DataAwareManagerWishMediator();
+    mediator.registerGraphManager(new GraphManager());
+    new PriorityQueueReqForwarder(mediator);
+    CountingGroup group = new CountingGroup(mediator, parse("<group max-graphs='4' max-weight='100'/>"),
+                                            graphConfig());
+    mediator.registerGraphGroup(group);
+    return group;
+  }
+
+  private static Element graphConfig() throws Exception {
+    return parse("<graph-design><filter name='slow' class-name='" + SlowFilter.class.getName()
+                 + "'/></graph-design>");
+  }
+
+  private static Element parse(String xml) throws Exception {
+    return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+        .parse(new ByteArrayInputStream(xml.getBytes())).getDocumentElement();
+  }
+
+  /*
+   * Gives the requests straight to the group, counting how many finished.
+   */
+  private static class CountingGroup extends PriorityQueueWishGraphGroup {
+
+    private int finished = 0;
+
+    CountingGroup(DataAwareManagerMediator mediator, Element config, Element graphConfig)
+        throws Exception {
+      super("group", mediator, config, graphConfig);
+    }
+
+    void submit(Request request) {
+      this.fmediator.reqQueued(request);
+      this.process(request);
+    }
+
+    void shutdownAll() {
+      this.shutdownGraphs();
+    }
+
+    public void graphFinished(Graph graph, Request request, Throwable error, Date time) {
+      super.graphFinished(graph, request, error, time);
+      synchronized (this) {
+        this.finished++;
+        this.notifyAll();
+      }
+    }
+
+    synchronized void awaitFinished(int count, long timeout) throws InterruptedException {
+      long end = System.currentTimeMillis() + timeout;
+      while (this.finished < count && System.currentTimeMillis() < end) {
+        this.wait(end - System.currentTimeMillis());
+      }
+      Assert.assertEquals(count, this.finished);
+    }
+  }
+
+  private static class SimpleRequest extends Request {
+
+    SimpleRequest(int key) {
+      this.setTransactionId("t");
+      this.setUserKey(Integer.toString(key));
+    }
+
+    public long getWeight() {
+      return 1;
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.test.manager;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import br.com.auster.dware.graph.Request;
+import br.com.auster.dware.manager.OnlineCostEstimator;
+
+/**
+ * This class handles all unit tests over class <code>
+ * br.com.auster.dware.manager.OnlineCostEstimator</code>.
+ * 
+ * @version $Id$
+ */
+public class TestOnlineCostEstimator extends TestCase {
+
+  /**
+   * Constructor
+   * 
+   * @param method
+   *          test method name.
+   */
+  public TestOnlineCostEstimator(String method) {
+    super(method);
+  }
+
+  private static Request request(String id, long weight, String layout) {
+    Request req = new WeightedRequest(id, weight);
+    req.getAttributes().put("layout", layout);
+    return req;
+  }
+
+  /**
+   * Requests cost their weight until their class was seen enough times.
+   */
+  public void testNoSamples() {
+    OnlineCostEstimator estimator = new OnlineCostEstimator();
+    Request req = request("r", 100, "a");
+    Assert.assertEquals(100, estimator.estimate(req));
+    Assert.assertEquals(100, req.getCost());
+    req.setCost(estimator.estimate(req));
+    Assert.assertEquals(100, req.getCost());
+  }
+
+  /**
+   * A class of requests slower per unit of weight costs more than its weight,
+   * and a faster one costs less.
+   */
+  public void testClasses() {
+    OnlineCostEstimator estimator = new OnlineCostEstimator();
+    estimator.setAttributes(new String[] { "layout" });
+    for (int i = 0; i < 10; i++) {
+      // "slow" takes 3 ms per unit, "fast" takes 1 ms per unit
+      estimator.observe(request("s" + i, 100, "slow"), "g1", 300);
+      estimator.observe(request("f" + i, 100, "fast"), "g2", 100);
+    }
+    long slow = estimator.estimate(request("s", 100, "slow"));
+    long fast = estimator.estimate(request("f", 100, "fast"));
+    Assert.assertTrue(slow > 100);
+    Assert.assertTrue(fast < 100);
+    Assert.assertEquals(3.0, (double) slow / fast, 0.1);
+    Assert.assertEquals(3.0, estimator.getClassRate(estimator.classOf(request("s", 100, "slow"))), 0.01);
+    Assert.assertEquals(1.0, estimator.getClassRate(estimator.classOf(request("f", 100, "fast"))), 0.01);
+    // an unknown class costs its weight
+    Assert.assertEquals(100, estimator.estimate(request("o", 100, "other")));
+  }
+
+  /**
+   * The rates follow changes in the processing times.
+   */
+  public void testAdapts() {
+    OnlineCostEstimator estimator = new OnlineCostEstimator();
+    estimator.setAttributes(new String[] { "layout" });
+    for (int i = 0; i < 10; i++) {
+      estimator.observe(request("a" + i, 10, "a"), "g", 10);
+      estimator.observe(request("b" + i, 10, "b"), "g", 10);
+    }
+    Assert.assertEquals(10, estimator.estimate(request("a", 10, "a")));
+    // "a" becomes four times slower
+    for (int i = 0; i < 30; i++) {
+      estimator.observe(request("a" + i, 10, "a"), "g", 40);
+      estimator.observe(request("b" + i, 10, "b"), "g", 10);
+    }
+    Assert.assertTrue(estimator.estimate(request("a", 10, "a")) > 10);
+    Assert.assertTrue(estimator.estimate(request("b", 10, "b")) < 10);
+  }
+
+  private static class WeightedRequest extends Request {
+
+    private final long weight;
+
+    WeightedRequest(String id, long weight) {
+      this.setTransactionId("t");
+      this.setUserKey(id);
+      this.weight = weight;
+    }
+
+    public long getWeight() {
+      return this.weight;
+    }
+  }
+}
@@ -18,20 +18,27 @@
 package br.com.auster.dware.test.manager;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.Assert;
 import junit.framework.TestCase;
 import net.sourceforge.groboutils.junit.v1.MultiThreadedTestRunner;
 import net.sourceforge.groboutils.junit.v1.TestRunnable;
 import br.com.auster.dware.graph.Request;
+import br.com.auster.dware.manager.ConcurrentPriorityQueueReqForwarder;
 import br.com.auster.dware.manager.DataAwareManagerMediator;
+import br.com.auster.dware.manager.FairShareReqForwarder;
 import br.com.auster.dware.manager.GraphGroup;
 import br.com.auster.dware.manager.GraphManager;
+import br.com.auster.dware.manager.GroupSignal;
 import br.com.auster.dware.manager.PriorityQueueReqForwarder;
 import br.com.auster.dware.manager.ReqForwarderInterface;
+import br.com.auster.dware.manager.WorkStealingReqForwarder;
 import br.com.auster.dware.manager.checkpoint.AbstractCheckpoint;
 import br.com.auster.dware.monitor.manager.JMXGraphGroupCounter;
 
@@ -140,6 +147,31 @@ public class TestPriorityQueueReqFwd extends TestCase {
     Assert.assertEquals(reqs.size(), 0);
   }
 
+  /**
+   * Verifies if all requests added in a batch are returned.
+   */
+  public void testAddNewReqs() {
+    DataAwareManagerMediator mediator = new DummyDataAwareManagerMediator();
+    PriorityQueueReqForwarder pqrf = new PriorityQueueReqForwarder(mediator);
+    Random rand = new Random(7);
+    ArrayList batch = new ArrayList();
+    for (int i = 0; i < 500; i++) {
+      batch.add(new TestRequest(1 + rand.nextInt(100)));
+    }
+    pqrf.addNewReqs(batch);
+    Assert.assertEquals(500, pqrf.size());
+
+    HashSet reqs = new HashSet(batch);
+    try {
+      for (int i = 0; i < 500; i++) {
+        reqs.remove(pqrf.chooseNextRequest(pqrf.getWishWeight() + 1));
+      }
+    } catch (NoSuchElementException ne) {
+      Assert.fail(ne.getMessage());
+    }
+    Assert.assertEquals(0, reqs.size());
+  }
+
   /**
    * Verifies if the request returned is with weight expected.
    */
@@ -331,6 +363,212 @@ public class TestPriorityQueueReqFwd extends TestCase {
     }
   }
 
+  /**
+   * Verifies if all requests are returned by the concurrent forwarder, after
+   * its bands were recalculated.
+   */
+  public void testConcurrentAllReqReturned() {
+    DataAwareManagerMediator mediator = new DummyDataAwareManagerMediator();
+    ConcurrentPriorityQueueReqForwarder cpqrf = new ConcurrentPriorityQueueReqForwarder(mediator);
+    Random rand = new Random(3);
+    HashSet reqs = new HashSet();
+    for (int i = 0; i < 2000; i++) {
+      TestRequest tr = new TestRequest(1 + rand.nextInt(1000));
+      reqs.add(tr);
+      cpqrf.addNewReq(tr);
+    }
+    Assert.assertEquals(2000, cpqrf.size());
+    try {
+      for (int i = 0; i < 2000; i++) {
+        reqs.remove(cpqrf.chooseNextRequest(rand.nextInt(1000)));
+      }
+    } catch (NoSuchElementException ne) {
+      Assert.fail(ne.getMessage());
+    }
+    Assert.assertEquals(0, reqs.size());
+    Assert.assertEquals(0, cpqrf.size());
+    try {
+      cpqrf.chooseNextRequest(30);
+      Assert.fail("Should throw NoSuchElementException...");
+    } catch (NoSuchElementException ne) {
+      // expected
+    }
+  }
+
+  /**
+   * A graph group must not wait when a request was added while it was
+   * parking, and a parked group must be woken by the next request.
+   */
+  public void testConcurrentGroupSignal() throws Throwable {
+    DataAwareManagerMediator mediator = new DummyDataAwareManagerMediator();
+    final ConcurrentPriorityQueueReqForwarder cpqrf = new ConcurrentPriorityQueueReqForwarder(mediator);
+    final GroupSignal signal = cpqrf.registerGroup("gg");
+
+    cpqrf.addNewReq(new TestRequest(10));
+    signal.getLock().lock();
+    try {
+      Assert.assertFalse(signal.park());
+    } finally {
+      signal.getLock().unlock();
+    }
+    cpqrf.chooseNextRequest(30);
+
+    signal.getLock().lock();
+    try {
+      Assert.assertTrue(signal.park());
+      new Thread() {
+        public void run() {
+          cpqrf.addNewReq(new TestRequest(20));
+        }
+      }.start();
+      Assert.assertTrue(signal.getQueueNotEmptyCondition().await(10, TimeUnit.SECONDS));
+      signal.unpark();
+    } finally {
+      signal.getLock().unlock();
+    }
+    Assert.assertEquals(20, cpqrf.chooseNextRequest(30).getWeight());
+  }
+
+  /**
+   * Requests spread to another graph group's queue must be stolen when the
+   * current group runs out of requests.
+   */
+  public void testWorkStealingAllReqReturned() throws Throwable {
+    DataAwareManagerMediator mediator = new DummyDataAwareManagerMediator();
+    final WorkStealingReqForwarder wsrf = new WorkStealingReqForwarder(mediator);
+    Thread other = new Thread() {
+      public void run() {
+        wsrf.registerGroup("other");
+      }
+    };
+    other.start();
+    other.join();
+    wsrf.registerGroup("current");
+
+    int[] weights = { 10, 5, 3, 19, 2, 34, 22, 9, 11, 29, 16, 30, 13, 7, 21, 27 };
+    ArrayList batch = new ArrayList();
+    for (int i = 0; i < weights.length; i++) {
+      batch.add(new TestRequest(weights[i]));
+    }
+    wsrf.addNewReqs(batch);
+    Assert.assertEquals(weights.length, wsrf.size());
+
+    HashSet reqs = new HashSet(batch);
+    try {
+      for (int i = 0; i < weights.length; i++) {
+        reqs.remove(wsrf.chooseNextRequest(wsrf.getWishWeight()));
+      }
+    } catch (NoSuchElementException ne) {
+      Assert.fail(ne.getMessage());
+    }
+    Assert.assertEquals(0, reqs.size());
+    Assert.assertEquals(0, wsrf.size());
+    try {
+      wsrf.chooseNextRequest(30);
+      Assert.fail("Should throw NoSuchElementException...");
+    } catch (NoSuchElementException ne) {
+      // expected
+    }
+  }
+
+  /**
+   * A group that steals must take the lighter requests of the backlog and
+   * leave the heavier ones to their owner.
+   */
+  public void testWorkStealingLighterStolen() throws Throwable {
+    DataAwareManagerMediator mediator = new DummyDataAwareManagerMediator();
+    final WorkStealingReqForwarder wsrf = new WorkStealingReqForwarder(mediator);
+    Thread other = new Thread() {
+      public void run() {
+        wsrf.registerGroup("other");
+      }
+    };
+    other.start();
+    other.join();
+
+    int[] weights = { 50, 1, 50, 2, 50, 3, 50, 4 };
+    ArrayList batch = new ArrayList();
+    for (int i = 0; i < weights.length; i++) {
+      batch.add(new TestRequest(weights[i]));
+    }
+    // only the other group is registered, so it gets the whole batch
+    wsrf.addNewReqs(batch);
+    wsrf.registerGroup("current");
+
+    for (int i = 1; i <= 4; i++) {
+      Assert.assertEquals(i, wsrf.chooseNextRequest(-1).getWeight());
+    }
+    Assert.assertEquals(50, wsrf.chooseNextRequest(-1).getWeight());
+    Assert.assertEquals(3, wsrf.size());
+  }
+
+  /**
+   * The requests left in the queue of an unregistered group must be taken by
+   * the other groups.
+   */
+  public void testWorkStealingUnregister() throws Throwable {
+    DataAwareManagerMediator mediator = new DummyDataAwareManagerMediator();
+    final WorkStealingReqForwarder wsrf = new WorkStealingReqForwarder(mediator);
+    Thread other = new Thread() {
+      public void run() {
+        wsrf.registerGroup("other");
+      }
+    };
+    other.start();
+    other.join();
+
+    ArrayList batch = new ArrayList();
+    for (int i = 1; i <= 10; i++) {
+      batch.add(new TestRequest(i));
+    }
+    wsrf.addNewReqs(batch);
+    wsrf.unregisterGroup("other");
+    Assert.assertEquals(10, wsrf.size());
+
+    // nothing is spread to the unregistered group anymore
+    wsrf.addNewReq(new TestRequest(11));
+    HashSet reqs = new HashSet(batch);
+    for (int i = 0; i < 11; i++) {
+      reqs.remove(wsrf.chooseNextRequest(-1));
+    }
+    Assert.assertEquals(0, reqs.size());
+    Assert.assertEquals(0, wsrf.size());
+  }
+
+  /**
+   * A batch added by several threads at the same time must be queued only
+   * once.
+   */
+  public void testDuplicateBatches() throws Throwable {
+    LoadingMediator mediator = new LoadingMediator();
+    assertQueuedOnce(new PriorityQueueReqForwarder(mediator), mediator);
+    mediator = new LoadingMediator();
+    assertQueuedOnce(new ConcurrentPriorityQueueReqForwarder(mediator), mediator);
+    mediator = new LoadingMediator();
+    assertQueuedOnce(new FairShareReqForwarder(mediator), mediator);
+    mediator = new LoadingMediator();
+    assertQueuedOnce(new WorkStealingReqForwarder(mediator), mediator);
+  }
+
+  private void assertQueuedOnce(final ReqForwarderInterface fwd, LoadingMediator mediator)
+      throws Throwable {
+    final ArrayList batch = new ArrayList();
+    for (int i = 0; i < 200; i++) {
+      batch.add(new TestRequest(1 + i % 50));
+    }
+    TestRunnable[] feeders = new TestRunnable[4];
+    for (int i = 0; i < feeders.length; i++) {
+      feeders[i] = new TestRunnable() {
+        public void runTest() {
+          fwd.addNewReqs(batch);
+        }
+      };
+    }
+    new MultiThreadedTestRunner(feeders).runTestRunnables();
+    Assert.assertEquals(batch.size(), fwd.size());
+    Assert.assertEquals(batch.size(), mediator.getQueued());
+  }
+
   /*
    * Helper request
    */
@@ -439,6 +677,48 @@ public class TestPriorityQueueReqFwd extends TestCase {
     }
   }
 
+  /*
+   * Remembers the queued requests, like a checkpoint would.
+   */
+  class LoadingMediator extends DummyDataAwareManagerMediator {
+
+    private final HashSet loaded = new HashSet();
+
+    private int queued;
+
+    public synchronized boolean checkIfReqLoaded(Request req) {
+      return this.loaded.contains(req);
+    }
+
+    public List<Request> filterNotLoaded(Collection<Request> reqs) {
+      List<Request> result = new ArrayList<Request>();
+      synchronized (this) {
+        for (Request req : reqs) {
+          if (!this.loaded.contains(req)) {
+            result.add(req);
+          }
+        }
+      }
+      // widens the window between the lookup and the registration
+      Thread.yield();
+      return result;
+    }
+
+    public synchronized void reqQueued(Request req) {
+      this.loaded.add(req);
+      this.queued++;
+    }
+
+    public synchronized void reqsQueued(Collection<Request> reqs) {
+      this.loaded.addAll(reqs);
+      this.queued += reqs.size();
+    }
+
+    public synchronized int getQueued() {
+      return this.queued;
+    }
+  }
+
   class DummyDataAwareManagerMediator implements DataAwareManagerMediator {
 
 	public boolean checkIfReqLoaded(Request req) {
@@ -449,6 +729,10 @@ public class TestPriorityQueueReqFwd extends TestCase {
 		return null;
 	}
 
+	public int getQueueSize() {
+		return 0;
+	}
+
 	public void registerCheckpoint(AbstractCheckpoint pt) {
 		// nothing to do
 	}
@@ -469,6 +753,10 @@ public class TestPriorityQueueReqFwd extends TestCase {
 		// nothing to do
 	}
 
+	public void reqLost(Request req, Throwable error) {
+		// nothing to do
+	}
+
 	public void reqProcessed(Request req) {
 		// nothing to do
 	}
@@ -477,10 +765,26 @@ public class TestPriorityQueueReqFwd extends TestCase {
 		// nothing to do
 	}
 
+	public void reqsQueued(Collection<Request> reqs) {
+		// nothing to do
+	}
+
+	public List<Request> filterNotLoaded(Collection<Request> reqs) {
+		return new ArrayList<Request>(reqs);
+	}
+
 	public void reqRequeued(Request req) {
 		// nothing to do
 	}
 
+	public void reqAvailable(Request req) {
+		// nothing to do
+	}
+
+	public void reqsAvailable(Collection<Request> reqs) {
+		// nothing to do
+	}
+
 	public void shutdown() {
 		// nothing to do
 	}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.test.manager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.w3c.dom.Element;
+
+import br.com.auster.dware.graph.Request;
+import br.com.auster.dware.manager.DataAwareManagerMediator;
+import br.com.auster.dware.manager.DataAwareManagerWishMediator;
+import br.com.auster.dware.manager.GraphManager;
+import br.com.auster.dware.manager.RetryScheduler;
+import br.com.auster.dware.manager.checkpoint.AbstractCheckpoint;
+
+/**
+ * This class handles all unit tests over class <code>
+ * br.com.auster.dware.manager.RetryScheduler</code>.
+ * 
+ * @version $Id$
+ */
+public class TestRetryScheduler extends TestCase {
+
+  private RequeueRecorder manager;
+
+  private RetryScheduler retries;
+
+  /**
+   * Constructor
+   * 
+   * @param method
+   *          test method name.
+   */
+  public TestRetryScheduler(String method) {
+    super(method);
+  }
+
+  protected void setUp() throws Exception {
+    this.manager = new RequeueRecorder();
+    this.retries = this.manager.getRetryScheduler();
+  }
+
+  protected void tearDown() throws Exception {
+    this.retries.shutdown();
+  }
+
+  private void configure(String budget) throws Exception {
+    Element config = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument()
+        .createElement(RetryScheduler.RETRY_SCHEDULER_ELEMENT);
+    config.setAttribute(RetryScheduler.TICK_ATTR, "10");
+    config.setAttribute(RetryScheduler.WHEEL_SIZE_ATTR, "8");
+    config.setAttribute(RetryScheduler.MAX_DELAY_ATTR, "1000");
+    config.setAttribute(RetryScheduler.JITTER_ATTR, "0");
+    if (budget != null) {
+      config.setAttribute(RetryScheduler.TRANSACTION_BUDGET_ATTR, budget);
+    }
+    this.retries.configure(config);
+  }
+
+  /**
+   * Many failures are requeued in a few batches by a single thread, longer
+   * delays included.
+   */
+  public void testBatches() throws Exception {
+    this.configure(null);
+    for (int i = 0; i < 100; i++) {
+      Assert.assertTrue(this.retries.schedule(new SimpleRequest("t", "r" + i), 30));
+    }
+    // longer than the wheel: waits more than one turn
+    Assert.assertTrue(this.retries.schedule(new SimpleRequest("t", "late"), 200));
+    Assert.assertEquals(101, this.retries.getPendingRetries());
+    Assert.assertEquals(101, this.retries.getScheduledRetries());
+
+    this.manager.await(100, 2000);
+    Assert.assertTrue(this.manager.batches <= 3);
+    Assert.assertFalse(this.manager.contains("late"));
+    this.manager.await(101, 2000);
+    Assert.assertEquals(0, this.retries.getPendingRetries());
+  }
+
+  /**
+   * The delay grows at each failure of the same request, up to the maximum.
+   */
+  public void testBackoff() throws Exception {
+    this.configure(null);
+    Request req = new SimpleRequest("t", "r");
+    long start = System.currentTimeMillis();
+    this.retries.schedule(req, 100);
+    this.manager.await(1, 2000);
+    long first = System.currentTimeMillis() - start;
+    start = System.currentTimeMillis();
+    this.retries.schedule(req, 100);
+    this.manager.await(2, 2000);
+    long second = System.currentTimeMillis() - start;
+    Assert.assertTrue(first >= 90);
+    Assert.assertTrue(second >= 190);
+
+    // a processed request starts again
+    this.retries.forget(req);
+    start = System.currentTimeMillis();
+    this.retries.schedule(req, 100);
+    this.manager.await(3, 2000);
+    Assert.assertTrue(System.currentTimeMillis() - start < 190);
+  }
+
+  /**
+   * A transaction is retried only as many times as its budget.
+   */
+  public void testBudget() throws Exception {
+    this.configure("2");
+    Assert.assertTrue(this.retries.schedule(new SimpleRequest("t", "a"), 0));
+    Assert.assertTrue(this.retries.schedule(new SimpleRequest("t", "b"), 0));
+    Assert.assertFalse(this.retries.schedule(new SimpleRequest("t", "c"), 0));
+    Assert.assertTrue(this.retries.schedule(new SimpleRequest("u", "d"), 0));
+    Assert.assertEquals(1, this.retries.getExhaustedRetries());
+    this.retries.transactionFinished("t");
+    Assert.assertTrue(this.retries.schedule(new SimpleRequest("t", "e"), 0));
+    this.manager.await(4, 2000);
+  }
+
+  /**
+   * A request the budget does not let retry is stored by the checkpoint as
+   * failed for good.
+   */
+  public void testBudgetFailsInCheckpoint() throws Exception {
+    this.configure("1");
+    DataAwareManagerWishMediator mediator = new DataAwareManagerWishMediator();
+    mediator.registerGraphManager(this.manager);
+    mediator.registerRetryScheduler(this.retries);
+    Element config = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument()
+        .createElement("checkpoint");
+    config.setAttribute(AbstractCheckpoint.MAX_REQ_FAILS, "5");
+    FailureRecorder chkPt = new FailureRecorder(config, mediator);
+
+    Request a = new SimpleRequest("t", "a");
+    Request b = new SimpleRequest("t", "b");
+    mediator.reqQueued(a);
+    mediator.reqQueued(b);
+    Exception error = new Exception("failed on purpose");
+    mediator.reqFailed(a, "g", error);
+    mediator.reqFailed(b, "g", error);
+    Assert.assertEquals("a:retry", chkPt.failures.get(0));
+    Assert.assertEquals("b:retry", chkPt.failures.get(1));
+    Assert.assertEquals("b:failed", chkPt.failures.get(2));
+    Assert.assertEquals(3, chkPt.failures.size());
+    this.manager.await(1, 2000);
+  }
+
+  /**
+   * Shutting down requeues the pending retries at once.
+   */
+  public void testShutdown() throws Exception {
+    this.configure(null);
+    for (int i = 0; i < 10; i++) {
+      this.retries.schedule(new SimpleRequest("t", "r" + i), 60000);
+    }
+    this.retries.shutdown();
+    Assert.assertEquals(10, this.manager.requeued.size());
+    Assert.assertEquals(1, this.manager.batches);
+    Assert.assertEquals(0, this.retries.getPendingRetries());
+  }
+
+  /**
+   * An interrupted worker requeues the retries of the wheel, and a new one is
+   * started for the retries scheduled afterwards.
+   */
+  public void testInterruptedWorker() throws Exception {
+    this.configure(null);
+    for (int i = 0; i < 5; i++) {
+      this.retries.schedule(new SimpleRequest("t", "r" + i), 60000);
+    }
+    Thread[] threads = new Thread[Thread.activeCount() * 2];
+    int count = Thread.enumerate(threads);
+    for (int i = 0; i < count; i++) {
+      if ("RetryScheduler".equals(threads[i].getName())) {
+        threads[i].interrupt();
+      }
+    }
+    this.manager.await(5, 2000);
+    Assert.assertEquals(0, this.retries.getPendingRetries());
+
+    Assert.assertTrue(this.retries.schedule(new SimpleRequest("t", "after"), 30));
+    this.manager.await(6, 2000);
+    Assert.assertTrue(this.manager.contains("after"));
+  }
+
+  /*
+   * Keeps the requeued requests instead of queueing them.
+   */
+  private static class RequeueRecorder extends GraphManager {
+
+    final List<Request> requeued = new ArrayList<Request>();
+
+    int batches = 0;
+
+    public synchronized void requeue(Request request) {
+      this.requeued.add(request);
+      this.batches++;
+      this.notifyAll();
+    }
+
+    public synchronized void requeue(Collection<Request> requests) {
+      this.requeued.addAll(requests);
+      this.batches++;
+      this.notifyAll();
+    }
+
+    synchronized boolean contains(String key) {
+      for (Request req : this.requeued) {
+        if (req.getUserKey().equals(key)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    synchronized void await(int count, long timeout) throws InterruptedException {
+      long end = System.currentTimeMillis() + timeout;
+      while (this.requeued.size() < count && System.currentTimeMillis() < end) {
+        this.wait(end - System.currentTimeMillis());
+      }
+      Assert.assertEquals(count, this.requeued.size());
+    }
+  }
+
+  /*
+   * Keeps the failures stored by the checkpoint.
+   */
+  private static class FailureRecorder extends AbstractCheckpoint {
+
+    final List<String> failures = new ArrayList<String>();
+
+    FailureRecorder(Element config, DataAwareManagerMediator mediator) {
+      super(config, mediator);
+    }
+
+    protected HashSet initReqProcessedHash() {
+      return new HashSet();
+    }
+
+    protected HashSet initReqQueuedHash() {
+      return new HashSet();
+    }
+
+    protected HashMap initReqFailedMap() {
+      return new HashMap();
+    }
+
+    public void shutdown() {
+      // nothing to do
+    }
+
+    protected void loadReqProcessed(Request req) {
+      // nothing to do
+    }
+
+    protected void loadReqFailed(Request req, boolean isRetry, int failCount) {
+      this.failures.add(req.getUserKey() + (isRetry ? ":retry" : ":failed"));
+    }
+
+    protected void loadReqWillBeProcessed(Request req) {
+      // nothing to do
+    }
+  }
+
+  private static class SimpleRequest extends Request {
+
+    SimpleRequest(String transactionId, String userKey) {
+      this.setTransactionId(transactionId);
+      this.setUserKey(userKey);
+    }
+
+    public long getWeight() {
+      return 1;
+    }
+  }
+}
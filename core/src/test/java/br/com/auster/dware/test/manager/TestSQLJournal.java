@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.test.manager;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import br.com.auster.dware.manager.checkpoint.SQLJournal;
+
+/**
+ * This class handles all unit tests over class <code>
+ * br.com.auster.dware.manager.checkpoint.SQLJournal</code>. The JDBC
+ * connection is a stub that records the batches it is given, so no database
+ * is needed.
+ * 
+ * @version $Id$
+ */
+public class TestSQLJournal extends TestCase {
+
+  private static final SQLJournal.Target INSERT = new SQLJournal.Target("insert", 1, 2, 3);
+
+  // the update statement has its parameters in another order
+  private static final SQLJournal.Target UPDATE = new SQLJournal.Target("update", 2, 3, 1);
+
+  /**
+   * Constructor
+   * 
+   * @param method
+   *          test method name.
+   */
+  public TestSQLJournal(String method) {
+    super(method);
+  }
+
+  /**
+   * The changes of a batch are collapsed to the last status of each request,
+   * an insert followed by updates staying an insert, and stored with one
+   * connection and one commit.
+   */
+  public void testCollapse() {
+    StubDatabase db = new StubDatabase();
+    StubJournal journal = new StubJournal(db);
+    journal.start();
+    journal.append(new SQLJournal.Entry(false, "t", "a", 'q'));
+    journal.append(new SQLJournal.Entry(true, "t", "b", 'p'));
+    journal.append(new SQLJournal.Entry(true, "t", "a", 'p'));
+    journal.append(new SQLJournal.Entry(false, "t", "c", 'q'));
+    long seq = journal.append(new SQLJournal.Entry(true, "t", "b", 'f'));
+    Assert.assertTrue(journal.awaitFlushed(seq));
+    journal.close();
+
+    Assert.assertEquals(1, db.connections);
+    Assert.assertEquals(1, db.commits);
+    Assert.assertEquals(1, db.closed);
+    Assert.assertEquals(2, db.batches.size());
+    Assert.assertEquals("insert t|a|p, insert t|c|q", db.batches.get(0));
+    Assert.assertEquals("update t|b|f", db.batches.get(1));
+  }
+
+  /**
+   * A batch the database refuses is reported to the threads waiting for it,
+   * and the connection is still closed.
+   */
+  public void testFailedBatch() {
+    StubDatabase db = new StubDatabase();
+    db.fail = true;
+    StubJournal journal = new StubJournal(db);
+    journal.start();
+    long seq = journal.append(new SQLJournal.Entry(false, "t", "a", 'q'));
+    Assert.assertFalse(journal.awaitFlushed(seq));
+    Assert.assertEquals(0, db.commits);
+    Assert.assertEquals(1, db.closed);
+
+    db.fail = false;
+    seq = journal.append(new SQLJournal.Entry(false, "t", "b", 'q'));
+    Assert.assertTrue(journal.awaitFlushed(seq));
+    journal.close();
+    Assert.assertEquals(1, db.commits);
+  }
+
+  private static class StubJournal extends SQLJournal {
+
+    private final StubDatabase db;
+
+    StubJournal(StubDatabase db) {
+      super("test-sql-journal", 100, 10, 50, INSERT, UPDATE);
+      this.db = db;
+    }
+
+    protected Connection getConnection() {
+      return this.db.connect();
+    }
+  }
+
+  /*
+   * Stub connections and statements, made with dynamic proxies. Each executed
+   * batch is recorded as the statement text followed by its rows, with the
+   * parameters in the order transaction|request|status.
+   */
+  private static class StubDatabase {
+
+    final List batches = Collections.synchronizedList(new ArrayList());
+
+    volatile boolean fail = false;
+
+    volatile int connections, commits, closed;
+
+    Connection connect() {
+      this.connections++;
+      return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                                                 new Class[] { Connection.class },
+                                                 new InvocationHandler() {
+        public Object invoke(Object proxy, Method method, Object[] args) {
+          String name = method.getName();
+          if (name.equals("prepareStatement")) {
+            return statement((String) args[0]);
+          } else if (name.equals("getAutoCommit")) {
+            return Boolean.FALSE;
+          } else if (name.equals("commit")) {
+            commits++;
+          } else if (name.equals("close")) {
+            closed++;
+          }
+          return null;
+        }
+      });
+    }
+
+    PreparedStatement statement(final String text) {
+      final SQLJournal.Target target = text.equals("insert") ? INSERT : UPDATE;
+      final String[] params = new String[4];
+      final List rows = new ArrayList();
+      return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                                                        new Class[] { PreparedStatement.class },
+                                                        new InvocationHandler() {
+        public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+          String name = method.getName();
+          if (name.equals("setString")) {
+            params[((Integer) args[0]).intValue()] = (String) args[1];
+          } else if (name.equals("addBatch")) {
+            rows.add(text + " " + params[target == INSERT ? 1 : 2] + "|"
+                     + params[target == INSERT ? 2 : 3] + "|" + params[target == INSERT ? 3 : 1]);
+          } else if (name.equals("executeBatch")) {
+            if (fail) {
+              throw new BatchUpdateException("refused on purpose", new int[0]);
+            }
+            StringBuffer batch = new StringBuffer();
+            for (int i = 0; i < rows.size(); i++) {
+              batch.append(i == 0 ? "" : ", ").append(rows.get(i));
+            }
+            batches.add(batch.toString());
+            int[] counts = new int[rows.size()];
+            Arrays.fill(counts, 1);
+            return counts;
+          }
+          return null;
+        }
+      });
+    }
+  }
+}
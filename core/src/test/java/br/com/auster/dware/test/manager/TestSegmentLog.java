@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.test.manager;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import br.com.auster.dware.manager.checkpoint.SegmentLog;
+
+/**
+ * This class handles all unit tests over class <code>
+ * br.com.auster.dware.manager.checkpoint.SegmentLog</code>.
+ * 
+ * @version $Id$
+ */
+public class TestSegmentLog extends TestCase {
+
+  private File directory;
+
+  /**
+   * Constructor
+   * 
+   * @param method
+   *          test method name.
+   */
+  public TestSegmentLog(String method) {
+    super(method);
+  }
+
+  protected void setUp() throws IOException {
+    this.directory = File.createTempFile("segment-log", "");
+    this.directory.delete();
+  }
+
+  protected void tearDown() {
+    File[] files = this.directory.listFiles();
+    for (int i = 0; files != null && i < files.length; i++) {
+      files[i].delete();
+    }
+    this.directory.delete();
+  }
+
+  /**
+   * A finished transaction cancels the requests logged before it, both on
+   * recovery and after compaction.
+   */
+  public void testRecoverAndCompact() throws IOException {
+    // small segments, so that the records are spread among many of them
+    SegmentLog log = new SegmentLog(this.directory, 32);
+    log.recover(2);
+    log.open();
+    log.append(records(SegmentLog.PROCESSED, "A", new String[] { "A_1", "A_2" }));
+    log.append(records(SegmentLog.PROCESSED, "B", new String[] { "B_1" }));
+    log.append(records(SegmentLog.FINISHED, "A", new String[] { null }));
+    log.append(records(SegmentLog.PROCESSED, "A", new String[] { "A_3" }));
+    Assert.assertTrue(this.directory.list().length > 2);
+
+    HashSet expected = new HashSet();
+    expected.add("A_3");
+    expected.add("B_1");
+    Assert.assertEquals(expected, recover());
+
+    log.compact();
+    log.close();
+    Assert.assertEquals(expected, recover());
+  }
+
+  /**
+   * A record cut by a crash is ignored, and the ones before it are kept.
+   */
+  public void testTruncatedRecord() throws IOException {
+    SegmentLog log = new SegmentLog(this.directory, 1024);
+    log.recover(1);
+    log.open();
+    log.append(records(SegmentLog.PROCESSED, "A", new String[] { "A_1", "A_2" }));
+    log.close();
+    File[] segments = this.directory.listFiles();
+    Assert.assertEquals(1, segments.length);
+    FileOutputStream out = new FileOutputStream(segments[0], true);
+    out.write(new byte[] { 0, 0, 0, 40, 'P', 0 });
+    out.close();
+
+    HashSet expected = new HashSet();
+    expected.add("A_1");
+    expected.add("A_2");
+    Assert.assertEquals(expected, recover());
+  }
+
+  private HashSet recover() throws IOException {
+    return new SegmentLog(this.directory, 64).recover(4);
+  }
+
+  private static List records(byte type, String transactionId, String[] requestIds) {
+    List records = new ArrayList();
+    for (int i = 0; i < requestIds.length; i++) {
+      records.add(new SegmentLog.Record(type, transactionId, requestIds[i]));
+    }
+    return records;
+  }
+}
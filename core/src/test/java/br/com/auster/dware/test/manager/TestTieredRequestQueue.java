@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.test.manager;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import br.com.auster.dware.graph.Request;
+import br.com.auster.dware.manager.RequestSpill;
+import br.com.auster.dware.manager.TieredRequestQueue;
+
+/**
+ * This class handles all unit tests over class <code>
+ * br.com.auster.dware.manager.TieredRequestQueue</code>.
+ * 
+ * @version $Id$
+ */
+public class TestTieredRequestQueue extends TestCase {
+
+  private File directory;
+
+  private RequestSpill spill;
+
+  /**
+   * Constructor
+   * 
+   * @param method
+   *          test method name.
+   */
+  public TestTieredRequestQueue(String method) {
+    super(method);
+  }
+
+  protected void setUp() throws Exception {
+    this.directory = File.createTempFile("spill-test", "");
+    this.directory.delete();
+    this.directory.mkdir();
+    this.spill = new RequestSpill(this.directory, 4, 3);
+  }
+
+  protected void tearDown() throws Exception {
+    this.spill.close();
+    this.directory.delete();
+  }
+
+  private static void put(TieredRequestQueue queue, String prefix, int count) {
+    for (int i = 0; i < count; i++) {
+      Request req = new SimpleRequest(prefix + i);
+      req.setQueuedTime(i + 1);
+      queue.put(req);
+    }
+  }
+
+  /**
+   * The requests come back in the order they were put, with their queue
+   * times, and the segments are deleted as they are read.
+   */
+  public void testOrder() {
+    TieredRequestQueue queue = new TieredRequestQueue(this.spill);
+    put(queue, "r", 20);
+    Assert.assertEquals(20, queue.size());
+    // 4 in memory, 5 segments of 3, 1 in the tail
+    Assert.assertEquals(15, this.spill.getSpilledRequests());
+    Assert.assertEquals(5, this.spill.getSegments());
+    Assert.assertEquals(20, queue.toList().size());
+    Assert.assertEquals(5, this.spill.getSegments());
+
+    for (int i = 0; i < 20; i++) {
+      Request req = queue.get();
+      Assert.assertEquals("r" + i, req.getUserKey());
+      Assert.assertEquals(i + 1, req.getQueuedTime());
+    }
+    Assert.assertEquals(0, queue.size());
+    Assert.assertEquals(0, this.spill.getSegments());
+    Assert.assertEquals(0, this.spill.getSpilledRequests());
+  }
+
+  /**
+   * Requests put while the queue drains go after the spilled ones.
+   */
+  public void testInterleaved() {
+    TieredRequestQueue queue = new TieredRequestQueue(this.spill);
+    put(queue, "a", 10);
+    for (int i = 0; i < 6; i++) {
+      Assert.assertEquals("a" + i, queue.get().getUserKey());
+    }
+    put(queue, "b", 5);
+    for (int i = 6; i < 10; i++) {
+      Assert.assertEquals("a" + i, queue.get().getUserKey());
+    }
+    for (int i = 0; i < 5; i++) {
+      Assert.assertEquals("b" + i, queue.get().getUserKey());
+    }
+  }
+
+  /**
+   * Appending keeps both orders, moving the segments of the other queue.
+   */
+  public void testAppend() {
+    TieredRequestQueue first = new TieredRequestQueue(this.spill);
+    TieredRequestQueue second = new TieredRequestQueue(this.spill);
+    put(first, "a", 8);
+    put(second, "b", 11);
+    first.append(second);
+    Assert.assertEquals(19, first.size());
+    Assert.assertEquals(0, second.size());
+    List<Request> all = first.toList();
+    for (int i = 0; i < 8; i++) {
+      Assert.assertEquals("a" + i, all.get(i).getUserKey());
+      Assert.assertEquals("a" + i, first.get().getUserKey());
+    }
+    for (int i = 0; i < 11; i++) {
+      Assert.assertEquals("b" + i, all.get(8 + i).getUserKey());
+      Assert.assertEquals("b" + i, first.get().getUserKey());
+    }
+  }
+
+  /**
+   * Without a spill everything stays in memory.
+   */
+  public void testInMemory() throws IOException {
+    TieredRequestQueue queue = new TieredRequestQueue();
+    put(queue, "r", 20);
+    Assert.assertEquals(20, queue.inMemory().size());
+    Assert.assertEquals(0, this.spill.getSegments());
+    for (int i = 0; i < 20; i++) {
+      Assert.assertEquals("r" + i, queue.get().getUserKey());
+    }
+  }
+
+  /**
+   * The identifiers, cost, queue time and attributes of a request survive its
+   * segment.
+   */
+  public void testRecord() {
+    TieredRequestQueue queue = new TieredRequestQueue(this.spill);
+    put(queue, "r", 4);
+    Request req = new SimpleRequest("x");
+    req.getAttributes().put("name", "value");
+    req.getAttributes().put("count", new Integer(3));
+    req.getAttributes().put("date", new Date(5));
+    req.setCost(42);
+    req.setQueuedTime(9);
+    queue.put(req);
+    put(queue, "s", 2);
+    Assert.assertEquals(1, this.spill.getSegments());
+
+    for (int i = 0; i < 4; i++) {
+      queue.get();
+    }
+    Request back = queue.get();
+    Assert.assertNotSame(req, back);
+    Assert.assertEquals("t_x", back.getId());
+    Assert.assertEquals("x", back.getUserKey());
+    Assert.assertEquals("t", back.getTransactionId());
+    Assert.assertEquals(42, back.getCost());
+    Assert.assertEquals(9, back.getQueuedTime());
+    Assert.assertEquals("value", back.getAttributes().get("name"));
+    Assert.assertEquals(new Integer(3), back.getAttributes().get("count"));
+    Assert.assertEquals(new Date(5), back.getAttributes().get("date"));
+  }
+
+  /**
+   * The requests of a segment that can not be read are reported as lost, with
+   * their IDs and weights, and the queue goes on with the next ones.
+   */
+  public void testLostSegment() {
+    TieredRequestQueue queue = new TieredRequestQueue(this.spill);
+    final List<Request> lost = new ArrayList<Request>();
+    queue.setListener(new TieredRequestQueue.Listener() {
+      public void requestsLost(List<Request> requests, IOException cause) {
+        lost.addAll(requests);
+      }
+    });
+    put(queue, "r", 20);
+    File[] dirs = this.directory.listFiles();
+    for (int i = 0; i < dirs.length; i++) {
+      File[] files = dirs[i].listFiles();
+      for (int j = 0; j < files.length; j++) {
+        files[j].delete();
+      }
+    }
+
+    List<Request> all = queue.toList();
+    Assert.assertEquals(20, all.size());
+    for (int i = 0; i < 20; i++) {
+      Assert.assertEquals("t_r" + i, all.get(i).getId());
+    }
+    for (int i = 0; i < 4; i++) {
+      Assert.assertEquals("r" + i, queue.get().getUserKey());
+    }
+    Assert.assertEquals("r19", queue.get().getUserKey());
+    Assert.assertEquals(0, queue.size());
+    Assert.assertEquals(0, this.spill.getSegments());
+    Assert.assertEquals(15, lost.size());
+    for (int i = 0; i < 15; i++) {
+      Request req = (Request) lost.get(i);
+      Assert.assertEquals("t_r" + (i + 4), req.getId());
+      Assert.assertEquals("t", req.getTransactionId());
+      Assert.assertEquals(1, req.getWeight());
+    }
+  }
+
+  private static class SimpleRequest extends Request {
+
+    private SimpleRequest() {
+      // read back from a segment
+    }
+
+    SimpleRequest(String userKey) {
+      this.setTransactionId("t");
+      this.setUserKey(userKey);
+    }
+
+    public long getWeight() {
+      return 1;
+    }
+
+    protected void writeFields(DataOutput out) {
+      // nothing besides the identifiers
+    }
+
+    protected void readFields(DataInput in) {
+      // nothing besides the identifiers
+    }
+  }
+}
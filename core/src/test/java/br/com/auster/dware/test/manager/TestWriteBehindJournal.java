@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.test.manager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import br.com.auster.dware.manager.checkpoint.WriteBehindJournal;
+
+/**
+ * This class handles all unit tests over class <code>
+ * br.com.auster.dware.manager.checkpoint.WriteBehindJournal</code>. The
+ * journal is flushed to memory, so no database is needed.
+ * 
+ * @version $Id$
+ */
+public class TestWriteBehindJournal extends TestCase {
+
+  /**
+   * Constructor
+   * 
+   * @param method
+   *          test method name.
+   */
+  public TestWriteBehindJournal(String method) {
+    super(method);
+  }
+
+  /**
+   * Full batches are stored at once, in order, and the rest is stored when the
+   * journal is closed.
+   */
+  public void testFlushBySize() {
+    MemoryJournal journal = new MemoryJournal(100, 10, 60000);
+    journal.start();
+    long seq = 0;
+    for (int i = 0; i < 25; i++) {
+      seq = journal.append(new Integer(i));
+    }
+    Assert.assertEquals(25, seq);
+    Assert.assertTrue(journal.awaitFlushed(20));
+    Assert.assertEquals(10, ((Integer) journal.batchSizes.get(0)).intValue());
+    Assert.assertEquals(10, ((Integer) journal.batchSizes.get(1)).intValue());
+
+    journal.close();
+    Assert.assertEquals(25, journal.stored.size());
+    for (int i = 0; i < 25; i++) {
+      Assert.assertEquals(i, ((Integer) journal.stored.get(i)).intValue());
+    }
+  }
+
+  /**
+   * A batch that does not fill up is stored after the flush interval.
+   */
+  public void testFlushByTime() {
+    MemoryJournal journal = new MemoryJournal(100, 50, 20);
+    journal.start();
+    journal.append("a");
+    long seq = journal.append("b");
+    journal.awaitFlushed(seq);
+    Assert.assertEquals(2, journal.stored.size());
+    Assert.assertEquals(1, journal.batchSizes.size());
+    journal.close();
+  }
+
+  /**
+   * Waiting threads are released even if the entries could not be stored, and
+   * are told so.
+   */
+  public void testFailedFlush() {
+    MemoryJournal journal = new MemoryJournal(100, 5, 20);
+    journal.fail = true;
+    journal.start();
+    long seq = journal.append("a");
+    Assert.assertFalse(journal.awaitFlushed(seq));
+    Assert.assertEquals(0, journal.stored.size());
+    journal.close();
+  }
+
+  /**
+   * Only the entries of the batch that failed are reported as not stored.
+   */
+  public void testFailedBatchOnly() {
+    MemoryJournal journal = new MemoryJournal(100, 2, 60000);
+    journal.fail = true;
+    journal.start();
+    journal.append("a");
+    long failed = journal.append("b");
+    Assert.assertFalse(journal.awaitFlushed(failed));
+    journal.fail = false;
+    journal.append("c");
+    long stored = journal.append("d");
+    Assert.assertTrue(journal.awaitFlushed(stored));
+    Assert.assertFalse(journal.awaitFlushed(1));
+    Assert.assertTrue(journal.awaitFlushed(3));
+    journal.close();
+    Assert.assertEquals(2, journal.stored.size());
+  }
+
+  private static class MemoryJournal extends WriteBehindJournal {
+
+    final List stored = Collections.synchronizedList(new ArrayList());
+
+    final List batchSizes = Collections.synchronizedList(new ArrayList());
+
+    volatile boolean fail = false;
+
+    MemoryJournal(int capacity, int flushSize, long flushInterval) {
+      super("test-journal", capacity, flushSize, flushInterval);
+    }
+
+    protected void flush(List entries) throws Exception {
+      if (this.fail) {
+        throw new Exception("flush failed");
+      }
+      this.batchSizes.add(new Integer(entries.size()));
+      this.stored.addAll(entries);
+    }
+  }
+}
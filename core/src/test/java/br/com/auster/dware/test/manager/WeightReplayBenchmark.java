@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2004-2005 Auster Solutions do Brasil. All Rights Reserved.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Created on Oct 18, 2026
+ */
+package br.com.auster.dware.test.manager;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+
+import br.com.auster.dware.graph.LatencyHistogram;
+import br.com.auster.dware.graph.Request;
+import br.com.auster.dware.manager.ConcurrentPriorityQueueReqForwarder;
+import br.com.auster.dware.manager.GroupSignal;
+import br.com.auster.dware.manager.GroupSignallingReqForwarder;
+import br.com.auster.dware.manager.PriorityQueueReqForwarder;
+import br.com.auster.dware.manager.ReqForwarderInterface;
+import br.com.auster.dware.manager.WorkStealingReqForwarder;
+
+/**
+ * Replays a distribution of request weights against the request forwarders
+ * and reports how long each request waited until it was finished, and how
+ * long the whole batch took.
+ * 
+ * <p>
+ * The batch is enqueued at once, as <code>Bootstrap</code> does. Each graph
+ * group is simulated by one thread that processes one request at a time,
+ * spending <code>nanosPerWeight</code> for each unit of weight.
+ * </p>
+ * 
+ * <p>
+ * This is not a unit test. Run it with:
+ * <code>WeightReplayBenchmark [weights-file|-] [groups] [nanosPerWeight]</code>
+ * where the weights file has one request weight per line (for instance, the
+ * sizes of the invoice files of a real cycle). Without it, a mix of many small
+ * and few big requests is generated.
+ * </p>
+ * 
+ * @version $Id$
+ */
+public class WeightReplayBenchmark {
+
+  private final TestPriorityQueueReqFwd helper = new TestPriorityQueueReqFwd("benchmark");
+
+  private final long[] weights;
+
+  private final int groups;
+
+  private final long nanosPerWeight;
+
+  public WeightReplayBenchmark(long[] weights, int groups, long nanosPerWeight) {
+    this.weights = weights;
+    this.groups = groups;
+    this.nanosPerWeight = nanosPerWeight;
+  }
+
+  public static void main(String[] args) throws Exception {
+    long[] weights;
+    if (args.length > 0 && !"-".equals(args[0])) {
+      weights = readWeights(args[0]);
+    } else {
+      weights = generateWeights(20000, new Random(1));
+    }
+    int groups = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+    long nanosPerWeight = args.length > 2 ? Long.parseLong(args[2]) : 20000;
+
+    WeightReplayBenchmark bench = new WeightReplayBenchmark(weights, groups, nanosPerWeight);
+    System.out.println(weights.length + " requests, " + groups + " graph groups, " + nanosPerWeight
+                       + " ns per weight unit");
+    bench.report("PriorityQueueReqForwarder", 0);
+    bench.report("ConcurrentPriorityQueueReqForwarder", 1);
+    bench.report("WorkStealingReqForwarder", 2);
+  }
+
+  private static long[] readWeights(String fileName) throws IOException {
+    List list = new ArrayList();
+    BufferedReader reader = new BufferedReader(new FileReader(fileName));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.length() > 0) {
+          list.add(Long.valueOf(line));
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    long[] weights = new long[list.size()];
+    for (int i = 0; i < weights.length; i++) {
+      weights[i] = ((Long) list.get(i)).longValue();
+    }
+    return weights;
+  }
+
+  /*
+   * 97% of small requests and 3% of requests one hundred times bigger.
+   */
+  private static long[] generateWeights(int count, Random rand) {
+    long[] weights = new long[count];
+    for (int i = 0; i < count; i++) {
+      if (rand.nextInt(100) < 3) {
+        weights[i] = 500 + rand.nextInt(1500);
+      } else {
+        weights[i] = 1 + rand.nextInt(20);
+      }
+    }
+    return weights;
+  }
+
+  private void report(String name, int type) throws InterruptedException {
+    LatencyHistogram latency = new LatencyHistogram();
+    long makespan = run(type, latency);
+    System.out.println(name + ": makespan " + (makespan / 1000000) + " ms, latency p50 "
+                       + (latency.getPercentile(0.5) / 1000) + " ms, p99 "
+                       + (latency.getPercentile(0.99) / 1000) + " ms, max "
+                       + (latency.getMax() / 1000) + " ms");
+  }
+
+  /**
+   * Runs the whole batch and returns how long it took, in nanoseconds.
+   */
+  public long run(int type, final LatencyHistogram latency) throws InterruptedException {
+    final ReqForwarderInterface fwd;
+    switch (type) {
+      case 0:
+        fwd = new PriorityQueueReqForwarder(this.helper.new DummyDataAwareManagerMediator());
+        break;
+      case 1:
+        fwd = new ConcurrentPriorityQueueReqForwarder(this.helper.new DummyDataAwareManagerMediator());
+        break;
+      default:
+        fwd = new WorkStealingReqForwarder(this.helper.new DummyDataAwareManagerMediator());
+    }
+    final AtomicInteger finished = new AtomicInteger();
+    final CountDownLatch registered = new CountDownLatch(this.groups);
+    final CountDownLatch done = new CountDownLatch(this.groups);
+    final long[] start = new long[1];
+    final int total = this.weights.length;
+
+    for (int i = 0; i < this.groups; i++) {
+      final String groupName = "group-" + i;
+      new Thread(new Runnable() {
+        public void run() {
+          GroupSignal signal = null;
+          Lock lock;
+          Condition notEmpty;
+          // graph groups register themselves from their own thread
+          if (fwd instanceof GroupSignallingReqForwarder) {
+            signal = ((GroupSignallingReqForwarder) fwd).registerGroup(groupName);
+            lock = signal.getLock();
+            notEmpty = signal.getQueueNotEmptyCondition();
+          } else {
+            lock = fwd.getSyncObj();
+            notEmpty = fwd.getQueueNotEmptyCondition();
+          }
+          registered.countDown();
+          try {
+            while (finished.get() < total) {
+              Request req = null;
+              lock.lock();
+              try {
+                req = fwd.chooseNextRequest(Long.MAX_VALUE);
+              } catch (NoSuchElementException e) {
+                // the timeout lets groups leave when the batch is over
+                if (signal == null) {
+                  notEmpty.await(10, TimeUnit.MILLISECONDS);
+                } else if (signal.park()) {
+                  try {
+                    notEmpty.await(10, TimeUnit.MILLISECONDS);
+                  } finally {
+                    signal.unpark();
+                  }
+                }
+              } finally {
+                lock.unlock();
+              }
+              if (req != null) {
+                LockSupport.parkNanos(req.getWeight() * nanosPerWeight);
+                latency.recordNanos(System.nanoTime() - start[0]);
+                finished.incrementAndGet();
+              }
+            }
+          } catch (InterruptedException e) {
+          } finally {
+            done.countDown();
+          }
+        }
+      }, groupName).start();
+    }
+
+    registered.await();
+    List batch = new ArrayList(total);
+    for (int i = 0; i < total; i++) {
+      batch.add(this.helper.new TestRequest((int) this.weights[i]));
+    }
+    start[0] = System.nanoTime();
+    fwd.addNewReqs(batch);
+    done.await();
+    return System.nanoTime() - start[0];
+  }
+}